@@ -0,0 +1,32 @@
+package io.bisq.monitoring;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * Synthetic node sets for the benchmarks, shaped like bisq_nodes.yaml: mostly onion addresses, a few owners.
+ */
+class BenchmarkNodes {
+    static final String[] OWNERS = {"alice", "bob", "carol", "dave", "erin", "frank", "grace", "heidi"};
+
+    static List<NodeDetail> create(int count) {
+        List<NodeDetail> nodes = new ArrayList<>(count);
+        NodeType[] types = NodeType.values();
+        for (int i = 0; i < count; i++) {
+            NodeType type = types[i % types.length];
+            String address = String.format("%016x.onion", i * 0x9e3779b97f4a7c15L);
+            nodes.add(new NodeDetail(address, 8000 + i % 10, OWNERS[i % OWNERS.length], type, true));
+        }
+        return nodes;
+    }
+
+    static NodeRegistry registry(List<NodeDetail> nodes, double errorFraction) {
+        NodeRegistry registry = new NodeRegistry();
+        nodes.forEach(registry::add);
+        int inError = (int) (nodes.size() * errorFraction);
+        for (int i = 0; i < inError; i++) {
+            registry.addError(nodes.get(i * nodes.size() / inError), "Pricenode request failed: Connection refused");
+        }
+        return registry;
+    }
+}
@@ -0,0 +1,52 @@
+package io.bisq.monitoring;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Error state churn and the lookups done on every check: by address and the error counts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NodeRegistryBenchmark {
+    @Param({"100", "1000", "10000"})
+    int nodeCount;
+
+    private List<NodeDetail> nodes;
+    private NodeRegistry registry;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        nodes = BenchmarkNodes.create(nodeCount);
+        registry = BenchmarkNodes.registry(nodes, 0.1);
+    }
+
+    @Benchmark
+    public boolean addErrorClearError() {
+        NodeDetail node = nodes.get(next++ % nodes.size());
+        registry.addError(node, "Seed node not reachable: SOCKS5 host unreachable");
+        return registry.clearError(node);
+    }
+
+    @Benchmark
+    public List<NodeDetail> findByAddress() {
+        return registry.findByAddress(nodes.get(next++ % nodes.size()).getAddress());
+    }
+
+    @Benchmark
+    public int getErrorCount() {
+        return registry.getErrorCount();
+    }
+
+    @Benchmark
+    public int getErrorCountByType() {
+        return registry.getErrorCount(NodeType.PRICE_NODE);
+    }
+}
@@ -0,0 +1,89 @@
+package io.bisq.monitoring;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Overhead of dispatching checks: a cycle of no-op probes through the probe engine, and reachability probes of
+ * fake nodes on loopback. One operation is a whole batch.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProbeDispatchBenchmark {
+    @Param({"100", "1000"})
+    int batchSize;
+
+    private ProbeEngine probeEngine;
+    private List<ProbeEngine.Probe> probes;
+    private ReachabilityProber prober;
+    private ServerSocketChannel fakeNode;
+    private Thread acceptor;
+
+    @Setup
+    public void setUp() throws IOException {
+        NodeConfig nodeConfig = new NodeConfig();
+        probeEngine = new ProbeEngine(nodeConfig, 60_000);
+        probes = new ArrayList<>(batchSize);
+        for (NodeDetail node : BenchmarkNodes.create(batchSize)) {
+            probes.add(new ProbeEngine.Probe(node, () -> {
+            }));
+        }
+
+        prober = new ReachabilityProber(5000);
+        // accepts and closes connections, like a node that is up
+        fakeNode = ServerSocketChannel.open();
+        fakeNode.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 4096);
+        acceptor = new Thread(() -> {
+            while (fakeNode.isOpen()) {
+                try (SocketChannel channel = fakeNode.accept()) {
+                    // closed right away
+                } catch (IOException e) {
+                    // closed
+                }
+            }
+        }, "fake-node");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        probeEngine.shutdown();
+        prober.shutdown();
+        fakeNode.close();
+    }
+
+    @Benchmark
+    public ProbeEngine.CycleStats probeEngineCycle() {
+        return probeEngine.runCycle(probes);
+    }
+
+    @Benchmark
+    public int reachabilityProbes() throws Exception {
+        int port = ((InetSocketAddress) fakeNode.getLocalAddress()).getPort();
+        List<CompletableFuture<ReachabilityProber.Result>> results = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            results.add(prober.probe("127.0.0.1", port, null));
+        }
+        int reachable = 0;
+        for (CompletableFuture<ReachabilityProber.Result> result : results) {
+            if (result.get().isReachable()) {
+                reachable++;
+            }
+        }
+        return reachable;
+    }
+}
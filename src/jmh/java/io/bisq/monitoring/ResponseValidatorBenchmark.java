@@ -0,0 +1,58 @@
+package io.bisq.monitoring;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Validating pricenode responses with the assertions of bisq_nodes.yaml, on bodies shaped like the real ones.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResponseValidatorBenchmark {
+    private ResponseValidator validator;
+    private byte[] fees;
+    private byte[] marketPrices;
+    private byte[] version;
+
+    @Setup
+    public void setUp() throws IOException {
+        NodeConfig nodeConfig = new NodeYamlReader(Monitoring.inputStreamToString(
+                Monitoring.class.getResourceAsStream("/bisq_nodes.yaml"))).getNodeConfig();
+        validator = ResponseValidator.forPricenodes(nodeConfig);
+
+        fees = ("{ \"dataMap\": { \"dogeTxFee\": 5000000, \"dashTxFee\": 50, \"btcTxFee\": 380, \"ltcTxFee\": 500 },"
+                + " \"bitcoinFeesTs\": 1513173628 }").getBytes(StandardCharsets.UTF_8);
+        // about 150 currencies, XMR near the end as in the real response
+        StringBuilder prices = new StringBuilder("{\"data\":[");
+        for (int i = 0; i < 150; i++) {
+            prices.append("{\"currencyCode\":\"C").append(i).append("\",\"price\":").append(1000.0 + i)
+                    .append(",\"timestampSec\":1513173628,\"provider\":\"BTCA\"},");
+        }
+        prices.append("{\"currencyCode\":\"XMR\",\"price\":0.02,\"timestampSec\":1513173628,\"provider\":\"POLO\"}]}");
+        marketPrices = prices.toString().getBytes(StandardCharsets.UTF_8);
+        version = String.valueOf(nodeConfig.getPricenodeVersion()).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public ResponseValidator.Result getFees() throws IOException {
+        return validator.validate("/getFees", new ByteArrayInputStream(fees));
+    }
+
+    @Benchmark
+    public ResponseValidator.Result getAllMarketPrices() throws IOException {
+        return validator.validate("/getAllMarketPrices", new ByteArrayInputStream(marketPrices));
+    }
+
+    @Benchmark
+    public ResponseValidator.Result getVersion() throws IOException {
+        return validator.validate("/getVersion", new ByteArrayInputStream(version));
+    }
+}
@@ -0,0 +1,61 @@
+package io.bisq.monitoring;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Rendering the status reports: the cached html page, the page after one node changed and the Slack report.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StatusReportBenchmark {
+    @Param({"100", "1000", "10000"})
+    int nodeCount;
+
+    private List<NodeDetail> nodes;
+    private StatusPage statusPage;
+    private Monitoring monitoring;
+    private int next;
+
+    @Setup
+    public void setUp() throws Exception {
+        nodes = BenchmarkNodes.create(nodeCount);
+        NodeRegistry registry = BenchmarkNodes.registry(nodes, 0.1);
+        statusPage = new StatusPage(registry, LocalDateTime.now());
+
+        NodeConfig nodeConfig = new NodeConfig();
+        nodeConfig.setNodeTimeoutSecs(10);
+        monitoring = new Monitoring(nodeConfig);
+        // the same nodes, a tenth of them in error
+        nodes.forEach(monitoring.getNodeRegistry()::add);
+    }
+
+    @TearDown
+    public void tearDown() {
+        monitoring.shutdown();
+    }
+
+    @Benchmark
+    public String htmlCached() {
+        return monitoring.printAllNodesReportHtml();
+    }
+
+    @Benchmark
+    public StatusPage.Rendered htmlAfterNodeChange() {
+        // the usual case during a cycle: one node changed since the last request
+        statusPage.nodeChanged(nodes.get(next++ % nodes.size()));
+        return statusPage.get();
+    }
+
+    @Benchmark
+    public String slackReport() {
+        return monitoring.printAllNodesReportSlack();
+    }
+}
@@ -0,0 +1,399 @@
+package io.bisq.monitoring;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/*
+ * Checks every node on an interval of its own instead of all nodes once per cycle. Nodes that fail, flap or just
+ * recovered are checked every minimum interval, nodes that stay healthy less and less often up to the maximum. Probes
+ * go out one at a time, paced by a probes per minute budget, so the load on Tor stays flat. Retries of failed nodes
+ * take from the same budget ahead of the due nodes. The circuit of an onion node is prewarmed shortly before its
+ * check, paced by a budget of its own.
+ */
+@Slf4j
+public class AdaptiveScheduler {
+    public static final int DEFAULT_MIN_INTERVAL_SECS = 60;
+    public static final int DEFAULT_MAX_INTERVAL_SECS = 60 * 60;
+    public static final int DEFAULT_PROBES_PER_MINUTE = 120;
+    // a node that switched between ok and failing this often within the window is flapping
+    static final int FLAP_CHANGES = 3;
+    static final long FLAP_WINDOW_MILLIS = 60 * 60 * 1000L;
+    // the interval of a healthy node grows by this factor per successful check
+    static final double GROWTH = 1.5;
+    static final double JITTER = 0.2;
+    // how often the node set is compared with the probes, it changes on reloads and cluster changes
+    static final long REFRESH_MILLIS = 5000;
+    // how long before its check the circuit of an onion node is prewarmed
+    static final long PREWARM_LEAD_MILLIS = 30 * 1000;
+
+    private final ProbeEngine probeEngine;
+    private final Supplier<List<ProbeEngine.Probe>> probes;
+    private final long minIntervalMillis;
+    private final long baseIntervalMillis;
+    private final long maxIntervalMillis;
+    private final int probesPerMinute;
+    // null for no prewarming
+    private final Consumer<NodeDetail> prewarm;
+    private final AtomicLong probesSent = new AtomicLong();
+    private final AtomicLong retriesSent = new AtomicLong();
+
+    // guarded by 'this'
+    private final Map<NodeKey, NodeSchedule> schedules = new HashMap<>();
+    private final PriorityQueue<NodeSchedule> due = new PriorityQueue<>(Comparator.comparingLong(schedule -> schedule.nextDueMillis));
+    private final Deque<Retry> retries = new ArrayDeque<>();
+    private final PriorityQueue<Prewarm> prewarms = new PriorityQueue<>(Comparator.comparingLong(prewarm -> prewarm.atMillis));
+    private final Budget probeBudget;
+    private final Budget prewarmBudget;
+    private long nextRefreshMillis = 0;
+
+    private Thread schedulerThread;
+    private volatile boolean running = true;
+
+    /**
+     * @param probes             the probes of the nodes to check, asked again every few seconds
+     * @param baseIntervalSecs   interval of nodes without history and of nodes healthy again after a recovery
+     * @param prewarm            builds the circuit to an onion node, must not block; null for no prewarming
+     */
+    public AdaptiveScheduler(ProbeEngine probeEngine, Supplier<List<ProbeEngine.Probe>> probes, NodeConfig nodeConfig,
+                             int baseIntervalSecs, Consumer<NodeDetail> prewarm) {
+        this(probeEngine, probes,
+                1000L * orDefault(nodeConfig.getMinCheckIntervalSecs(), DEFAULT_MIN_INTERVAL_SECS),
+                1000L * baseIntervalSecs,
+                1000L * orDefault(nodeConfig.getMaxCheckIntervalSecs(), DEFAULT_MAX_INTERVAL_SECS),
+                orDefault(nodeConfig.getProbeBudgetPerMinute(), DEFAULT_PROBES_PER_MINUTE), prewarm);
+    }
+
+    public AdaptiveScheduler(ProbeEngine probeEngine, Supplier<List<ProbeEngine.Probe>> probes,
+                             long minIntervalMillis, long baseIntervalMillis, long maxIntervalMillis, int probesPerMinute) {
+        this(probeEngine, probes, minIntervalMillis, baseIntervalMillis, maxIntervalMillis, probesPerMinute, null);
+    }
+
+    public AdaptiveScheduler(ProbeEngine probeEngine, Supplier<List<ProbeEngine.Probe>> probes,
+                             long minIntervalMillis, long baseIntervalMillis, long maxIntervalMillis, int probesPerMinute,
+                             Consumer<NodeDetail> prewarm) {
+        this.probeEngine = probeEngine;
+        this.probes = probes;
+        this.minIntervalMillis = minIntervalMillis;
+        this.baseIntervalMillis = Math.max(minIntervalMillis, baseIntervalMillis);
+        this.maxIntervalMillis = Math.max(this.baseIntervalMillis, maxIntervalMillis);
+        this.probesPerMinute = probesPerMinute;
+        this.prewarm = prewarm;
+        long now = System.currentTimeMillis();
+        this.probeBudget = new Budget(probesPerMinute, now);
+        this.prewarmBudget = new Budget(probesPerMinute, now);
+    }
+
+    public synchronized void start() {
+        if (schedulerThread != null) {
+            return;
+        }
+        log.info("Adaptive scheduling: intervals {} to {} seconds, at most {} probes per minute",
+                minIntervalMillis / 1000, maxIntervalMillis / 1000, probesPerMinute);
+        schedulerThread = new Thread(this::run, "adaptive-scheduler");
+        schedulerThread.setDaemon(true);
+        schedulerThread.start();
+    }
+
+    public void shutdown() {
+        running = false;
+        if (schedulerThread != null) {
+            schedulerThread.interrupt();
+        }
+        synchronized (this) {
+            // nobody sends them anymore
+            retries.forEach(retry -> retry.result.cancel(false));
+            retries.clear();
+        }
+    }
+
+    /**
+     * Queue a retry of a failed node, it goes out ahead of the due nodes as soon as the budget allows.
+     *
+     * @return completes when the probe did, cancelled if it missed its deadline or the scheduler was shut down
+     */
+    public synchronized CompletableFuture<Void> submitRetry(ProbeEngine.Probe probe) {
+        Retry retry = new Retry(probe);
+        if (!running) {
+            retry.result.cancel(false);
+            return retry.result;
+        }
+        retries.addLast(retry);
+        notifyAll();
+        return retry.result;
+    }
+
+    /**
+     * @return the probes sent, retries included
+     */
+    public long getProbesSent() {
+        return probesSent.get();
+    }
+
+    public long getRetriesSent() {
+        return retriesSent.get();
+    }
+
+    public synchronized int getOverdueCount() {
+        long now = System.currentTimeMillis();
+        int overdue = 0;
+        for (NodeSchedule schedule : due) {
+            if (schedule.nextDueMillis <= now) {
+                overdue++;
+            }
+        }
+        return overdue;
+    }
+
+    /**
+     * @return the current interval of the node, or -1 if it is not scheduled
+     */
+    public synchronized long getIntervalMillis(NodeKey node) {
+        NodeSchedule schedule = schedules.get(node);
+        return schedule != null ? schedule.intervalMillis : -1;
+    }
+
+    public void writePrometheus(StringBuilder builder) {
+        builder.append("# HELP bisq_scheduler_probes_total Probes sent by the adaptive scheduler.\n");
+        builder.append("# TYPE bisq_scheduler_probes_total counter\n");
+        builder.append("bisq_scheduler_probes_total ").append(getProbesSent()).append('\n');
+        builder.append("# HELP bisq_scheduler_retries_total Retries of failed nodes sent within the probe budget.\n");
+        builder.append("# TYPE bisq_scheduler_retries_total counter\n");
+        builder.append("bisq_scheduler_retries_total ").append(getRetriesSent()).append('\n');
+        builder.append("# HELP bisq_scheduler_overdue_nodes Nodes due for a check that wait for the probe budget.\n");
+        builder.append("# TYPE bisq_scheduler_overdue_nodes gauge\n");
+        builder.append("bisq_scheduler_overdue_nodes ").append(getOverdueCount()).append('\n');
+        builder.append("# HELP bisq_scheduler_budget_probes_per_minute Probes the scheduler may send per minute.\n");
+        builder.append("# TYPE bisq_scheduler_budget_probes_per_minute gauge\n");
+        builder.append("bisq_scheduler_budget_probes_per_minute ").append(probesPerMinute).append('\n');
+    }
+
+    private void run() {
+        try {
+            while (running) {
+                Runnable next = takeNext();
+                if (next != null) {
+                    next.run();
+                }
+            }
+        } catch (InterruptedException e) {
+            log.debug("Adaptive scheduler stopped");
+        }
+    }
+
+    /**
+     * Waits until a retry or a node is due and the budget allows a probe, or a circuit is to be prewarmed, or until
+     * something else needs doing.
+     *
+     * @return what to send, or null to ask again
+     */
+    private synchronized Runnable takeNext() throws InterruptedException {
+        long now = System.currentTimeMillis();
+        if (now >= nextRefreshMillis) {
+            refresh(now);
+            nextRefreshMillis = now + REFRESH_MILLIS;
+        }
+        long waitMillis = nextRefreshMillis - now;
+
+        Prewarm nextPrewarm = prewarms.peek();
+        while (nextPrewarm != null && !nextPrewarm.isValid(now)) {
+            prewarms.poll();
+            nextPrewarm = prewarms.peek();
+        }
+        if (nextPrewarm != null) {
+            if (nextPrewarm.atMillis > now) {
+                waitMillis = Math.min(waitMillis, nextPrewarm.atMillis - now);
+            } else if (prewarmBudget.take(now)) {
+                NodeDetail node = prewarms.poll().schedule.probe.getNode();
+                return () -> prewarm.accept(node);
+            } else {
+                waitMillis = Math.min(waitMillis, prewarmBudget.waitMillis());
+            }
+        }
+
+        NodeSchedule head = due.peek();
+        boolean probeDue = !retries.isEmpty() || (head != null && head.nextDueMillis <= now);
+        if (probeDue) {
+            if (probeBudget.take(now)) {
+                probesSent.incrementAndGet();
+                Retry retry = retries.pollFirst();
+                if (retry != null) {
+                    retriesSent.incrementAndGet();
+                    return () -> retry.send(probeEngine);
+                }
+                NodeSchedule next = due.poll();
+                return () -> probeEngine.submit(next.probe).whenComplete((result, e) -> completed(next));
+            }
+            waitMillis = Math.min(waitMillis, probeBudget.waitMillis());
+        } else if (head != null) {
+            waitMillis = Math.min(waitMillis, head.nextDueMillis - now);
+        }
+        wait(Math.max(1, waitMillis));
+        return null;
+    }
+
+    private void refresh(long now) {
+        Set<NodeKey> current = new HashSet<>();
+        for (ProbeEngine.Probe probe : probes.get()) {
+            NodeKey key = probe.getNode().getKey();
+            current.add(key);
+            NodeSchedule schedule = schedules.get(key);
+            if (schedule == null) {
+                schedule = new NodeSchedule(key, probe, baseIntervalMillis);
+                // new nodes get their first check within a minimum interval, spread out
+                schedule.nextDueMillis = now + ThreadLocalRandom.current().nextLong(minIntervalMillis + 1);
+                schedules.put(key, schedule);
+                due.add(schedule);
+                addPrewarm(schedule);
+            } else {
+                schedule.probe = probe;
+            }
+        }
+        if (current.size() < schedules.size()) {
+            schedules.keySet().retainAll(current);
+            due.removeIf(schedule -> !current.contains(schedule.key));
+            prewarms.removeIf(prewarm -> !current.contains(prewarm.schedule.key));
+        }
+    }
+
+    private void addPrewarm(NodeSchedule schedule) {
+        if (prewarm != null && schedule.probe.getNode().isTor) {
+            prewarms.add(new Prewarm(schedule, schedule.nextDueMillis));
+        }
+    }
+
+    private synchronized void completed(NodeSchedule schedule) {
+        if (schedules.get(schedule.key) != schedule) {
+            // no longer scheduled
+            return;
+        }
+        long now = System.currentTimeMillis();
+        schedule.intervalMillis = nextInterval(schedule, !schedule.probe.getNode().hasError(), now);
+        long jitter = (long) (schedule.intervalMillis * JITTER * (2 * ThreadLocalRandom.current().nextDouble() - 1));
+        schedule.nextDueMillis = now + schedule.intervalMillis + jitter;
+        due.add(schedule);
+        addPrewarm(schedule);
+        notifyAll();
+    }
+
+    /**
+     * Records the outcome of a check and returns the interval until the next one.
+     */
+    long nextInterval(NodeSchedule schedule, boolean ok, long now) {
+        if (schedule.lastOk != null && schedule.lastOk != ok) {
+            schedule.changes.addLast(now);
+        }
+        schedule.lastOk = ok;
+        while (!schedule.changes.isEmpty() && schedule.changes.peekFirst() < now - FLAP_WINDOW_MILLIS) {
+            schedule.changes.removeFirst();
+        }
+        if (!ok) {
+            schedule.lastFailureMillis = now;
+            return minIntervalMillis;
+        }
+        boolean flapping = schedule.changes.size() >= FLAP_CHANGES;
+        boolean recovering = schedule.lastFailureMillis >= 0 && now - schedule.lastFailureMillis < baseIntervalMillis;
+        if (flapping || recovering) {
+            return minIntervalMillis;
+        }
+        if (schedule.intervalMillis < baseIntervalMillis) {
+            return baseIntervalMillis;
+        }
+        return Math.min(maxIntervalMillis, (long) (schedule.intervalMillis * GROWTH));
+    }
+
+    private static int orDefault(int value, int defaultValue) {
+        return value > 0 ? value : defaultValue;
+    }
+
+    /**
+     * A budget of one probe at a time: tokens do not pile up, so probes are spread evenly even after a quiet spell.
+     */
+    private static class Budget {
+        final int perMinute;
+        double tokens = 1;
+        long lastRefillMillis;
+
+        Budget(int perMinute, long now) {
+            this.perMinute = perMinute;
+            this.lastRefillMillis = now;
+        }
+
+        boolean take(long now) {
+            tokens = Math.min(1, tokens + (now - lastRefillMillis) * perMinute / 60000.0);
+            lastRefillMillis = now;
+            if (tokens < 1) {
+                return false;
+            }
+            tokens -= 1;
+            return true;
+        }
+
+        long waitMillis() {
+            return (long) Math.ceil((1 - tokens) * 60000 / perMinute);
+        }
+    }
+
+    private class Prewarm {
+        final NodeSchedule schedule;
+        // the check the circuit is built for
+        final long dueMillis;
+        final long atMillis;
+
+        Prewarm(NodeSchedule schedule, long dueMillis) {
+            this.schedule = schedule;
+            this.dueMillis = dueMillis;
+            this.atMillis = dueMillis - PREWARM_LEAD_MILLIS;
+        }
+
+        /**
+         * False once the check is due or was rescheduled, or the node is gone.
+         */
+        boolean isValid(long now) {
+            return now < dueMillis && schedule.nextDueMillis == dueMillis && schedules.get(schedule.key) == schedule;
+        }
+    }
+
+    private static class Retry {
+        final ProbeEngine.Probe probe;
+        final CompletableFuture<Void> result = new CompletableFuture<>();
+
+        Retry(ProbeEngine.Probe probe) {
+            this.probe = probe;
+        }
+
+        void send(ProbeEngine probeEngine) {
+            CompletableFuture<Void> sent = probeEngine.submit(probe);
+            sent.whenComplete((ignored, e) -> {
+                if (e != null) {
+                    result.completeExceptionally(e);
+                } else {
+                    result.complete(null);
+                }
+            });
+        }
+    }
+
+    static class NodeSchedule {
+        final NodeKey key;
+        ProbeEngine.Probe probe;
+        long intervalMillis;
+        long nextDueMillis;
+        // outcome of the last check, null before the first
+        Boolean lastOk;
+        long lastFailureMillis = -1;
+        // times the node switched between ok and failing, within the flap window
+        final Deque<Long> changes = new ArrayDeque<>();
+
+        NodeSchedule(NodeKey key, ProbeEngine.Probe probe, long intervalMillis) {
+            this.key = key;
+            this.probe = probe;
+            this.intervalMillis = intervalMillis;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package io.bisq.monitoring;
+
+import lombok.Value;
+
+/*
+ * When the failures of a node are reported: the failures before the threshold are only followed up with retries, the
+ * one reaching it is reported, and a fix is only reported after a reported failure. Monitoring runs with the policy of
+ * its config, AlertReplay replays the probe journal against other ones.
+ */
+@Value
+public class AlertPolicy {
+    int threshold;
+    long retryBaseDelayMillis;
+    long retryMaxDelayMillis;
+
+    public static AlertPolicy of(NodeConfig nodeConfig) {
+        return new AlertPolicy(Monitoring.UNREPORTED_ERRORS_THRESHOLD,
+                RetryScheduler.secsOrDefault(nodeConfig.getRetryBaseDelaySecs(), RetryScheduler.DEFAULT_BASE_DELAY_SECS) * 1000L,
+                RetryScheduler.secsOrDefault(nodeConfig.getRetryMaxDelaySecs(), RetryScheduler.DEFAULT_MAX_DELAY_SECS) * 1000L);
+    }
+
+    public boolean isAlert(long errorsUnreported) {
+        return errorsUnreported == threshold;
+    }
+
+    public boolean needsFollowup(long errorsUnreported) {
+        return errorsUnreported < threshold;
+    }
+
+    public boolean isReported(long errorsUnreported) {
+        return errorsUnreported >= threshold;
+    }
+
+    /**
+     * The shortest time from the first failure to the alert: the followups before it, each after half its backoff,
+     * the least the jitter leaves of it.
+     */
+    public long getMinAlertDelayMillis() {
+        long delay = 0;
+        for (int attempt = 1; attempt < threshold; attempt++) {
+            delay += RetryScheduler.nominalBackoffMillis(retryBaseDelayMillis, retryMaxDelayMillis, attempt) / 2;
+        }
+        return delay;
+    }
+
+    @Override
+    public String toString() {
+        return "threshold " + threshold + ", retry " + retryBaseDelayMillis / 1000 + "s.." + retryMaxDelayMillis / 1000 + "s";
+    }
+}
@@ -0,0 +1,229 @@
+package io.bisq.monitoring;
+
+import joptsimple.OptionException;
+import joptsimple.OptionParser;
+import joptsimple.OptionSet;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+ * Replays the probe journal against alert policies, to see what other thresholds and retry delays would have
+ * reported. An outage is a run of failed probes of a node; one lasting at least realOutageMillis is real, an alert on
+ * a shorter one is a false alarm. All state is kept in primitive arrays by node id, so a replay runs at the speed the
+ * journal is read.
+ */
+@Slf4j
+public class AlertReplay implements ProbeJournal.RecordHandler {
+    public static final long DEFAULT_REAL_OUTAGE_MILLIS = 10 * 60 * 1000L;
+
+    private final AlertPolicy[] policies;
+    private final long[] minAlertDelayMillis;
+    private final long realOutageMillis;
+    @Getter
+    private final PolicyResult[] results;
+    // start of the current outage by node, -1 while up
+    private long[] outageStart = new long[0];
+    // by policy and node
+    private int[][] errors;
+    private long[][] alertedAt;
+    private long lastMillis;
+    @Getter
+    private long records;
+
+    public AlertReplay(List<AlertPolicy> policies, long realOutageMillis) {
+        this.policies = policies.toArray(new AlertPolicy[0]);
+        this.realOutageMillis = realOutageMillis;
+        this.minAlertDelayMillis = new long[this.policies.length];
+        this.results = new PolicyResult[this.policies.length];
+        this.errors = new int[this.policies.length][0];
+        this.alertedAt = new long[this.policies.length][0];
+        for (int p = 0; p < this.policies.length; p++) {
+            minAlertDelayMillis[p] = this.policies[p].getMinAlertDelayMillis();
+            results[p] = new PolicyResult(this.policies[p]);
+        }
+    }
+
+    /**
+     * Like Monitoring.handleError and markAsGoodNode: every failure counts, the policy decides on the alert, a passed
+     * check ends the outage. The journal only holds the retries the live policy made, so a policy with longer retry
+     * delays alerts at the first failure after its retries would have passed.
+     */
+    @Override
+    public void record(long timestampMillis, int nodeId, boolean ok, int stage, int latencyMillis) {
+        records++;
+        lastMillis = Math.max(lastMillis, timestampMillis);
+        if (nodeId >= outageStart.length) {
+            grow(nodeId);
+        }
+        if (ok) {
+            if (outageStart[nodeId] >= 0) {
+                endOutage(nodeId, timestampMillis, true);
+            }
+            return;
+        }
+        if (outageStart[nodeId] < 0) {
+            outageStart[nodeId] = timestampMillis;
+        }
+        long outageMillis = timestampMillis - outageStart[nodeId];
+        for (int p = 0; p < policies.length; p++) {
+            int nodeErrors = ++errors[p][nodeId];
+            if (alertedAt[p][nodeId] < 0 && policies[p].isReported(nodeErrors) && outageMillis >= minAlertDelayMillis[p]) {
+                alertedAt[p][nodeId] = timestampMillis;
+            }
+        }
+    }
+
+    /**
+     * Accounts the outages still going on at the end of the journal, they are real once long enough.
+     */
+    public void finish() {
+        for (int nodeId = 0; nodeId < outageStart.length; nodeId++) {
+            if (outageStart[nodeId] >= 0) {
+                endOutage(nodeId, lastMillis, false);
+            }
+        }
+    }
+
+    private void endOutage(int nodeId, long endMillis, boolean ended) {
+        long start = outageStart[nodeId];
+        boolean real = endMillis - start >= realOutageMillis;
+        for (int p = 0; p < policies.length; p++) {
+            long alerted = alertedAt[p][nodeId];
+            PolicyResult result = results[p];
+            if (alerted >= 0) {
+                result.alerts++;
+            }
+            if (real) {
+                result.realOutages++;
+                if (alerted >= 0) {
+                    result.addDetectionDelay(alerted - start);
+                } else {
+                    result.missedOutages++;
+                }
+            } else if (alerted >= 0 && ended) {
+                result.falseAlarms++;
+            }
+            errors[p][nodeId] = 0;
+            alertedAt[p][nodeId] = -1;
+        }
+        outageStart[nodeId] = -1;
+    }
+
+    private void grow(int nodeId) {
+        int size = Math.max(16, nodeId * 2);
+        int oldSize = outageStart.length;
+        outageStart = Arrays.copyOf(outageStart, size);
+        Arrays.fill(outageStart, oldSize, size, -1);
+        for (int p = 0; p < policies.length; p++) {
+            errors[p] = Arrays.copyOf(errors[p], size);
+            alertedAt[p] = Arrays.copyOf(alertedAt[p], size);
+            Arrays.fill(alertedAt[p], oldSize, size, -1);
+        }
+    }
+
+    public static class PolicyResult {
+        @Getter
+        private final AlertPolicy policy;
+        @Getter
+        private int alerts;
+        // alerts on outages shorter than realOutageMillis
+        @Getter
+        private int falseAlarms;
+        @Getter
+        private int realOutages;
+        // real outages without an alert
+        @Getter
+        private int missedOutages;
+        private long[] detectionDelays = new long[16];
+        private int detected;
+
+        PolicyResult(AlertPolicy policy) {
+            this.policy = policy;
+        }
+
+        private void addDetectionDelay(long delayMillis) {
+            if (detected == detectionDelays.length) {
+                detectionDelays = Arrays.copyOf(detectionDelays, detected * 2);
+            }
+            detectionDelays[detected++] = delayMillis;
+        }
+
+        /**
+         * @param percentile 0 to 100
+         * @return the detection delay of the real outages that were alerted, -1 if none was
+         */
+        public long getDetectionDelayMillis(double percentile) {
+            if (detected == 0) {
+                return -1;
+            }
+            long[] sorted = Arrays.copyOf(detectionDelays, detected);
+            Arrays.sort(sorted);
+            int rank = (int) Math.ceil(percentile / 100 * detected);
+            return sorted[Math.min(detected, Math.max(rank, 1)) - 1];
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-28s alerts %6d  false alarms %6d  missed %5d of %6d  detection delay p50 %6s p95 %6s max %6s",
+                    policy, alerts, falseAlarms, missedOutages, realOutages, seconds(getDetectionDelayMillis(50)),
+                    seconds(getDetectionDelayMillis(95)), seconds(getDetectionDelayMillis(100)));
+        }
+
+        private static String seconds(long millis) {
+            return millis >= 0 ? millis / 1000 + "s" : "-";
+        }
+    }
+
+    /**
+     * Replays the journal of a monitor against every combination of the given thresholds and retry delays.
+     */
+    public static void main(String[] args) throws IOException {
+        OptionParser parser = new OptionParser();
+        parser.accepts("journal", "Directory of the probe journal").withRequiredArg().ofType(String.class)
+                .defaultsTo(Paths.get(Monitoring.historyDirData, Monitoring.JOURNAL_DIR).toString());
+        parser.accepts("thresholds", "Failures before an alert").withRequiredArg().ofType(Integer.class)
+                .withValuesSeparatedBy(',').defaultsTo(1, 2, 3, 4, 5);
+        parser.accepts("retryBaseDelaySecs", "First retry delays").withRequiredArg().ofType(Integer.class)
+                .withValuesSeparatedBy(',').defaultsTo(RetryScheduler.DEFAULT_BASE_DELAY_SECS);
+        parser.accepts("retryMaxDelaySecs", "Longest retry delay").withRequiredArg().ofType(Integer.class)
+                .defaultsTo(RetryScheduler.DEFAULT_MAX_DELAY_SECS);
+        parser.accepts("realOutageSecs", "Outages at least this long should be alerted, shorter ones are false alarms")
+                .withRequiredArg().ofType(Long.class).defaultsTo(DEFAULT_REAL_OUTAGE_MILLIS / 1000);
+
+        OptionSet options;
+        try {
+            options = parser.parse(args);
+        } catch (OptionException ex) {
+            System.out.println("error: " + ex.getMessage());
+            System.out.println();
+            parser.printHelpOn(System.out);
+            System.exit(-1);
+            return;
+        }
+
+        List<AlertPolicy> policies = new ArrayList<>();
+        long maxDelayMillis = 1000L * (int) options.valueOf("retryMaxDelaySecs");
+        for (Object threshold : options.valuesOf("thresholds")) {
+            for (Object baseDelay : options.valuesOf("retryBaseDelaySecs")) {
+                policies.add(new AlertPolicy((int) threshold, 1000L * (int) baseDelay, maxDelayMillis));
+            }
+        }
+        AlertReplay replay = new AlertReplay(policies, 1000L * (long) options.valueOf("realOutageSecs"));
+        String journal = (String) options.valueOf("journal");
+        long start = System.nanoTime();
+        ProbeJournal.replay(Paths.get(journal), replay);
+        replay.finish();
+        long millis = Math.max(1, (System.nanoTime() - start) / 1000000);
+        log.info("Replayed {} probes of {} nodes from {} in {} ms ({} probes/s)", replay.getRecords(),
+                ProbeJournal.readNodeIndex(Paths.get(journal)).size(), journal, millis, replay.getRecords() * 1000 / millis);
+        for (PolicyResult result : replay.getResults()) {
+            log.info("{}", result);
+        }
+    }
+}
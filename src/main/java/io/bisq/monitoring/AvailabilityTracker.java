@@ -0,0 +1,273 @@
+package io.bisq.monitoring;
+
+import lombok.Getter;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+ * Availability of one node from the outcomes of its checks: the time between two checks counts as up or down by the
+ * outcome of the first one. Each window is a ring of fixed buckets, so the uptime and the mean time to repair of the
+ * last hour, day, week and 30 days roll along with the clock and recording a check allocates nothing.
+ */
+public class AvailabilityTracker {
+
+    public enum Window {
+        HOUR("1h", 60 * 60 * 1000L, 12),
+        DAY("24h", 24 * 60 * 60 * 1000L, 24),
+        WEEK("7d", 7 * 24 * 60 * 60 * 1000L, 28),
+        MONTH("30d", 30 * 24 * 60 * 60 * 1000L, 30);
+
+        @Getter
+        private final String label;
+        private final long millis;
+        private final int buckets;
+
+        Window(String label, long millis, int buckets) {
+            this.label = label;
+            this.millis = millis;
+            this.buckets = buckets;
+        }
+    }
+
+    private final Ring[] rings = new Ring[Window.values().length];
+    // outcome of the last check, meaningless before the first
+    private boolean known;
+    private boolean up;
+    // time up to which the checks are accounted in the rings
+    private long accountedUntilMillis;
+    // start of the current outage, -1 when up
+    private long downSinceMillis = -1;
+
+    public AvailabilityTracker() {
+        for (Window window : Window.values()) {
+            rings[window.ordinal()] = new Ring(window);
+        }
+    }
+
+    public synchronized void record(boolean ok, long nowMillis) {
+        long now = Math.max(nowMillis, accountedUntilMillis);
+        if (known) {
+            for (Ring ring : rings) {
+                ring.add(accountedUntilMillis, now, up);
+            }
+        }
+        if (!ok && downSinceMillis < 0) {
+            downSinceMillis = now;
+        } else if (ok && downSinceMillis >= 0) {
+            for (Ring ring : rings) {
+                ring.repaired(now, now - downSinceMillis);
+            }
+            downSinceMillis = -1;
+        }
+        known = true;
+        up = ok;
+        accountedUntilMillis = now;
+    }
+
+    public synchronized boolean hasData() {
+        return known;
+    }
+
+    /**
+     * @return the share of the window the node was up, in percent, or -1 if it was never checked within the window
+     */
+    public synchronized double getUptimePercent(Window window, long nowMillis) {
+        Ring ring = rings[window.ordinal()];
+        long oldestBucket = nowMillis / ring.bucketMillis - ring.ids.length + 1;
+        long observed = 0;
+        long down = 0;
+        for (int i = 0; i < ring.ids.length; i++) {
+            if (ring.ids[i] >= oldestBucket && ring.ids[i] <= nowMillis / ring.bucketMillis) {
+                observed += ring.observedMillis[i];
+                down += ring.downMillis[i];
+            }
+        }
+        // the time since the last check counts in the state it found
+        if (known) {
+            long pending = nowMillis - Math.max(accountedUntilMillis, oldestBucket * ring.bucketMillis);
+            if (pending > 0) {
+                observed += pending;
+                down += up ? 0 : pending;
+            }
+        }
+        return observed > 0 ? 100.0 * (observed - down) / observed : -1;
+    }
+
+    /**
+     * @return the mean duration of the outages that ended within the window, -1 if none did
+     */
+    public synchronized long getMttrMillis(Window window, long nowMillis) {
+        Ring ring = rings[window.ordinal()];
+        long newestBucket = nowMillis / ring.bucketMillis;
+        long repairs = 0;
+        long repairMillis = 0;
+        for (int i = 0; i < ring.ids.length; i++) {
+            if (ring.ids[i] > newestBucket - ring.ids.length && ring.ids[i] <= newestBucket) {
+                repairs += ring.repairs[i];
+                repairMillis += ring.repairMillis[i];
+            }
+        }
+        return repairs > 0 ? repairMillis / repairs : -1;
+    }
+
+    /**
+     * @return the uptime of every window with data by its label, e.g. "24h"
+     */
+    public Map<String, Double> getUptimePercent(long nowMillis) {
+        Map<String, Double> uptime = new LinkedHashMap<>();
+        for (Window window : Window.values()) {
+            double percent = getUptimePercent(window, nowMillis);
+            if (percent >= 0) {
+                uptime.put(window.getLabel(), percent);
+            }
+        }
+        return uptime;
+    }
+
+    /**
+     * @return the mean time to repair of every window with a repair by its label
+     */
+    public Map<String, Long> getMttrMillis(long nowMillis) {
+        Map<String, Long> mttr = new LinkedHashMap<>();
+        for (Window window : Window.values()) {
+            long millis = getMttrMillis(window, nowMillis);
+            if (millis >= 0) {
+                mttr.put(window.getLabel(), millis);
+            }
+        }
+        return mttr;
+    }
+
+    /**
+     * Writes the whole state, for the node state snapshot.
+     */
+    public synchronized void writeTo(DataOutput out) throws IOException {
+        out.writeBoolean(known);
+        out.writeBoolean(up);
+        out.writeLong(accountedUntilMillis);
+        out.writeLong(downSinceMillis);
+        out.writeByte(rings.length);
+        for (Ring ring : rings) {
+            out.writeShort(ring.ids.length);
+            for (int i = 0; i < ring.ids.length; i++) {
+                out.writeLong(ring.ids[i]);
+                out.writeInt(ring.observedMillis[i]);
+                out.writeInt(ring.downMillis[i]);
+                out.writeInt(ring.repairs[i]);
+                out.writeLong(ring.repairMillis[i]);
+            }
+        }
+    }
+
+    /**
+     * Reads the state written by writeTo.
+     *
+     * @throws IOException if it was written with other windows
+     */
+    public synchronized void readFrom(DataInput in) throws IOException {
+        known = in.readBoolean();
+        up = in.readBoolean();
+        accountedUntilMillis = in.readLong();
+        downSinceMillis = in.readLong();
+        if (in.readUnsignedByte() != rings.length) {
+            throw new IOException("Availability written with other windows");
+        }
+        for (Ring ring : rings) {
+            if (in.readUnsignedShort() != ring.ids.length) {
+                throw new IOException("Availability written with other buckets");
+            }
+            for (int i = 0; i < ring.ids.length; i++) {
+                ring.ids[i] = in.readLong();
+                ring.observedMillis[i] = in.readInt();
+                ring.downMillis[i] = in.readInt();
+                ring.repairs[i] = in.readInt();
+                ring.repairMillis[i] = in.readLong();
+            }
+        }
+    }
+
+    /**
+     * Takes over the state of another tracker, e.g. one restored from a snapshot.
+     */
+    public void copyFrom(AvailabilityTracker other) {
+        synchronized (other) {
+            synchronized (this) {
+                known = other.known;
+                up = other.up;
+                accountedUntilMillis = other.accountedUntilMillis;
+                downSinceMillis = other.downSinceMillis;
+                for (int r = 0; r < rings.length; r++) {
+                    rings[r].copyFrom(other.rings[r]);
+                }
+            }
+        }
+    }
+
+    private static class Ring {
+        final long bucketMillis;
+        final long windowMillis;
+        // bucket number since the epoch each slot holds, a slot with an older number is reused
+        final long[] ids;
+        final int[] observedMillis;
+        final int[] downMillis;
+        final int[] repairs;
+        final long[] repairMillis;
+
+        Ring(Window window) {
+            this.windowMillis = window.millis;
+            this.bucketMillis = window.millis / window.buckets;
+            this.ids = new long[window.buckets];
+            this.observedMillis = new int[window.buckets];
+            this.downMillis = new int[window.buckets];
+            this.repairs = new int[window.buckets];
+            this.repairMillis = new long[window.buckets];
+            Arrays.fill(ids, -1);
+        }
+
+        void add(long fromMillis, long toMillis, boolean up) {
+            // anything older has left the window already
+            long from = Math.max(fromMillis, toMillis - windowMillis);
+            while (from < toMillis) {
+                long id = from / bucketMillis;
+                long end = Math.min(toMillis, (id + 1) * bucketMillis);
+                int slot = slot(id);
+                observedMillis[slot] += (int) (end - from);
+                if (!up) {
+                    downMillis[slot] += (int) (end - from);
+                }
+                from = end;
+            }
+        }
+
+        void copyFrom(Ring other) {
+            System.arraycopy(other.ids, 0, ids, 0, ids.length);
+            System.arraycopy(other.observedMillis, 0, observedMillis, 0, ids.length);
+            System.arraycopy(other.downMillis, 0, downMillis, 0, ids.length);
+            System.arraycopy(other.repairs, 0, repairs, 0, ids.length);
+            System.arraycopy(other.repairMillis, 0, repairMillis, 0, ids.length);
+        }
+
+        void repaired(long nowMillis, long outageMillis) {
+            int slot = slot(nowMillis / bucketMillis);
+            repairs[slot]++;
+            repairMillis[slot] += outageMillis;
+        }
+
+        private int slot(long id) {
+            int slot = (int) (id % ids.length);
+            if (ids[slot] != id) {
+                ids[slot] = id;
+                observedMillis[slot] = 0;
+                downMillis[slot] = 0;
+                repairs[slot] = 0;
+                repairMillis[slot] = 0;
+            }
+            return slot;
+        }
+    }
+}
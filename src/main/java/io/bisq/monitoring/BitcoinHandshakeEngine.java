@@ -0,0 +1,571 @@
+package io.bisq.monitoring;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+
+/*
+ * Does the Bitcoin P2P version/verack handshake with many nodes at once on one selector thread, directly or through a
+ * SOCKS5 proxy (Tor). Only version and verack are encoded and decoded, other messages a node sends during the
+ * handshake are skipped unread. Buffers are pooled and reused, a handshake allocates little besides its result.
+ * The message layout is described in src/main/python/protocol.py.
+ */
+@Slf4j
+public class BitcoinHandshakeEngine {
+    public static final int DEFAULT_MAX_IN_FLIGHT = 1024;
+    static final int MAINNET_MAGIC = 0xD9B4BEF9;
+    static final int PROTOCOL_VERSION = 70015;
+    static final String USER_AGENT = "/bisq.network.monitor:0.1/";
+    static final int HEADER_LENGTH = 24;
+    // a version message is about 100 bytes plus the user agent, which is at most 256 bytes
+    static final int MAX_VERSION_PAYLOAD = 512;
+    static final int BUFFER_SIZE = 1024;
+
+    private static final byte[] VERSION = command("version");
+    private static final byte[] VERACK = command("verack");
+    private static final byte SOCKS_VERSION = 5;
+    private static final byte SOCKS_NO_AUTH = 0;
+    private static final byte SOCKS_USER_PASSWORD = 2;
+    private static final byte SOCKS_CMD_CONNECT = 1;
+    private static final byte SOCKS_ATYP_IPV4 = 1;
+    private static final byte SOCKS_ATYP_DOMAIN = 3;
+    private static final byte SOCKS_ATYP_IPV6 = 4;
+
+    private final int timeoutMillis;
+    private final int maxInFlight;
+    private final Selector selector;
+    private final Thread selectorThread;
+    private final Queue<Handshake> submitted = new ConcurrentLinkedQueue<>();
+    // only touched by the selector thread
+    private final Queue<Handshake> waiting = new ArrayDeque<>();
+    private final Queue<ByteBuffer> bufferPool = new ArrayDeque<>();
+    private final MessageDigest sha256;
+    private final byte[] digest = new byte[32];
+    private int inFlight = 0;
+    private volatile boolean running = true;
+
+    public BitcoinHandshakeEngine(int timeoutMillis) throws IOException {
+        this(timeoutMillis, DEFAULT_MAX_IN_FLIGHT);
+    }
+
+    public BitcoinHandshakeEngine(int timeoutMillis, int maxInFlight) throws IOException {
+        this.timeoutMillis = timeoutMillis;
+        this.maxInFlight = maxInFlight;
+        try {
+            this.sha256 = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        this.selector = Selector.open();
+        this.selectorThread = new Thread(this::run, "btc-handshake");
+        this.selectorThread.setDaemon(true);
+        this.selectorThread.start();
+    }
+
+    /**
+     * @param socksProxy the SOCKS5 proxy to connect through, or null to connect directly
+     * @param socksUsername username for the SOCKS5 proxy, or null
+     * @return completes with what the node sent in its version message, or with the error, never exceptionally
+     */
+    public CompletableFuture<BitcoinNodeResult> handshake(String host, int port, InetSocketAddress socksProxy,
+                                                          String socksUsername, String socksPassword) {
+        Handshake handshake = new Handshake(host, port, socksProxy, socksUsername, socksPassword);
+        if (!running) {
+            handshake.result.fail("Handshake engine is shut down");
+            handshake.future.complete(handshake.result);
+            return handshake.future;
+        }
+        submitted.add(handshake);
+        selector.wakeup();
+        return handshake.future;
+    }
+
+    public void shutdown() {
+        running = false;
+        selector.wakeup();
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                startSubmitted();
+                selector.select(Math.max(1, Math.min(timeoutMillis, 100)));
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    Handshake handshake = (Handshake) key.attachment();
+                    try {
+                        handle(key, handshake);
+                    } catch (IOException e) {
+                        finish(handshake, e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName());
+                    }
+                }
+                expireTimedOut();
+            } catch (Throwable e) {
+                log.error("Unexpected error in bitcoin handshake loop", e);
+            }
+        }
+        for (SelectionKey key : selector.keys()) {
+            finish((Handshake) key.attachment(), "Handshake engine is shut down");
+        }
+        waiting.forEach(handshake -> {
+            handshake.result.fail("Handshake engine is shut down");
+            handshake.future.complete(handshake.result);
+        });
+        try {
+            selector.close();
+        } catch (IOException e) {
+            log.debug("Error closing selector", e);
+        }
+    }
+
+    private void startSubmitted() {
+        Handshake handshake;
+        while ((handshake = submitted.poll()) != null) {
+            waiting.add(handshake);
+        }
+        while (inFlight < maxInFlight && (handshake = waiting.poll()) != null) {
+            inFlight++;
+            handshake.startMillis = System.currentTimeMillis();
+            handshake.in = takeBuffer();
+            handshake.out = takeBuffer();
+            try {
+                handshake.channel = SocketChannel.open();
+                handshake.channel.configureBlocking(false);
+                if (handshake.target.isUnresolved()) {
+                    throw new IOException("Cannot resolve " + handshake.host);
+                }
+                boolean connected = handshake.channel.connect(handshake.target);
+                handshake.key = handshake.channel.register(selector, SelectionKey.OP_CONNECT, handshake);
+                if (connected) {
+                    onConnected(handshake);
+                }
+            } catch (IOException e) {
+                finish(handshake, e.getMessage());
+            }
+        }
+    }
+
+    private void handle(SelectionKey key, Handshake handshake) throws IOException {
+        if (!key.isValid()) {
+            return;
+        }
+        if (key.isConnectable()) {
+            handshake.channel.finishConnect();
+            onConnected(handshake);
+            return;
+        }
+        if (key.isWritable()) {
+            handshake.out.flip();
+            handshake.channel.write(handshake.out);
+            handshake.out.compact();
+            if (handshake.out.position() == 0) {
+                if (handshake.state == State.DONE) {
+                    finish(handshake, null);
+                    return;
+                }
+                key.interestOps(SelectionKey.OP_READ);
+            }
+        }
+        if (key.isValid() && key.isReadable()) {
+            if (handshake.channel.read(handshake.in) < 0) {
+                throw new IOException(handshake.state.isSocks() ? "Proxy closed the connection"
+                        : "Node closed the connection during the handshake");
+            }
+            handshake.in.flip();
+            try {
+                if (handshake.state.isSocks()) {
+                    readSocks(handshake);
+                }
+                if (!handshake.state.isSocks()) {
+                    readMessages(handshake);
+                }
+            } finally {
+                handshake.in.compact();
+            }
+            if (handshake.state == State.DONE && handshake.out.position() == 0) {
+                finish(handshake, null);
+                return;
+            }
+            if (handshake.in.position() == handshake.in.capacity()) {
+                throw new IOException("Message too large");
+            }
+            if (handshake.out.position() > 0) {
+                key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            }
+        }
+    }
+
+    private void onConnected(Handshake handshake) throws IOException {
+        handshake.result.setConnectMillis(System.currentTimeMillis() - handshake.startMillis);
+        if (handshake.socksProxy == null) {
+            onNodeConnected(handshake);
+        } else {
+            handshake.state = State.SOCKS_GREETING;
+            handshake.out.put(SOCKS_VERSION).put((byte) 1).put(handshake.authMethod());
+        }
+        handshake.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+    }
+
+    private void onNodeConnected(Handshake handshake) {
+        handshake.nodeConnectedMillis = System.currentTimeMillis();
+        handshake.result.setConnectMillis(handshake.nodeConnectedMillis - handshake.startMillis);
+        handshake.state = State.VERSION_SENT;
+        writeVersion(handshake);
+    }
+
+    private void readSocks(Handshake handshake) throws IOException {
+        ByteBuffer in = handshake.in;
+        switch (handshake.state) {
+            case SOCKS_GREETING:
+                if (in.remaining() < 2) {
+                    return;
+                }
+                if (in.get() != SOCKS_VERSION) {
+                    throw new IOException("Not a SOCKS5 proxy");
+                }
+                if (in.get() != handshake.authMethod()) {
+                    throw new IOException("SOCKS5 proxy does not accept the authentication method");
+                }
+                if (handshake.username != null) {
+                    byte[] user = handshake.username.getBytes(StandardCharsets.UTF_8);
+                    byte[] password = handshake.password.getBytes(StandardCharsets.UTF_8);
+                    if (user.length > 255 || password.length > 255) {
+                        throw new IOException("SOCKS5 username or password too long");
+                    }
+                    handshake.state = State.SOCKS_AUTH;
+                    handshake.out.put((byte) 1).put((byte) user.length).put(user).put((byte) password.length).put(password);
+                    return;
+                }
+                writeSocksConnect(handshake);
+                return;
+            case SOCKS_AUTH:
+                if (in.remaining() < 2) {
+                    return;
+                }
+                in.get();
+                if (in.get() != 0) {
+                    throw new IOException("SOCKS5 authentication failed");
+                }
+                writeSocksConnect(handshake);
+                return;
+            case SOCKS_CONNECT:
+                // version, status, reserved, address type and the first address byte
+                if (in.remaining() < 5) {
+                    return;
+                }
+                int start = in.position();
+                if (in.get(start) != SOCKS_VERSION) {
+                    throw new IOException("Not a SOCKS5 proxy");
+                }
+                byte status = in.get(start + 1);
+                if (status != 0) {
+                    throw new IOException(ReachabilityProber.socksReplyToString(status));
+                }
+                byte addressType = in.get(start + 3);
+                int addressLength = addressType == SOCKS_ATYP_IPV4 ? 4
+                        : addressType == SOCKS_ATYP_IPV6 ? 16
+                        : addressType == SOCKS_ATYP_DOMAIN ? 1 + (in.get(start + 4) & 0xff) : -1;
+                if (addressLength < 0) {
+                    throw new IOException("Unknown SOCKS5 address type " + addressType);
+                }
+                // skip the bound address and port
+                if (in.remaining() < 4 + addressLength + 2) {
+                    return;
+                }
+                in.position(start + 4 + addressLength + 2);
+                onNodeConnected(handshake);
+                return;
+            default:
+        }
+    }
+
+    private void writeSocksConnect(Handshake handshake) throws IOException {
+        byte[] host = handshake.host.getBytes(StandardCharsets.US_ASCII);
+        if (host.length > 255) {
+            throw new IOException("Host name too long for SOCKS5: " + handshake.host);
+        }
+        handshake.state = State.SOCKS_CONNECT;
+        handshake.out.put(SOCKS_VERSION).put(SOCKS_CMD_CONNECT).put((byte) 0).put(SOCKS_ATYP_DOMAIN)
+                .put((byte) host.length).put(host)
+                .put((byte) (handshake.port >> 8)).put((byte) handshake.port);
+    }
+
+    private void readMessages(Handshake handshake) throws IOException {
+        ByteBuffer in = handshake.in;
+        while (handshake.state != State.DONE) {
+            if (handshake.skip > 0) {
+                int skipped = (int) Math.min(handshake.skip, in.remaining());
+                in.position(in.position() + skipped);
+                handshake.skip -= skipped;
+                if (handshake.skip > 0) {
+                    return;
+                }
+            }
+            if (in.remaining() < HEADER_LENGTH) {
+                return;
+            }
+            int start = in.position();
+            if (in.getInt(start) != MAINNET_MAGIC) {
+                throw new IOException("Wrong network magic " + Integer.toHexString(in.getInt(start)));
+            }
+            long length = in.getInt(start + 16) & 0xffffffffL;
+            if (isCommand(in, start + 4, VERSION)) {
+                if (length > MAX_VERSION_PAYLOAD) {
+                    throw new IOException("Version message too large: " + length + " bytes");
+                }
+                if (in.remaining() < HEADER_LENGTH + length) {
+                    return;
+                }
+                if (!checksumMatches(in, start + HEADER_LENGTH, (int) length, in.getInt(start + 20))) {
+                    throw new IOException("Version message has a wrong checksum");
+                }
+                readVersion(handshake, start + HEADER_LENGTH, (int) length);
+                in.position(start + HEADER_LENGTH + (int) length);
+                writeMessage(handshake.out, VERACK, 0);
+            } else {
+                if (isCommand(in, start + 4, VERACK)) {
+                    handshake.verackReceived = true;
+                }
+                // anything else sent during the handshake (sendheaders, wtxidrelay, ping, ...) is of no interest
+                in.position(start + HEADER_LENGTH);
+                handshake.skip = length;
+            }
+            if (handshake.versionReceived && handshake.verackReceived) {
+                handshake.result.setHandshakeMillis(System.currentTimeMillis() - handshake.nodeConnectedMillis);
+                // finished as soon as our verack is written
+                handshake.state = State.DONE;
+            }
+        }
+    }
+
+    private void readVersion(Handshake handshake, int offset, int length) throws IOException {
+        ByteBuffer in = handshake.in;
+        // version, services, timestamp, two network addresses and the nonce come before the user agent
+        int userAgentOffset = offset + 4 + 8 + 8 + 26 + 26 + 8;
+        if (length < userAgentOffset - offset + 1) {
+            throw new IOException("Version message too short");
+        }
+        BitcoinNodeResult result = handshake.result;
+        result.setProtocolVersion(in.getInt(offset));
+        result.setServices(in.getLong(offset + 4));
+        int userAgentLength = in.get(userAgentOffset) & 0xff;
+        int position = userAgentOffset + 1;
+        if (userAgentLength == 0xfd) {
+            userAgentLength = in.getShort(position) & 0xffff;
+            position += 2;
+        } else if (userAgentLength > 0xfd) {
+            throw new IOException("User agent too long");
+        }
+        if (position + userAgentLength + 4 > offset + length) {
+            throw new IOException("Version message too short");
+        }
+        result.setVersion(new String(in.array(), in.arrayOffset() + position, userAgentLength, StandardCharsets.UTF_8));
+        result.setHeight(in.getInt(position + userAgentLength));
+        handshake.versionReceived = true;
+    }
+
+    private void writeVersion(Handshake handshake) {
+        ByteBuffer out = handshake.out;
+        int headerStart = out.position();
+        out.position(headerStart + HEADER_LENGTH);
+        int payloadStart = out.position();
+        out.putInt(PROTOCOL_VERSION);
+        // we serve nothing
+        out.putLong(0);
+        out.putLong(System.currentTimeMillis() / 1000);
+        // the node's and our own address, nodes do not rely on them
+        out.putLong(1);
+        putIpv4Address(out, new byte[4], handshake.port);
+        out.putLong(0);
+        putIpv4Address(out, new byte[4], 0);
+        out.putLong(ThreadLocalRandom.current().nextLong());
+        byte[] userAgent = USER_AGENT.getBytes(StandardCharsets.US_ASCII);
+        out.put((byte) userAgent.length).put(userAgent);
+        // start height
+        out.putInt(0);
+        // no transaction relay
+        out.put((byte) 0);
+        int payloadLength = out.position() - payloadStart;
+        int end = out.position();
+        out.position(headerStart);
+        writeHeader(out, VERSION, payloadLength, checksum(out, payloadStart, payloadLength));
+        out.position(end);
+    }
+
+    private void writeMessage(ByteBuffer out, byte[] command, int payloadLength) {
+        // an empty payload, the checksum of nothing
+        writeHeader(out, command, payloadLength, checksum(out, out.position(), 0));
+    }
+
+    private static void writeHeader(ByteBuffer out, byte[] command, int payloadLength, int checksum) {
+        out.putInt(MAINNET_MAGIC).put(command).putInt(payloadLength).putInt(checksum);
+    }
+
+    private static void putIpv4Address(ByteBuffer out, byte[] ipv4, int port) {
+        // IPv4 mapped IPv6 address, the port in network byte order
+        out.putLong(0).putShort((short) 0).putShort((short) 0xffff).put(ipv4);
+        out.put((byte) (port >> 8)).put((byte) port);
+    }
+
+    private boolean checksumMatches(ByteBuffer buffer, int offset, int length, int expected) {
+        return checksum(buffer, offset, length) == expected;
+    }
+
+    /**
+     * First 4 bytes of the double SHA-256 of the bytes, as a little endian int.
+     */
+    private int checksum(ByteBuffer buffer, int offset, int length) {
+        try {
+            sha256.update(buffer.array(), buffer.arrayOffset() + offset, length);
+            sha256.digest(digest, 0, digest.length);
+            sha256.update(digest);
+            sha256.digest(digest, 0, digest.length);
+        } catch (DigestException e) {
+            throw new IllegalStateException(e);
+        }
+        return (digest[0] & 0xff) | (digest[1] & 0xff) << 8 | (digest[2] & 0xff) << 16 | (digest[3] & 0xff) << 24;
+    }
+
+    private static boolean isCommand(ByteBuffer buffer, int offset, byte[] command) {
+        for (int i = 0; i < command.length; i++) {
+            if (buffer.get(offset + i) != command[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] command(String name) {
+        // zero padded to 12 bytes
+        byte[] command = new byte[12];
+        byte[] bytes = name.getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(bytes, 0, command, 0, bytes.length);
+        return command;
+    }
+
+    private void expireTimedOut() {
+        long now = System.currentTimeMillis();
+        for (SelectionKey key : selector.keys()) {
+            Handshake handshake = (Handshake) key.attachment();
+            if (now - handshake.startMillis > timeoutMillis) {
+                finish(handshake, "Timeout after " + timeoutMillis / 1000.0 + " seconds " + handshake.state.getDescription());
+            }
+        }
+    }
+
+    private void finish(Handshake handshake, String error) {
+        if (handshake.future.isDone()) {
+            return;
+        }
+        if (handshake.key != null) {
+            handshake.key.cancel();
+        }
+        if (handshake.channel != null) {
+            try {
+                handshake.channel.close();
+            } catch (IOException e) {
+                log.debug("Error closing handshake channel", e);
+            }
+        }
+        returnBuffer(handshake.in);
+        returnBuffer(handshake.out);
+        handshake.in = null;
+        handshake.out = null;
+        inFlight--;
+        if (error != null) {
+            handshake.result.fail(error);
+        }
+        handshake.future.complete(handshake.result);
+    }
+
+    private ByteBuffer takeBuffer() {
+        ByteBuffer buffer = bufferPool.poll();
+        return buffer != null ? buffer : ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private void returnBuffer(ByteBuffer buffer) {
+        if (buffer != null && bufferPool.size() < maxInFlight * 2) {
+            buffer.clear();
+            bufferPool.add(buffer);
+        }
+    }
+
+    private enum State {
+        TCP_CONNECT("connecting"),
+        SOCKS_GREETING("waiting for the proxy"),
+        SOCKS_AUTH("waiting for the proxy to authenticate"),
+        SOCKS_CONNECT("waiting for the proxy to connect"),
+        VERSION_SENT("waiting for version/verack"),
+        DONE("sending verack");
+
+        private final String description;
+
+        State(String description) {
+            this.description = description;
+        }
+
+        String getDescription() {
+            return description;
+        }
+
+        boolean isSocks() {
+            return this == SOCKS_GREETING || this == SOCKS_AUTH || this == SOCKS_CONNECT;
+        }
+    }
+
+    private static class Handshake {
+        final String host;
+        final int port;
+        final InetSocketAddress socksProxy;
+        final String username;
+        final String password;
+        final InetSocketAddress target;
+        final BitcoinNodeResult result = new BitcoinNodeResult();
+        final CompletableFuture<BitcoinNodeResult> future = new CompletableFuture<>();
+        // pooled, in and out are in write mode between events
+        ByteBuffer in;
+        ByteBuffer out;
+        State state = State.TCP_CONNECT;
+        SocketChannel channel;
+        SelectionKey key;
+        long startMillis;
+        long nodeConnectedMillis;
+        // payload bytes of an uninteresting message still to be skipped
+        long skip;
+        boolean versionReceived;
+        boolean verackReceived;
+
+        Handshake(String host, int port, InetSocketAddress socksProxy, String username, String password) {
+            this.host = host;
+            this.port = port;
+            this.socksProxy = socksProxy;
+            this.username = username;
+            this.password = password != null ? password : "";
+            this.result.setAddress(host);
+            // resolve direct targets on the caller thread, DNS lookups would block the selector
+            this.target = socksProxy != null ? socksProxy : new InetSocketAddress(host, port);
+        }
+
+        byte authMethod() {
+            return username != null ? SOCKS_USER_PASSWORD : SOCKS_NO_AUTH;
+        }
+    }
+}
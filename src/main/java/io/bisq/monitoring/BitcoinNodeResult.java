@@ -3,13 +3,27 @@ package io.bisq.monitoring;
 import lombok.Data;
 
 /*
-
-
+ * What a bitcoin node told about itself in the version message of one handshake.
  */
 @Data
 public class BitcoinNodeResult {
     String address;
+    // the user agent, e.g. /Satoshi:0.15.1/
     String version;
+    int protocolVersion;
     long height;
-    int services;
+    long services;
+    // until the node (through the proxy) accepted the connection
+    long connectMillis;
+    // from the connect until both version and verack were received
+    long handshakeMillis;
+    String error;
+
+    public boolean hasError() {
+        return error != null;
+    }
+
+    public void fail(String error) {
+        this.error = error;
+    }
 }
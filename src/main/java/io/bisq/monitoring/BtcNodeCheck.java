@@ -0,0 +1,58 @@
+package io.bisq.monitoring;
+
+import java.util.concurrent.CompletableFuture;
+
+/*
+ * A bitcoin node has to complete the version handshake and announce the expected version and services.
+ */
+public class BtcNodeCheck implements NodeCheck {
+    public static final String TYPE = "btcnode";
+
+    @Override
+    public String getType() {
+        return TYPE;
+    }
+
+    @Override
+    public NodeType getNodeType() {
+        return NodeType.BTC_NODE;
+    }
+
+    @Override
+    public int getDefaultPort() {
+        return 8333;
+    }
+
+    @Override
+    public CompletableFuture<CheckResult> check(NodeDetail node, Context context) {
+        long start = System.currentTimeMillis();
+        TorPool.Route route = context.route(node);
+        CompletableFuture<BitcoinNodeResult> handshake = route != null
+                ? context.getHandshakeEngine().handshake(node.getAddress(), node.getPort(), route.getSocksProxy(), route.getUsername(), route.getPassword())
+                : context.getHandshakeEngine().handshake(node.getAddress(), node.getPort(), null, null, null);
+        if (route != null) {
+            // on the source, a cancelled dependent future never runs its function
+            handshake.whenComplete((result, e) -> route.close());
+        }
+        return handshake.thenApply(result -> {
+            long latencyMillis = System.currentTimeMillis() - start;
+            if (result.hasError()) {
+                return CheckResult.failed(ProbeStage.BTC_HANDSHAKE, latencyMillis, "Version handshake failed: " + result.getError());
+            }
+            CheckResult checkResult = verifyVersion(result)
+                    ? CheckResult.ok(ProbeStage.BTC_HANDSHAKE, latencyMillis)
+                    : CheckResult.failed(ProbeStage.BTC_HANDSHAKE, latencyMillis, "BTC Node has wrong version message: " + result.getVersion()
+                    + " (protocol " + result.getProtocolVersion() + ", services " + result.getServices() + ")");
+            if (node.isTor()) {
+                checkResult.recordLatency(ProbeStage.TOR_CONNECT, result.getConnectMillis());
+            }
+            checkResult.recordLatency(ProbeStage.BTC_HANDSHAKE, result.getHandshakeMillis());
+            checkResult.setExtraString("v=" + result.getVersion() + ",height:" + result.getHeight());
+            return checkResult;
+        });
+    }
+
+    private static boolean verifyVersion(BitcoinNodeResult result) {
+        return result.getServices() == 13 && result.getVersion().contains("0.15");
+    }
+}
@@ -0,0 +1,42 @@
+package io.bisq.monitoring;
+
+import lombok.Data;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/*
+ * The outcome of one NodeCheck. The monitor records it in the probe history and latency metrics, shows the extra
+ * string on the status page and alerts on the error.
+ */
+@Data
+public class CheckResult {
+    // the stage a failed check failed in, else the stage the whole check is recorded under
+    ProbeStage stage;
+    long latencyMillis;
+    // latencies of the stages that completed, for the histograms
+    Map<ProbeStage, Long> stageLatencyMillis = new EnumMap<>(ProbeStage.class);
+    String extraString;
+    String error;
+
+    public static CheckResult ok(ProbeStage stage, long latencyMillis) {
+        CheckResult result = new CheckResult();
+        result.stage = stage;
+        result.latencyMillis = latencyMillis;
+        return result;
+    }
+
+    public static CheckResult failed(ProbeStage stage, long latencyMillis, String error) {
+        CheckResult result = ok(stage, latencyMillis);
+        result.error = error;
+        return result;
+    }
+
+    public boolean hasError() {
+        return error != null;
+    }
+
+    public void recordLatency(ProbeStage stage, long millis) {
+        stageLatencyMillis.put(stage, millis);
+    }
+}
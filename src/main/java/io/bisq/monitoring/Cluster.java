@@ -0,0 +1,163 @@
+package io.bisq.monitoring;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/*
+ * Cluster mode: the instances split the nodes by consistent hashing on the node address, each one only probes its own
+ * shard. Every instance pulls the shard snapshots of the others, so any of them serves the status of all nodes. A
+ * peer that fails a few syncs in a row leaves the ring and its nodes move to the instances that are left.
+ */
+@Slf4j
+public class Cluster {
+    public static final String SHARD_PATH = "/api/cluster/shard";
+    public static final int DEFAULT_SYNC_SECS = 30;
+    static final int MAX_FAILED_SYNCS = 2;
+    private static final ObjectMapper JSON_MAPPER = new ObjectMapper();
+    private static final TypeReference<List<NodeStatus>> SHARD_TYPE = new TypeReference<List<NodeStatus>>() {
+    };
+
+    // members are identified by the base url of their web server
+    @Getter
+    private final String self;
+    private final List<String> peers;
+    private final int timeoutMillis;
+    // consecutive failed syncs per peer, only touched by sync
+    private final Map<String, Integer> failedSyncs = new ConcurrentHashMap<>();
+    private volatile HashRing ring;
+    private ScheduledExecutorService executor;
+
+    /**
+     * All peers count as alive until their first syncs fail.
+     */
+    public Cluster(String self, Collection<String> peers, int timeoutMillis) {
+        this.self = baseUrl(self);
+        List<String> others = new ArrayList<>();
+        for (String peer : peers) {
+            String url = baseUrl(peer);
+            if (!url.equals(this.self) && !others.contains(url)) {
+                others.add(url);
+            }
+        }
+        this.peers = Collections.unmodifiableList(others);
+        this.timeoutMillis = timeoutMillis;
+        this.ring = buildRing();
+    }
+
+    public boolean isOwnShard(String address) {
+        return self.equals(ring.owner(address));
+    }
+
+    public String getOwner(String address) {
+        return ring.owner(address);
+    }
+
+    public Set<String> getLiveMembers() {
+        return ring.getMembers();
+    }
+
+    public List<String> getPeers() {
+        return peers;
+    }
+
+    /**
+     * Sync with every peer every syncSecs, in the background.
+     *
+     * @param onPeerStatus gets every node status the peers report for their shards
+     */
+    public synchronized void start(int syncSecs, Consumer<NodeStatus> onPeerStatus) {
+        if (executor != null) {
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("cluster-sync").setDaemon(true).build());
+        executor.scheduleWithFixedDelay(() -> {
+            try {
+                sync(onPeerStatus);
+            } catch (RuntimeException e) {
+                log.error("Cluster sync failed", e);
+            }
+        }, 0, syncSecs, TimeUnit.SECONDS);
+    }
+
+    public synchronized void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    /**
+     * Fetch the shard snapshot of every peer. A peer counts as gone after MAX_FAILED_SYNCS failed fetches in a row
+     * and is back with its first successful one.
+     *
+     * @return true if the members of the ring changed, so some nodes moved to another shard
+     */
+    public boolean sync(Consumer<NodeStatus> onPeerStatus) {
+        for (String peer : peers) {
+            try {
+                List<NodeStatus> shard = fetchShard(peer);
+                failedSyncs.put(peer, 0);
+                shard.forEach(onPeerStatus);
+            } catch (IOException | RuntimeException e) {
+                int failed = failedSyncs.merge(peer, 1, Integer::sum);
+                log.warn("Could not sync with cluster peer {} ({} time(s) in a row): {}", peer, failed, e.getMessage());
+            }
+        }
+        HashRing updated = buildRing();
+        if (updated.getMembers().equals(ring.getMembers())) {
+            return false;
+        }
+        log.info("Cluster members changed from {} to {}", ring.getMembers(), updated.getMembers());
+        ring = updated;
+        return true;
+    }
+
+    private HashRing buildRing() {
+        List<String> members = new ArrayList<>();
+        members.add(self);
+        for (String peer : peers) {
+            if (failedSyncs.getOrDefault(peer, 0) < MAX_FAILED_SYNCS) {
+                members.add(peer);
+            }
+        }
+        return new HashRing(members);
+    }
+
+    private List<NodeStatus> fetchShard(String peer) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(peer + SHARD_PATH).openConnection();
+        try {
+            connection.setConnectTimeout(timeoutMillis);
+            connection.setReadTimeout(timeoutMillis);
+            connection.setUseCaches(false);
+            int status = connection.getResponseCode();
+            if (status != 200) {
+                throw new IOException("Cluster peer " + peer + " answered with HTTP status " + status);
+            }
+            try (InputStream in = connection.getInputStream()) {
+                return JSON_MAPPER.readValue(in, SHARD_TYPE);
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private static String baseUrl(String url) {
+        String trimmed = url.trim();
+        return trimmed.endsWith("/") ? trimmed.substring(0, trimmed.length() - 1) : trimmed;
+    }
+}
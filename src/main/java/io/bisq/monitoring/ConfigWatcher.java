@@ -0,0 +1,103 @@
+package io.bisq.monitoring;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/*
+ * Watches the node yaml file and hands every changed version of it that parses to the listener. Editors often write
+ * a file in several steps, so a change is only read once the file has been quiet for the settle time.
+ */
+@Slf4j
+public class ConfigWatcher implements Closeable {
+    public static final long DEFAULT_SETTLE_MILLIS = 500;
+
+    private final Path file;
+    private final Consumer<NodeConfig> listener;
+    private final long settleMillis;
+    private final WatchService watchService;
+    private final Thread watcherThread;
+    // only touched by the watcher thread after construction
+    private String lastContent;
+
+    public ConfigWatcher(Path file, Consumer<NodeConfig> listener) throws IOException {
+        this(file, listener, DEFAULT_SETTLE_MILLIS);
+    }
+
+    public ConfigWatcher(Path file, Consumer<NodeConfig> listener, long settleMillis) throws IOException {
+        this.file = file.toAbsolutePath();
+        this.listener = listener;
+        this.settleMillis = settleMillis;
+        this.lastContent = new String(Files.readAllBytes(this.file), StandardCharsets.UTF_8);
+        this.watchService = this.file.getFileSystem().newWatchService();
+        // the directory is watched, so a file replaced by a rename is seen as well
+        this.file.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        this.watcherThread = new Thread(this::run, "config-watcher");
+        this.watcherThread.setDaemon(true);
+        this.watcherThread.start();
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+        watcherThread.interrupt();
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                boolean changed = drain(watchService.take());
+                WatchKey more;
+                while ((more = watchService.poll(settleMillis, TimeUnit.MILLISECONDS)) != null) {
+                    changed |= drain(more);
+                }
+                if (changed) {
+                    reload();
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            log.debug("Stopped watching {}", file);
+        }
+    }
+
+    private boolean drain(WatchKey key) {
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW || file.getFileName().equals(event.context())) {
+                changed = true;
+            }
+        }
+        key.reset();
+        return changed;
+    }
+
+    private void reload() {
+        String content;
+        try {
+            content = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            log.warn("Could not read {}: {}", file, e.getMessage());
+            return;
+        }
+        if (content.equals(lastContent)) {
+            return;
+        }
+        NodeConfig config = new NodeYamlReader(content).getNodeConfig();
+        if (config == null) {
+            log.warn("Keeping the running config, {} could not be parsed", file);
+            return;
+        }
+        try {
+            listener.accept(config);
+            // a version that could not be applied is tried again when it is written again
+            lastContent = content;
+        } catch (RuntimeException e) {
+            log.error("Could not apply the config from " + file, e);
+        }
+    }
+}
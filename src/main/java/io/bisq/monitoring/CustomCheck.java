@@ -0,0 +1,59 @@
+package io.bisq.monitoring;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * A shell command declared in the yaml file, run after the regular check of every node of its node type passed. The
+ * node is handed over in NODE_ADDRESS, NODE_PORT, NODE_TYPE and NODE_OWNER, onion nodes also get the SOCKS proxy of
+ * their Tor circuit in TOR_SOCKS_HOST, TOR_SOCKS_PORT and TOR_SOCKS_USERNAME. Any exit code but 0 fails the node.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CustomCheck {
+    private String name;
+    // PRICE_NODE, SEED_NODE or BTC_NODE, all node types if not set
+    private String nodeType;
+    private String command;
+    // the node timeout if not set
+    private int timeoutSecs;
+
+    public boolean appliesTo(NodeType type) {
+        return nodeType == null || nodeType.equals(type.name());
+    }
+
+    public List<String> commandLine() {
+        return Arrays.asList("/bin/sh", "-c", command);
+    }
+
+    public long timeoutMillis(int defaultSecs) {
+        return 1000L * (timeoutSecs > 0 ? timeoutSecs : defaultSecs);
+    }
+
+    /**
+     * @param socksProxy the proxy of the node's Tor circuit, or null for a clearnet node
+     */
+    public Map<String, String> environment(NodeDetail node, InetSocketAddress socksProxy, String socksUsername) {
+        Map<String, String> environment = new HashMap<>();
+        environment.put("NODE_ADDRESS", node.getAddress());
+        environment.put("NODE_PORT", String.valueOf(node.getPort()));
+        environment.put("NODE_TYPE", node.getNodeType().name());
+        environment.put("NODE_OWNER", node.getOwner() != null ? node.getOwner() : "");
+        if (socksProxy != null) {
+            environment.put("TOR_SOCKS_HOST", socksProxy.getHostString());
+            environment.put("TOR_SOCKS_PORT", String.valueOf(socksProxy.getPort()));
+            if (socksUsername != null) {
+                environment.put("TOR_SOCKS_USERNAME", socksUsername);
+            }
+        }
+        return environment;
+    }
+}
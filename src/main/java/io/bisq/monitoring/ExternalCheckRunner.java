@@ -0,0 +1,259 @@
+package io.bisq.monitoring;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.*;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+
+/*
+ * Runs external commands on a bounded pool. Stdout and stderr are drained while the command runs, so a chatty command
+ * never blocks on a full pipe, and only the first bytes of each are kept. A command that misses its deadline or is
+ * cancelled is killed together with every process it started.
+ */
+@Slf4j
+public class ExternalCheckRunner {
+    public static final int DEFAULT_MAX_CONCURRENT = 8;
+    public static final int DEFAULT_MAX_OUTPUT_BYTES = 64 * 1024;
+    // how long the output may still take once the command is gone, a leftover process can keep the pipes open
+    static final long DRAIN_MILLIS = 2000;
+
+    private final int maxOutputBytes;
+    private final ExecutorService runners;
+    private final ExecutorService pumps;
+
+    public ExternalCheckRunner() {
+        this(DEFAULT_MAX_CONCURRENT, DEFAULT_MAX_OUTPUT_BYTES);
+    }
+
+    public ExternalCheckRunner(int maxConcurrent, int maxOutputBytes) {
+        this.maxOutputBytes = maxOutputBytes;
+        this.runners = Executors.newFixedThreadPool(maxConcurrent,
+                new ThreadFactoryBuilder().setNameFormat("external-check-%d").setDaemon(true).build());
+        // two per running command, plus pumps still waiting on pipes held open by leftover processes
+        this.pumps = Executors.newCachedThreadPool(
+                new ThreadFactoryBuilder().setNameFormat("external-check-output-%d").setDaemon(true).build());
+    }
+
+    /**
+     * @param environment added to the environment of this process
+     * @return completes with the outcome of the command, never exceptionally; cancelling it kills the command like
+     * a timeout does
+     */
+    public CompletableFuture<Result> run(List<String> command, Map<String, String> environment, long timeoutMillis) {
+        CompletableFuture<Result> result = new CompletableFuture<>();
+        Future<?> task = runners.submit(() -> {
+            if (!result.isDone()) {
+                result.complete(execute(command, environment, timeoutMillis));
+            }
+        });
+        // the interrupt ends the wait for the command, which then kills it
+        result.whenComplete((ignored, e) -> {
+            if (result.isCancelled()) {
+                task.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    public void shutdown() {
+        runners.shutdownNow();
+        pumps.shutdownNow();
+    }
+
+    private Result execute(List<String> command, Map<String, String> environment, long timeoutMillis) {
+        Result result = new Result();
+        long start = System.currentTimeMillis();
+        ProcessBuilder builder = new ProcessBuilder(command);
+        builder.environment().putAll(environment);
+        Process process;
+        try {
+            process = builder.start();
+        } catch (IOException e) {
+            result.setError("Could not start " + command.get(0) + ": " + e.getMessage());
+            return result;
+        }
+        try {
+            process.getOutputStream().close();
+        } catch (IOException ignored) {
+        }
+        Future<Output> stdout = pumps.submit(() -> drain(process.getInputStream()));
+        Future<Output> stderr = pumps.submit(() -> drain(process.getErrorStream()));
+        try {
+            if (process.waitFor(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                result.setExitCode(process.exitValue());
+            } else {
+                result.setTimedOut(true);
+                killTree(process);
+            }
+            result.setDurationMillis(System.currentTimeMillis() - start);
+            long drainDeadline = System.currentTimeMillis() + DRAIN_MILLIS;
+            Output out = awaitOutput(stdout, drainDeadline);
+            Output err = awaitOutput(stderr, drainDeadline);
+            result.setStdout(out.text);
+            result.setStdoutTruncated(out.truncated);
+            result.setStderr(err.text);
+            result.setStderrTruncated(err.truncated);
+        } catch (InterruptedException e) {
+            // killing waits for kill and pgrep, so the interrupt is restored only afterwards
+            killTree(process);
+            Thread.currentThread().interrupt();
+            result.setError("Interrupted");
+        }
+        return result;
+    }
+
+    private Output drain(InputStream in) throws IOException {
+        ByteArrayOutputStream kept = new ByteArrayOutputStream();
+        boolean truncated = false;
+        byte[] buffer = new byte[8192];
+        try (InputStream stream = in) {
+            int read;
+            while ((read = stream.read(buffer)) != -1) {
+                int keep = Math.min(read, maxOutputBytes - kept.size());
+                kept.write(buffer, 0, keep);
+                truncated |= keep < read;
+            }
+        }
+        return new Output(new String(kept.toByteArray(), StandardCharsets.UTF_8), truncated);
+    }
+
+    private static Output awaitOutput(Future<Output> output, long deadline) throws InterruptedException {
+        try {
+            return output.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // the pump thread ends once the last process holding the pipe is gone
+            return new Output("", true);
+        } catch (ExecutionException e) {
+            return new Output("", false);
+        }
+    }
+
+    /**
+     * Kills the process and all its descendants. Every process is stopped before its children are looked up, so
+     * nothing can fork past the kill. Without pgrep or kill only the process itself is killed.
+     */
+    static void killTree(Process process) {
+        long pid = pidOf(process);
+        if (pid > 0) {
+            List<Long> tree = new ArrayList<>();
+            Deque<Long> toVisit = new ArrayDeque<>();
+            toVisit.add(pid);
+            try {
+                while (!toVisit.isEmpty()) {
+                    long next = toVisit.poll();
+                    signal("STOP", Collections.singletonList(next));
+                    tree.add(next);
+                    toVisit.addAll(childrenOf(next));
+                }
+            } catch (IOException e) {
+                log.debug("Could not list the processes started by {}: {}", pid, e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            try {
+                signal("KILL", tree);
+            } catch (IOException e) {
+                log.debug("Could not kill the processes started by {}: {}", pid, e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        process.destroyForcibly();
+    }
+
+    private static List<Long> childrenOf(long pid) throws IOException, InterruptedException {
+        Process pgrep = new ProcessBuilder("pgrep", "-P", String.valueOf(pid)).redirectErrorStream(true).start();
+        List<Long> children = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(pgrep.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                try {
+                    children.add(Long.parseLong(line.trim()));
+                } catch (NumberFormatException ignored) {
+                }
+            }
+        }
+        pgrep.waitFor();
+        return children;
+    }
+
+    private static void signal(String signal, List<Long> pids) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>(Arrays.asList("kill", "-" + signal));
+        for (long pid : pids) {
+            command.add(String.valueOf(pid));
+        }
+        new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(ProcessBuilder.Redirect.appendTo(devNull()))
+                .start().waitFor(DRAIN_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    private static File devNull() {
+        return new File(File.separatorChar == '\\' ? "NUL" : "/dev/null");
+    }
+
+    /**
+     * @return the pid of the process, -1 if it can't be found out. Process.pid() only exists from Java 9 on, before
+     * that the Unix process class keeps it in a field.
+     */
+    static long pidOf(Process process) {
+        try {
+            Method pid = Process.class.getMethod("pid");
+            return (Long) pid.invoke(process);
+        } catch (ReflectiveOperationException ignored) {
+        }
+        try {
+            Field pid = process.getClass().getDeclaredField("pid");
+            pid.setAccessible(true);
+            return pid.getInt(process);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return -1;
+        }
+    }
+
+    private static class Output {
+        final String text;
+        final boolean truncated;
+
+        Output(String text, boolean truncated) {
+            this.text = text;
+            this.truncated = truncated;
+        }
+    }
+
+    @Data
+    public static class Result {
+        private int exitCode = -1;
+        private String stdout = "";
+        private String stderr = "";
+        private boolean stdoutTruncated;
+        private boolean stderrTruncated;
+        private boolean timedOut;
+        private long durationMillis;
+        // set if the command could not be run at all
+        private String error;
+
+        public boolean isSuccess() {
+            return error == null && !timedOut && exitCode == 0;
+        }
+
+        /**
+         * @return why the command failed, with the first line of its output
+         */
+        public String describe() {
+            if (error != null) {
+                return error;
+            }
+            if (timedOut) {
+                return "timed out after " + durationMillis + " ms";
+            }
+            String output = !stderr.trim().isEmpty() ? stderr : stdout;
+            String firstLine = output.trim().isEmpty() ? "" : ": " + output.trim().split("\n", 2)[0];
+            return "exit code " + exitCode + firstLine;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package io.bisq.monitoring;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/*
+ * Consistent hashing of keys onto members. Every member gets many points on the ring, a key belongs to the member of
+ * the first point at or after the key's hash. When a member leaves, only its keys move, spread over the others.
+ */
+public class HashRing {
+    public static final int DEFAULT_POINTS_PER_MEMBER = 128;
+
+    private final NavigableMap<Long, String> points = new TreeMap<>();
+    private final Set<String> members;
+
+    public HashRing(Collection<String> members) {
+        this(members, DEFAULT_POINTS_PER_MEMBER);
+    }
+
+    public HashRing(Collection<String> members, int pointsPerMember) {
+        this.members = Collections.unmodifiableSet(new TreeSet<>(members));
+        for (String member : this.members) {
+            for (int i = 0; i < pointsPerMember; i++) {
+                // on a collision the member sorting first wins, the same on every instance
+                points.putIfAbsent(hash(member + "#" + i), member);
+            }
+        }
+    }
+
+    /**
+     * @return the member the key belongs to, or null if the ring has no members
+     */
+    public String owner(String key) {
+        if (points.isEmpty()) {
+            return null;
+        }
+        Map.Entry<Long, String> point = points.ceilingEntry(hash(key));
+        return point != null ? point.getValue() : points.firstEntry().getValue();
+    }
+
+    public Set<String> getMembers() {
+        return members;
+    }
+
+    static long hash(String key) {
+        try {
+            // the same on every instance and, unlike String.hashCode, spread evenly over the whole range
+            byte[] digest = MessageDigest.getInstance("MD5").digest(key.getBytes(StandardCharsets.UTF_8));
+            long hash = 0;
+            for (int i = 0; i < 8; i++) {
+                hash = (hash << 8) | (digest[i] & 0xff);
+            }
+            return hash;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package io.bisq.monitoring;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+ * Latency histogram in milliseconds with log-linear buckets in the style of HdrHistogram: every power of two is split
+ * into 16 linear sub buckets, so any recorded value is known to within ~6%. The bounds of an exported histogram get
+ * exact counters of their own, as they seldom fall on a bucket edge. All counters are preallocated, recording is a few
+ * atomic increments and never allocates.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKET_HALF_COUNT = 1 << SUB_BUCKET_BITS;
+    // values above ~4.6 hours are counted as 4.6 hours
+    static final long MAX_VALUE = (1L << 24) - 1;
+    private static final int BUCKET_COUNT = indexOf(MAX_VALUE) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong totalCount = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    // ascending, boundCounts[i] counts the values above bounds[i - 1] and at or below bounds[i]
+    private final long[] bounds;
+    private final AtomicLongArray boundCounts;
+
+    public LatencyHistogram() {
+        this(new long[0]);
+    }
+
+    /**
+     * @param boundsMillis ascending bounds whose counts getCountAtOrBelow returns exactly
+     */
+    public LatencyHistogram(long[] boundsMillis) {
+        this.bounds = boundsMillis.clone();
+        this.boundCounts = new AtomicLongArray(bounds.length);
+    }
+
+    public void record(long millis) {
+        long value = Math.min(MAX_VALUE, Math.max(0, millis));
+        counts.incrementAndGet(indexOf(value));
+        for (int i = 0; i < bounds.length; i++) {
+            if (value <= bounds[i]) {
+                boundCounts.incrementAndGet(i);
+                break;
+            }
+        }
+        totalCount.incrementAndGet();
+        sum.addAndGet(value);
+    }
+
+    public long getTotalCount() {
+        return totalCount.get();
+    }
+
+    public long getSum() {
+        return sum.get();
+    }
+
+    /**
+     * Exact number of recorded values at or below the given bound, as a Prometheus bucket counts them.
+     *
+     * @throws IllegalArgumentException if the histogram was not created with the bound
+     */
+    public long getCountAtOrBelow(long millis) {
+        long count = 0;
+        for (int i = 0; i < bounds.length; i++) {
+            count += boundCounts.get(i);
+            if (bounds[i] == millis) {
+                return count;
+            }
+        }
+        throw new IllegalArgumentException("No counter for the bound " + millis);
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return the highest value of the bucket holding the percentile, 0 if nothing was recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+        long total = totalCount.get();
+        if (total == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(total * percentile / 100.0));
+        long count = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            count += counts.get(i);
+            if (count >= target) {
+                return highestEquivalentValue(i);
+            }
+        }
+        return MAX_VALUE;
+    }
+
+    static int indexOf(long value) {
+        if (value < 2 * SUB_BUCKET_HALF_COUNT) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int bucket = exponent - SUB_BUCKET_BITS;
+        return bucket * SUB_BUCKET_HALF_COUNT + (int) (value >> bucket);
+    }
+
+    static long lowestEquivalentValue(int index) {
+        return index == 0 ? 0 : highestEquivalentValue(index - 1) + 1;
+    }
+
+    static long highestEquivalentValue(int index) {
+        if (index < 2 * SUB_BUCKET_HALF_COUNT) {
+            return index;
+        }
+        int bucket = index / SUB_BUCKET_HALF_COUNT - 1;
+        long subBucket = index % SUB_BUCKET_HALF_COUNT + SUB_BUCKET_HALF_COUNT;
+        return ((subBucket + 1) << bucket) - 1;
+    }
+}
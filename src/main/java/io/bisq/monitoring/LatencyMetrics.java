@@ -0,0 +1,82 @@
+package io.bisq.monitoring;
+
+import java.util.Comparator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * Latency histograms per node and check stage, rendered in the Prometheus text exposition format. A node's
+ * histograms are created on its first sample, after that recording does not allocate.
+ */
+public class LatencyMetrics {
+    static final String METRIC_NAME = "bisq_probe_latency_seconds";
+    // bucket bounds of the exported histogram, each histogram counts the values up to them exactly
+    static final long[] BUCKET_BOUNDS_MILLIS = {10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000, 60000, 120000};
+
+    private final Map<NodeKey, LatencyHistogram[]> histograms = new ConcurrentHashMap<>();
+
+    public void record(NodeKey node, ProbeStage stage, long millis) {
+        LatencyHistogram[] stages = histograms.get(node);
+        if (stages == null) {
+            stages = histograms.computeIfAbsent(node, key -> createStages());
+        }
+        stages[stage.ordinal()].record(millis);
+    }
+
+    /**
+     * Drop the histograms of a node that is no longer monitored.
+     */
+    public void remove(NodeKey node) {
+        histograms.remove(node);
+    }
+
+    /**
+     * @return the histogram, or null if nothing was recorded for the node
+     */
+    public LatencyHistogram get(NodeKey node, ProbeStage stage) {
+        LatencyHistogram[] stages = histograms.get(node);
+        return stages != null ? stages[stage.ordinal()] : null;
+    }
+
+    public void writePrometheus(StringBuilder out) {
+        out.append("# HELP ").append(METRIC_NAME).append(" Latency of the stages of successful node checks.\n");
+        out.append("# TYPE ").append(METRIC_NAME).append(" histogram\n");
+        // sorted, so the output is stable between scrapes
+        Map<NodeKey, LatencyHistogram[]> sorted = new TreeMap<>(Comparator.comparing(NodeKey::toString));
+        sorted.putAll(histograms);
+        for (Map.Entry<NodeKey, LatencyHistogram[]> entry : sorted.entrySet()) {
+            NodeKey node = entry.getKey();
+            for (ProbeStage stage : ProbeStage.values()) {
+                LatencyHistogram histogram = entry.getValue()[stage.ordinal()];
+                if (histogram.getTotalCount() == 0) {
+                    continue;
+                }
+                String labels = "node_type=\"" + node.getNodeType().name() + "\",address=\"" + escape(node.getAddress())
+                        + "\",port=\"" + node.getPort() + "\",stage=\"" + stage.getLabel() + "\""
+                        + (node.getCheckType() != null ? ",check=\"" + escape(node.getCheckType()) + "\"" : "");
+                for (long bound : BUCKET_BOUNDS_MILLIS) {
+                    out.append(METRIC_NAME).append("_bucket{").append(labels).append(",le=\"").append(bound / 1000.0).append("\"} ")
+                            .append(histogram.getCountAtOrBelow(bound)).append('\n');
+                }
+                // read after the buckets, so +Inf is never below a bucket while probes keep recording
+                long count = histogram.getTotalCount();
+                out.append(METRIC_NAME).append("_bucket{").append(labels).append(",le=\"+Inf\"} ").append(count).append('\n');
+                out.append(METRIC_NAME).append("_sum{").append(labels).append("} ").append(histogram.getSum() / 1000.0).append('\n');
+                out.append(METRIC_NAME).append("_count{").append(labels).append("} ").append(count).append('\n');
+            }
+        }
+    }
+
+    static String escape(String labelValue) {
+        return labelValue.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static LatencyHistogram[] createStages() {
+        LatencyHistogram[] stages = new LatencyHistogram[ProbeStage.values().length];
+        for (int i = 0; i < stages.length; i++) {
+            stages[i] = new LatencyHistogram(BUCKET_BOUNDS_MILLIS);
+        }
+        return stages;
+    }
+}
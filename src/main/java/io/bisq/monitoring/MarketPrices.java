@@ -0,0 +1,112 @@
+package io.bisq.monitoring;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonStreamContext;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/*
+ * The numbers of one pricenode response: price and timestamp per currency from /getAllMarketPrices, in arrays indexed
+ * by the currency numbers of the analyzer, and the btcTxFee of /getFees. The prices are picked up while the response
+ * streams through the validator, only the fields of the "data" entries are looked at.
+ */
+public class MarketPrices implements ResponseValidator.TokenListener {
+    private static final int INITIAL_CAPACITY = 256;
+
+    private final PriceConsistencyAnalyzer analyzer;
+    // NaN and -1 for currencies the pricenode did not serve
+    double[] prices = newPrices(INITIAL_CAPACITY);
+    long[] timestampsSec = newTimestamps(INITIAL_CAPACITY);
+    // one past the highest currency number seen
+    int size;
+    double btcTxFee = Double.NaN;
+
+    // fields of the entry being parsed
+    private String currencyCode;
+    private double price = Double.NaN;
+    private long timestampSec = -1;
+
+    public MarketPrices(PriceConsistencyAnalyzer analyzer) {
+        this.analyzer = analyzer;
+    }
+
+    @Override
+    public void token(JsonToken token, JsonParser parser) throws IOException {
+        JsonStreamContext context = parser.getParsingContext();
+        if (token == JsonToken.END_OBJECT) {
+            // the context is the enclosing one again
+            if (isDataArray(context)) {
+                addEntry();
+            }
+            return;
+        }
+        if (!token.isScalarValue() || !context.inObject() || !isDataArray(context.getParent())) {
+            return;
+        }
+        String name = context.getCurrentName();
+        if ("currencyCode".equals(name)) {
+            currencyCode = parser.getText();
+        } else if ("price".equals(name) && token.isNumeric()) {
+            price = parser.getDoubleValue();
+        } else if ("timestampSec".equals(name) && token.isNumeric()) {
+            timestampSec = parser.getLongValue();
+        }
+    }
+
+    public void setBtcTxFee(String fee) {
+        try {
+            btcTxFee = fee != null ? Double.parseDouble(fee.trim()) : Double.NaN;
+        } catch (NumberFormatException e) {
+            btcTxFee = Double.NaN;
+        }
+    }
+
+    public double getPrice(String currencyCode) {
+        int index = analyzer.currencyIndex(currencyCode);
+        return index < size ? prices[index] : Double.NaN;
+    }
+
+    private void addEntry() {
+        if (currencyCode != null && price > 0) {
+            int index = analyzer.currencyIndex(currencyCode);
+            if (index >= prices.length) {
+                int capacity = Math.max(index + 1, prices.length * 2);
+                double[] grownPrices = newPrices(capacity);
+                System.arraycopy(prices, 0, grownPrices, 0, size);
+                long[] grownTimestamps = newTimestamps(capacity);
+                System.arraycopy(timestampsSec, 0, grownTimestamps, 0, size);
+                prices = grownPrices;
+                timestampsSec = grownTimestamps;
+            }
+            prices[index] = price;
+            timestampsSec[index] = timestampSec;
+            size = Math.max(size, index + 1);
+        }
+        currencyCode = null;
+        price = Double.NaN;
+        timestampSec = -1;
+    }
+
+    private static boolean isDataArray(JsonStreamContext context) {
+        if (context == null || !context.inArray()) {
+            return false;
+        }
+        JsonStreamContext data = context.getParent();
+        return data != null && data.inObject() && "data".equals(data.getCurrentName())
+                && data.getParent() != null && data.getParent().inRoot();
+    }
+
+    private static double[] newPrices(int capacity) {
+        double[] prices = new double[capacity];
+        Arrays.fill(prices, Double.NaN);
+        return prices;
+    }
+
+    private static long[] newTimestamps(int capacity) {
+        long[] timestamps = new long[capacity];
+        Arrays.fill(timestamps, -1);
+        return timestamps;
+    }
+}
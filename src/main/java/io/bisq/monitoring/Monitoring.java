@@ -1,43 +1,34 @@
 package io.bisq.monitoring;
 
-import com.google.common.collect.Lists;
-import com.google.common.util.concurrent.ListenableFuture;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import joptsimple.OptionException;
 import joptsimple.OptionParser;
 import joptsimple.OptionSet;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
-import net.gpedro.integrations.slack.SlackApi;
-import org.berndpruenster.netlayer.tor.NativeTor;
-import org.berndpruenster.netlayer.tor.Tor;
 import org.berndpruenster.netlayer.tor.TorCtlException;
 import org.berndpruenster.netlayer.tor.TorSocket;
-import org.bitcoinj.core.Context;
-import org.bitcoinj.core.Peer;
-import org.bitcoinj.core.PeerAddress;
-import org.bitcoinj.core.VersionMessage;
-import org.bitcoinj.net.BlockingClient;
-import org.bitcoinj.params.MainNetParams;
-import org.jetbrains.annotations.Nullable;
-
-import javax.net.SocketFactory;
+import spark.Request;
+import spark.Response;
+
+import javax.servlet.http.HttpServletResponse;
 import java.io.*;
-import java.net.InetSocketAddress;
-import java.net.Proxy;
+import java.lang.management.ManagementFactory;
 import java.net.Socket;
-import java.net.SocketAddress;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
-import static java.util.concurrent.TimeUnit.SECONDS;
 import static spark.Spark.get;
 import static spark.Spark.port;
 
@@ -46,12 +37,12 @@ import static spark.Spark.port;
  */
 @Slf4j
 public class Monitoring {
-    private Runtime rt = Runtime.getRuntime();
-    private static SlackApi priceApi;
-    private static SlackApi seedApi;
-    private static SlackApi btcApi;
+    private static SlackWebhook priceApi;
+    private static SlackWebhook seedApi;
+    private static SlackWebhook btcApi;
+    // replaced when the node yaml is reloaded
     @Getter
-    private NodeConfig nodeConfig;
+    private volatile NodeConfig nodeConfig;
 
     // CMD line arguments
     public static final String USE_SLACK = "useSlack";
@@ -60,6 +51,10 @@ public class Monitoring {
     public static final String SLACK_BTC_SECRET = "slackBTCSecret";
     public static final String LOCAL_YAML = "localYaml";
     public static final String TEST = "test";
+    public static final String HISTORY_DIR = "historyDir";
+    public static final String PORT = "port";
+    public static final String CLUSTER_SELF = "clusterSelf";
+    public static final String CLUSTER_PEERS = "clusterPeers";
 
     // CMD line argument DATA
     public static boolean isSlackEnabled = false;
@@ -68,168 +63,553 @@ public class Monitoring {
     public static String slackBTCSecretData = null;
     public static String localYamlData = null;
     public static boolean isTest = false;
+    public static String historyDirData = "history";
 
     public static int LOOP_SLEEP_SECONDS = 10 * 60;
     public static int UNREPORTED_ERRORS_THRESHOLD = 3;
+    // a probe runs several stages of up to nodeTimeoutSecs each, it is cancelled after this many of them
+    static final int PROBE_DEADLINE_TIMEOUTS = 3;
     public static int processTimeoutSeconds;
+    static final String SNAPSHOT_FILE = "nodes.snapshot";
+    static final String JOURNAL_DIR = "journal";
+    static final int SNAPSHOT_INTERVAL_SECS = 60;
+    static final String PRICENODE_SHARD_KEY = "pricenodes";
+    private static final ObjectMapper JSON_MAPPER = new ObjectMapper();
 
-    Set<NodeDetail> allNodes = new HashSet<>();
+    @Getter
+    private final NodeRegistry nodeRegistry = new NodeRegistry();
     LocalDateTime startTime = LocalDateTime.now();
-    // one tor is started, this is filled in
-    ProxySocketFactory proxySocketFactory;
-    private final ScheduledExecutorService scheduler =
-            Executors.newScheduledThreadPool(50);
+    private final StatusPage statusPage = new StatusPage(nodeRegistry, startTime);
+    @Getter
+    private final NodeEventStream eventStream = new NodeEventStream();
+    // once tor is started, this is filled in
+    private volatile TorPool torPool;
+    // while Tor bootstraps the onion nodes are left out of the checks, they would only fail
+    private volatile boolean torStarting;
+    private final RetryScheduler retryScheduler;
+    private final AlertPolicy alertPolicy;
+    @Getter
+    private final ProbeEngine probeEngine;
+    private final TorHttpClient httpClient;
+    private volatile ResponseValidator responseValidator;
+    private final ReachabilityProber reachabilityProber;
+    private final BitcoinHandshakeEngine handshakeEngine;
+    private final ExternalCheckRunner externalCheckRunner;
+    // the blocking parts of checks, e.g. pricenode requests; bounded like the probes, apart from the probe threads
+    private final ExecutorService blockingExecutor;
+    // the checks on the classpath by the type of node they check
+    private final Map<String, NodeCheck> nodeChecks = loadNodeChecks();
+    private final NodeCheck.Context checkContext = new CheckContext();
+    @Getter
+    private final LatencyMetrics latencyMetrics = new LatencyMetrics();
+    // alerts that arrive together go out as one digest, with the nodes in error appended
+    private final SlackDispatcher slackDispatcher = new SlackDispatcher(this::printAllNodesReportSlack);
+    // null until openProbeHistory is called
+    private ProbeHistoryStore probeHistory;
+    // null until openProbeJournal is called
+    private ProbeJournal probeJournal;
+    // the regular checks of the registered nodes
+    private final Map<NodeKey, ProbeEngine.Probe> probes = new ConcurrentHashMap<>();
+    // null unless this instance is part of a cluster
+    private volatile Cluster cluster;
+    // null until startScheduling is called
+    private AdaptiveScheduler scheduler;
+    // when the first check of this process finished, -1 before
+    private final AtomicLong firstCheckMillis = new AtomicLong(-1);
 
-    public Monitoring(NodeConfig nodeConfig) {
+    public Monitoring(NodeConfig nodeConfig) throws IOException {
+        TorPool.validate(nodeConfig);
         this.nodeConfig = nodeConfig;
         this.processTimeoutSeconds = nodeConfig.getNodeTimeoutSecs();
+        this.probeEngine = new ProbeEngine(nodeConfig, probeDeadlineMillis(nodeConfig));
+        this.retryScheduler = new RetryScheduler(nodeConfig);
+        this.alertPolicy = AlertPolicy.of(nodeConfig);
+        this.httpClient = new TorHttpClient(processTimeoutSeconds * 1000);
+        this.responseValidator = ResponseValidator.forPricenodes(nodeConfig);
+        this.reachabilityProber = new ReachabilityProber(processTimeoutSeconds * 1000);
+        this.handshakeEngine = new BitcoinHandshakeEngine(processTimeoutSeconds * 1000);
+        this.externalCheckRunner = new ExternalCheckRunner(nodeConfig.getMaxConcurrentCustomChecks() > 0
+                ? nodeConfig.getMaxConcurrentCustomChecks() : ExternalCheckRunner.DEFAULT_MAX_CONCURRENT,
+                ExternalCheckRunner.DEFAULT_MAX_OUTPUT_BYTES);
+        this.blockingExecutor = Executors.newFixedThreadPool(nodeConfig.getMaxConcurrentProbes() > 0
+                        ? nodeConfig.getMaxConcurrentProbes() : ProbeEngine.DEFAULT_MAX_CONCURRENT_PROBES,
+                new ThreadFactoryBuilder().setNameFormat("check-io-%d").setDaemon(true).build());
     }
 
-    public void checkBitcoinNode(List<NodeDetail> nodes, SlackApi api) {
-        int CONNECT_TIMEOUT_MSEC = processTimeoutSeconds * 1000;
-        MainNetParams params = MainNetParams.get();
-        Context context = new Context(params);
-        BlockingClient blockingClient = null;
+    public void openProbeHistory(Path directory) throws IOException {
+        this.probeHistory = new ProbeHistoryStore(directory);
+    }
 
-        for (NodeDetail node : nodes) {
-            Runnable retry = () -> this.checkBitcoinNode(Lists.newArrayList(node), api);
-            try {
-                PeerAddress remoteAddress = new PeerAddress(node.getAddress(), node.getPort());
-                Peer peer = new Peer(params, new VersionMessage(params, 100000), remoteAddress, null);
-                blockingClient =
-                        new BlockingClient(node.isTor ? remoteAddress.toSocketAddress() : new InetSocketAddress(node.getAddress(), node.getPort()),
-                                peer, CONNECT_TIMEOUT_MSEC, node.isTor ? proxySocketFactory : SocketFactory.getDefault(),
-                                null);
-                ListenableFuture<SocketAddress> connectFuture = blockingClient.getConnectFuture();
-                SocketAddress socketAddress = connectFuture.get(CONNECT_TIMEOUT_MSEC, TimeUnit.MILLISECONDS);
-                Peer remotePeer = peer.getVersionHandshakeFuture().get(CONNECT_TIMEOUT_MSEC, TimeUnit.MILLISECONDS);
-                VersionMessage versionMessage = remotePeer.getPeerVersionMessage();
-                if (!verifyBtcNodeVersion(versionMessage)) {
-                    handleError(api, node, "BTC Node has wrong version message: " + versionMessage.toString(), retry);
-                }
-                node.setExtraString("v="+remotePeer.getPeerVersionMessage().subVer+",height:"+remotePeer.getBestHeight());
-                markAsGoodNode(api, node);
-            } catch (InterruptedException e) {
-                log.debug("getVersionHandshakeFuture failed {}", e);
-                handleError(api, node, "getVersionHandshakeFuture() was interrupted: " + e.getMessage(), retry);
-                continue;
-            } catch (ExecutionException e) {
-                log.debug("getVersionHandshakeFuture failed {}", e);
-                handleError(api, node, "getVersionHandshakeFuture() has executionException: " + e.getMessage(), retry);
-                continue;
-            } catch (IOException e) {
-                log.debug("BlockingClient failed {}", e);
-                handleError(api, node, "BlockingClient failed: " + e.getMessage(), retry);
-                continue;
-            } catch (TimeoutException e) {
-                log.debug("getVersionHandshakeFuture failed {}", e);
-                handleError(api, node,
-                        "getVersionHandshakeFuture() has timed out after "
-                                + CONNECT_TIMEOUT_MSEC / 1000.0 + " seconds with error: " + e.getMessage(), retry);
-                continue;
-            } finally {
-                closeConnection(blockingClient);
-            }
+    public void openProbeJournal(Path directory) throws IOException {
+        this.probeJournal = new ProbeJournal(directory);
+    }
+
+    private void recordProbe(NodeDetail node, boolean ok, ProbeStage stage, long latencyMillis) {
+        if (firstCheckMillis.compareAndSet(-1, System.currentTimeMillis())) {
+            log.info("First check finished {} ms after the start of the process", getTimeToFirstCheckMillis());
+        }
+        node.getAvailability().record(ok, System.currentTimeMillis());
+        if (ok) {
+            node.setLastLatencyMillis(latencyMillis);
+        }
+        if (probeHistory != null) {
+            probeHistory.record(node.getKey(), ok, stage, latencyMillis);
         }
+        if (probeJournal != null) {
+            probeJournal.record(node.getKey(), ok, stage, latencyMillis);
+        }
+    }
+
+    /**
+     * @return the time from the start of the process to the end of the first check, -1 before that
+     */
+    public long getTimeToFirstCheckMillis() {
+        long first = firstCheckMillis.get();
+        return first < 0 ? -1 : first - ManagementFactory.getRuntimeMXBean().getStartTime();
     }
 
-    private void closeConnection(BlockingClient blockingClient) {
-        if(blockingClient != null) {
-            blockingClient.closeConnection();
+    public void saveSnapshot(Path file) {
+        try {
+            NodeStateSnapshot.write(file, nodeRegistry.getNodes());
+        } catch (IOException e) {
+            log.error("Could not write the node state snapshot " + file, e);
         }
     }
 
-    private boolean verifyBtcNodeVersion(VersionMessage versionMessage) {
-        return versionMessage.localServices == 13 && versionMessage.subVer.contains("0.15");
+    /**
+     * Take over the node state saved by the previous run, for the nodes that are still in the config.
+     *
+     * @return the number of nodes restored
+     */
+    public int restoreSnapshot(Path file) {
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        List<NodeStatus> statuses;
+        try {
+            statuses = NodeStateSnapshot.read(file);
+        } catch (IOException e) {
+            log.warn("Ignoring the node state snapshot {}: {}", file, e.getMessage());
+            return 0;
+        }
+        int restored = 0;
+        for (NodeStatus status : statuses) {
+            NodeDetail node = nodeRegistry.get(status.key());
+            if (node != null) {
+                nodeRegistry.applyStatus(node, status);
+                statusPage.nodeChanged(node);
+                restored++;
+            }
+        }
+        log.info("Restored the state of {} of {} nodes from {}", restored, statuses.size(), file);
+        return restored;
+    }
+
+    /**
+     * Bootstrap Tor in the background, the clearnet nodes are checked meanwhile and the onion nodes once it is done.
+     *
+     * @return completes with false if Tor could not be started
+     */
+    public CompletableFuture<Boolean> startTorAsync() {
+        torStarting = true;
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return startTor();
+            } finally {
+                torStarting = false;
+            }
+        });
     }
 
-    @Nullable
     private boolean startTor() {
-        InetSocketAddress torProxyAddress = null;
         try {
-            Tor.setDefault(new NativeTor(new File("/Users/mike/tor"), null));
-            torProxyAddress = new InetSocketAddress("localhost", Tor.getDefault().getProxy().getPort());
-        } catch (TorCtlException e) {
+            this.torPool = TorPool.start(nodeConfig);
+        } catch (TorCtlException | RuntimeException e) {
             log.error("Error creating Tor Node", e);
             return false;
         }
-        Proxy proxy = new Proxy(Proxy.Type.SOCKS, torProxyAddress);
-        this.proxySocketFactory = new ProxySocketFactory(proxy);
         return true;
     }
 
     private void stopTor() {
-        Tor.getDefault().shutdown();
-        this.proxySocketFactory = null;
+        if (torPool != null) {
+            torPool.shutdown();
+            this.torPool = null;
+        }
+    }
+
+    /**
+     * Stop all background threads, for runs that end: the tests and the node farm simulation.
+     */
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+        if (cluster != null) {
+            cluster.shutdown();
+        }
+        stopTor();
+        probeEngine.shutdown();
+        blockingExecutor.shutdownNow();
+        retryScheduler.shutdown();
+        reachabilityProber.shutdown();
+        handshakeEngine.shutdown();
+        externalCheckRunner.shutdown();
+        slackDispatcher.shutdown();
+        httpClient.closeIdleConnections();
+        if (probeHistory != null) {
+            try {
+                probeHistory.close();
+            } catch (IOException e) {
+                log.error("Could not close the probe history", e);
+            }
+        }
+        if (probeJournal != null) {
+            try {
+                probeJournal.close();
+            } catch (IOException e) {
+                log.error("Could not close the probe journal", e);
+            }
+        }
+    }
+
+    /**
+     * Build the circuit to an onion node before its check needs it: the node connects to its onion service on its own
+     * isolated circuit, so the check that follows finds its circuit ready. The connect time of a fresh circuit is
+     * recorded as the circuit_build latency. Returns at once, the prober times the connect out itself.
+     */
+    public void prewarmCircuit(NodeDetail node) {
+        TorPool pool = torPool;
+        if (pool == null || !node.isTor || !isCheckedHere(node)) {
+            return;
+        }
+        NodeCheck check = checkFor(node);
+        if (check == null) {
+            return;
+        }
+        TorPool.Route route = pool.route(node.getKey());
+        reachabilityProber.probe(node.getAddress(), check.getConnectPort(node), route.getSocksProxy(),
+                route.getUsername(), route.getPassword())
+                .whenComplete((result, e) -> {
+                    route.close();
+                    if (result != null && result.isReachable()) {
+                        latencyMetrics.record(node.getKey(), ProbeStage.CIRCUIT_BUILD, result.getConnectMillis());
+                    } else {
+                        log.debug("Could not prewarm circuit to {}: {}", node.getKey(), result != null ? result.getError() : e);
+                    }
+                });
     }
 
     public void scheduleFollowupCheck(NodeDetail node, Runnable retry) {
         Runnable loggingRetry = () -> {
+            if (!isCheckedHere(node)) {
+                return;
+            }
             log.info("Retrying: {} with address {} and {} unreported fails.", node.getNodeType(), node.getAddress(), node.getNrErrorsUnreported());
             retry.run();
         };
-        scheduler.schedule(loggingRetry, 60, SECONDS);
+        if (!retryScheduler.schedule(node.getKey(), (int) node.getNrErrorsUnreported(), loggingRetry)) {
+            log.debug("A followup check for {} is pending already", node.getKey());
+        }
     }
 
-    public void checkPriceNodes(List<NodeDetail> nodes, SlackApi api) {
-        for (NodeDetail node : nodes) {
-            Runnable retry = () -> this.checkPriceNodes(Lists.newArrayList(node), api);
+    /**
+     * Add the nodes of the config to the registry, returns the probes that check them each cycle.
+     */
+    public List<ProbeEngine.Probe> addNodesFromConfig() {
+        nodesFromConfig(nodeConfig, nodeChecks).forEach(this::addNode);
+        return getProbes();
+    }
 
-            ///////////////////// check that tx fees are returned correctly
-            ProcessResult getFeesResult = executeProcess((node.isTor ? "torify " : "") + "curl " + node.getAddress() + (node.isTor ? "" : node.getPort()) + "/getFees", processTimeoutSeconds);
-            if (getFeesResult.getError() != null) {
-                handleError(api, node, getFeesResult.getError(), retry);
-                continue;
+    /**
+     * The probes of the nodes this instance checks, taken anew for every cycle as a reload or a cluster change may
+     * have changed the nodes. The onion nodes join once Tor is bootstrapped.
+     */
+    public List<ProbeEngine.Probe> getProbes() {
+        List<ProbeEngine.Probe> ownProbes = new ArrayList<>(probes.size());
+        boolean withOnionNodes = !torStarting;
+        for (ProbeEngine.Probe probe : probes.values()) {
+            if (isOwnShard(probe.getNode()) && (withOnionNodes || !probe.getNode().isTor)) {
+                ownProbes.add(probe);
             }
-            boolean correct = getFeesResult.getResult().contains("btcTxFee");
-            if (!correct) {
-                handleError(api, node, "Result does not contain expected keyword: " + getFeesResult.getResult(), retry);
-                continue;
+        }
+        return ownProbes;
+    }
+
+    /**
+     * The nodes this instance checks: all of them, or in a cluster its own shard.
+     */
+    public List<NodeDetail> getShardNodes() {
+        return nodeRegistry.getNodes().stream().filter(this::isOwnShard).collect(Collectors.toList());
+    }
+
+    /**
+     * Check every node on its own adaptive interval from now on, instead of in cycles.
+     */
+    public synchronized void startScheduling() {
+        if (scheduler == null) {
+            scheduler = new AdaptiveScheduler(probeEngine, this::getProbes, nodeConfig, LOOP_SLEEP_SECONDS, this::prewarmCircuit);
+            scheduler.start();
+        }
+    }
+
+    /**
+     * @return the scheduler, null until startScheduling is called
+     */
+    public synchronized AdaptiveScheduler getScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * Only check the nodes of this instance's shard from now on and take over the state of the other nodes from the
+     * peers that check them.
+     */
+    public void joinCluster(Cluster cluster, int syncSecs) {
+        this.cluster = cluster;
+        log.info("Joined cluster {} as {}", cluster.getPeers(), cluster.getSelf());
+        cluster.start(syncSecs, this::applyPeerStatus);
+    }
+
+    private void applyPeerStatus(NodeStatus status) {
+        NodeDetail node = nodeRegistry.get(status.key());
+        // a node that just moved to this shard is checked here from now on
+        if (node == null || isOwnShard(node)) {
+            return;
+        }
+        nodeRegistry.applyStatus(node, status);
+        statusPage.nodeChanged(node);
+    }
+
+    private boolean isOwnShard(NodeDetail node) {
+        Cluster current = cluster;
+        return current == null || current.isOwnShard(shardKey(node));
+    }
+
+    /**
+     * The pricenodes are compared with each other, so they all go to the same shard; any other node is placed by its
+     * address.
+     */
+    static String shardKey(NodeDetail node) {
+        return node.getNodeType() == NodeType.PRICE_NODE ? PRICENODE_SHARD_KEY : node.getAddress();
+    }
+
+    /**
+     * The nodes of this instance's shard, as /api/nodes shows them; the peers of a cluster fetch this.
+     */
+    public String printShardJson() throws JsonProcessingException {
+        return JSON_MAPPER.writeValueAsString(getShardNodes().stream()
+                .sorted(Comparator.comparing(nodeDetail -> nodeDetail.getKey().toString()))
+                .map(NodeStatus::of)
+                .collect(Collectors.toList()));
+    }
+
+    /**
+     * Apply a reloaded config: nodes it adds start being checked, nodes it no longer lists are dropped together with
+     * their retries and latency histograms, nodes with another owner get the new owner. Unchanged nodes keep their
+     * state and pending retries. Probe limits, retry delays and Tor settings only take effect after a restart.
+     *
+     * @throws IllegalArgumentException if the config is invalid, nothing is changed then
+     */
+    public synchronized NodeConfigDiff reloadConfig(NodeConfig config) {
+        // everything that can fail comes before the first change
+        NodeConfigDiff diff = NodeConfigDiff.between(nodeRegistry.getNodes(), nodesFromConfig(config, nodeChecks));
+        ResponseValidator validator = ResponseValidator.forPricenodes(config);
+        TorPool.validate(config);
+        TorPool pool = torPool;
+        for (NodeDetail node : diff.getRemoved()) {
+            NodeKey key = node.getKey();
+            probes.remove(key);
+            nodeRegistry.remove(key);
+            retryScheduler.cancel(key);
+            latencyMetrics.remove(key);
+            if (pool != null) {
+                pool.remove(key);
             }
-            //"btcTxFee": 310
-            Pattern p = Pattern.compile("\"btcTxFee\"\\s*:\\s*(\\d+),");
-            Matcher m = p.matcher(getFeesResult.getResult());
-            if(m.find()) {
-                node.setExtraString(m.group(1)+"s/b");
-            } else {
-                node.setExtraString("Can't find txfee");
-                log.warn("the fee result : {} does not contain the required pattern", getFeesResult.getResult());
+            NodeCheck check = checkFor(node);
+            if (check != null) {
+                check.nodeRemoved(node);
+            }
+        }
+        for (NodeDetail node : diff.getChanged()) {
+            NodeDetail running = nodeRegistry.get(node.getKey());
+            if (running != null) {
+                nodeRegistry.setOwner(running, node.getOwner());
             }
+        }
+        diff.getAdded().forEach(this::addNode);
+        // the page is sorted by owner
+        if (!diff.getAdded().isEmpty() || !diff.getRemoved().isEmpty() || !diff.getChanged().isEmpty()) {
+            statusPage.nodesChanged();
+        }
+        this.responseValidator = validator;
+        this.nodeConfig = config;
+        log.info("Reloaded the node config: {}", diff);
+        return diff;
+    }
 
-            ///////////////////// check that market prices are returned correctly
-            ProcessResult getPricesResult = executeProcess((node.isTor ? "torify " : "") + "curl " + node.getAddress() + (node.isTor ? "" : "8080") + "/getAllMarketPrices", processTimeoutSeconds);
-            if (getPricesResult.getError() != null) {
-                handleError(api, node, getPricesResult.getError(), retry);
-                continue;
+    private void addNode(NodeDetail node) {
+        if (!nodeRegistry.add(node)) {
+            return;
+        }
+        probes.put(node.getKey(), newProbe(node, () -> checkNode(node)));
+    }
+
+    private boolean isRegistered(NodeDetail node) {
+        return nodeRegistry.get(node.getKey()) == node;
+    }
+
+    private boolean isCheckedHere(NodeDetail node) {
+        return isRegistered(node) && isOwnShard(node);
+    }
+
+    /**
+     * A probe for the regular check cycle, skipped while a retry of the same node is still running or when the node
+     * was removed by a reload or moved to another cluster instance since the cycle started.
+     */
+    ProbeEngine.Probe newProbe(NodeDetail node, Supplier<CompletableFuture<?>> check) {
+        return new ProbeEngine.Probe(node, () -> isCheckedHere(node)
+                ? retryScheduler.runExclusivelyAsync(node.getKey(), check)
+                : CompletableFuture.completedFuture(null));
+    }
+
+    /**
+     * Check the node with the NodeCheck of its type and handle the outcome: record it, alert on a failure and
+     * schedule the followup check.
+     *
+     * @return completes once the outcome is handled, never exceptionally. Cancelling it cancels the check or custom
+     * check still running, which ends its blocking work; the node then fails as not finished in time.
+     */
+    public CompletableFuture<Void> checkNode(NodeDetail node) {
+        SlackWebhook api = apiFor(node.getNodeType());
+        Runnable retry = () -> retryCheck(node);
+        NodeCheck check = checkFor(node);
+        CompletableFuture<CheckResult> result;
+        if (check == null) {
+            result = CompletableFuture.completedFuture(CheckResult.failed(ProbeStage.CHECK, 0, "No check for node type " + node.getCheckType()));
+        } else if (node.isTor && torPool == null) {
+            result = CompletableFuture.completedFuture(CheckResult.failed(ProbeStage.TOR_CONNECT, 0, "Tor is not started"));
+        } else {
+            try {
+                result = check.check(node, checkContext);
+            } catch (RuntimeException e) {
+                result = new CompletableFuture<>();
+                result.completeExceptionally(e);
             }
-            String regex = "\"currencyCode\"\\s*:\\s*\"XMR\"";
-            correct = MonitoringUtil.isPatternFound(getPricesResult.getResult(), regex);
-            if (!correct) {
-                handleError(api, node, "getAllMarketPrices does not contain our test string: " + regex, retry);
-                continue;
+        }
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        cancelWith(done, result);
+        // the futures of the checks complete on the selector threads of the engines, which must not wait on slack
+        result.handleAsync((checkResult, e) -> {
+            if (e != null) {
+                Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                checkResult = CheckResult.failed(ProbeStage.CHECK, 0, cause instanceof CancellationException
+                        ? "Check did not finish within the probe deadline" : "Check failed: " + cause);
             }
+            return checkResult;
+        }, probeEngine.getExecutor())
+                .thenCompose(checkResult -> completeCheck(node, checkResult, api, retry, done))
+                .whenComplete((ignored, e) -> {
+                    if (e != null) {
+                        log.error("Could not handle the check of {}", node.getKey(), e);
+                    }
+                    done.complete(null);
+                });
+        return done;
+    }
 
-            ///////////////////// extract params used for the pricenode
-            ProcessResult getParamsResult = executeProcess((node.isTor ? "torify " : "") + "curl " + node.getAddress() + (node.isTor ? "" : "8080") + "/getParams", processTimeoutSeconds);
-            if (getParamsResult.getError() != null) {
-                handleError(api, node, getParamsResult.getError(), retry);
-                continue;
+    /**
+     * How long a probe may hold its slot: a few node timeouts for the check and the timeouts of the custom checks
+     * after it. 0, no deadline, without a node timeout.
+     */
+    static long probeDeadlineMillis(NodeConfig nodeConfig) {
+        int timeoutSecs = nodeConfig.getNodeTimeoutSecs();
+        if (timeoutSecs <= 0) {
+            return 0;
+        }
+        long deadlineMillis = PROBE_DEADLINE_TIMEOUTS * 1000L * timeoutSecs;
+        if (nodeConfig.getCustomChecks() != null) {
+            for (CustomCheck customCheck : nodeConfig.getCustomChecks()) {
+                deadlineMillis += customCheck.timeoutMillis(timeoutSecs);
             }
-            node.setExtraString(node.getExtraString() + " - " + getParamsResult.getResult());
+        }
+        return deadlineMillis;
+    }
 
-            ///////////////////// check version of pricenode
-            ProcessResult getVersionResult = executeProcess((node.isTor ? "torify " : "") + "curl " + node.getAddress() + (node.isTor ? "" : "8080") + "/getVersion", processTimeoutSeconds);
-            if (getVersionResult.getError() != null) {
-                handleError(api, node, getVersionResult.getError(), retry);
-                continue;
+    /**
+     * Check the node again through the probe engine, within the probe budget of the scheduler once it runs. The retry
+     * thread holds the node for the retry until the probe is done, that keeps the number of concurrent retries bounded
+     * and the regular check of the node from running meanwhile.
+     */
+    private void retryCheck(NodeDetail node) {
+        ProbeEngine.Probe probe = new ProbeEngine.Probe(node, () -> checkNode(node));
+        AdaptiveScheduler current = getScheduler();
+        CompletableFuture<Void> retried = current != null ? current.submitRetry(probe) : probeEngine.submit(probe);
+        try {
+            retried.join();
+        } catch (CancellationException | CompletionException e) {
+            log.debug("Retry of {} did not complete: {}", node.getKey(), e.toString());
+        }
+    }
+
+    /**
+     * Cancels the running part of a check together with the check.
+     */
+    private static void cancelWith(CompletableFuture<?> check, CompletableFuture<?> running) {
+        check.whenComplete((ignored, e) -> {
+            if (check.isCancelled()) {
+                running.cancel(true);
             }
-            correct = nodeConfig.getPricenodeVersion().equals(getVersionResult.getResult());
-            if (!correct) {
-                handleError(api, node, "Expected version " + nodeConfig.getPricenodeVersion() + ", actually: " + getVersionResult.getResult(), retry);
-                continue;
+        });
+    }
+
+    private CompletableFuture<Void> completeCheck(NodeDetail node, CheckResult result, SlackWebhook api, Runnable retry,
+                                                  CompletableFuture<?> check) {
+        result.getStageLatencyMillis().forEach((stage, latencyMillis) -> latencyMetrics.record(node.getKey(), stage, latencyMillis));
+        if (result.getExtraString() != null) {
+            node.setExtraString(result.getExtraString());
+        }
+        if (result.hasError()) {
+            recordProbe(node, false, result.getStage(), result.getLatencyMillis());
+            handleError(api, node, result.getError(), retry);
+            return CompletableFuture.completedFuture(null);
+        }
+        // a probe is recorded once, with the outcome of its custom checks
+        return runCustomChecks(node, check).thenAccept(failed -> {
+            if (failed == null) {
+                recordProbe(node, true, result.getStage(), result.getLatencyMillis());
+                markAsGoodNode(api, node);
+            } else {
+                recordProbe(node, false, failed.getStage(), failed.getLatencyMillis());
+                handleError(api, node, failed.getError(), retry);
+            }
+        });
+    }
+
+    private NodeCheck checkFor(NodeDetail node) {
+        if (node.getCheckType() != null) {
+            return nodeChecks.get(node.getCheckType());
+        }
+        for (NodeCheck check : nodeChecks.values()) {
+            if (check.getNodeType() == node.getNodeType()) {
+                return check;
             }
+        }
+        return null;
+    }
 
-            markAsGoodNode(api, node);
+    /**
+     * Nodes of other types than the three built in ones are only logged.
+     */
+    private static SlackWebhook apiFor(NodeType nodeType) {
+        switch (nodeType) {
+            case PRICE_NODE:
+                return priceApi;
+            case SEED_NODE:
+                return seedApi;
+            case BTC_NODE:
+                return btcApi;
+            default:
+                return null;
         }
     }
 
@@ -262,87 +642,101 @@ public class Monitoring {
     }
 
     /**
-     * NOTE: does not work on MAC netcat version
+     * Runs the custom checks of the yaml file that apply to the node, one after the other, until one fails.
+     *
+     * @return completes with the failure of the first failing custom check, with null if all of them passed
      */
-    public void checkSeedNodes(List<NodeDetail> nodes, SlackApi api) {
-        for (NodeDetail node : nodes) {
-            Runnable retry = () -> this.checkSeedNodes(Lists.newArrayList(node), api);
-            ProcessResult getFeesResult = executeProcess("./src/main/shell/seednodes.sh " + node.getAddress() + ":" + node.getPort(), processTimeoutSeconds);
-            if (getFeesResult.getError() != null) {
-                handleError(api, node, getFeesResult.getError(), retry);
-                continue;
+    private CompletableFuture<CheckResult> runCustomChecks(NodeDetail node, CompletableFuture<?> check) {
+        CompletableFuture<CheckResult> failed = CompletableFuture.completedFuture(null);
+        List<CustomCheck> customChecks = nodeConfig.getCustomChecks();
+        if (customChecks == null) {
+            return failed;
+        }
+        for (CustomCheck customCheck : customChecks) {
+            if (customCheck.appliesTo(node.getNodeType())) {
+                failed = failed.thenCompose(previous -> previous != null
+                        ? CompletableFuture.completedFuture(previous)
+                        : runCustomCheck(node, customCheck, check));
             }
-            markAsGoodNode(api, node);
         }
+        return failed;
     }
 
-    private ProcessResult executeProcess(String command, int timeoutSeconds) {
-        Process pr = null;
-        boolean noTimeout = false;
-        int exitValue = 0;
-        try {
-            pr = rt.exec(command);
-            noTimeout = pr.waitFor(timeoutSeconds, SECONDS);
-        } catch (IOException e) {
-            return new ProcessResult("", e.getMessage());
-        } catch (InterruptedException e) {
-            return new ProcessResult("", e.getMessage());
+    private CompletableFuture<CheckResult> runCustomCheck(NodeDetail node, CustomCheck customCheck, CompletableFuture<?> check) {
+        TorPool pool = torPool;
+        if (node.isTor && pool == null) {
+            return CompletableFuture.completedFuture(CheckResult.failed(ProbeStage.TOR_CONNECT, 0, "Tor is not started"));
         }
-        if (!noTimeout) {
-            return new ProcessResult(null, "Timeout");
+        // the route stays open while the command runs, so the command uses the node's circuit
+        TorPool.Route route = node.isTor ? pool.route(node.getKey()) : null;
+        Map<String, String> environment = route != null
+                ? customCheck.environment(node, route.getSocksProxy(), route.getUsername())
+                : customCheck.environment(node, null, null);
+        CompletableFuture<ExternalCheckRunner.Result> run;
+        try {
+            run = externalCheckRunner.run(customCheck.commandLine(), environment, customCheck.timeoutMillis(processTimeoutSeconds));
+        } catch (RejectedExecutionException e) {
+            if (route != null) {
+                route.close();
+            }
+            return CompletableFuture.completedFuture(CheckResult.failed(ProbeStage.CUSTOM_CHECK, 0, "Custom check " + customCheck.getName() + " not started"));
         }
-        exitValue = pr.exitValue();
-        return new ProcessResult(convertStreamToString(pr.getInputStream()), (exitValue != 0) ? "Exit value is " + exitValue : null);
-    }
-
-    static String convertStreamToString(java.io.InputStream is) {
-        java.util.Scanner s = new java.util.Scanner(is).useDelimiter("\\A");
-        return s.hasNext() ? s.next() : "";
+        cancelWith(check, run);
+        return run.handle((result, e) -> {
+            if (route != null) {
+                route.close();
+            }
+            if (e != null) {
+                return CheckResult.failed(ProbeStage.CUSTOM_CHECK, 0, "Custom check " + customCheck.getName() + " did not finish within the probe deadline");
+            }
+            if (!result.isSuccess()) {
+                return CheckResult.failed(ProbeStage.CUSTOM_CHECK, result.getDurationMillis(),
+                        "Custom check " + customCheck.getName() + " failed: " + result.describe());
+            }
+            latencyMetrics.record(node.getKey(), ProbeStage.CUSTOM_CHECK, result.getDurationMillis());
+            return null;
+        });
     }
 
-    public void handleError(SlackApi api, NodeDetail node, String reason, Runnable retry) {
+    public void handleError(SlackWebhook api, NodeDetail node, String reason, Runnable retry) {
         NodeType nodeType = node.getNodeType();
         String address = node.getAddress();
         String owner = node.getOwner();
-        node.addError(reason);
+        nodeRegistry.addError(node, reason);
+        statusPage.nodeChanged(node);
+        eventStream.nodeUpdated(node);
 
-        if (node.nrErrorsUnreported == UNREPORTED_ERRORS_THRESHOLD) {
+        if (alertPolicy.isAlert(node.nrErrorsUnreported)) {
             log.error("Error in {} {} ({}), reason: {}", nodeType.toString(), address, owner, reason);
-            SlackTool.send(api, "Error: " + nodeType.getPrettyName() + " " + address + " failed " + UNREPORTED_ERRORS_THRESHOLD + " times", "<" + owner + "> " + appendBadNodesSizeToString(reason));
-        } else if (node.nrErrorsUnreported < UNREPORTED_ERRORS_THRESHOLD) {
+            slackDispatcher.send(api, "Error: " + nodeType.getPrettyName() + " " + address + " failed " + alertPolicy.getThreshold() + " times", "<" + owner + "> " + appendBadNodesSizeToString(reason));
+        } else if (alertPolicy.needsFollowup(node.nrErrorsUnreported)) {
             log.debug("Scheduling a followup check for node: {}", node.toString());
             scheduleFollowupCheck(node, retry);
         }
     }
 
-    private void markAsGoodNode(SlackApi api, NodeDetail node) {
+    private void markAsGoodNode(SlackWebhook api, NodeDetail node) {
         String address = node.getAddress();
         NodeType nodeType = node.getNodeType();
-        Optional<NodeDetail> any = findNodeInfoByAddress(address);
-        if (node.nrErrorsUnreported > 0 && node.nrErrorsUnreported < UNREPORTED_ERRORS_THRESHOLD) {
+        // a pending followup check has nothing left to do
+        retryScheduler.cancel(node.getKey());
+        if (node.nrErrorsUnreported > 0 && !alertPolicy.isReported(node.nrErrorsUnreported)) {
             // no slack logging
             log.info("Fixed: {} {} (" + node.nrErrorsUnreported + " unreported errors)", nodeType.getPrettyName(), address);
-            any.get().clearError();
+            nodeRegistry.clearError(node);
 
-        } else if (node.nrErrorsUnreported >= UNREPORTED_ERRORS_THRESHOLD) {
+        } else if (alertPolicy.isReported(node.nrErrorsUnreported)) {
             log.info("Fixed: {} {}", nodeType.getPrettyName(), address);
-            any.get().clearError(); // clear now to get correct count
-            SlackTool.send(api, "Fixed: " + nodeType.getPrettyName() + " " + address + " (" + node.getOwner() + ")", appendBadNodesSizeToString("No longer in error"));
+            nodeRegistry.clearError(node); // clear now to get correct count
+            slackDispatcher.send(api, "Fixed: " + nodeType.getPrettyName() + " " + address + " (" + node.getOwner() + ")", appendBadNodesSizeToString("No longer in error"));
         }
+        statusPage.nodeChanged(node);
+        eventStream.nodeUpdated(node);
         log.info("OK: {} with address {}", nodeType.getPrettyName(), address);
     }
 
-    private Optional<NodeDetail> findNodeInfoByAddress(String address) {
-        return allNodes.stream().filter(nodeDetail -> nodeDetail.getAddress().equals(address)).findAny();
-    }
-
-    private NodeDetail getNode(String address) {
-        Optional<NodeDetail> any = findNodeInfoByAddress(address);
-        return any.get();
-    }
-
     private String appendBadNodesSizeToString(String body) {
-        return body + " (now " + getErrorCount() + " node(s) have errors, next check in +/-" + Math.round(LOOP_SLEEP_SECONDS / 60) + " minutes)";
+        return body + " (now " + getErrorCount() + " node(s) have errors)";
     }
 
     public String printAllNodesReportSlack() {
@@ -351,7 +745,7 @@ public class Monitoring {
             return "";
         }
         return "Nodes in error: *" + errorCount + "*. Monitoring node started at: " + startTime.toString() + "\n" +
-                allNodes.stream().sorted().map(nodeDetail -> padRight(nodeDetail.getNodeType().getPrettyName(), 15)
+                nodeRegistry.getNodes().stream().sorted().map(nodeDetail -> padRight(nodeDetail.getNodeType().getPrettyName(), 15)
                         + "\t|\t`" + padRight(nodeDetail.getAddress(), 27)
                         + "` " + (nodeDetail.hasError() ? "*In Error*" : padRight("", 8))
                         + " #errors: " + padRight(String.valueOf(nodeDetail.getNrErrorsSinceStart()), 5)
@@ -361,32 +755,132 @@ public class Monitoring {
     }
 
     public String printAllNodesReportHtml() {
-        long errorCount = getErrorCount();
+        return statusPage.get().getHtmlAsString();
+    }
 
+    /**
+     * Serves the cached status page: 304 when the client already has it, the pre-compressed bytes to clients that
+     * accept gzip.
+     */
+    public Object serveStatusPage(Request request, Response response) throws IOException {
+        StatusPage.Rendered page = statusPage.get();
+        HttpServletResponse raw = response.raw();
+        raw.setHeader("ETag", page.getEtag());
+        raw.setHeader("Cache-Control", "no-cache");
+        raw.setHeader("Vary", "Accept-Encoding");
+        if (page.getEtag().equals(request.headers("If-None-Match"))) {
+            response.status(304);
+            return "";
+        }
+        String acceptEncoding = request.headers("Accept-Encoding");
+        boolean gzip = acceptEncoding != null && acceptEncoding.contains("gzip");
+        byte[] body = gzip ? page.getGzipped() : page.getHtml();
+        raw.setContentType("text/html; charset=utf-8");
+        if (gzip) {
+            raw.setHeader("Content-Encoding", "gzip");
+        }
+        raw.setContentLength(body.length);
+        // written directly, Spark skips committed responses and would otherwise compress the body a second time
+        raw.getOutputStream().write(body);
+        raw.flushBuffer();
+        return "";
+    }
+
+    public String printAllNodesJson() throws JsonProcessingException {
+        return JSON_MAPPER.writeValueAsString(nodeRegistry.getNodes().stream()
+                .sorted(Comparator.comparing(nodeDetail -> nodeDetail.getKey().toString()))
+                .map(NodeStatus::of)
+                .collect(Collectors.toList()));
+    }
+
+    /**
+     * Latency histograms, node state and probe engine gauges in the Prometheus text format.
+     */
+    public String printMetrics() {
         StringBuilder builder = new StringBuilder();
-        builder.append("<html><body><h1>");
-        builder.append("Nodes in error: <b>" + errorCount + "</b><br/>Monitoring node started at: " + startTime.toString() +
-                "<br/><table style=\"width:100%\"><tr><th align=\"left\">Node Type</th><th align=\"left\">Address</th><th align=\"left\">Owner</th><th align=\"left\">Error?</th><th align=\"left\">Total errors</th><th align=\"left\">Error streak</th><th align=\"left\">Total error minutes</th><th align=\"left\">Extra info</th><th align=\"left\">Reasons</th></tr>" +
-                allNodes.stream()
-                        .sorted(Comparator.comparing(node -> (node.getNodeType() + node.getOwner())))
-                        .map(nodeDetail -> "<tr>"
-                                + " <td>" + nodeDetail.getNodeType().getPrettyName() + "</td>"
-                                + "<td>" + nodeDetail.getAddress() + "</td>"
-                                + "<td>" + nodeDetail.getOwner() + "</td>"
-                                + "<td>" + (nodeDetail.hasError() ? "<b>Yes</b>" : "") + "</td>"
-                                + "<td>" + String.valueOf(nodeDetail.getNrErrorsSinceStart()) + "</td>"
-                                + "<td>" + String.valueOf(nodeDetail.getNrErrorsUnreported()) + "</td>"
-                                + "<td>" + String.valueOf(nodeDetail.getErrorMinutesSinceStart()) + "</td>"
-                                + "<td>" + ((nodeDetail.getExtraString() == null)? "" : String.valueOf(nodeDetail.getExtraString())) + "</td>"
-                                + "<td>" + ((nodeDetail.getErrorReason().size() > 0) ? " reasons: " + nodeDetail.getReasonListAsString() : "") + "</td>"
-                                + "</tr>")
-                        .collect(Collectors.joining("")));
-        builder.append("</table></body></html>");
+        latencyMetrics.writePrometheus(builder);
+        builder.append("# HELP bisq_node_in_error Whether the node failed its last check.\n");
+        builder.append("# TYPE bisq_node_in_error gauge\n");
+        nodeRegistry.getNodes().stream().sorted(Comparator.comparing(nodeDetail -> nodeDetail.getKey().toString())).forEach(nodeDetail ->
+                builder.append("bisq_node_in_error{node_type=\"").append(nodeDetail.getNodeType().name())
+                        .append("\",address=\"").append(LatencyMetrics.escape(nodeDetail.getAddress()))
+                        .append("\",port=\"").append(nodeDetail.getPort())
+                        .append("\",owner=\"").append(LatencyMetrics.escape(String.valueOf(nodeDetail.getOwner())))
+                        .append("\"} ").append(nodeDetail.hasError() ? 1 : 0).append('\n'));
+        builder.append("# HELP bisq_nodes_in_error Number of nodes in error per node type.\n");
+        builder.append("# TYPE bisq_nodes_in_error gauge\n");
+        for (NodeType nodeType : NodeType.values()) {
+            builder.append("bisq_nodes_in_error{node_type=\"").append(nodeType.name()).append("\"} ")
+                    .append(nodeRegistry.getErrorCount(nodeType)).append('\n');
+        }
+        builder.append("# HELP bisq_owner_nodes_in_error Number of nodes in error per owner.\n");
+        builder.append("# TYPE bisq_owner_nodes_in_error gauge\n");
+        nodeRegistry.getErrorCountsByOwner().forEach((owner, count) ->
+                builder.append("bisq_owner_nodes_in_error{owner=\"").append(LatencyMetrics.escape(owner)).append("\"} ")
+                        .append(count).append('\n'));
+        builder.append("# HELP bisq_probe_queue_depth Probes waiting for a free slot.\n");
+        builder.append("# TYPE bisq_probe_queue_depth gauge\n");
+        builder.append("bisq_probe_queue_depth ").append(probeEngine.getQueueDepth()).append('\n');
+        builder.append("# HELP bisq_probe_running Probes currently running.\n");
+        builder.append("# TYPE bisq_probe_running gauge\n");
+        builder.append("bisq_probe_running ").append(probeEngine.getRunningCount()).append('\n');
+        builder.append("# HELP bisq_retry_pending Followup checks waiting on the retry scheduler.\n");
+        builder.append("# TYPE bisq_retry_pending gauge\n");
+        builder.append("bisq_retry_pending ").append(retryScheduler.getPendingCount()).append('\n');
+        TorPool pool = torPool;
+        if (pool != null) {
+            pool.writePrometheus(builder);
+        }
+        slackDispatcher.writePrometheus(builder);
+        AdaptiveScheduler currentScheduler = scheduler;
+        if (currentScheduler != null) {
+            currentScheduler.writePrometheus(builder);
+        }
+        builder.append("# HELP bisq_probe_deadline_cancelled_total Probes cancelled because they missed their deadline.\n");
+        builder.append("# TYPE bisq_probe_deadline_cancelled_total counter\n");
+        builder.append("bisq_probe_deadline_cancelled_total ").append(probeEngine.getCancelledAtDeadline()).append('\n');
+        long timeToFirstCheckMillis = getTimeToFirstCheckMillis();
+        if (timeToFirstCheckMillis >= 0) {
+            builder.append("# HELP bisq_startup_time_to_first_check_seconds Time from the start of the process to the end of its first check.\n");
+            builder.append("# TYPE bisq_startup_time_to_first_check_seconds gauge\n");
+            builder.append("bisq_startup_time_to_first_check_seconds ").append(timeToFirstCheckMillis / 1000.0).append('\n');
+        }
         return builder.toString();
     }
 
+    /**
+     * History of all nodes with the given address as JSON. 'from' and 'to' are epoch millis and default to the last
+     * 24 hours, without a resolution the finest one that suits the range is used.
+     *
+     * @throws IllegalArgumentException if a parameter is malformed, /history answers 400 then
+     */
+    public String queryHistory(String address, String from, String to, String resolution) throws JsonProcessingException {
+        long toMillis = to != null ? parseMillis("to", to) : System.currentTimeMillis();
+        long fromMillis = from != null ? parseMillis("from", from) : toMillis - 24 * 60 * 60 * 1000L;
+        if (fromMillis > toMillis) {
+            throw new IllegalArgumentException("'from' is after 'to'");
+        }
+        ProbeHistoryStore.Resolution parsedResolution = resolution != null ? ProbeHistoryStore.Resolution.fromLabel(resolution) : null;
+        if (probeHistory == null || address == null) {
+            return "[]";
+        }
+        List<NodeKey> keys = nodeRegistry.findByAddress(address).stream()
+                .map(NodeDetail::getKey)
+                .collect(Collectors.toList());
+        List<ProbeHistoryStore.HistoryPoint> points = probeHistory.query(keys, fromMillis, toMillis, parsedResolution);
+        return JSON_MAPPER.writeValueAsString(points);
+    }
+
+    private static long parseMillis(String name, String value) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("'" + name + "' is no epoch millis: " + value);
+        }
+    }
+
     private long getErrorCount() {
-        return allNodes.stream().filter(nodeDetail -> nodeDetail.hasError()).count();
+        return nodeRegistry.getErrorCount();
     }
 
     private String padRight(String s, int padding) {
@@ -401,16 +895,46 @@ public class Monitoring {
         }
     }
 
-    private static List<NodeDetail> getSeednodesFromConfig(Monitoring monitoring) {
-        return monitoring.getNodeConfig().getSeednodes().stream().map(s -> new NodeDetail(s.getAddress(), s.getPort(), s.getOwner(), NodeType.SEED_NODE, s.isTor())).collect(Collectors.toList());
+    /**
+     * The nodes of the config, a node whose type no check on the classpath handles is left out.
+     */
+    static List<NodeDetail> nodesFromConfig(NodeConfig config, Map<String, NodeCheck> checks) {
+        List<NodeDetail> nodes = new ArrayList<>();
+        addNodes(nodes, config.getPricenodes(), PriceNodeCheck.TYPE, checks);
+        addNodes(nodes, config.getBtcnodes(), BtcNodeCheck.TYPE, checks);
+        addNodes(nodes, config.getSeednodes(), SeedNodeCheck.TYPE, checks);
+        addNodes(nodes, config.getNodes(), null, checks);
+        return nodes;
     }
 
-    private static List<NodeDetail> getBtcNodesFromConfig(Monitoring monitoring) {
-        return monitoring.getNodeConfig().getBtcnodes().stream().map(s -> new NodeDetail(s.getAddress(), 8333, s.getOwner(), NodeType.BTC_NODE, s.isTor())).collect(Collectors.toList());
+    private static void addNodes(List<NodeDetail> nodes, List<Node> configured, String listType, Map<String, NodeCheck> checks) {
+        if (configured == null) {
+            return;
+        }
+        for (Node node : configured) {
+            String type = node.getType() != null ? node.getType() : listType;
+            NodeCheck check = type != null ? checks.get(type) : null;
+            if (check == null) {
+                log.warn("Ignoring node {}, no check for node type '{}'", node.getAddress(), type);
+                continue;
+            }
+            NodeDetail nodeDetail = new NodeDetail(node.getAddress(), node.getPort() > 0 ? node.getPort() : check.getDefaultPort(),
+                    node.getOwner(), check.getNodeType(), node.isTor());
+            nodeDetail.setCheckType(check.getType());
+            nodes.add(nodeDetail);
+        }
     }
 
-    private static List<NodeDetail> getPricenodesFromConfig(Monitoring monitoring) {
-        return monitoring.getNodeConfig().getPricenodes().stream().map(s -> new NodeDetail(s.getAddress(), 8080, s.getOwner(), NodeType.PRICE_NODE, s.isTor())).collect(Collectors.toList());
+    static Map<String, NodeCheck> loadNodeChecks() {
+        Map<String, NodeCheck> checks = new LinkedHashMap<>();
+        for (NodeCheck check : ServiceLoader.load(NodeCheck.class)) {
+            NodeCheck previous = checks.putIfAbsent(check.getType(), check);
+            if (previous != null) {
+                log.warn("Ignoring {}, {} checks node type '{}' already", check.getClass().getName(),
+                        previous.getClass().getName(), check.getType());
+            }
+        }
+        return checks;
     }
 
     public static void main(String[] args) throws IOException {
@@ -427,6 +951,14 @@ public class Monitoring {
         parser.accepts(LOCAL_YAML, "Override the default nodes.yaml file with a local file")
                 .withRequiredArg().ofType(String.class);
         parser.accepts(TEST, "do a test run of the app, without actually checking anything");
+        parser.accepts(HISTORY_DIR, "Directory for the probe history files (default: history)")
+                .withRequiredArg().ofType(String.class);
+        parser.accepts(PORT, "Port of the web server (default: 8080)")
+                .withRequiredArg().ofType(Integer.class);
+        parser.accepts(CLUSTER_SELF, "Cluster mode: the url the other instances reach this one at, e.g. http://10.0.0.1:8080")
+                .withRequiredArg().ofType(String.class);
+        parser.accepts(CLUSTER_PEERS, "Cluster mode: comma separated urls of all instances")
+                .withRequiredArg().ofType(String.class);
 
         OptionSet options;
         try {
@@ -445,20 +977,23 @@ public class Monitoring {
         slackSeedSecretData = (options.has(SLACK_SEED_SECRET) && options.hasArgument(SLACK_SEED_SECRET)) ? (String) options.valueOf(SLACK_SEED_SECRET) : null;
         slackBTCSecretData = (options.has(SLACK_BTC_SECRET) && options.hasArgument(SLACK_BTC_SECRET)) ? (String) options.valueOf(SLACK_BTC_SECRET) : null;
         isTest = (options.has(TEST));
+        if (options.has(HISTORY_DIR) && options.hasArgument(HISTORY_DIR)) {
+            historyDirData = (String) options.valueOf(HISTORY_DIR);
+        }
 
         if (isSlackEnabled) {
             log.info("Slack enabled");
             if (slackPriceSecretData != null) {
                 log.info("Using Price slack secret: {}", slackPriceSecretData);
-                priceApi = new SlackApi(slackPriceSecretData);
+                priceApi = new SlackWebhook("price", slackPriceSecretData);
             }
             if (slackSeedSecretData != null) {
                 log.info("Using Seed slack secret: {}", slackSeedSecretData);
-                seedApi = new SlackApi(slackSeedSecretData);
+                seedApi = new SlackWebhook("seed", slackSeedSecretData);
             }
             if (slackBTCSecretData != null) {
                 log.info("Using BTC full node slack secret: {}", slackBTCSecretData);
-                btcApi = new SlackApi(slackBTCSecretData);
+                btcApi = new SlackWebhook("btc", slackBTCSecretData);
             }
 
             if (priceApi == null && seedApi == null && btcApi == null) {
@@ -479,29 +1014,49 @@ public class Monitoring {
         NodeYamlReader reader = new NodeYamlReader(yamlContent);
 
         Monitoring monitoring = new Monitoring(reader.getNodeConfig());
+        monitoring.openProbeHistory(Paths.get(historyDirData));
+        monitoring.openProbeJournal(Paths.get(historyDirData, JOURNAL_DIR));
 
         log.info("Startup. All nodes in error will be shown fully in this first run.");
-        int counter = 0;
-        boolean isReportingLoop;
 
         // add all nodes to the node info list
-        List<NodeDetail> pricenodesFromConfig = getPricenodesFromConfig(monitoring);
-        List<NodeDetail> btcNodesFromConfig = getBtcNodesFromConfig(monitoring);
-        List<NodeDetail> seednodesFromConfig = getSeednodesFromConfig(monitoring);
-        monitoring.allNodes.addAll(pricenodesFromConfig);
-        monitoring.allNodes.addAll(btcNodesFromConfig);
-        monitoring.allNodes.addAll(seednodesFromConfig);
-
-        if (!isTest) {
-            try {
-                Thread.sleep(10000); //wait 10 seconds so that tor is started
-            } catch (InterruptedException e) {
-                log.error("Failed during initial sleep", e);
-            }
+        monitoring.addNodesFromConfig();
+        if (localYamlData != null) {
+            // nodes added to or removed from the local yaml are picked up without a restart
+            new ConfigWatcher(Paths.get(localYamlData), monitoring::reloadConfig);
         }
-        port(8080);
+
+        // restoring the node state and bootstrapping Tor run while the web server starts, the checks start as soon as
+        // the state is restored, those of the onion nodes once Tor is ready
+        Path snapshotFile = Paths.get(historyDirData, SNAPSHOT_FILE);
+        CompletableFuture<Integer> restored = CompletableFuture.supplyAsync(() -> monitoring.restoreSnapshot(snapshotFile));
+        long torStart = System.currentTimeMillis();
+        CompletableFuture<Boolean> torStarted = isTest ? CompletableFuture.completedFuture(false) : monitoring.startTorAsync();
+        port(options.has(PORT) ? (int) options.valueOf(PORT) : 8080);
         get("/ping", (req, res) -> "pong");
-        get("/status", (req, res) -> monitoring.printAllNodesReportHtml());
+        get("/status", monitoring::serveStatusPage);
+        get("/api/nodes", (req, res) -> {
+            res.type("application/json");
+            return monitoring.printAllNodesJson();
+        });
+        get("/api/events", monitoring.getEventStream()::serve);
+        get(Cluster.SHARD_PATH, (req, res) -> {
+            res.type("application/json");
+            return monitoring.printShardJson();
+        });
+        get("/metrics", (req, res) -> {
+            res.type("text/plain; version=0.0.4");
+            return monitoring.printMetrics();
+        });
+        get("/history", (req, res) -> {
+            res.type("application/json");
+            try {
+                return monitoring.queryHistory(req.queryParams("node"), req.queryParams("from"), req.queryParams("to"), req.queryParams("resolution"));
+            } catch (IllegalArgumentException e) {
+                res.status(400);
+                return JSON_MAPPER.writeValueAsString(Collections.singletonMap("error", e.getMessage()));
+            }
+        });
         Logger.getLogger("org").setLevel(Level.OFF);
         Logger.getLogger("akka").setLevel(Level.OFF);
 
@@ -515,25 +1070,71 @@ public class Monitoring {
                 }
             }
         }
-        monitoring.startTor();
-
-        while (true) {
-            try {
-                log.info("Starting checks...");
-                monitoring.checkPriceNodes(pricenodesFromConfig, priceApi);
-                monitoring.checkSeedNodes(seednodesFromConfig, seedApi);
-                monitoring.checkBitcoinNode(btcNodesFromConfig, btcApi);
-                log.info("Stopping checks, now sleeping for {} seconds.", LOOP_SLEEP_SECONDS);
-            } catch (Throwable e) {
-                log.error("Could not send message to slack", e);
-            }
-            counter++;
-            try {
-                Thread.sleep(1000 * LOOP_SLEEP_SECONDS);
-            } catch (InterruptedException e) {
-                log.error("Error during sleep", e);
-            }
+        restored.join();
+        ScheduledExecutorService snapshotWriter = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("snapshot").setDaemon(true).build());
+        snapshotWriter.scheduleWithFixedDelay(() -> monitoring.saveSnapshot(snapshotFile),
+                SNAPSHOT_INTERVAL_SECS, SNAPSHOT_INTERVAL_SECS, TimeUnit.SECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> monitoring.saveSnapshot(snapshotFile), "snapshot-on-exit"));
+        // the peers' state is newer than the snapshot, so the cluster syncs only after the restore
+        if (options.has(CLUSTER_SELF) && options.has(CLUSTER_PEERS)) {
+            List<String> peers = Arrays.asList(((String) options.valueOf(CLUSTER_PEERS)).split(","));
+            monitoring.joinCluster(new Cluster((String) options.valueOf(CLUSTER_SELF), peers, processTimeoutSeconds * 1000),
+                    Cluster.DEFAULT_SYNC_SECS);
         }
+        // every node is checked on its own interval, the circuit of an onion node is prewarmed shortly before its check
+        monitoring.startScheduling();
+        torStarted.whenComplete((started, e) -> {
+            if (e != null) {
+                log.error("Tor could not be started, onion nodes will fail their checks", e);
+            } else if (started) {
+                log.info("Tor is ready after {} ms, checking the onion nodes too", System.currentTimeMillis() - torStart);
+            } else {
+                log.error("Tor could not be started, onion nodes will fail their checks");
+            }
+        });
     }
 
+    private class CheckContext implements NodeCheck.Context {
+        @Override
+        public NodeConfig getNodeConfig() {
+            return nodeConfig;
+        }
+
+        @Override
+        public int getTimeoutMillis() {
+            return processTimeoutSeconds * 1000;
+        }
+
+        @Override
+        public TorPool.Route route(NodeDetail node) {
+            TorPool pool = torPool;
+            return node.isTor && pool != null ? pool.route(node.getKey()) : null;
+        }
+
+        @Override
+        public TorHttpClient getHttpClient() {
+            return httpClient;
+        }
+
+        @Override
+        public ResponseValidator getResponseValidator() {
+            return responseValidator;
+        }
+
+        @Override
+        public ReachabilityProber getReachabilityProber() {
+            return reachabilityProber;
+        }
+
+        @Override
+        public BitcoinHandshakeEngine getHandshakeEngine() {
+            return handshakeEngine;
+        }
+
+        @Override
+        public Executor getBlockingExecutor() {
+            return blockingExecutor;
+        }
+    }
 }
@@ -1,5 +1,7 @@
 package io.bisq.monitoring;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -7,9 +9,10 @@ import java.util.regex.Pattern;
 
  */
 public class MonitoringUtil {
+    private static final Map<String, Pattern> compiledPatterns = new ConcurrentHashMap<>();
 
     public static boolean isPatternFound(String target, String regex) {
-        Pattern p = Pattern.compile(regex);
+        Pattern p = compiledPatterns.computeIfAbsent(regex, Pattern::compile);
         Matcher m = p.matcher(target);
         return m.find();
     }
@@ -0,0 +1,75 @@
+package io.bisq.monitoring;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/*
+ * How to check one kind of node, selected by the type of the node in the yaml file. Implementations are found with
+ * ServiceLoader, so a jar that lists one in META-INF/services/io.bisq.monitoring.NodeCheck adds a node type without a
+ * change to the monitor. A check returns at once and completes its future when done, it never blocks the caller.
+ */
+public interface NodeCheck {
+
+    /**
+     * @return the type of the yaml nodes this check handles, e.g. "seednode"
+     */
+    String getType();
+
+    /**
+     * @return the node type the nodes are registered, keyed and reported under
+     */
+    NodeType getNodeType();
+
+    /**
+     * @return the port of yaml nodes listed without one
+     */
+    int getDefaultPort();
+
+    /**
+     * @return the port the check connects to, the Tor circuit to it is prewarmed
+     */
+    default int getConnectPort(NodeDetail node) {
+        return node.getPort();
+    }
+
+    /**
+     * Only called for an onion node once Tor is started.
+     *
+     * @return completes with the outcome of the check, an exceptional completion counts as a failed check
+     */
+    CompletableFuture<CheckResult> check(NodeDetail node, Context context);
+
+    /**
+     * Called when a reloaded config no longer lists the node, a check forgets what it kept about it.
+     */
+    default void nodeRemoved(NodeDetail node) {
+    }
+
+    /**
+     * What the monitor shares with the checks.
+     */
+    interface Context {
+        NodeConfig getNodeConfig();
+
+        int getTimeoutMillis();
+
+        /**
+         * @return the Tor route of an onion node to close when the check is done, null for a clearnet node
+         */
+        TorPool.Route route(NodeDetail node);
+
+        TorHttpClient getHttpClient();
+
+        ResponseValidator getResponseValidator();
+
+        ReachabilityProber getReachabilityProber();
+
+        BitcoinHandshakeEngine getHandshakeEngine();
+
+        /**
+         * @return runs the parts of a check that can only be done blocking, on a bounded pool of its own; a check
+         * whose future gets cancelled should end its blocking work
+         */
+        Executor getBlockingExecutor();
+    }
+}
@@ -1,8 +1,10 @@
 package io.bisq.monitoring;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Data;
 
 import java.util.ArrayList;
+import java.util.Map;
 
 /*
 
@@ -11,9 +13,27 @@ import java.util.ArrayList;
 public class NodeConfig {
     private int nodeTimeoutSecs;
     private String pricenodeVersion;
+    private ArrayList<ResponseAssertion> pricenodeAssertions;
+    private int maxPriceDeviationPercent;
+    private int maxPriceAgeSecs;
+    private ArrayList<CustomCheck> customChecks;
+    private int maxConcurrentCustomChecks;
+    private int maxConcurrentProbes;
+    private Map<String, Integer> maxConcurrentProbesPerType;
+    private int minCheckIntervalSecs;
+    private int maxCheckIntervalSecs;
+    private int probeBudgetPerMinute;
+    private int retryBaseDelaySecs;
+    private int retryMaxDelaySecs;
+    private int maxConcurrentRetries;
+    private int torInstances;
+    private String torDirectory;
+    private ArrayList<String> torSocksPorts;
     private ArrayList<Node> pricenodes;
     private ArrayList<Node> seednodes;
     private ArrayList<Node> btcnodes;
+    // nodes of any type, e.g. of a NodeCheck from another jar
+    private ArrayList<Node> nodes;
 }
 
 @Data
@@ -21,7 +41,10 @@ class Node {
     public String address;
     public int port;
     public String owner;
+    // the NodeCheck type, set by the list for pricenodes, seednodes and btcnodes
+    public String type;
 
+    @JsonIgnore
     public boolean isTor() {
         return address.contains(".onion");
     }
@@ -0,0 +1,61 @@
+package io.bisq.monitoring;
+
+import lombok.Getter;
+
+import java.util.*;
+
+/*
+ * The difference between the running nodes and the nodes of a reloaded config. Nodes are matched by NodeKey, a node
+ * with the same key but another owner is changed. Everything else of a running node is state of the monitor itself.
+ */
+@Getter
+public class NodeConfigDiff {
+    private static final Set<NodeType> CONFIGURED_TYPES = EnumSet.complementOf(EnumSet.of(NodeType.MONITORING_NODE));
+
+    // nodes of the config that are not running yet
+    private final List<NodeDetail> added = new ArrayList<>();
+    // running nodes the config no longer lists
+    private final List<NodeDetail> removed = new ArrayList<>();
+    // nodes of the config whose running node has another owner
+    private final List<NodeDetail> changed = new ArrayList<>();
+
+    /**
+     * @param running    the nodes being monitored, only the node types a config lists are compared
+     * @param configured the nodes of the reloaded config, a key listed twice counts once
+     */
+    public static NodeConfigDiff between(Collection<NodeDetail> running, Collection<NodeDetail> configured) {
+        NodeConfigDiff diff = new NodeConfigDiff();
+        Map<NodeKey, NodeDetail> runningByKey = new HashMap<>();
+        for (NodeDetail node : running) {
+            runningByKey.put(node.getKey(), node);
+        }
+        Set<NodeKey> seen = new HashSet<>();
+        for (NodeDetail node : configured) {
+            NodeKey key = node.getKey();
+            if (!seen.add(key)) {
+                continue;
+            }
+            NodeDetail current = runningByKey.get(key);
+            if (current == null) {
+                diff.added.add(node);
+            } else if (!Objects.equals(current.getOwner(), node.getOwner())) {
+                diff.changed.add(node);
+            }
+        }
+        for (NodeDetail node : runningByKey.values()) {
+            if (CONFIGURED_TYPES.contains(node.getNodeType()) && !seen.contains(node.getKey())) {
+                diff.removed.add(node);
+            }
+        }
+        return diff;
+    }
+
+    public boolean isEmpty() {
+        return added.isEmpty() && removed.isEmpty() && changed.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return added.size() + " added, " + removed.size() + " removed, " + changed.size() + " changed";
+    }
+}
@@ -1,13 +1,17 @@
 package io.bisq.monitoring;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Data;
-import lombok.Getter;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
 import lombok.extern.slf4j.Slf4j;
 
+import java.time.Instant;
 import java.time.LocalDateTime;
-import java.time.temporal.ChronoUnit;
+import java.time.ZoneId;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
@@ -15,6 +19,8 @@ import java.util.stream.Collectors;
 
  */
 @Data
+@EqualsAndHashCode(exclude = "availability")
+@ToString(exclude = "availability")
 @Slf4j
 public class NodeDetail implements Comparable<NodeDetail> {
     String address;
@@ -26,10 +32,18 @@ public class NodeDetail implements Comparable<NodeDetail> {
     long nrErrorsSinceStart = 0;
     long nrErrorsUnreported = 0;
     LocalDateTime startTime = LocalDateTime.now();
-    Optional<LocalDateTime> lastErrorTime = Optional.empty();
-    long errorMinutesSinceStart = 0;
+    long lastErrorMillis = -1; // epoch millis of the last error, -1 when not in error
+    long errorMillisSinceStart = 0;
+    long lastLatencyMillis = -1; // duration of the last successful check
+    final AvailabilityTracker availability = new AvailabilityTracker();
+    // uptime and repair times as reported by the cluster instance that checks the node, null if checked here
+    Map<String, Double> peerUptimePercent;
+    Map<String, Long> peerMttrMillis;
 
     List<String> errorReason = new ArrayList<>();
+    // the NodeCheck that checks the node, null for the one of its node type
+    @JsonIgnore
+    String checkType;
 
     public NodeDetail(String address, int port, String owner, NodeType nodeType, boolean isTor) {
         this.address = address;
@@ -39,6 +53,10 @@ public class NodeDetail implements Comparable<NodeDetail> {
         this.isTor = isTor;
     }
 
+    public NodeKey getKey() {
+        return NodeKey.of(this);
+    }
+
     @Override
     public int compareTo(NodeDetail o) {
         return getNodeType().compareTo(o.getNodeType());
@@ -46,7 +64,34 @@ public class NodeDetail implements Comparable<NodeDetail> {
 
 
     public boolean hasError() {
-        return getLastErrorTime().isPresent();
+        return lastErrorMillis >= 0;
+    }
+
+    public Optional<LocalDateTime> getLastErrorTime() {
+        return hasError()
+                ? Optional.of(LocalDateTime.ofInstant(Instant.ofEpochMilli(lastErrorMillis), ZoneId.systemDefault()))
+                : Optional.empty();
+    }
+
+    public long getErrorMinutesSinceStart() {
+        return errorMillisSinceStart / 60000;
+    }
+
+    /**
+     * @return uptime in percent by window, e.g. "24h", from the checks of this instance or else from the cluster peer
+     * that checks the node
+     */
+    public Map<String, Double> getUptimePercent() {
+        return availability.hasData() || peerUptimePercent == null
+                ? availability.getUptimePercent(System.currentTimeMillis()) : peerUptimePercent;
+    }
+
+    /**
+     * @return mean time to repair by window, for windows with a repair
+     */
+    public Map<String, Long> getMttrMillis() {
+        return availability.hasData() || peerMttrMillis == null
+                ? availability.getMttrMillis(System.currentTimeMillis()) : peerMttrMillis;
     }
 
     /**
@@ -54,7 +99,7 @@ public class NodeDetail implements Comparable<NodeDetail> {
      * @return true if an existing error condition was updated, false if a new error was added
      */
     public boolean addError(String reason) {
-        LocalDateTime now = LocalDateTime.now();
+        long now = System.currentTimeMillis();
         String finalReason = (reason == null || reason.isEmpty()) ? "Empty reason" : reason;
         if(!getErrorReason().contains(finalReason)) {
             getErrorReason().add(finalReason);
@@ -62,26 +107,24 @@ public class NodeDetail implements Comparable<NodeDetail> {
         setNrErrorsSinceStart(getNrErrorsSinceStart()+1);
 
         if (!hasError()) {
-            setLastErrorTime(Optional.of(now));
+            setLastErrorMillis(now);
             nrErrorsUnreported++;
             return false;
         } else {
-            setErrorMinutesSinceStart(getErrorMinutesSinceStart()
-                    + ChronoUnit.MINUTES.between(now, getLastErrorTime().get()));
-            setLastErrorTime(Optional.of(now));
+            errorMillisSinceStart += Math.max(0, now - lastErrorMillis);
+            setLastErrorMillis(now);
             nrErrorsUnreported++;
             return true;
         }
     }
 
     public boolean clearError() {
-        if(!getLastErrorTime().isPresent()) {
+        if(!hasError()) {
             log.debug("No error time was present when calling clearError");
             return false;
         }
-        setErrorMinutesSinceStart(getErrorMinutesSinceStart()
-                + ChronoUnit.MINUTES.between(getLastErrorTime().get(), LocalDateTime.now()));
-        setLastErrorTime(Optional.empty());
+        errorMillisSinceStart += Math.max(0, System.currentTimeMillis() - lastErrorMillis);
+        setLastErrorMillis(-1);
         getErrorReason().clear();
         setNrErrorsUnreported(0);
         return true;
@@ -91,15 +134,3 @@ public class NodeDetail implements Comparable<NodeDetail> {
         return errorReason.stream().collect(Collectors.joining(" | "));
     }
 }
-
-enum NodeType {
-    PRICE_NODE("Price node"), SEED_NODE("Seed node"), BTC_NODE("Bitcoin node"), MONITORING_NODE("Monitoring node");
-
-    @Getter
-    private final String prettyName;
-
-    NodeType(String prettyName) {
-        this.prettyName = prettyName;
-    }
-
-}
@@ -0,0 +1,38 @@
+package io.bisq.monitoring;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+
+/*
+ * A change in the state of a node, as pushed to /api/events.
+ */
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class NodeEvent {
+    public enum Type {
+        ERROR, RECOVERED, LATENCY_CHANGED, EXTRA_CHANGED
+    }
+
+    long id;
+    Type type;
+    String node;
+    NodeType nodeType;
+    String address;
+    int port;
+    long timestamp;
+    // ERROR only
+    String reason;
+    // EXTRA_CHANGED only
+    String extraString;
+    // LATENCY_CHANGED only
+    Long latencyMillis;
+
+    public NodeEvent(Type type, NodeDetail detail) {
+        this.type = type;
+        this.node = detail.getKey().toString();
+        this.nodeType = detail.getNodeType();
+        this.address = detail.getAddress();
+        this.port = detail.getPort();
+        this.timestamp = System.currentTimeMillis();
+    }
+}
@@ -0,0 +1,179 @@
+package io.bisq.monitoring;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import spark.Request;
+import spark.Response;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Turns node updates into change events and pushes them to Server-Sent-Events clients. Only changes are sent: a
+ * node going into error or recovering, a different extra string or a notable change in check latency. The last
+ * events are kept, so a client reconnecting with Last-Event-ID gets what it missed.
+ */
+@Slf4j
+public class NodeEventStream {
+    public static final int DEFAULT_MAX_CLIENTS = 32;
+    static final int HISTORY_SIZE = 256;
+    static final int CLIENT_QUEUE_SIZE = 256;
+    static final long KEEP_ALIVE_MILLIS = 15 * 1000;
+    // latency changes smaller than this, and than a fifth of the last published latency, are not published
+    static final long MIN_LATENCY_CHANGE_MILLIS = 50;
+
+    private static final ObjectMapper JSON_MAPPER = new ObjectMapper();
+
+    private final int maxClients;
+    private final List<BlockingQueue<NodeEvent>> clients = new CopyOnWriteArrayList<>();
+    private final Map<NodeKey, PublishedState> published = new ConcurrentHashMap<>();
+    // guarded by 'history'
+    private final Deque<NodeEvent> history = new ArrayDeque<>();
+    private long nextId = 1;
+
+    public NodeEventStream() {
+        this(DEFAULT_MAX_CLIENTS);
+    }
+
+    public NodeEventStream(int maxClients) {
+        this.maxClients = maxClients;
+    }
+
+    /**
+     * Compare the node with what was last published for it and publish the differences.
+     */
+    public void nodeUpdated(NodeDetail node) {
+        PublishedState state = published.computeIfAbsent(node.getKey(), key -> new PublishedState());
+        List<NodeEvent> events = new ArrayList<>();
+        synchronized (state) {
+            if (node.hasError() != state.inError) {
+                NodeEvent event = new NodeEvent(node.hasError() ? NodeEvent.Type.ERROR : NodeEvent.Type.RECOVERED, node);
+                if (node.hasError()) {
+                    event.setReason(node.getReasonListAsString());
+                }
+                events.add(event);
+                state.inError = node.hasError();
+            }
+            if (!Objects.equals(node.getExtraString(), state.extraString)) {
+                NodeEvent event = new NodeEvent(NodeEvent.Type.EXTRA_CHANGED, node);
+                event.setExtraString(node.getExtraString());
+                events.add(event);
+                state.extraString = node.getExtraString();
+            }
+            long latency = node.getLastLatencyMillis();
+            long change = Math.abs(latency - state.latencyMillis);
+            if (latency >= 0 && (state.latencyMillis < 0 || (change >= MIN_LATENCY_CHANGE_MILLIS && change * 5 >= state.latencyMillis))) {
+                NodeEvent event = new NodeEvent(NodeEvent.Type.LATENCY_CHANGED, node);
+                event.setLatencyMillis(latency);
+                events.add(event);
+                state.latencyMillis = latency;
+            }
+        }
+        events.forEach(this::publish);
+    }
+
+    public void publish(NodeEvent event) {
+        synchronized (history) {
+            event.setId(nextId++);
+            history.addLast(event);
+            if (history.size() > HISTORY_SIZE) {
+                history.removeFirst();
+            }
+            for (BlockingQueue<NodeEvent> client : clients) {
+                if (!client.offer(event)) {
+                    // a client that cannot keep up is dropped, it can reconnect and catch up with Last-Event-ID
+                    client.clear();
+                    clients.remove(client);
+                }
+            }
+        }
+    }
+
+    public int getClientCount() {
+        return clients.size();
+    }
+
+    /**
+     * Streams events until the client disconnects, blocking the calling server thread.
+     */
+    public Object serve(Request request, Response response) throws IOException {
+        BlockingQueue<NodeEvent> queue = new ArrayBlockingQueue<>(CLIENT_QUEUE_SIZE);
+        if (!subscribe(queue, parseEventId(request.headers("Last-Event-ID")))) {
+            response.status(503);
+            return "Too many event stream clients";
+        }
+
+        HttpServletResponse raw = response.raw();
+        raw.setContentType("text/event-stream; charset=utf-8");
+        raw.setHeader("Cache-Control", "no-cache");
+        OutputStream out = raw.getOutputStream();
+        try {
+            out.write(": connected\n\n".getBytes(StandardCharsets.UTF_8));
+            raw.flushBuffer();
+            while (clients.contains(queue)) {
+                NodeEvent event = queue.poll(KEEP_ALIVE_MILLIS, TimeUnit.MILLISECONDS);
+                out.write(event != null ? format(event) : ": keep-alive\n\n".getBytes(StandardCharsets.UTF_8));
+                raw.flushBuffer();
+            }
+        } catch (IOException e) {
+            log.debug("Event stream client went away: {}", e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            clients.remove(queue);
+        }
+        // the response is committed, Spark does not write anything after this
+        return "";
+    }
+
+    /**
+     * @param lastEventId replay the kept events after this one first, -1 for none
+     * @return false if the stream already has its maximum number of clients
+     */
+    boolean subscribe(BlockingQueue<NodeEvent> queue, long lastEventId) {
+        // under the same lock as publish, so an event is either replayed or offered, never both; and checking the
+        // count under it keeps concurrent connects from all passing the limit
+        synchronized (history) {
+            if (clients.size() >= maxClients) {
+                return false;
+            }
+            if (lastEventId >= 0) {
+                for (NodeEvent event : history) {
+                    if (event.getId() > lastEventId) {
+                        queue.offer(event);
+                    }
+                }
+            }
+            clients.add(queue);
+        }
+        return true;
+    }
+
+    private static long parseEventId(String lastEventId) {
+        try {
+            return lastEventId != null ? Long.parseLong(lastEventId.trim()) : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    static byte[] format(NodeEvent event) throws JsonProcessingException {
+        return ("id: " + event.getId() + "\nevent: " + event.getType().name().toLowerCase(Locale.ROOT)
+                + "\ndata: " + JSON_MAPPER.writeValueAsString(event) + "\n\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static class PublishedState {
+        boolean inError;
+        String extraString;
+        long latencyMillis = -1;
+    }
+}
@@ -0,0 +1,631 @@
+package io.bisq.monitoring;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import joptsimple.OptionException;
+import joptsimple.OptionParser;
+import joptsimple.OptionSet;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.management.ThreadMXBean;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/*
+ * Fake nodes on the loopback interface for load testing the monitor without network: pricenodes serving the four
+ * endpoints, seednodes accepting connections and bitcoin nodes answering the version handshake. One selector thread
+ * serves all of them, so a farm of thousands of nodes fits in one process. createConfig() lists the nodes.
+ */
+@Slf4j
+public class NodeFarm implements Closeable {
+    public static final String PRICENODE_VERSION = "0.7.2-SNAPSHOT";
+    static final String BTC_USER_AGENT = "/Satoshi:0.15.1/";
+    static final int BUFFER_SIZE = 4096;
+
+    private static final byte[] SERVICE_UNAVAILABLE = httpResponse("503 Service Unavailable", "");
+    private static final byte[] NOT_FOUND = httpResponse("404 Not Found", "");
+    private static final byte[] FEES = httpResponse("200 OK",
+            "{\"dataMap\":{\"dogeTxFee\":5000000,\"dashTxFee\":50,\"btcTxFee\":20,\"ltcTxFee\":500},\"bitcoinFeesTs\":1519047027}");
+    private static final byte[] PARAMS = httpResponse("200 OK", "simulated pricenode");
+    private static final byte[] VERSION = httpResponse("200 OK", PRICENODE_VERSION);
+    private static final byte[] VERSION_VERACK = versionAndVerack();
+    private static final long MARKET_PRICES_REFRESH_MILLIS = 60 * 1000L;
+
+    private final Selector selector;
+    private final List<FakeNode> nodes = new ArrayList<>();
+    // responses of /getAllMarketPrices by payload size, restamped every minute so the prices never go stale
+    private final Map<Integer, byte[]> marketPrices = new HashMap<>();
+    private long marketPricesMillis = System.currentTimeMillis();
+    private final Random random = new Random();
+    // only touched by the selector thread
+    private final PriorityQueue<Timer> timers = new PriorityQueue<>();
+    private long timerSequence;
+    private Thread selectorThread;
+    private volatile boolean running = true;
+
+    /*
+     * How a fake node behaves. Seednodes are only checked for a TCP connect, which the kernel completes before the
+     * farm sees it, so for them only flapping leads to failed checks.
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Behaviour {
+        // delay before every answer
+        private long latencyMillis;
+        // chance that an answer is an error: HTTP 503 from a pricenode, a dropped connection from a bitcoin node
+        private double failureRate;
+        // approximate size of the /getAllMarketPrices body in bytes
+        private int payloadSize = 8 * 1024;
+        // the node alternates between up and down phases of this length, 0 is always up
+        private long flapPeriodMillis;
+    }
+
+    public NodeFarm() throws IOException {
+        this.selector = Selector.open();
+    }
+
+    /**
+     * Start count fake nodes of the given type, each listening on its own loopback port.
+     */
+    public synchronized void addNodes(NodeType nodeType, int count, Behaviour behaviour) throws IOException {
+        if (selectorThread != null) {
+            throw new IllegalStateException("Nodes must be added before the farm is started");
+        }
+        if (nodeType == NodeType.PRICE_NODE) {
+            marketPrices.computeIfAbsent(behaviour.getPayloadSize(), NodeFarm::marketPricesResponse);
+        }
+        for (int i = 0; i < count; i++) {
+            FakeNode node = new FakeNode(nodeType, behaviour);
+            node.listen(0);
+            nodes.add(node);
+        }
+    }
+
+    public synchronized void start() {
+        if (selectorThread != null) {
+            return;
+        }
+        for (FakeNode node : nodes) {
+            if (node.behaviour.getFlapPeriodMillis() > 0) {
+                // spread the flapping, so not all nodes go down at once
+                long period = node.behaviour.getFlapPeriodMillis();
+                schedule((long) (random.nextDouble() * period), () -> flap(node));
+            }
+        }
+        selectorThread = new Thread(this::run, "node-farm");
+        selectorThread.setDaemon(true);
+        selectorThread.start();
+    }
+
+    public int getNodeCount() {
+        return nodes.size();
+    }
+
+    /**
+     * A config listing the nodes of the farm, with the limits of the regular config left at their defaults.
+     */
+    public NodeConfig createConfig() {
+        NodeConfig config = new NodeConfig();
+        config.setNodeTimeoutSecs(10);
+        config.setPricenodeVersion(PRICENODE_VERSION);
+        config.setPricenodes(new ArrayList<>());
+        config.setSeednodes(new ArrayList<>());
+        config.setBtcnodes(new ArrayList<>());
+        for (FakeNode farmNode : nodes) {
+            Node node = new Node();
+            node.setAddress("127.0.0.1");
+            node.setPort(farmNode.port);
+            node.setOwner("@farm");
+            switch (farmNode.type) {
+                case PRICE_NODE:
+                    config.getPricenodes().add(node);
+                    break;
+                case SEED_NODE:
+                    config.getSeednodes().add(node);
+                    break;
+                case BTC_NODE:
+                    config.getBtcnodes().add(node);
+                    break;
+            }
+        }
+        return config;
+    }
+
+    /**
+     * Stops the farm thread, which closes all listeners and connections.
+     */
+    @Override
+    public void close() {
+        running = false;
+        selector.wakeup();
+        if (selectorThread == null) {
+            closeAll();
+            return;
+        }
+        try {
+            selectorThread.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    Thread getSelectorThread() {
+        return selectorThread;
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                long now = System.currentTimeMillis();
+                while (!timers.isEmpty() && timers.peek().dueMillis <= now) {
+                    timers.poll().task.run();
+                }
+                long waitMillis = timers.isEmpty() ? 0 : Math.max(1, timers.peek().dueMillis - now);
+                selector.select(waitMillis);
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.attachment() instanceof FakeNode) {
+                        accept((FakeNode) key.attachment());
+                    } else {
+                        handle((Connection) key.attachment(), key);
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                log.error("Node farm selector loop failed", e);
+            }
+        }
+        closeAll();
+    }
+
+    private void closeAll() {
+        for (SelectionKey key : selector.keys()) {
+            closeQuietly(key);
+        }
+        for (FakeNode node : nodes) {
+            node.stopListening();
+        }
+        try {
+            selector.close();
+        } catch (IOException e) {
+            log.debug("Could not close selector", e);
+        }
+    }
+
+    private void accept(FakeNode node) throws IOException {
+        SocketChannel channel;
+        while (node.server != null && (channel = node.server.accept()) != null) {
+            if (node.type == NodeType.SEED_NODE && random.nextDouble() < node.behaviour.getFailureRate()) {
+                channel.close();
+                continue;
+            }
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            Connection connection = new Connection(node, channel);
+            connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+        }
+    }
+
+    private void handle(Connection connection, SelectionKey key) {
+        try {
+            if (key.isReadable()) {
+                int read = connection.channel.read(connection.in);
+                if (read < 0) {
+                    connection.close();
+                    return;
+                }
+                connection.in.flip();
+                switch (connection.node.type) {
+                    case PRICE_NODE:
+                        readHttpRequests(connection);
+                        break;
+                    case BTC_NODE:
+                        readVersion(connection);
+                        break;
+                    default:
+                        // a seednode only has to be there
+                        connection.in.position(connection.in.limit());
+                }
+                connection.in.compact();
+                if (!connection.in.hasRemaining()) {
+                    throw new IOException("Request too large");
+                }
+            }
+            if (key.isValid() && key.isWritable()) {
+                flush(connection);
+            }
+        } catch (IOException e) {
+            log.debug("Farm connection to {} failed: {}", connection.node.port, e.getMessage());
+            connection.close();
+        }
+    }
+
+    /**
+     * Answers every complete request in the buffer, a client may pipeline several.
+     */
+    private void readHttpRequests(Connection connection) {
+        ByteBuffer in = connection.in;
+        List<byte[]> responses = new ArrayList<>();
+        int end;
+        while ((end = headerEnd(in)) >= 0) {
+            String head = new String(in.array(), in.position(), end - in.position(), StandardCharsets.US_ASCII);
+            in.position(end + 4);
+            String[] requestLine = head.substring(0, Math.max(0, head.indexOf("\r\n"))).split(" ");
+            String path = requestLine.length > 1 ? requestLine[1] : "";
+            responses.add(httpResponseFor(connection.node, path));
+        }
+        if (!responses.isEmpty()) {
+            reply(connection, responses, false);
+        }
+    }
+
+    private byte[] httpResponseFor(FakeNode node, String path) {
+        if (random.nextDouble() < node.behaviour.getFailureRate()) {
+            return SERVICE_UNAVAILABLE;
+        }
+        switch (path) {
+            case "/getFees":
+                return FEES;
+            case "/getAllMarketPrices":
+                if (System.currentTimeMillis() - marketPricesMillis > MARKET_PRICES_REFRESH_MILLIS) {
+                    marketPrices.replaceAll((payloadSize, response) -> marketPricesResponse(payloadSize));
+                    marketPricesMillis = System.currentTimeMillis();
+                }
+                return marketPrices.get(node.behaviour.getPayloadSize());
+            case "/getParams":
+                return PARAMS;
+            case "/getVersion":
+                return VERSION;
+            default:
+                return NOT_FOUND;
+        }
+    }
+
+    private static int headerEnd(ByteBuffer in) {
+        for (int i = in.position(); i + 3 < in.limit(); i++) {
+            if (in.get(i) == '\r' && in.get(i + 1) == '\n' && in.get(i + 2) == '\r' && in.get(i + 3) == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Answers the version message of the client with a version and a verack, everything after it is ignored.
+     */
+    private void readVersion(Connection connection) {
+        ByteBuffer in = connection.in;
+        if (connection.answered) {
+            in.position(in.limit());
+            return;
+        }
+        if (in.remaining() < BitcoinHandshakeEngine.HEADER_LENGTH) {
+            return;
+        }
+        long length = in.order(ByteOrder.LITTLE_ENDIAN).getInt(in.position() + 16) & 0xffffffffL;
+        if (in.remaining() < BitcoinHandshakeEngine.HEADER_LENGTH + length) {
+            return;
+        }
+        in.position(in.limit());
+        connection.answered = true;
+        if (random.nextDouble() < connection.node.behaviour.getFailureRate()) {
+            reply(connection, Collections.emptyList(), true);
+        } else {
+            reply(connection, Collections.singletonList(VERSION_VERACK), false);
+        }
+    }
+
+    private void reply(Connection connection, List<byte[]> responses, boolean closeAfterWrite) {
+        Runnable write = () -> {
+            if (!connection.channel.isOpen()) {
+                return;
+            }
+            for (byte[] response : responses) {
+                connection.out.add(ByteBuffer.wrap(response));
+            }
+            connection.closeAfterWrite |= closeAfterWrite;
+            try {
+                flush(connection);
+            } catch (IOException e) {
+                log.debug("Farm connection to {} failed: {}", connection.node.port, e.getMessage());
+                connection.close();
+            }
+        };
+        long latencyMillis = connection.node.behaviour.getLatencyMillis();
+        if (latencyMillis > 0) {
+            schedule(latencyMillis, write);
+        } else {
+            write.run();
+        }
+    }
+
+    private void flush(Connection connection) throws IOException {
+        while (!connection.out.isEmpty()) {
+            ByteBuffer buffer = connection.out.peek();
+            connection.channel.write(buffer);
+            if (buffer.hasRemaining()) {
+                connection.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                return;
+            }
+            connection.out.poll();
+        }
+        if (connection.closeAfterWrite) {
+            connection.close();
+        } else {
+            connection.key.interestOps(SelectionKey.OP_READ);
+        }
+    }
+
+    /**
+     * Toggles the node between listening and refusing connections, open connections are left alone.
+     */
+    private void flap(FakeNode node) {
+        if (node.server != null) {
+            node.stopListening();
+        } else {
+            try {
+                node.listen(node.port);
+            } catch (IOException e) {
+                log.warn("Could not listen on port {} again: {}", node.port, e.getMessage());
+            }
+        }
+        schedule(node.behaviour.getFlapPeriodMillis(), () -> flap(node));
+    }
+
+    private void schedule(long delayMillis, Runnable task) {
+        timers.add(new Timer(System.currentTimeMillis() + delayMillis, timerSequence++, task));
+    }
+
+    private static void closeQuietly(SelectionKey key) {
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException e) {
+            log.debug("Could not close channel", e);
+        }
+    }
+
+    private static byte[] httpResponse(String status, String body) {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        byte[] head = ("HTTP/1.1 " + status + "\r\n"
+                + "Content-Type: " + (body.startsWith("{") ? "application/json" : "text/plain") + "\r\n"
+                + "Content-Length: " + bytes.length + "\r\n"
+                + "Connection: keep-alive\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+        byte[] response = Arrays.copyOf(head, head.length + bytes.length);
+        System.arraycopy(bytes, 0, response, head.length, bytes.length);
+        return response;
+    }
+
+    private static byte[] marketPricesResponse(int payloadSize) {
+        long timestampSec = System.currentTimeMillis() / 1000;
+        StringBuilder body = new StringBuilder("{\"data\":[");
+        body.append("{\"currencyCode\":\"XMR\",\"price\":0.0245,\"timestampSec\":").append(timestampSec)
+                .append(",\"provider\":\"POLO\"}");
+        for (int i = 0; body.length() < payloadSize; i++) {
+            body.append(",{\"currencyCode\":\"C").append(String.format("%03d", i % 1000))
+                    .append("\",\"price\":").append(1 + i % 97).append(".5,\"timestampSec\":").append(timestampSec).append(",\"provider\":\"BTCA\"}");
+        }
+        return httpResponse("200 OK", body.append("]}").toString());
+    }
+
+    private static byte[] versionAndVerack() {
+        byte[] userAgent = BTC_USER_AGENT.getBytes(StandardCharsets.US_ASCII);
+        ByteBuffer payload = ByteBuffer.allocate(86 + userAgent.length).order(ByteOrder.LITTLE_ENDIAN);
+        // network, getutxo and bloom services, like the full nodes the monitor expects
+        payload.putInt(BitcoinHandshakeEngine.PROTOCOL_VERSION).putLong(13).putLong(System.currentTimeMillis() / 1000)
+                .put(new byte[26]).put(new byte[26]).putLong(42)
+                .put((byte) userAgent.length).put(userAgent).putInt(500000).put((byte) 1);
+        byte[] version = message("version", payload.array());
+        byte[] verack = message("verack", new byte[0]);
+        byte[] both = Arrays.copyOf(version, version.length + verack.length);
+        System.arraycopy(verack, 0, both, version.length, verack.length);
+        return both;
+    }
+
+    private static byte[] message(String command, byte[] payload) {
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            byte[] hash = sha256.digest(sha256.digest(payload));
+            ByteBuffer buffer = ByteBuffer.allocate(BitcoinHandshakeEngine.HEADER_LENGTH + payload.length).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(BitcoinHandshakeEngine.MAINNET_MAGIC).put(Arrays.copyOf(command.getBytes(StandardCharsets.US_ASCII), 12))
+                    .putInt(payload.length).put(hash, 0, 4).put(payload);
+            return buffer.array();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private class FakeNode {
+        final NodeType type;
+        final Behaviour behaviour;
+        int port;
+        // null while the node is down
+        ServerSocketChannel server;
+
+        FakeNode(NodeType type, Behaviour behaviour) {
+            this.type = type;
+            this.behaviour = behaviour;
+        }
+
+        void listen(int port) throws IOException {
+            ServerSocketChannel channel = ServerSocketChannel.open();
+            try {
+                channel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+                channel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 128);
+                channel.configureBlocking(false);
+                channel.register(selector, SelectionKey.OP_ACCEPT, this);
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+            this.server = channel;
+            this.port = ((InetSocketAddress) channel.getLocalAddress()).getPort();
+        }
+
+        void stopListening() {
+            if (server != null) {
+                closeQuietly(server.keyFor(selector));
+                server = null;
+            }
+        }
+    }
+
+    private static class Connection {
+        final FakeNode node;
+        final SocketChannel channel;
+        final ByteBuffer in = ByteBuffer.allocate(BUFFER_SIZE);
+        final Deque<ByteBuffer> out = new ArrayDeque<>();
+        SelectionKey key;
+        boolean answered;
+        boolean closeAfterWrite;
+
+        Connection(FakeNode node, SocketChannel channel) {
+            this.node = node;
+            this.channel = channel;
+        }
+
+        void close() {
+            closeQuietly(key);
+        }
+    }
+
+    private static class Timer implements Comparable<Timer> {
+        final long dueMillis;
+        // keeps timers with the same due time in the order they were scheduled
+        final long sequence;
+        final Runnable task;
+
+        Timer(long dueMillis, long sequence, Runnable task) {
+            this.dueMillis = dueMillis;
+            this.sequence = sequence;
+            this.task = task;
+        }
+
+        @Override
+        public int compareTo(Timer other) {
+            int byDue = Long.compare(dueMillis, other.dueMillis);
+            return byDue != 0 ? byDue : Long.compare(sequence, other.sequence);
+        }
+    }
+
+    /**
+     * Runs a farm and the monitor against it in one process, scheduled like in production, and reports every minute
+     * the probes sent, the backlog, CPU and memory of the monitor. With --minutes 0 it only serves the farm, e.g. for a
+     * monitor started with the yaml written by --writeYaml.
+     */
+    public static void main(String[] args) throws Exception {
+        OptionParser parser = new OptionParser();
+        parser.accepts("pricenodes", "Number of fake pricenodes").withRequiredArg().ofType(Integer.class).defaultsTo(100);
+        parser.accepts("seednodes", "Number of fake seednodes").withRequiredArg().ofType(Integer.class).defaultsTo(100);
+        parser.accepts("btcnodes", "Number of fake bitcoin nodes").withRequiredArg().ofType(Integer.class).defaultsTo(800);
+        parser.accepts("latencyMillis", "Delay before every answer").withRequiredArg().ofType(Long.class).defaultsTo(50L);
+        parser.accepts("failureRate", "Chance that an answer is an error").withRequiredArg().ofType(Double.class).defaultsTo(0.01);
+        parser.accepts("payloadSize", "Size of the market prices response in bytes").withRequiredArg().ofType(Integer.class).defaultsTo(8 * 1024);
+        parser.accepts("flapSecs", "Nodes go down and up again with this period, 0 never").withRequiredArg().ofType(Long.class).defaultsTo(0L);
+        parser.accepts("maxConcurrentProbes", "Concurrent checks of the monitor").withRequiredArg().ofType(Integer.class).defaultsTo(ProbeEngine.DEFAULT_MAX_CONCURRENT_PROBES);
+        parser.accepts("probesPerMinute", "Probe budget of the scheduler").withRequiredArg().ofType(Integer.class).defaultsTo(6000);
+        parser.accepts("minutes", "Minutes to run the monitor, 0 only serves the farm").withRequiredArg().ofType(Integer.class).defaultsTo(5);
+        parser.accepts("writeYaml", "Write the node config of the farm to this file").withRequiredArg().ofType(String.class);
+
+        OptionSet options;
+        try {
+            options = parser.parse(args);
+        } catch (OptionException ex) {
+            System.out.println("error: " + ex.getMessage());
+            System.out.println();
+            parser.printHelpOn(System.out);
+            System.exit(-1);
+            return;
+        }
+
+        Behaviour behaviour = new Behaviour((long) options.valueOf("latencyMillis"), (double) options.valueOf("failureRate"),
+                (int) options.valueOf("payloadSize"), 1000L * (long) options.valueOf("flapSecs"));
+        NodeFarm farm = new NodeFarm();
+        farm.addNodes(NodeType.PRICE_NODE, (int) options.valueOf("pricenodes"), behaviour);
+        farm.addNodes(NodeType.SEED_NODE, (int) options.valueOf("seednodes"), behaviour);
+        farm.addNodes(NodeType.BTC_NODE, (int) options.valueOf("btcnodes"), behaviour);
+        farm.start();
+        NodeConfig config = farm.createConfig();
+        config.setMaxConcurrentProbes((int) options.valueOf("maxConcurrentProbes"));
+        Map<String, Integer> perType = new HashMap<>();
+        for (NodeType nodeType : NodeType.values()) {
+            perType.put(nodeType.name(), config.getMaxConcurrentProbes());
+        }
+        config.setMaxConcurrentProbesPerType(perType);
+        config.setProbeBudgetPerMinute((int) options.valueOf("probesPerMinute"));
+        log.info("Started {} fake nodes", farm.getNodeCount());
+
+        if (options.has("writeYaml")) {
+            String yamlFile = (String) options.valueOf("writeYaml");
+            new ObjectMapper(new YAMLFactory()).writeValue(Paths.get(yamlFile).toFile(), config);
+            log.info("Wrote the farm config to {}", yamlFile);
+        }
+
+        int minutes = (int) options.valueOf("minutes");
+        if (minutes == 0) {
+            farm.getSelectorThread().join();
+            return;
+        }
+
+        Monitoring monitoring = new Monitoring(config);
+        monitoring.addNodesFromConfig();
+        monitoring.startScheduling();
+        AdaptiveScheduler scheduler = monitoring.getScheduler();
+        ProbeEngine probeEngine = monitoring.getProbeEngine();
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        long probesBefore = 0;
+        for (int minute = 1; minute <= minutes; minute++) {
+            long cpuBefore = monitorCpuNanos(os, threads, farm);
+            Thread.sleep(60 * 1000L);
+            long cpuMillis = (monitorCpuNanos(os, threads, farm) - cpuBefore) / 1000000;
+            long probesSent = scheduler.getProbesSent();
+            Runtime runtime = Runtime.getRuntime();
+            long heapMb = (runtime.totalMemory() - runtime.freeMemory()) / (1024 * 1024);
+            log.info("Minute {}: {} probes sent, {} nodes overdue, queue depth {}, {} running, {} cancelled at deadline, "
+                            + "{} nodes in error, monitor CPU {} ms, heap used {} MB",
+                    minute, probesSent - probesBefore, scheduler.getOverdueCount(), probeEngine.getQueueDepth(),
+                    probeEngine.getRunningCount(), probeEngine.getCancelledAtDeadline(),
+                    monitoring.getNodeRegistry().getErrorCount(), cpuMillis, heapMb);
+            probesBefore = probesSent;
+        }
+        monitoring.shutdown();
+        farm.close();
+    }
+
+    /**
+     * The CPU time of the process without the farm thread, or -1 when the JVM does not tell.
+     */
+    private static long monitorCpuNanos(OperatingSystemMXBean os, ThreadMXBean threads, NodeFarm farm) {
+        if (!(os instanceof com.sun.management.OperatingSystemMXBean)) {
+            return -1;
+        }
+        long processNanos = ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuTime();
+        long farmNanos = threads.isThreadCpuTimeSupported() ? threads.getThreadCpuTime(farm.getSelectorThread().getId()) : 0;
+        return processNanos - Math.max(0, farmNanos);
+    }
+}
@@ -0,0 +1,51 @@
+package io.bisq.monitoring;
+
+import lombok.AllArgsConstructor;
+import lombok.Value;
+
+/*
+ * Identity of a monitored node. Unlike NodeDetail, whose equals/hashCode include mutable state, this is safe to use
+ * as a map key. Nodes of checks from outside this repository share OTHER_NODE, their check type tells them apart.
+ */
+@Value
+@AllArgsConstructor
+public class NodeKey {
+    NodeType nodeType;
+    String address;
+    int port;
+    // the type of the NodeCheck of an OTHER_NODE, null for the built in node types
+    String checkType;
+
+    public NodeKey(NodeType nodeType, String address, int port) {
+        this(nodeType, address, port, null);
+    }
+
+    public static NodeKey of(NodeDetail node) {
+        return new NodeKey(node.getNodeType(), node.getAddress(), node.getPort(),
+                node.getNodeType() == NodeType.OTHER_NODE ? node.getCheckType() : null);
+    }
+
+    /**
+     * The key as the tab separated fields of a node index line, read back with {@link #parseIndexFields}.
+     */
+    String toIndexFields() {
+        return nodeType.name() + "\t" + address + "\t" + port + (checkType != null ? "\t" + checkType : "");
+    }
+
+    /**
+     * @param fields the fields of a node index line, the key starting at offset
+     * @return the key, or null if the fields hold none
+     */
+    static NodeKey parseIndexFields(String[] fields, int offset) {
+        if (fields.length != offset + 3 && fields.length != offset + 4) {
+            return null;
+        }
+        return new NodeKey(NodeType.valueOf(fields[offset]), fields[offset + 1], Integer.parseInt(fields[offset + 2]),
+                fields.length == offset + 4 ? fields[offset + 3] : null);
+    }
+
+    @Override
+    public String toString() {
+        return nodeType.name() + (checkType != null ? "(" + checkType + ")" : "") + "/" + address + ":" + port;
+    }
+}
@@ -0,0 +1,186 @@
+package io.bisq.monitoring;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * All monitored nodes, keyed by NodeKey and indexed by address. Error state changes go through the registry, which
+ * keeps the number of nodes in error in total, per NodeType and per owner, so none of these needs a scan.
+ */
+public class NodeRegistry {
+    private final ConcurrentMap<NodeKey, NodeDetail> nodes = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Set<NodeKey>> keysByAddress = new ConcurrentHashMap<>();
+    private final AtomicInteger errorCount = new AtomicInteger();
+    private final ConcurrentMap<NodeType, AtomicInteger> errorCountByType = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, AtomicInteger> errorCountByOwner = new ConcurrentHashMap<>();
+
+    /**
+     * @return false if a node with the same type, address and port is registered already
+     */
+    public boolean add(NodeDetail node) {
+        NodeKey key = node.getKey();
+        synchronized (node) {
+            if (nodes.putIfAbsent(key, node) != null) {
+                return false;
+            }
+            keysByAddress.computeIfAbsent(node.getAddress(), address -> ConcurrentHashMap.newKeySet()).add(key);
+            if (node.hasError()) {
+                countError(node, 1);
+            }
+        }
+        return true;
+    }
+
+    public boolean remove(NodeKey key) {
+        NodeDetail node = nodes.get(key);
+        if (node == null) {
+            return false;
+        }
+        synchronized (node) {
+            if (!nodes.remove(key, node)) {
+                return false;
+            }
+            keysByAddress.computeIfPresent(node.getAddress(), (address, keys) -> {
+                keys.remove(key);
+                return keys.isEmpty() ? null : keys;
+            });
+            if (node.hasError()) {
+                countError(node, -1);
+            }
+        }
+        return true;
+    }
+
+    public NodeDetail get(NodeKey key) {
+        return nodes.get(key);
+    }
+
+    public List<NodeDetail> findByAddress(String address) {
+        Set<NodeKey> keys = keysByAddress.get(address);
+        if (keys == null) {
+            return Collections.emptyList();
+        }
+        List<NodeDetail> found = new ArrayList<>(keys.size());
+        for (NodeKey key : keys) {
+            NodeDetail node = nodes.get(key);
+            if (node != null) {
+                found.add(node);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Live, unmodifiable view of all nodes, safe to iterate while nodes change.
+     */
+    public Collection<NodeDetail> getNodes() {
+        return Collections.unmodifiableCollection(nodes.values());
+    }
+
+    public int size() {
+        return nodes.size();
+    }
+
+    /**
+     * Records the error on the node and updates the error counts.
+     *
+     * @return see NodeDetail.addError
+     */
+    public boolean addError(NodeDetail node, String reason) {
+        synchronized (node) {
+            boolean hadError = node.hasError();
+            boolean updated = node.addError(reason);
+            if (!hadError && isRegistered(node)) {
+                countError(node, 1);
+            }
+            return updated;
+        }
+    }
+
+    /**
+     * Clears the node's error and updates the error counts.
+     *
+     * @return see NodeDetail.clearError
+     */
+    public boolean clearError(NodeDetail node) {
+        synchronized (node) {
+            boolean cleared = node.clearError();
+            if (cleared && isRegistered(node)) {
+                countError(node, -1);
+            }
+            return cleared;
+        }
+    }
+
+    /**
+     * Changes the owner of the node, a node in error moves to the error count of its new owner.
+     */
+    public void setOwner(NodeDetail node, String owner) {
+        synchronized (node) {
+            boolean counted = node.hasError() && isRegistered(node);
+            if (counted) {
+                countError(node, -1);
+            }
+            node.setOwner(owner);
+            if (counted) {
+                countError(node, 1);
+            }
+        }
+    }
+
+    /**
+     * Takes over the state another cluster instance reported for the node and updates the error counts.
+     */
+    public void applyStatus(NodeDetail node, NodeStatus status) {
+        synchronized (node) {
+            boolean hadError = node.hasError();
+            status.applyTo(node);
+            if (hadError != node.hasError() && isRegistered(node)) {
+                countError(node, node.hasError() ? 1 : -1);
+            }
+        }
+    }
+
+    public int getErrorCount() {
+        return errorCount.get();
+    }
+
+    public int getErrorCount(NodeType nodeType) {
+        AtomicInteger count = errorCountByType.get(nodeType);
+        return count != null ? count.get() : 0;
+    }
+
+    public int getErrorCountByOwner(String owner) {
+        AtomicInteger count = errorCountByOwner.get(ownerKey(owner));
+        return count != null ? count.get() : 0;
+    }
+
+    /**
+     * Owners with at least one node in error.
+     */
+    public Map<String, Integer> getErrorCountsByOwner() {
+        Map<String, Integer> counts = new TreeMap<>();
+        errorCountByOwner.forEach((owner, count) -> {
+            if (count.get() > 0) {
+                counts.put(owner, count.get());
+            }
+        });
+        return counts;
+    }
+
+    private boolean isRegistered(NodeDetail node) {
+        return nodes.get(node.getKey()) == node;
+    }
+
+    private void countError(NodeDetail node, int delta) {
+        errorCount.addAndGet(delta);
+        errorCountByType.computeIfAbsent(node.getNodeType(), type -> new AtomicInteger()).addAndGet(delta);
+        errorCountByOwner.computeIfAbsent(ownerKey(node.getOwner()), owner -> new AtomicInteger()).addAndGet(delta);
+    }
+
+    private static String ownerKey(String owner) {
+        return owner != null ? owner : "";
+    }
+}
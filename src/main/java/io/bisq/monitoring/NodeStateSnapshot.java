@@ -0,0 +1,131 @@
+package io.bisq.monitoring;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/*
+ * Compact binary snapshot of the state of all nodes, so a restarted monitor carries on with the error state, counters
+ * and availability history it had. The file is written next to its final name and moved in place, and ends with a
+ * CRC32: a torn, foreign or outdated file fails to read instead of restoring garbage.
+ */
+public class NodeStateSnapshot {
+    static final int MAGIC = 0x424d4e53;
+    static final int VERSION = 3;
+    // error reasons and extra strings are cut to this length, they are shown, not parsed
+    static final int MAX_STRING_LENGTH = 1000;
+
+    public static void write(Path file, Collection<NodeDetail> nodes) throws IOException {
+        List<NodeStatus> statuses = new ArrayList<>(nodes.size());
+        List<AvailabilityTracker> availabilities = new ArrayList<>(nodes.size());
+        for (NodeDetail node : nodes) {
+            // the registry changes a node's error state under its lock
+            synchronized (node) {
+                statuses.add(NodeStatus.of(node));
+            }
+            availabilities.add(node.getAvailability());
+        }
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        CRC32 crc = new CRC32();
+        try (DataOutputStream out = new DataOutputStream(new CheckedOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(temporary)), crc))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(System.currentTimeMillis());
+            out.writeInt(statuses.size());
+            for (int i = 0; i < statuses.size(); i++) {
+                NodeStatus status = statuses.get(i);
+                out.writeByte(status.getNodeType().ordinal());
+                writeString(out, status.getCheckType());
+                out.writeUTF(status.getAddress());
+                out.writeInt(status.getPort());
+                out.writeLong(status.getLastErrorTime() != null ? status.getLastErrorTime() : -1);
+                out.writeLong(status.getNrErrorsSinceStart());
+                out.writeLong(status.getNrErrorsUnreported());
+                out.writeLong(status.getErrorMinutesSinceStart());
+                out.writeLong(status.getLastLatencyMillis());
+                writeString(out, status.getExtraString());
+                out.writeShort(status.getErrorReasons().size());
+                for (String reason : status.getErrorReasons()) {
+                    writeString(out, reason);
+                }
+                availabilities.get(i).writeTo(out);
+            }
+            out.writeInt((int) crc.getValue());
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @throws IOException if the file can't be read or is not a complete snapshot of this version
+     */
+    public static List<NodeStatus> read(Path file) throws IOException {
+        CRC32 crc = new CRC32();
+        try (DataInputStream in = new DataInputStream(new CheckedInputStream(
+                new BufferedInputStream(Files.newInputStream(file)), crc))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException(file + " is not a node state snapshot");
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported snapshot version " + version);
+            }
+            in.readLong();
+            int count = in.readInt();
+            NodeType[] nodeTypes = NodeType.values();
+            List<NodeStatus> statuses = new ArrayList<>(Math.min(count, 100000));
+            for (int i = 0; i < count; i++) {
+                NodeStatus status = new NodeStatus();
+                int type = in.readUnsignedByte();
+                if (type >= nodeTypes.length) {
+                    throw new IOException("Unknown node type " + type);
+                }
+                status.setNodeType(nodeTypes[type]);
+                status.setCheckType(readString(in));
+                status.setAddress(in.readUTF());
+                status.setPort(in.readInt());
+                long lastErrorTime = in.readLong();
+                status.setInError(lastErrorTime >= 0);
+                status.setLastErrorTime(lastErrorTime >= 0 ? lastErrorTime : null);
+                status.setNrErrorsSinceStart(in.readLong());
+                status.setNrErrorsUnreported(in.readLong());
+                status.setErrorMinutesSinceStart(in.readLong());
+                status.setLastLatencyMillis(in.readLong());
+                status.setExtraString(readString(in));
+                int reasons = in.readUnsignedShort();
+                List<String> errorReasons = new ArrayList<>(reasons);
+                for (int j = 0; j < reasons; j++) {
+                    errorReasons.add(readString(in));
+                }
+                status.setErrorReasons(errorReasons);
+                AvailabilityTracker availability = new AvailabilityTracker();
+                availability.readFrom(in);
+                status.setAvailability(availability);
+                statuses.add(status);
+            }
+            int expected = (int) crc.getValue();
+            if (in.readInt() != expected) {
+                throw new IOException("Snapshot " + file + " has a wrong checksum");
+            }
+            return statuses;
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value.length() > MAX_STRING_LENGTH ? value.substring(0, MAX_STRING_LENGTH) : value);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
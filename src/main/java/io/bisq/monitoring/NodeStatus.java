@@ -0,0 +1,87 @@
+package io.bisq.monitoring;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Snapshot of a node as served by /api/nodes.
+ */
+@Data
+@EqualsAndHashCode(exclude = "availability")
+@ToString(exclude = "availability")
+public class NodeStatus {
+    String node;
+    NodeType nodeType;
+    // the check type of an OTHER_NODE, null for the built in node types
+    String checkType;
+    String address;
+    int port;
+    String owner;
+    boolean tor;
+    boolean inError;
+    // epoch millis of the last error, null when not in error
+    Long lastErrorTime;
+    List<String> errorReasons;
+    long nrErrorsSinceStart;
+    long nrErrorsUnreported;
+    long errorMinutesSinceStart;
+    // uptime in percent and mean time to repair by window ("1h", "24h", "7d", "30d"), windows without data are left out
+    Map<String, Double> uptimePercent;
+    Map<String, Long> mttrMillis;
+    String extraString;
+    // duration of the last successful check, -1 before the first one
+    long lastLatencyMillis;
+    // the full availability history, only kept in the node state snapshot
+    @JsonIgnore
+    AvailabilityTracker availability;
+
+    public static NodeStatus of(NodeDetail detail) {
+        NodeStatus status = new NodeStatus();
+        status.node = detail.getKey().toString();
+        status.nodeType = detail.getNodeType();
+        status.checkType = detail.getKey().getCheckType();
+        status.address = detail.getAddress();
+        status.port = detail.getPort();
+        status.owner = detail.getOwner();
+        status.tor = detail.isTor();
+        status.inError = detail.hasError();
+        status.lastErrorTime = detail.hasError() ? detail.getLastErrorMillis() : null;
+        status.errorReasons = new ArrayList<>(detail.getErrorReason());
+        status.nrErrorsSinceStart = detail.getNrErrorsSinceStart();
+        status.nrErrorsUnreported = detail.getNrErrorsUnreported();
+        status.errorMinutesSinceStart = detail.getErrorMinutesSinceStart();
+        status.uptimePercent = detail.getUptimePercent();
+        status.mttrMillis = detail.getMttrMillis();
+        status.extraString = detail.getExtraString();
+        status.lastLatencyMillis = detail.getLastLatencyMillis();
+        return status;
+    }
+
+    NodeKey key() {
+        return new NodeKey(nodeType, address, port, checkType);
+    }
+
+    /**
+     * Copies the reported state onto the node, for nodes that another cluster instance checks.
+     */
+    void applyTo(NodeDetail detail) {
+        detail.setLastErrorMillis(inError ? (lastErrorTime != null ? lastErrorTime : System.currentTimeMillis()) : -1);
+        detail.setErrorReason(errorReasons != null ? new ArrayList<>(errorReasons) : new ArrayList<>());
+        detail.setNrErrorsSinceStart(nrErrorsSinceStart);
+        detail.setNrErrorsUnreported(nrErrorsUnreported);
+        detail.setErrorMillisSinceStart(errorMinutesSinceStart * 60000);
+        detail.setPeerUptimePercent(uptimePercent);
+        detail.setPeerMttrMillis(mttrMillis);
+        detail.setExtraString(extraString);
+        detail.setLastLatencyMillis(lastLatencyMillis);
+        if (availability != null) {
+            detail.getAvailability().copyFrom(availability);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package io.bisq.monitoring;
+
+import lombok.Getter;
+
+/*
+ * The kinds of nodes the monitor knows, a NodeCheck registers its nodes under one of them.
+ */
+public enum NodeType {
+    PRICE_NODE("Price node"), SEED_NODE("Seed node"), BTC_NODE("Bitcoin node"), MONITORING_NODE("Monitoring node"),
+    // nodes of a NodeCheck from outside this repository, told apart by the check type of their key
+    OTHER_NODE("Node");
+
+    @Getter
+    private final String prettyName;
+
+    NodeType(String prettyName) {
+        this.prettyName = prettyName;
+    }
+
+}
@@ -0,0 +1,211 @@
+package io.bisq.monitoring;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Compares the prices of each pricenode with the clock and with the median of all pricenodes. A node is stale when its
+ * newest price timestamp is older than the maximum age, or, serving no timestamps, when its numbers did not change for
+ * that long, and an outlier when too many of its prices or its btcTxFee deviate from the medians. The medians are only
+ * recomputed after a node served changed numbers, the comparison itself is one pass over the price arrays.
+ */
+public class PriceConsistencyAnalyzer {
+    static final int DEFAULT_MAX_DEVIATION_PERCENT = 5;
+    static final int DEFAULT_MAX_PRICE_AGE_SECS = 15 * 60;
+    // fewer pricenodes give no meaningful median
+    static final int MIN_NODES = 3;
+    // share of the compared currencies which may deviate, single markets with few trades are often off
+    static final double OUTLIER_SHARE = 0.1;
+    // nodes not heard of for this long are left out of the medians
+    static final long SNAPSHOT_TTL_MILLIS = 2 * 60 * 60 * 1000L;
+
+    private final Map<String, Integer> currencyIndexes = new ConcurrentHashMap<>();
+    private final AtomicInteger nextCurrencyIndex = new AtomicInteger();
+    private final Map<NodeKey, Snapshot> snapshots = new HashMap<>();
+    private double[] medianPrices = new double[0];
+    private double medianFee = Double.NaN;
+    private boolean dirty;
+    private double[] scratch = new double[MIN_NODES];
+
+    public int currencyIndex(String currencyCode) {
+        return currencyIndexes.computeIfAbsent(currencyCode, code -> nextCurrencyIndex.getAndIncrement());
+    }
+
+    /**
+     * Takes the latest prices of a pricenode.
+     *
+     * @return why the node is stale or an outlier, null if it is neither
+     */
+    public synchronized String update(NodeKey key, MarketPrices prices, long nowMillis, int maxDeviationPercent,
+                                      int maxPriceAgeSecs) {
+        Snapshot previous = snapshots.get(key);
+        long changedMillis = nowMillis;
+        if (previous != null && sameNumbers(previous.prices, prices)) {
+            changedMillis = previous.changedMillis;
+        } else {
+            dirty = true;
+        }
+        snapshots.put(key, new Snapshot(prices, nowMillis, changedMillis));
+        expire(nowMillis);
+
+        long maxAgeMillis = (maxPriceAgeSecs > 0 ? maxPriceAgeSecs : DEFAULT_MAX_PRICE_AGE_SECS) * 1000L;
+        long newestSec = newestTimestampSec(prices);
+        if (newestSec > 0) {
+            if (nowMillis - newestSec * 1000 > maxAgeMillis) {
+                return "Stale prices, the newest is " + (nowMillis - newestSec * 1000) / 60000 + " min old";
+            }
+        } else if (nowMillis - changedMillis > maxAgeMillis) {
+            return "Stale prices, unchanged for " + (nowMillis - changedMillis) / 60000 + " min";
+        }
+        if (snapshots.size() < MIN_NODES) {
+            return null;
+        }
+        if (dirty) {
+            computeMedians();
+        }
+        return deviation(prices, maxDeviationPercent > 0 ? maxDeviationPercent : DEFAULT_MAX_DEVIATION_PERCENT);
+    }
+
+    public synchronized void remove(NodeKey key) {
+        if (snapshots.remove(key) != null) {
+            dirty = true;
+        }
+    }
+
+    synchronized double getMedianPrice(String currencyCode) {
+        if (dirty) {
+            computeMedians();
+        }
+        int index = currencyIndex(currencyCode);
+        return index < medianPrices.length ? medianPrices[index] : Double.NaN;
+    }
+
+    private String deviation(MarketPrices prices, int maxDeviationPercent) {
+        int compared = 0;
+        int deviating = 0;
+        int worst = -1;
+        double worstPercent = 0;
+        int size = Math.min(prices.size, medianPrices.length);
+        for (int i = 0; i < size; i++) {
+            double price = prices.prices[i];
+            double median = medianPrices[i];
+            if (Double.isNaN(price) || Double.isNaN(median)) {
+                continue;
+            }
+            compared++;
+            double percent = Math.abs(price - median) / median * 100;
+            if (percent > maxDeviationPercent) {
+                deviating++;
+                if (percent > worstPercent) {
+                    worstPercent = percent;
+                    worst = i;
+                }
+            }
+        }
+        if (deviating > 0 && deviating > compared * OUTLIER_SHARE) {
+            return String.format("%d of %d prices deviate more than %d%% from the other pricenodes, %s by %.1f%%",
+                    deviating, compared, maxDeviationPercent, currencyCode(worst), worstPercent);
+        }
+        if (!Double.isNaN(prices.btcTxFee) && medianFee > 0) {
+            double percent = Math.abs(prices.btcTxFee - medianFee) / medianFee * 100;
+            if (percent > maxDeviationPercent) {
+                return String.format("btcTxFee %s deviates %.1f%% from the other pricenodes",
+                        prices.btcTxFee, percent);
+            }
+        }
+        return null;
+    }
+
+    private void computeMedians() {
+        int currencies = 0;
+        for (Snapshot snapshot : snapshots.values()) {
+            currencies = Math.max(currencies, snapshot.prices.size);
+        }
+        if (medianPrices.length < currencies) {
+            medianPrices = new double[currencies];
+        }
+        if (scratch.length < snapshots.size()) {
+            scratch = new double[snapshots.size()];
+        }
+        for (int i = 0; i < medianPrices.length; i++) {
+            int count = 0;
+            for (Snapshot snapshot : snapshots.values()) {
+                if (i < snapshot.prices.size && !Double.isNaN(snapshot.prices.prices[i])) {
+                    scratch[count++] = snapshot.prices.prices[i];
+                }
+            }
+            medianPrices[i] = count >= MIN_NODES ? median(count) : Double.NaN;
+        }
+        int count = 0;
+        for (Snapshot snapshot : snapshots.values()) {
+            if (!Double.isNaN(snapshot.prices.btcTxFee)) {
+                scratch[count++] = snapshot.prices.btcTxFee;
+            }
+        }
+        medianFee = count >= MIN_NODES ? median(count) : Double.NaN;
+        dirty = false;
+    }
+
+    private double median(int count) {
+        Arrays.sort(scratch, 0, count);
+        return count % 2 == 1 ? scratch[count / 2] : (scratch[count / 2 - 1] + scratch[count / 2]) / 2;
+    }
+
+    private void expire(long nowMillis) {
+        Iterator<Snapshot> iterator = snapshots.values().iterator();
+        while (iterator.hasNext()) {
+            if (nowMillis - iterator.next().fetchedMillis > SNAPSHOT_TTL_MILLIS) {
+                iterator.remove();
+                dirty = true;
+            }
+        }
+    }
+
+    private String currencyCode(int index) {
+        for (Map.Entry<String, Integer> entry : currencyIndexes.entrySet()) {
+            if (entry.getValue() == index) {
+                return entry.getKey();
+            }
+        }
+        return "?";
+    }
+
+    private static long newestTimestampSec(MarketPrices prices) {
+        long newest = -1;
+        for (int i = 0; i < prices.size; i++) {
+            newest = Math.max(newest, prices.timestampsSec[i]);
+        }
+        return newest;
+    }
+
+    private static boolean sameNumbers(MarketPrices previous, MarketPrices current) {
+        if (previous.size != current.size
+                || Double.compare(previous.btcTxFee, current.btcTxFee) != 0) {
+            return false;
+        }
+        for (int i = 0; i < current.size; i++) {
+            if (Double.compare(previous.prices[i], current.prices[i]) != 0
+                    || previous.timestampsSec[i] != current.timestampsSec[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static class Snapshot {
+        final MarketPrices prices;
+        final long fetchedMillis;
+        // when the node last served different numbers
+        final long changedMillis;
+
+        Snapshot(MarketPrices prices, long fetchedMillis, long changedMillis) {
+            this.prices = prices;
+            this.fetchedMillis = fetchedMillis;
+            this.changedMillis = changedMillis;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package io.bisq.monitoring;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/*
+ * Requests all pricenode endpoints pipelined on one connection and validates each response as it streams in. The
+ * first failing endpoint stops the check, the responses of the remaining endpoints are not awaited. The http client
+ * blocks, so the requests run on the executor for blocking work. The prices of all pricenodes are compared with each
+ * other to find stale and deviating nodes.
+ */
+public class PriceNodeCheck implements NodeCheck {
+    public static final String TYPE = "pricenode";
+    static final List<String> ENDPOINTS = Arrays.asList("/getFees", "/getAllMarketPrices", "/getParams", "/getVersion");
+
+    private final PriceConsistencyAnalyzer analyzer = new PriceConsistencyAnalyzer();
+
+    @Override
+    public String getType() {
+        return TYPE;
+    }
+
+    @Override
+    public NodeType getNodeType() {
+        return NodeType.PRICE_NODE;
+    }
+
+    @Override
+    public int getDefaultPort() {
+        return 8080;
+    }
+
+    /**
+     * Onion pricenodes serve on the default http port.
+     */
+    @Override
+    public int getConnectPort(NodeDetail node) {
+        return node.isTor() ? 80 : node.getPort();
+    }
+
+    /**
+     * Cancelling the returned future closes the connection, the blocked request ends at once.
+     */
+    @Override
+    public CompletableFuture<CheckResult> check(NodeDetail node, Context context) {
+        CompletableFuture<CheckResult> checkResult = new CompletableFuture<>();
+        context.getBlockingExecutor().execute(() -> {
+            if (checkResult.isDone()) {
+                return;
+            }
+            try {
+                long start = System.currentTimeMillis();
+                PriceNodeResult result = fetch(node, context, checkResult);
+                checkResult.complete(toCheckResult(node, result, System.currentTimeMillis() - start));
+            } catch (RuntimeException e) {
+                checkResult.completeExceptionally(e);
+            }
+        });
+        return checkResult;
+    }
+
+    @Override
+    public void nodeRemoved(NodeDetail node) {
+        analyzer.remove(node.getKey());
+    }
+
+    private PriceNodeResult fetch(NodeDetail node, Context context, CompletableFuture<?> cancelSignal) {
+        PriceNodeResult result = new PriceNodeResult();
+        ResponseValidator responseValidator = context.getResponseValidator();
+        MarketPrices prices = new MarketPrices(analyzer);
+        try (TorPool.Route route = context.route(node)) {
+            long connectMillis = context.getHttpClient().pipeline(node.getAddress(), getConnectPort(node), ENDPOINTS,
+                    route != null ? route.getSocketFactory() : null, cancelSignal, (path, statusCode, body, latencyMillis) -> {
+                        result.getEndpointLatencyMillis().put(path, latencyMillis);
+                        if (statusCode != 200) {
+                            result.fail(path, "HTTP status " + statusCode + " for " + path);
+                            return false;
+                        }
+                        ResponseValidator.Result validation = responseValidator.validate(path, body,
+                                path.equals("/getAllMarketPrices") ? prices : null);
+                        switch (path) {
+                            case "/getFees":
+                                result.setBtcTxFee(validation.getValues().get(ResponseValidator.BTC_TX_FEE_FIELD));
+                                prices.setBtcTxFee(result.getBtcTxFee());
+                                break;
+                            case "/getAllMarketPrices":
+                                result.setMarketPricesValid(validation.isValid());
+                                break;
+                            case "/getParams":
+                                result.setParams(validation.getValues().get(ResponseValidator.BODY));
+                                break;
+                            case "/getVersion":
+                                result.setVersion(validation.getValues().get(ResponseValidator.BODY));
+                                break;
+                        }
+                        if (!validation.isValid()) {
+                            result.fail(path, validation.getError());
+                            return false;
+                        }
+                        return true;
+                    });
+            result.setConnectMillis(connectMillis);
+        } catch (IOException e) {
+            result.fail(null, "Pricenode request failed: " + e.getMessage());
+        }
+        if (!result.hasError() && result.isMarketPricesValid()) {
+            NodeConfig config = context.getNodeConfig();
+            String error = analyzer.update(node.getKey(), prices, System.currentTimeMillis(),
+                    config.getMaxPriceDeviationPercent(), config.getMaxPriceAgeSecs());
+            if (error != null) {
+                result.fail(null, error);
+            }
+        }
+        return result;
+    }
+
+    private static CheckResult toCheckResult(NodeDetail node, PriceNodeResult result, long latencyMillis) {
+        CheckResult checkResult = result.hasError()
+                ? CheckResult.failed(ProbeStage.forEndpoint(result.getFailedEndpoint()), latencyMillis, result.getError())
+                : CheckResult.ok(ProbeStage.CHECK, latencyMillis);
+        if (node.isTor() && result.getConnectMillis() > 0) {
+            checkResult.recordLatency(ProbeStage.TOR_CONNECT, result.getConnectMillis());
+        }
+        result.getEndpointLatencyMillis().forEach((path, endpointMillis) -> {
+            if (!path.equals(result.getFailedEndpoint())) {
+                checkResult.recordLatency(ProbeStage.forEndpoint(path), endpointMillis);
+            }
+        });
+        if (result.getBtcTxFee() != null || result.getParams() != null) {
+            checkResult.setExtraString(result.toExtraString());
+        }
+        return checkResult;
+    }
+}
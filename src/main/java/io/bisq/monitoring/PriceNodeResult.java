@@ -0,0 +1,41 @@
+package io.bisq.monitoring;
+
+import lombok.Data;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+ * Everything learned about one pricenode in one check, merged from the responses of its endpoints.
+ */
+@Data
+public class PriceNodeResult {
+    String btcTxFee;
+    boolean marketPricesValid;
+    String params;
+    String version;
+    Map<String, Long> endpointLatencyMillis = new LinkedHashMap<>();
+    // opening the connection, 0 when a pooled one was reused
+    long connectMillis;
+    // first endpoint that failed, remaining endpoints are not checked
+    String failedEndpoint;
+    String error;
+
+    public boolean hasError() {
+        return error != null;
+    }
+
+    public void fail(String endpoint, String error) {
+        this.failedEndpoint = endpoint;
+        this.error = error;
+    }
+
+    public String toExtraString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(btcTxFee != null ? btcTxFee + "s/b" : "Can't find txfee");
+        if (params != null) {
+            builder.append(" - ").append(params);
+        }
+        return builder.toString();
+    }
+}
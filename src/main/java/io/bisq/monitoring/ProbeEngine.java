@@ -0,0 +1,290 @@
+package io.bisq.monitoring;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/*
+ * Runs node checks concurrently. Probes are queued and dispatched as soon as both a global permit and a permit
+ * for the probe's NodeType are free, so a cycle takes as long as its slowest node instead of the sum of all nodes.
+ * A probe holds its permits until its check completes, an asynchronous check holds no thread meanwhile. A probe still
+ * running at its deadline is cancelled, so a node that sends slowly can't hold a permit forever.
+ */
+@Slf4j
+public class ProbeEngine {
+    public static final int DEFAULT_MAX_CONCURRENT_PROBES = 32;
+    public static final int DEFAULT_MAX_CONCURRENT_PROBES_PER_TYPE = 8;
+
+    private final int maxConcurrentProbes;
+    private final Map<String, Integer> maxConcurrentProbesPerType;
+    private final long probeDeadlineMillis;
+    private final ExecutorService executor;
+    private final ScheduledExecutorService deadlines;
+    private final AtomicLong cancelledAtDeadline = new AtomicLong();
+
+    // guarded by 'this'
+    private final Deque<QueuedProbe> pending = new ArrayDeque<>();
+    private final Map<NodeType, Integer> runningPerType = new HashMap<>();
+    private int running = 0;
+    private int maxQueueDepthSinceReset = 0;
+
+    /**
+     * @param probeDeadlineMillis how long a probe may run, counted from its start; 0 for no deadline
+     */
+    public ProbeEngine(NodeConfig nodeConfig, long probeDeadlineMillis) {
+        this.maxConcurrentProbes = nodeConfig.getMaxConcurrentProbes() > 0 ? nodeConfig.getMaxConcurrentProbes() : DEFAULT_MAX_CONCURRENT_PROBES;
+        this.maxConcurrentProbesPerType = nodeConfig.getMaxConcurrentProbesPerType() != null ? nodeConfig.getMaxConcurrentProbesPerType() : Collections.emptyMap();
+        this.probeDeadlineMillis = probeDeadlineMillis;
+        this.executor = Executors.newFixedThreadPool(maxConcurrentProbes,
+                new ThreadFactoryBuilder().setNameFormat("probe-%d").setDaemon(true).build());
+        this.deadlines = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("probe-deadline").setDaemon(true).build());
+        log.info("Probe engine: max {} concurrent probes, per type limits {}, probe deadline {} seconds",
+                maxConcurrentProbes, maxConcurrentProbesPerType, probeDeadlineMillis / 1000);
+    }
+
+    /**
+     * Queue a single probe. The returned future completes when the check has run, or is cancelled when the probe
+     * missed its deadline; cancelling it cancels the check.
+     */
+    public CompletableFuture<Void> submit(Probe probe) {
+        QueuedProbe queued = new QueuedProbe(probe);
+        synchronized (this) {
+            pending.addLast(queued);
+            maxQueueDepthSinceReset = Math.max(maxQueueDepthSinceReset, pending.size());
+        }
+        dispatch();
+        return queued.result;
+    }
+
+    /**
+     * Run all probes concurrently and wait until each is done or cancelled at its deadline. The monitor schedules its
+     * probes one by one, this runs a fixed set at once for the tests and benchmarks.
+     */
+    public CycleStats runCycle(List<Probe> probes) {
+        long start = System.currentTimeMillis();
+        synchronized (this) {
+            maxQueueDepthSinceReset = 0;
+        }
+        List<CompletableFuture<Void>> futures = new ArrayList<>(probes.size());
+        for (Probe probe : probes) {
+            futures.add(submit(probe));
+        }
+
+        int timedOut = 0;
+        for (CompletableFuture<Void> future : futures) {
+            try {
+                future.get();
+            } catch (CancellationException e) {
+                timedOut++;
+            } catch (InterruptedException e) {
+                futures.forEach(unfinished -> unfinished.cancel(true));
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException e) {
+                // individual probe failures are handled by the checks themselves
+            }
+        }
+
+        int maxQueueDepth;
+        synchronized (this) {
+            maxQueueDepth = maxQueueDepthSinceReset;
+        }
+        CycleStats stats = new CycleStats(probes.size(), timedOut, System.currentTimeMillis() - start, maxQueueDepth);
+        log.info("Check cycle finished: {}", stats);
+        return stats;
+    }
+
+    /**
+     * @return the probes cancelled at their deadline since the start
+     */
+    public long getCancelledAtDeadline() {
+        return cancelledAtDeadline.get();
+    }
+
+    public synchronized int getQueueDepth() {
+        return pending.size();
+    }
+
+    public synchronized int getRunningCount() {
+        return running;
+    }
+
+    /**
+     * The probe threads, for handling the outcomes of checks; blocking work belongs on an executor of its own.
+     */
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+        deadlines.shutdownNow();
+    }
+
+    private void dispatch() {
+        List<QueuedProbe> toStart = new ArrayList<>();
+        synchronized (this) {
+            Iterator<QueuedProbe> iterator = pending.iterator();
+            while (running < maxConcurrentProbes && iterator.hasNext()) {
+                QueuedProbe queued = iterator.next();
+                if (queued.result.isDone()) {
+                    // cancelled while still waiting in the queue
+                    iterator.remove();
+                    continue;
+                }
+                NodeType nodeType = queued.probe.getNode().getNodeType();
+                int runningForType = runningPerType.getOrDefault(nodeType, 0);
+                if (runningForType >= getTypeLimit(nodeType)) {
+                    continue;
+                }
+                iterator.remove();
+                running++;
+                runningPerType.put(nodeType, runningForType + 1);
+                toStart.add(queued);
+            }
+        }
+        toStart.forEach(this::start);
+    }
+
+    private void start(QueuedProbe queued) {
+        NodeType nodeType = queued.probe.getNode().getNodeType();
+        try {
+            executor.execute(() -> {
+                boolean cancelled;
+                synchronized (queued) {
+                    cancelled = queued.result.isCancelled();
+                    queued.thread = cancelled ? null : Thread.currentThread();
+                }
+                if (cancelled) {
+                    // cancelled before it got a thread
+                    release(nodeType);
+                    return;
+                }
+                CompletableFuture<?> check;
+                try {
+                    check = queued.probe.getCheck().get();
+                } catch (Throwable e) {
+                    check = new CompletableFuture<>();
+                    check.completeExceptionally(e);
+                } finally {
+                    synchronized (queued) {
+                        queued.thread = null;
+                    }
+                    // an interrupt meant for the check must not hit the next task of the thread
+                    Thread.interrupted();
+                }
+                // the slot is held until the check completes, not just until it returned its future
+                check.whenComplete((result, e) -> {
+                    if (e != null) {
+                        log.error("Probe for {} {} failed unexpectedly", nodeType, queued.probe.getNode().getAddress(), e);
+                        queued.result.completeExceptionally(e);
+                    } else {
+                        queued.result.complete(null);
+                    }
+                    release(nodeType);
+                });
+                queued.check = check;
+                if (queued.result.isCancelled()) {
+                    check.cancel(true);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            queued.result.completeExceptionally(e);
+            release(nodeType);
+            return;
+        }
+        if (probeDeadlineMillis > 0) {
+            try {
+                ScheduledFuture<?> deadline = deadlines.schedule(() -> {
+                    // counted first, whoever waits on the probe sees the count once it sees the cancel
+                    cancelledAtDeadline.incrementAndGet();
+                    if (!queued.result.cancel(true)) {
+                        cancelledAtDeadline.decrementAndGet();
+                    } else {
+                        log.warn("Probe of {} did not finish within {} seconds, cancelled it",
+                                queued.probe.getNode().getKey(), probeDeadlineMillis / 1000);
+                    }
+                }, probeDeadlineMillis, TimeUnit.MILLISECONDS);
+                queued.result.whenComplete((result, throwable) -> deadline.cancel(false));
+            } catch (RejectedExecutionException e) {
+                log.debug("No deadline for the probe of {}, the engine is shut down", queued.probe.getNode().getKey());
+            }
+        }
+        // cancel the check when the probe gets cancelled, the checks end their blocking work on cancel (close the
+        // connection, kill the custom check), so the released slot is free for real
+        queued.result.whenComplete((result, throwable) -> {
+            if (queued.result.isCancelled()) {
+                synchronized (queued) {
+                    if (queued.thread != null) {
+                        // a blocking check still starting
+                        queued.thread.interrupt();
+                    }
+                }
+                CompletableFuture<?> check = queued.check;
+                if (check != null) {
+                    check.cancel(true);
+                }
+            }
+        });
+    }
+
+    private void release(NodeType nodeType) {
+        synchronized (this) {
+            running--;
+            runningPerType.merge(nodeType, -1, Integer::sum);
+        }
+        dispatch();
+    }
+
+    private int getTypeLimit(NodeType nodeType) {
+        Integer limit = maxConcurrentProbesPerType.get(nodeType.name());
+        return (limit != null && limit > 0) ? limit : DEFAULT_MAX_CONCURRENT_PROBES_PER_TYPE;
+    }
+
+    @Data
+    @AllArgsConstructor
+    public static class Probe {
+        NodeDetail node;
+        // starts the check, the probe holds its slot until the returned future completes
+        Supplier<CompletableFuture<?>> check;
+
+        /**
+         * A probe whose check is done when it returns, it blocks the probe thread meanwhile.
+         */
+        public Probe(NodeDetail node, Runnable check) {
+            this(node, () -> {
+                check.run();
+                return CompletableFuture.completedFuture(null);
+            });
+        }
+    }
+
+    @Data
+    @AllArgsConstructor
+    public static class CycleStats {
+        int probes;
+        int cancelledAtDeadline;
+        long durationMillis;
+        int maxQueueDepth;
+    }
+
+    private static class QueuedProbe {
+        final Probe probe;
+        final CompletableFuture<Void> result = new CompletableFuture<>();
+        // set once the check started
+        volatile CompletableFuture<?> check;
+        // the thread starting the check, guarded by 'this'
+        Thread thread;
+
+        QueuedProbe(Probe probe) {
+            this.probe = probe;
+        }
+    }
+}
@@ -0,0 +1,464 @@
+package io.bisq.monitoring;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Append-only probe history in memory-mapped files of fixed size records. Every probe is written to a raw ring
+ * buffer and folded into 1 minute, 1 hour and 1 day rollups, each in a ring buffer of its own, so old raw data is
+ * overwritten while the rollups keep the long term picture. Files are never read as a whole: records are appended
+ * in time order, so a query is a binary search followed by a scan of the requested range.
+ */
+@Slf4j
+public class ProbeHistoryStore implements Closeable {
+    public static final long DEFAULT_RAW_CAPACITY = 1 << 20;
+    public static final long DEFAULT_MINUTE_CAPACITY = 1 << 20;
+    public static final long DEFAULT_HOUR_CAPACITY = 1 << 19;
+    public static final long DEFAULT_DAY_CAPACITY = 1 << 17;
+    public static final int MAX_QUERY_RESULTS = 10000;
+    static final long FLUSH_INTERVAL_MILLIS = 10 * 1000;
+
+    // raw record: timestamp, node id, status, stage, latency
+    private static final int RAW_RECORD_SIZE = 24;
+    // rollup record: written at, bucket start, node id, probes, errors, max latency, latency sum
+    private static final int ROLLUP_RECORD_SIZE = 40;
+
+    public enum Resolution {
+        RAW("raw", 0), MINUTE("1m", 60 * 1000L), HOUR("1h", 60 * 60 * 1000L), DAY("1d", 24 * 60 * 60 * 1000L);
+
+        @Getter
+        private final String label;
+        @Getter
+        private final long widthMillis;
+
+        Resolution(String label, long widthMillis) {
+            this.label = label;
+            this.widthMillis = widthMillis;
+        }
+
+        public static Resolution fromLabel(String label) {
+            for (Resolution resolution : values()) {
+                if (resolution.label.equals(label)) {
+                    return resolution;
+                }
+            }
+            throw new IllegalArgumentException("Unknown resolution " + label);
+        }
+
+        /**
+         * The finest resolution that keeps a query over the range reasonably small.
+         */
+        public static Resolution forRange(long fromMillis, long toMillis) {
+            long range = toMillis - fromMillis;
+            if (range <= 24 * 60 * 60 * 1000L) {
+                return RAW;
+            } else if (range <= 7 * 24 * 60 * 60 * 1000L) {
+                return MINUTE;
+            } else if (range <= 90 * 24 * 60 * 60 * 1000L) {
+                return HOUR;
+            }
+            return DAY;
+        }
+    }
+
+    private final RingFile raw;
+    private final Rollup[] rollups;
+    private final Map<NodeKey, Integer> nodeIds = new HashMap<>();
+    private final List<NodeKey> nodesById = new ArrayList<>();
+    private final Writer nodeIndexWriter;
+    private final ScheduledExecutorService flusher;
+
+    public ProbeHistoryStore(Path directory) throws IOException {
+        this(directory, DEFAULT_RAW_CAPACITY, DEFAULT_MINUTE_CAPACITY, DEFAULT_HOUR_CAPACITY, DEFAULT_DAY_CAPACITY);
+    }
+
+    public ProbeHistoryStore(Path directory, long rawCapacity, long minuteCapacity, long hourCapacity, long dayCapacity) throws IOException {
+        Files.createDirectories(directory);
+        this.raw = new RingFile(directory.resolve("raw.dat"), RAW_RECORD_SIZE, rawCapacity);
+        this.rollups = new Rollup[]{
+                new Rollup(Resolution.MINUTE, new RingFile(directory.resolve("rollup-1m.dat"), ROLLUP_RECORD_SIZE, minuteCapacity)),
+                new Rollup(Resolution.HOUR, new RingFile(directory.resolve("rollup-1h.dat"), ROLLUP_RECORD_SIZE, hourCapacity)),
+                new Rollup(Resolution.DAY, new RingFile(directory.resolve("rollup-1d.dat"), ROLLUP_RECORD_SIZE, dayCapacity))};
+
+        // node ids are dense and stable, the index file maps them back to nodes
+        Path nodeIndex = directory.resolve("nodes.idx");
+        if (Files.exists(nodeIndex)) {
+            for (String line : Files.readAllLines(nodeIndex, StandardCharsets.UTF_8)) {
+                String[] parts = line.split("\t");
+                NodeKey key = NodeKey.parseIndexFields(parts, 1);
+                if (key != null) {
+                    nodeIds.put(key, Integer.parseInt(parts[0]));
+                    nodesById.add(key);
+                }
+            }
+        }
+        this.nodeIndexWriter = Files.newBufferedWriter(nodeIndex, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+
+        this.flusher = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("history-flush").setDaemon(true).build());
+        this.flusher.scheduleAtFixedRate(() -> flushCompleted(System.currentTimeMillis()),
+                FLUSH_INTERVAL_MILLIS, FLUSH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        log.info("Probe history in {} with {} known nodes and {} raw records", directory, nodesById.size(), raw.writeIndex);
+    }
+
+    public synchronized void record(NodeKey node, boolean ok, ProbeStage stage, long latencyMillis) {
+        long now = System.currentTimeMillis();
+        int nodeId = nodeId(node);
+        int latency = (int) Math.min(Integer.MAX_VALUE, Math.max(0, latencyMillis));
+
+        int offset = raw.nextOffset();
+        raw.buffer.putLong(offset, now);
+        raw.buffer.putInt(offset + 8, nodeId);
+        raw.buffer.put(offset + 12, (byte) (ok ? 0 : 1));
+        raw.buffer.put(offset + 13, (byte) stage.ordinal());
+        raw.buffer.putInt(offset + 16, latency);
+        raw.commit();
+
+        for (Rollup rollup : rollups) {
+            rollup.add(nodeId, now, ok, latency);
+        }
+    }
+
+    /**
+     * @param resolution the resolution, or null to pick one that suits the range
+     */
+    public List<HistoryPoint> query(Collection<NodeKey> nodes, long fromMillis, long toMillis, Resolution resolution) {
+        if (resolution == null) {
+            resolution = resolutionFor(fromMillis, toMillis);
+        }
+        Set<Integer> ids = new HashSet<>();
+        synchronized (this) {
+            for (NodeKey node : nodes) {
+                Integer id = nodeIds.get(node);
+                if (id != null) {
+                    ids.add(id);
+                }
+            }
+        }
+        List<HistoryPoint> points = new ArrayList<>();
+        if (ids.isEmpty()) {
+            return points;
+        }
+
+        if (resolution == Resolution.RAW) {
+            for (long i = raw.lowerBound(0, fromMillis); i < raw.writeIndex && points.size() < MAX_QUERY_RESULTS; i++) {
+                int offset = raw.offset(i);
+                long timestamp = raw.buffer.getLong(offset);
+                int nodeId = raw.buffer.getInt(offset + 8);
+                if (timestamp > toMillis) {
+                    break;
+                }
+                if (ids.contains(nodeId) && raw.isValid(i)) {
+                    int latency = raw.buffer.getInt(offset + 16);
+                    points.add(new HistoryPoint(nodeName(nodeId), timestamp, 1, raw.buffer.get(offset + 12),
+                            ProbeStage.values()[raw.buffer.get(offset + 13)].getLabel(), latency, latency));
+                }
+            }
+            return points;
+        }
+
+        RingFile file = file(resolution);
+        // a bucket cut in two by a restart, see close(), is merged back into one point
+        Map<Map.Entry<Integer, Long>, Integer> pointsByBucket = new HashMap<>();
+        List<Long> latencySums = new ArrayList<>();
+        // rollups are written at most one bucket plus a flush interval after the bucket started, records are ordered
+        // by write time
+        long slack = resolution.getWidthMillis() + 6 * FLUSH_INTERVAL_MILLIS;
+        long lastWrittenAt = toMillis > Long.MAX_VALUE - slack ? Long.MAX_VALUE : toMillis + slack;
+        for (long i = file.lowerBound(0, fromMillis); i < file.writeIndex && points.size() < MAX_QUERY_RESULTS; i++) {
+            int offset = file.offset(i);
+            long writtenAt = file.buffer.getLong(offset);
+            long bucketStart = file.buffer.getLong(offset + 8);
+            int nodeId = file.buffer.getInt(offset + 16);
+            if (writtenAt > lastWrittenAt) {
+                break;
+            }
+            if (bucketStart + resolution.getWidthMillis() > fromMillis && bucketStart <= toMillis
+                    && ids.contains(nodeId) && file.isValid(i)) {
+                int count = file.buffer.getInt(offset + 20);
+                int errors = file.buffer.getInt(offset + 24);
+                int maxLatency = file.buffer.getInt(offset + 28);
+                long latencySum = file.buffer.getLong(offset + 32);
+                Map.Entry<Integer, Long> bucket = new AbstractMap.SimpleImmutableEntry<>(nodeId, bucketStart);
+                Integer index = pointsByBucket.get(bucket);
+                if (index == null) {
+                    pointsByBucket.put(bucket, points.size());
+                    latencySums.add(latencySum);
+                    points.add(new HistoryPoint(nodeName(nodeId), bucketStart, count, errors, null,
+                            count > 0 ? latencySum / count : 0, maxLatency));
+                } else {
+                    HistoryPoint point = points.get(index);
+                    long mergedSum = latencySums.get(index) + latencySum;
+                    latencySums.set(index, mergedSum);
+                    point.setProbes(point.getProbes() + count);
+                    point.setErrors(point.getErrors() + errors);
+                    point.setMaxLatencyMillis(Math.max(point.getMaxLatencyMillis(), maxLatency));
+                    point.setAvgLatencyMillis(point.getProbes() > 0 ? mergedSum / point.getProbes() : 0);
+                }
+            }
+        }
+        return points;
+    }
+
+    /**
+     * The resolution forRange picks, or a coarser one if its ring no longer reaches back to the start of the range: a
+     * ring holds a number of records, not a period, so how far back it reaches depends on the number of nodes.
+     */
+    Resolution resolutionFor(long fromMillis, long toMillis) {
+        Resolution resolution = Resolution.forRange(fromMillis, toMillis);
+        while (resolution != Resolution.DAY && !file(resolution).reaches(fromMillis)) {
+            resolution = Resolution.values()[resolution.ordinal() + 1];
+        }
+        return resolution;
+    }
+
+    private RingFile file(Resolution resolution) {
+        return resolution == Resolution.RAW ? raw : rollups[resolution.ordinal() - 1].file;
+    }
+
+    synchronized void flushCompleted(long now) {
+        for (Rollup rollup : rollups) {
+            rollup.flushCompleted(now);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        flusher.shutdownNow();
+        synchronized (this) {
+            // write the partial buckets as well, so a restart loses nothing; query merges them with their rest
+            for (Rollup rollup : rollups) {
+                rollup.flushAll(System.currentTimeMillis());
+            }
+            raw.close();
+            for (Rollup rollup : rollups) {
+                rollup.file.close();
+            }
+            nodeIndexWriter.close();
+        }
+    }
+
+    private int nodeId(NodeKey node) {
+        Integer id = nodeIds.get(node);
+        if (id != null) {
+            return id;
+        }
+        id = nodesById.size();
+        nodeIds.put(node, id);
+        nodesById.add(node);
+        try {
+            nodeIndexWriter.write(id + "\t" + node.toIndexFields() + "\n");
+            nodeIndexWriter.flush();
+        } catch (IOException e) {
+            log.error("Could not write node index entry for {}", node, e);
+        }
+        return id;
+    }
+
+    private synchronized String nodeName(int nodeId) {
+        return nodeId < nodesById.size() ? nodesById.get(nodeId).toString() : String.valueOf(nodeId);
+    }
+
+    @Data
+    @AllArgsConstructor
+    public static class HistoryPoint {
+        String node;
+        // probe time, or start of the bucket for rollups
+        long timestamp;
+        int probes;
+        int errors;
+        // stage the probe ended in, raw resolution only
+        String stage;
+        long avgLatencyMillis;
+        int maxLatencyMillis;
+    }
+
+    /**
+     * Accumulates the current bucket of every node in primitive arrays indexed by node id.
+     */
+    private static class Rollup {
+        final Resolution resolution;
+        final RingFile file;
+        long[] bucketStart = new long[0];
+        int[] count = new int[0];
+        int[] errors = new int[0];
+        int[] maxLatency = new int[0];
+        long[] latencySum = new long[0];
+
+        Rollup(Resolution resolution, RingFile file) {
+            this.resolution = resolution;
+            this.file = file;
+        }
+
+        void add(int nodeId, long timestamp, boolean ok, int latency) {
+            if (nodeId >= count.length) {
+                int size = Math.max(16, nodeId * 2);
+                bucketStart = Arrays.copyOf(bucketStart, size);
+                count = Arrays.copyOf(count, size);
+                errors = Arrays.copyOf(errors, size);
+                maxLatency = Arrays.copyOf(maxLatency, size);
+                latencySum = Arrays.copyOf(latencySum, size);
+            }
+            long bucket = timestamp - timestamp % resolution.getWidthMillis();
+            if (count[nodeId] > 0 && bucketStart[nodeId] != bucket) {
+                flush(nodeId, timestamp);
+            }
+            bucketStart[nodeId] = bucket;
+            count[nodeId]++;
+            errors[nodeId] += ok ? 0 : 1;
+            maxLatency[nodeId] = Math.max(maxLatency[nodeId], latency);
+            latencySum[nodeId] += latency;
+        }
+
+        void flushCompleted(long now) {
+            for (int nodeId = 0; nodeId < count.length; nodeId++) {
+                if (count[nodeId] > 0 && bucketStart[nodeId] + resolution.getWidthMillis() <= now) {
+                    flush(nodeId, now);
+                }
+            }
+        }
+
+        void flushAll(long now) {
+            for (int nodeId = 0; nodeId < count.length; nodeId++) {
+                if (count[nodeId] > 0) {
+                    flush(nodeId, now);
+                }
+            }
+        }
+
+        private void flush(int nodeId, long now) {
+            int offset = file.nextOffset();
+            file.buffer.putLong(offset, now);
+            file.buffer.putLong(offset + 8, bucketStart[nodeId]);
+            file.buffer.putInt(offset + 16, nodeId);
+            file.buffer.putInt(offset + 20, count[nodeId]);
+            file.buffer.putInt(offset + 24, errors[nodeId]);
+            file.buffer.putInt(offset + 28, maxLatency[nodeId]);
+            file.buffer.putLong(offset + 32, latencySum[nodeId]);
+            file.commit();
+            count[nodeId] = 0;
+            errors[nodeId] = 0;
+            maxLatency[nodeId] = 0;
+            latencySum[nodeId] = 0;
+        }
+    }
+
+    /**
+     * A fixed capacity ring of fixed size records behind a small header, mapped into memory as a whole. The header
+     * holds the total number of records ever written, the oldest ones get overwritten.
+     */
+    static class RingFile {
+        private static final int MAGIC = 0x42534d48;
+        private static final int HEADER_SIZE = 64;
+        private static final int WRITE_INDEX_OFFSET = 16;
+
+        final MappedByteBuffer buffer;
+        final int recordSize;
+        final long capacity;
+        private final FileChannel channel;
+        volatile long writeIndex;
+
+        RingFile(Path file, int recordSize, long capacity) throws IOException {
+            if (HEADER_SIZE + capacity * recordSize > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Capacity " + capacity + " too large for " + file);
+            }
+            this.recordSize = recordSize;
+            this.capacity = capacity;
+            if (Files.exists(file) && !hasLayout(file, recordSize, capacity)) {
+                Path backup = file.resolveSibling(file.getFileName() + ".bak");
+                log.warn("{} has a different layout, moving it to {}", file, backup);
+                Files.move(file, backup, StandardCopyOption.REPLACE_EXISTING);
+            }
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + capacity * recordSize);
+            if (buffer.getInt(0) == MAGIC) {
+                writeIndex = buffer.getLong(WRITE_INDEX_OFFSET);
+            } else {
+                buffer.putInt(0, MAGIC);
+                buffer.putInt(4, recordSize);
+                buffer.putLong(8, capacity);
+                buffer.putLong(WRITE_INDEX_OFFSET, 0);
+                writeIndex = 0;
+            }
+        }
+
+        private static boolean hasLayout(Path file, int recordSize, long capacity) throws IOException {
+            try (FileChannel existing = FileChannel.open(file, StandardOpenOption.READ)) {
+                java.nio.ByteBuffer header = java.nio.ByteBuffer.allocate(HEADER_SIZE);
+                existing.read(header, 0);
+                return existing.size() == 0 || (header.getInt(0) == MAGIC && header.getInt(4) == recordSize && header.getLong(8) == capacity);
+            }
+        }
+
+        int offset(long index) {
+            return (int) (HEADER_SIZE + (index % capacity) * recordSize);
+        }
+
+        int nextOffset() {
+            return offset(writeIndex);
+        }
+
+        void commit() {
+            writeIndex++;
+            buffer.putLong(WRITE_INDEX_OFFSET, writeIndex);
+        }
+
+        long oldestIndex() {
+            return Math.max(0, writeIndex - capacity);
+        }
+
+        /**
+         * Whether the records still go back to the given time, by the long at the start of the record.
+         */
+        boolean reaches(long millis) {
+            long oldest = oldestIndex();
+            return oldest == 0 || buffer.getLong(offset(oldest)) <= millis;
+        }
+
+        /**
+         * False if the record was overwritten while it was being read.
+         */
+        boolean isValid(long index) {
+            return index >= oldestIndex();
+        }
+
+        /**
+         * Index of the first record whose long at the given record offset is at least the key.
+         */
+        long lowerBound(int keyOffset, long key) {
+            long low = oldestIndex();
+            long high = writeIndex;
+            while (low < high) {
+                long middle = (low + high) >>> 1;
+                if (buffer.getLong(offset(middle) + keyOffset) < key) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        void close() throws IOException {
+            buffer.force();
+            channel.close();
+        }
+    }
+}
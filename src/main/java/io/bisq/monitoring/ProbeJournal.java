@@ -0,0 +1,254 @@
+package io.bisq.monitoring;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Every probe outcome in one fixed size record, appended to a file per UTC day and kept for good, for replaying the
+ * alert logic offline. Recording only copies the record into a buffer, a writer thread swaps the buffer and writes
+ * it in one go, so the probe threads never wait for the disk. When the writer falls behind, records are dropped.
+ */
+@Slf4j
+public class ProbeJournal implements Closeable {
+    static final int RECORD_SIZE = 18;
+    static final int DEFAULT_BUFFER_RECORDS = 1 << 16;
+    static final long FLUSH_INTERVAL_MILLIS = 1000;
+    private static final String FILE_PREFIX = "probes-";
+    private static final String FILE_SUFFIX = ".journal";
+    private static final String NODE_INDEX = "nodes.idx";
+
+    private final Path directory;
+    private final Map<NodeKey, Integer> nodeIds = new HashMap<>();
+    // index lines of new nodes, written by the writer thread before the records that use them
+    private final StringBuilder newNodes = new StringBuilder();
+    private ByteBuffer pending;
+    private ByteBuffer spare;
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final AtomicLong dropped = new AtomicLong();
+    private final ScheduledExecutorService writer;
+    // written holding the lock on the writer, by the writer thread or close
+    private final Writer nodeIndexWriter;
+    private FileChannel channel;
+    private long channelDay = -1;
+
+    public ProbeJournal(Path directory) throws IOException {
+        this(directory, DEFAULT_BUFFER_RECORDS);
+    }
+
+    public ProbeJournal(Path directory, int bufferRecords) throws IOException {
+        Files.createDirectories(directory);
+        this.directory = directory;
+        this.pending = ByteBuffer.allocate(bufferRecords * RECORD_SIZE);
+        this.spare = ByteBuffer.allocate(bufferRecords * RECORD_SIZE);
+        readNodeIndex(directory).forEach((id, key) -> nodeIds.put(key, id));
+        this.nodeIndexWriter = Files.newBufferedWriter(directory.resolve(NODE_INDEX), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        this.writer = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("probe-journal").setDaemon(true).build());
+        this.writer.scheduleWithFixedDelay(this::flush, FLUSH_INTERVAL_MILLIS, FLUSH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        log.info("Probe journal in {} with {} known nodes", directory, nodeIds.size());
+    }
+
+    public void record(NodeKey node, boolean ok, ProbeStage stage, long latencyMillis) {
+        record(node, ok, stage, latencyMillis, System.currentTimeMillis());
+    }
+
+    void record(NodeKey node, boolean ok, ProbeStage stage, long latencyMillis, long nowMillis) {
+        boolean halfFull;
+        synchronized (this) {
+            if (pending.remaining() < RECORD_SIZE) {
+                dropped.incrementAndGet();
+                return;
+            }
+            pending.putLong(nowMillis);
+            pending.putInt(nodeId(node));
+            pending.putInt((int) Math.min(Integer.MAX_VALUE, Math.max(0, latencyMillis)));
+            pending.put((byte) (ok ? 0 : 1));
+            pending.put((byte) stage.ordinal());
+            halfFull = pending.position() >= pending.capacity() / 2;
+        }
+        if (halfFull && flushRequested.compareAndSet(false, true)) {
+            try {
+                writer.execute(this::flush);
+            } catch (RejectedExecutionException e) {
+                // closing, the final flush takes the record
+            }
+        }
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * Streams the records of the journal in time order through the handler, a mapped file at a time.
+     *
+     * @return the number of records read
+     */
+    public static long replay(Path directory, RecordHandler handler) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, FILE_PREFIX + "*" + FILE_SUFFIX)) {
+            stream.forEach(files::add);
+        }
+        // the date in the name sorts the files in time order
+        Collections.sort(files);
+        long records = 0;
+        for (Path file : files) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                long size = channel.size() - channel.size() % RECORD_SIZE;
+                // a mapping is limited to 2 GB
+                long chunk = (Integer.MAX_VALUE / RECORD_SIZE) * (long) RECORD_SIZE;
+                for (long position = 0; position < size; position += chunk) {
+                    MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(chunk, size - position));
+                    int limit = buffer.limit();
+                    for (int offset = 0; offset < limit; offset += RECORD_SIZE) {
+                        handler.record(buffer.getLong(offset), buffer.getInt(offset + 8), buffer.get(offset + 16) == 0,
+                                buffer.get(offset + 17), buffer.getInt(offset + 12));
+                    }
+                    records += limit / RECORD_SIZE;
+                }
+            }
+        }
+        return records;
+    }
+
+    /**
+     * @return the nodes of the journal by their id
+     */
+    public static Map<Integer, NodeKey> readNodeIndex(Path directory) throws IOException {
+        Map<Integer, NodeKey> nodes = new HashMap<>();
+        Path nodeIndex = directory.resolve(NODE_INDEX);
+        if (Files.exists(nodeIndex)) {
+            for (String line : Files.readAllLines(nodeIndex, StandardCharsets.UTF_8)) {
+                String[] parts = line.split("\t");
+                NodeKey key = NodeKey.parseIndexFields(parts, 1);
+                if (key != null) {
+                    nodes.put(Integer.parseInt(parts[0]), key);
+                }
+            }
+        }
+        return nodes;
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.shutdown();
+        try {
+            writer.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // the last records
+        flush();
+        synchronized (writer) {
+            if (channel != null) {
+                channel.close();
+            }
+            nodeIndexWriter.close();
+        }
+        if (dropped.get() > 0) {
+            log.warn("Probe journal dropped {} records, the disk could not keep up", dropped.get());
+        }
+    }
+
+    void flush() {
+        synchronized (writer) {
+            flushRequested.set(false);
+            ByteBuffer full;
+            String nodes;
+            synchronized (this) {
+                full = pending;
+                pending = spare;
+                spare = full;
+                nodes = newNodes.toString();
+                newNodes.setLength(0);
+            }
+            try {
+                if (!nodes.isEmpty()) {
+                    nodeIndexWriter.write(nodes);
+                    nodeIndexWriter.flush();
+                }
+                full.flip();
+                write(full);
+            } catch (IOException e) {
+                log.error("Could not write the probe journal", e);
+            } finally {
+                full.clear();
+            }
+        }
+    }
+
+    /**
+     * Writes the records to the files of their days, a batch crosses midnight at most once in practice.
+     */
+    private void write(ByteBuffer records) throws IOException {
+        while (records.hasRemaining()) {
+            long day = Math.floorDiv(records.getLong(records.position()), 24 * 60 * 60 * 1000L);
+            int end = records.position();
+            while (end < records.limit() && Math.floorDiv(records.getLong(end), 24 * 60 * 60 * 1000L) == day) {
+                end += RECORD_SIZE;
+            }
+            ByteBuffer slice = records.duplicate();
+            slice.limit(end);
+            while (slice.hasRemaining()) {
+                channelFor(day).write(slice);
+            }
+            records.position(end);
+        }
+    }
+
+    private FileChannel channelFor(long day) throws IOException {
+        if (day != channelDay) {
+            if (channel != null) {
+                channel.close();
+            }
+            Path file = directory.resolve(FILE_PREFIX + LocalDate.ofEpochDay(day) + FILE_SUFFIX);
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            // a record torn by a crash would shift all later ones
+            channel.truncate(channel.size() - channel.size() % RECORD_SIZE);
+            channel.position(channel.size());
+            channelDay = day;
+        }
+        return channel;
+    }
+
+    private int nodeId(NodeKey node) {
+        Integer id = nodeIds.get(node);
+        if (id != null) {
+            return id;
+        }
+        id = nodeIds.size();
+        nodeIds.put(node, id);
+        newNodes.append(id).append('\t').append(node.toIndexFields()).append('\n');
+        return id;
+    }
+
+    /**
+     * Receives the journal records without allocating anything per record.
+     */
+    public interface RecordHandler {
+        /**
+         * @param stage ordinal of the ProbeStage the probe ended in
+         */
+        void record(long timestampMillis, int nodeId, boolean ok, int stage, int latencyMillis);
+    }
+}
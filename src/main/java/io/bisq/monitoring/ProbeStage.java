@@ -0,0 +1,44 @@
+package io.bisq.monitoring;
+
+import lombok.Getter;
+
+/*
+ * The steps a check goes through. Stored by ordinal in the probe history, so only append new values.
+ */
+public enum ProbeStage {
+    CHECK("check"),
+    TOR_CONNECT("tor_connect"),
+    BTC_HANDSHAKE("btc_handshake"),
+    HTTP_GET_FEES("http_getFees"),
+    HTTP_GET_ALL_MARKET_PRICES("http_getAllMarketPrices"),
+    HTTP_GET_PARAMS("http_getParams"),
+    HTTP_GET_VERSION("http_getVersion"),
+    SEED_CONNECT("seed_connect"),
+    CIRCUIT_BUILD("circuit_build"),
+    CUSTOM_CHECK("custom_check");
+
+    @Getter
+    private final String label;
+
+    ProbeStage(String label) {
+        this.label = label;
+    }
+
+    public static ProbeStage forEndpoint(String path) {
+        if (path == null) {
+            return CHECK;
+        }
+        switch (path) {
+            case "/getFees":
+                return HTTP_GET_FEES;
+            case "/getAllMarketPrices":
+                return HTTP_GET_ALL_MARKET_PRICES;
+            case "/getParams":
+                return HTTP_GET_PARAMS;
+            case "/getVersion":
+                return HTTP_GET_VERSION;
+            default:
+                return CHECK;
+        }
+    }
+}
@@ -0,0 +1,349 @@
+package io.bisq.monitoring;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/*
+ * Checks whether host:port accepts TCP connections, either directly or through a SOCKS5 proxy (Tor) using a
+ * CONNECT request. All probes are multiplexed on one selector thread, so thousands of probes can be in flight without
+ * a thread or process per probe.
+ */
+@Slf4j
+public class ReachabilityProber {
+    public static final int DEFAULT_MAX_IN_FLIGHT = 4096;
+
+    private static final byte SOCKS_VERSION = 5;
+    private static final byte SOCKS_NO_AUTH = 0;
+    private static final byte SOCKS_USER_PASSWORD = 2;
+    private static final byte SOCKS_CMD_CONNECT = 1;
+    private static final byte SOCKS_ATYP_DOMAIN = 3;
+
+    private final int timeoutMillis;
+    private final int maxInFlight;
+    private final Selector selector;
+    private final Thread selectorThread;
+    private final Queue<Probe> submitted = new ConcurrentLinkedQueue<>();
+    // only touched by the selector thread
+    private final Queue<Probe> waiting = new ArrayDeque<>();
+    private int inFlight = 0;
+    private volatile boolean running = true;
+
+    public ReachabilityProber(int timeoutMillis) throws IOException {
+        this(timeoutMillis, DEFAULT_MAX_IN_FLIGHT);
+    }
+
+    public ReachabilityProber(int timeoutMillis, int maxInFlight) throws IOException {
+        this.timeoutMillis = timeoutMillis;
+        this.maxInFlight = maxInFlight;
+        this.selector = Selector.open();
+        this.selectorThread = new Thread(this::run, "reachability-prober");
+        this.selectorThread.setDaemon(true);
+        this.selectorThread.start();
+    }
+
+    /**
+     * @param socksProxy the SOCKS5 proxy to connect through, or null to connect directly
+     * @return completes with the outcome of the probe, never exceptionally
+     */
+    public CompletableFuture<Result> probe(String host, int port, InetSocketAddress socksProxy) {
+        return probe(host, port, socksProxy, null, null);
+    }
+
+    /**
+     * @param socksUsername username for the SOCKS5 proxy, e.g. to isolate the stream on its own Tor circuit, or null
+     */
+    public CompletableFuture<Result> probe(String host, int port, InetSocketAddress socksProxy, String socksUsername, String socksPassword) {
+        Probe probe = new Probe(host, port, socksProxy, socksUsername, socksPassword);
+        if (!running) {
+            probe.result.complete(new Result(host, port, false, -1, -1, "Prober is shut down"));
+            return probe.result;
+        }
+        submitted.add(probe);
+        selector.wakeup();
+        return probe.result;
+    }
+
+    public void shutdown() {
+        running = false;
+        selector.wakeup();
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                startSubmitted();
+                selector.select(Math.max(1, Math.min(timeoutMillis, 100)));
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    Probe probe = (Probe) key.attachment();
+                    try {
+                        handle(key, probe);
+                    } catch (IOException e) {
+                        finish(probe, false, e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName());
+                    }
+                }
+                expireTimedOut();
+            } catch (Throwable e) {
+                log.error("Unexpected error in reachability prober loop", e);
+            }
+        }
+        for (SelectionKey key : selector.keys()) {
+            finish((Probe) key.attachment(), false, "Prober is shut down");
+        }
+        waiting.forEach(probe -> probe.result.complete(new Result(probe.host, probe.port, false, -1, -1, "Prober is shut down")));
+        try {
+            selector.close();
+        } catch (IOException e) {
+            log.debug("Error closing selector", e);
+        }
+    }
+
+    private void startSubmitted() {
+        Probe probe;
+        while ((probe = submitted.poll()) != null) {
+            waiting.add(probe);
+        }
+        while (inFlight < maxInFlight && (probe = waiting.poll()) != null) {
+            inFlight++;
+            probe.startMillis = System.currentTimeMillis();
+            try {
+                probe.channel = SocketChannel.open();
+                probe.channel.configureBlocking(false);
+                if (probe.target.isUnresolved()) {
+                    throw new IOException("Cannot resolve " + probe.host);
+                }
+                if (probe.channel.connect(probe.target)) {
+                    onConnected(probe);
+                    if (!probe.result.isDone()) {
+                        probe.key = probe.channel.register(selector, SelectionKey.OP_WRITE, probe);
+                    }
+                } else {
+                    probe.key = probe.channel.register(selector, SelectionKey.OP_CONNECT, probe);
+                }
+            } catch (IOException e) {
+                finish(probe, false, e.getMessage());
+            }
+        }
+    }
+
+    private void handle(SelectionKey key, Probe probe) throws IOException {
+        if (!key.isValid()) {
+            return;
+        }
+        if (key.isConnectable()) {
+            probe.channel.finishConnect();
+            onConnected(probe);
+            if (!probe.result.isDone()) {
+                key.interestOps(SelectionKey.OP_WRITE);
+            }
+            return;
+        }
+        if (key.isWritable()) {
+            probe.channel.write(probe.buffer);
+            if (!probe.buffer.hasRemaining()) {
+                probe.buffer.clear();
+                // greeting and authentication replies are 2 bytes, the CONNECT reply header 4
+                probe.buffer.limit(probe.state == State.CONNECT ? 4 : 2);
+                key.interestOps(SelectionKey.OP_READ);
+            }
+            return;
+        }
+        if (key.isReadable()) {
+            if (probe.channel.read(probe.buffer) < 0) {
+                throw new IOException("Proxy closed the connection");
+            }
+            if (probe.buffer.hasRemaining()) {
+                return;
+            }
+            probe.buffer.flip();
+            byte status = probe.buffer.get(1);
+            if (probe.state == State.AUTH) {
+                // the username/password sub-negotiation has its own version byte
+                if (status != 0) {
+                    throw new IOException("SOCKS5 authentication failed");
+                }
+                writeConnectRequest(probe);
+                key.interestOps(SelectionKey.OP_WRITE);
+                return;
+            }
+            if (probe.buffer.get(0) != SOCKS_VERSION) {
+                throw new IOException("Not a SOCKS5 proxy");
+            }
+            if (probe.state == State.GREETING) {
+                if (status != probe.authMethod()) {
+                    throw new IOException(probe.username != null ? "SOCKS5 proxy does not accept username/password authentication"
+                            : "SOCKS5 proxy requires authentication");
+                }
+                if (probe.username != null) {
+                    writeAuthRequest(probe);
+                } else {
+                    writeConnectRequest(probe);
+                }
+                key.interestOps(SelectionKey.OP_WRITE);
+            } else if (status == 0) {
+                finish(probe, true, null);
+            } else {
+                finish(probe, false, socksReplyToString(status));
+            }
+        }
+    }
+
+    private void onConnected(Probe probe) {
+        probe.proxyConnectMillis = System.currentTimeMillis() - probe.startMillis;
+        if (probe.socksProxy == null) {
+            finish(probe, true, null);
+            return;
+        }
+        probe.state = State.GREETING;
+        probe.buffer.clear();
+        probe.buffer.put(SOCKS_VERSION).put((byte) 1).put(probe.authMethod()).flip();
+    }
+
+    private void writeAuthRequest(Probe probe) throws IOException {
+        byte[] user = probe.username.getBytes(StandardCharsets.UTF_8);
+        byte[] password = probe.password.getBytes(StandardCharsets.UTF_8);
+        if (user.length > 255 || password.length > 255) {
+            throw new IOException("SOCKS5 username or password too long");
+        }
+        probe.state = State.AUTH;
+        probe.buffer.clear();
+        probe.buffer.put((byte) 1).put((byte) user.length).put(user).put((byte) password.length).put(password).flip();
+    }
+
+    private void writeConnectRequest(Probe probe) throws IOException {
+        byte[] host = probe.host.getBytes(StandardCharsets.US_ASCII);
+        if (host.length > 255) {
+            throw new IOException("Host name too long for SOCKS5: " + probe.host);
+        }
+        probe.state = State.CONNECT;
+        probe.buffer.clear();
+        probe.buffer.put(SOCKS_VERSION).put(SOCKS_CMD_CONNECT).put((byte) 0).put(SOCKS_ATYP_DOMAIN)
+                .put((byte) host.length).put(host)
+                .put((byte) (probe.port >> 8)).put((byte) probe.port)
+                .flip();
+    }
+
+    private void expireTimedOut() {
+        long now = System.currentTimeMillis();
+        for (SelectionKey key : selector.keys()) {
+            Probe probe = (Probe) key.attachment();
+            if (now - probe.startMillis > timeoutMillis) {
+                finish(probe, false, "Timeout after " + timeoutMillis / 1000.0 + " seconds"
+                        + (probe.state == State.CONNECT ? " waiting for the proxy to connect" : ""));
+            }
+        }
+    }
+
+    private void finish(Probe probe, boolean reachable, String error) {
+        if (probe.result.isDone()) {
+            return;
+        }
+        close(probe);
+        inFlight--;
+        long connectMillis = System.currentTimeMillis() - probe.startMillis;
+        probe.result.complete(new Result(probe.host, probe.port, reachable, connectMillis,
+                probe.proxyConnectMillis, error));
+    }
+
+    private void close(Probe probe) {
+        if (probe.key != null) {
+            probe.key.cancel();
+        }
+        if (probe.channel != null) {
+            try {
+                probe.channel.close();
+            } catch (IOException e) {
+                log.debug("Error closing probe channel", e);
+            }
+        }
+    }
+
+    static String socksReplyToString(byte status) {
+        switch (status & 0xff) {
+            case 0x01:
+                return "SOCKS5 general failure";
+            case 0x02:
+                return "SOCKS5 connection not allowed";
+            case 0x03:
+                return "SOCKS5 network unreachable";
+            case 0x04:
+                return "SOCKS5 host unreachable";
+            case 0x05:
+                return "SOCKS5 connection refused";
+            case 0x06:
+                return "SOCKS5 TTL expired";
+            case 0xf0:
+                return "Onion service descriptor not found";
+            case 0xf2:
+                return "Onion service introduction failed";
+            case 0xf3:
+                return "Onion service rendezvous failed";
+            default:
+                return "SOCKS5 error " + (status & 0xff);
+        }
+    }
+
+    @Data
+    @AllArgsConstructor
+    public static class Result {
+        String host;
+        int port;
+        boolean reachable;
+        // from start of the probe until the target (through the proxy) accepted the connection
+        long connectMillis;
+        // TCP connect to the proxy, or to the target itself for direct probes
+        long proxyConnectMillis;
+        String error;
+    }
+
+    private enum State {
+        TCP_CONNECT, GREETING, AUTH, CONNECT
+    }
+
+    private static class Probe {
+        final String host;
+        final int port;
+        final InetSocketAddress socksProxy;
+        final String username;
+        final String password;
+        final InetSocketAddress target;
+        final CompletableFuture<Result> result = new CompletableFuture<>();
+        // large enough for a CONNECT request and for an authentication request
+        final ByteBuffer buffer = ByteBuffer.allocate(515);
+        State state = State.TCP_CONNECT;
+        SocketChannel channel;
+        SelectionKey key;
+        long startMillis;
+        long proxyConnectMillis = -1;
+
+        Probe(String host, int port, InetSocketAddress socksProxy, String username, String password) {
+            this.host = host;
+            this.port = port;
+            this.socksProxy = socksProxy;
+            this.username = username;
+            this.password = password != null ? password : "";
+            // resolve direct targets on the caller thread, DNS lookups would block the selector
+            this.target = socksProxy != null ? socksProxy : new InetSocketAddress(host, port);
+        }
+
+        byte authMethod() {
+            return username != null ? SOCKS_USER_PASSWORD : SOCKS_NO_AUTH;
+        }
+    }
+}
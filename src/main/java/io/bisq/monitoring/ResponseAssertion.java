@@ -0,0 +1,23 @@
+package io.bisq.monitoring;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/*
+ * One check on a pricenode response, as declared in the yaml file. The field is a dotted path into the JSON body
+ * where "[]" matches any array element, e.g. "data[].currencyCode". Without a field the check applies to the body
+ * as plain text.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ResponseAssertion {
+    private String endpoint;
+    private String field;
+    // exists, range, contains or equals
+    private String check;
+    private String value;
+    private Double min;
+    private Double max;
+}
@@ -0,0 +1,325 @@
+package io.bisq.monitoring;
+
+import com.fasterxml.jackson.core.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/*
+ * Validates endpoint responses against assertions that are compiled once at startup. JSON bodies are checked with a
+ * streaming parser that stops reading as soon as every assertion of the endpoint is decided, so large payloads are
+ * never held in memory as a whole.
+ */
+@Slf4j
+public class ResponseValidator {
+    // key of the captured plain text body in Result.values
+    public static final String BODY = "$body";
+    public static final String BTC_TX_FEE_FIELD = "dataMap.btcTxFee";
+    static final int MAX_TEXT_BODY_LENGTH = 64 * 1024;
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final Map<String, List<CompiledAssertion>> assertionsByEndpoint = new HashMap<>();
+
+    /**
+     * @throws IllegalArgumentException if an assertion is malformed
+     */
+    public ResponseValidator(List<ResponseAssertion> assertions) {
+        for (ResponseAssertion assertion : assertions) {
+            assertionsByEndpoint.computeIfAbsent(assertion.getEndpoint(), endpoint -> new ArrayList<>())
+                    .add(new CompiledAssertion(assertion));
+        }
+    }
+
+    /**
+     * The assertions from the yaml file, or the classic pricenode checks when there are none, plus the values the
+     * status page shows. An 'equals' assertion without a value compares with pricenodeVersion, and is left out when
+     * there is none.
+     */
+    public static ResponseValidator forPricenodes(NodeConfig nodeConfig) {
+        List<ResponseAssertion> assertions = new ArrayList<>();
+        if (nodeConfig.getPricenodeAssertions() != null && !nodeConfig.getPricenodeAssertions().isEmpty()) {
+            for (ResponseAssertion assertion : nodeConfig.getPricenodeAssertions()) {
+                if ("equals".equalsIgnoreCase(assertion.getCheck()) && assertion.getValue() == null) {
+                    if (nodeConfig.getPricenodeVersion() == null) {
+                        log.warn("Ignoring the 'equals' assertion on {} without a value, no pricenodeVersion is configured",
+                                assertion.getEndpoint());
+                        continue;
+                    }
+                    assertion = new ResponseAssertion(assertion.getEndpoint(), assertion.getField(), assertion.getCheck(),
+                            nodeConfig.getPricenodeVersion(), null, null);
+                }
+                assertions.add(assertion);
+            }
+        } else {
+            assertions.add(new ResponseAssertion("/getFees", BTC_TX_FEE_FIELD, "exists", null, null, null));
+            assertions.add(new ResponseAssertion("/getAllMarketPrices", "data[].currencyCode", "contains", "XMR", null, null));
+            if (nodeConfig.getPricenodeVersion() != null) {
+                assertions.add(new ResponseAssertion("/getVersion", null, "equals", nodeConfig.getPricenodeVersion(), null, null));
+            }
+        }
+        assertions.add(new ResponseAssertion("/getFees", BTC_TX_FEE_FIELD, "capture", null, null, null));
+        assertions.add(new ResponseAssertion("/getParams", null, "capture", null, null, null));
+        return new ResponseValidator(assertions);
+    }
+
+    /**
+     * Reads only as much of the body as is needed to decide all assertions of the endpoint.
+     */
+    public Result validate(String endpoint, InputStream body) throws IOException {
+        return validate(endpoint, body, null);
+    }
+
+    /**
+     * @param listener sees every token of a JSON body in the same pass, the body is then read to the end; or null
+     */
+    public Result validate(String endpoint, InputStream body, TokenListener listener) throws IOException {
+        List<CompiledAssertion> assertions = assertionsByEndpoint.get(endpoint);
+        Map<String, String> values = new HashMap<>();
+        if (assertions == null) {
+            if (listener == null) {
+                return new Result(true, null, values);
+            }
+            assertions = Collections.emptyList();
+        }
+        boolean needsText = false;
+        boolean needsJson = listener != null;
+        for (CompiledAssertion assertion : assertions) {
+            needsText |= assertion.isText();
+            needsJson |= !assertion.isText();
+        }
+
+        String text = null;
+        if (needsText) {
+            text = readText(body);
+            for (CompiledAssertion assertion : assertions) {
+                if (assertion.isText()) {
+                    String error = assertion.checkText(text, values);
+                    if (error != null) {
+                        return new Result(false, endpoint + ": " + error, values);
+                    }
+                }
+            }
+        }
+        if (needsJson) {
+            try (JsonParser parser = text != null ? JSON_FACTORY.createParser(text) : JSON_FACTORY.createParser(body)) {
+                String error = checkJson(parser, assertions, values, listener);
+                if (error != null) {
+                    return new Result(false, endpoint + ": " + error, values);
+                }
+            } catch (JsonProcessingException e) {
+                return new Result(false, endpoint + ": invalid JSON: " + e.getOriginalMessage(), values);
+            }
+        }
+        return new Result(true, null, values);
+    }
+
+    private static String checkJson(JsonParser parser, List<CompiledAssertion> assertions, Map<String, String> values,
+                                    TokenListener listener) throws IOException {
+        boolean[] decided = new boolean[assertions.size()];
+        int undecided = 0;
+        for (int i = 0; i < decided.length; i++) {
+            decided[i] = assertions.get(i).isText();
+            undecided += decided[i] ? 0 : 1;
+        }
+
+        JsonToken token;
+        while ((undecided > 0 || listener != null) && (token = parser.nextToken()) != null) {
+            if (listener != null) {
+                listener.token(token, parser);
+            }
+            if (undecided == 0 || !token.isScalarValue()) {
+                continue;
+            }
+            JsonStreamContext context = parser.getParsingContext();
+            for (int i = 0; i < decided.length; i++) {
+                CompiledAssertion assertion = assertions.get(i);
+                if (decided[i] || !assertion.matches(context)) {
+                    continue;
+                }
+                String value = parser.getText();
+                Boolean outcome = assertion.checkValue(value);
+                if (outcome == null) {
+                    continue;
+                }
+                if (!outcome) {
+                    return assertion.describeFailure(value);
+                }
+                values.putIfAbsent(assertion.field, value);
+                decided[i] = true;
+                undecided--;
+            }
+        }
+
+        for (int i = 0; i < decided.length; i++) {
+            if (!decided[i] && assertions.get(i).kind != Kind.CAPTURE) {
+                return assertions.get(i).describeFailure(null);
+            }
+        }
+        return null;
+    }
+
+    private static String readText(InputStream body) throws IOException {
+        StringBuilder builder = new StringBuilder();
+        Reader reader = new InputStreamReader(body, StandardCharsets.UTF_8);
+        char[] buffer = new char[1024];
+        int read;
+        while (builder.length() < MAX_TEXT_BODY_LENGTH && (read = reader.read(buffer)) >= 0) {
+            builder.append(buffer, 0, Math.min(read, MAX_TEXT_BODY_LENGTH - builder.length()));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Extracts values while a body is validated, so it is parsed once.
+     */
+    public interface TokenListener {
+        /**
+         * @param parser positioned on the token
+         */
+        void token(JsonToken token, JsonParser parser) throws IOException;
+    }
+
+    @Data
+    @AllArgsConstructor
+    public static class Result {
+        boolean valid;
+        String error;
+        // values found for the asserted fields, keyed by field path (or BODY)
+        Map<String, String> values;
+    }
+
+    private enum Kind {
+        EXISTS, RANGE, CONTAINS, EQUALS, CAPTURE
+    }
+
+    private static class CompiledAssertion {
+        final String field;
+        final Kind kind;
+        final String expected;
+        final double min;
+        final double max;
+        // path segments from the root, "[]" is any array element
+        final String[] segments;
+
+        CompiledAssertion(ResponseAssertion assertion) {
+            if (assertion.getEndpoint() == null || assertion.getCheck() == null) {
+                throw new IllegalArgumentException("Assertion needs an endpoint and a check: " + assertion);
+            }
+            try {
+                this.kind = Kind.valueOf(assertion.getCheck().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown check '" + assertion.getCheck() + "' in assertion " + assertion);
+            }
+            if ((kind == Kind.CONTAINS || kind == Kind.EQUALS) && assertion.getValue() == null) {
+                throw new IllegalArgumentException("Check '" + assertion.getCheck() + "' needs a value: " + assertion);
+            }
+            this.field = assertion.getField() != null ? assertion.getField() : BODY;
+            this.expected = assertion.getValue();
+            this.min = assertion.getMin() != null ? assertion.getMin() : Double.NEGATIVE_INFINITY;
+            this.max = assertion.getMax() != null ? assertion.getMax() : Double.POSITIVE_INFINITY;
+            this.segments = assertion.getField() != null ? parsePath(assertion.getField()) : null;
+        }
+
+        boolean isText() {
+            return segments == null;
+        }
+
+        /**
+         * Walks up from the current parser position, without allocating.
+         */
+        boolean matches(JsonStreamContext context) {
+            for (int i = segments.length - 1; i >= 0; i--) {
+                if (context == null || context.inRoot()) {
+                    return false;
+                }
+                if (segments[i].equals("[]")) {
+                    if (!context.inArray()) {
+                        return false;
+                    }
+                } else if (!context.inObject() || !segments[i].equals(context.getCurrentName())) {
+                    return false;
+                }
+                context = context.getParent();
+            }
+            return context != null && context.inRoot();
+        }
+
+        /**
+         * @return true if the value passes, false if it fails, null if it does not decide the assertion
+         */
+        Boolean checkValue(String value) {
+            switch (kind) {
+                case RANGE:
+                    try {
+                        double number = Double.parseDouble(value.trim());
+                        return number >= min && number <= max;
+                    } catch (NumberFormatException e) {
+                        return false;
+                    }
+                case CONTAINS:
+                    return expected.equals(value) ? Boolean.TRUE : null;
+                case EQUALS:
+                    return expected.equals(value.trim());
+                default:
+                    return true;
+            }
+        }
+
+        String checkText(String text, Map<String, String> values) {
+            values.put(field, text);
+            switch (kind) {
+                case EXISTS:
+                    return text.trim().isEmpty() ? "empty response" : null;
+                case CONTAINS:
+                    return text.contains(expected) ? null : "response does not contain " + expected;
+                default:
+                    Boolean outcome = checkValue(text);
+                    return (outcome == null || outcome) ? null : describeFailure(text);
+            }
+        }
+
+        String describeFailure(String actual) {
+            String subject = isText() ? "response" : field;
+            switch (kind) {
+                case RANGE:
+                    return actual == null ? subject + " is missing"
+                            : subject + " is " + actual + ", expected between " + min + " and " + max;
+                case CONTAINS:
+                    return subject + " does not contain " + expected;
+                case EQUALS:
+                    return actual == null ? subject + " is missing" : "Expected " + expected + ", actually: " + actual;
+                default:
+                    return subject + " is missing";
+            }
+        }
+
+        private static String[] parsePath(String path) {
+            List<String> segments = new ArrayList<>();
+            for (String part : path.split("\\.")) {
+                String name = part;
+                int arrays = 0;
+                while (name.endsWith("[]")) {
+                    name = name.substring(0, name.length() - 2);
+                    arrays++;
+                }
+                if (!name.isEmpty()) {
+                    segments.add(name);
+                }
+                for (int i = 0; i < arrays; i++) {
+                    segments.add("[]");
+                }
+            }
+            if (segments.isEmpty()) {
+                throw new IllegalArgumentException("Empty field path: " + path);
+            }
+            return segments.toArray(new String[0]);
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package io.bisq.monitoring;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+/*
+ * Schedules follow-up checks of failed nodes on a hashed timing wheel: one thread advances the wheel every tick and
+ * hands due retries to a small pool, so thousands of pending retries cost one list entry each. Delays back off
+ * exponentially with jitter, so nodes that failed together (e.g. on a Tor hiccup) are not retried at the same instant.
+ * A node has at most one pending retry, and at most one check in flight, be it a retry or a regular check.
+ */
+@Slf4j
+public class RetryScheduler {
+    public static final int DEFAULT_BASE_DELAY_SECS = 30;
+    public static final int DEFAULT_MAX_DELAY_SECS = 300;
+    public static final int DEFAULT_MAX_CONCURRENT_RETRIES = 4;
+    static final long DEFAULT_TICK_MILLIS = 1000;
+    static final int WHEEL_SIZE = 512;
+
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+    private final long tickMillis;
+    private final ExecutorService retryExecutor;
+    private final Thread wheelThread;
+
+    // buckets are only touched by the wheel thread, new timeouts reach it through 'added'
+    private final List<List<Timeout>> wheel = new ArrayList<>(WHEEL_SIZE);
+    private final Queue<Timeout> added = new ConcurrentLinkedQueue<>();
+    private final Map<NodeKey, Timeout> pending = new ConcurrentHashMap<>();
+    private final Set<NodeKey> inFlight = ConcurrentHashMap.newKeySet();
+    private final long startMillis = System.currentTimeMillis();
+    private volatile boolean running = true;
+
+    public RetryScheduler(NodeConfig nodeConfig) {
+        this(secsOrDefault(nodeConfig.getRetryBaseDelaySecs(), DEFAULT_BASE_DELAY_SECS) * 1000L,
+                secsOrDefault(nodeConfig.getRetryMaxDelaySecs(), DEFAULT_MAX_DELAY_SECS) * 1000L,
+                secsOrDefault(nodeConfig.getMaxConcurrentRetries(), DEFAULT_MAX_CONCURRENT_RETRIES),
+                DEFAULT_TICK_MILLIS);
+    }
+
+    public RetryScheduler(long baseDelayMillis, long maxDelayMillis, int maxConcurrentRetries, long tickMillis) {
+        this.baseDelayMillis = baseDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+        this.tickMillis = tickMillis;
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            wheel.add(new ArrayList<>());
+        }
+        // a retry thread waits for its probe, so this bounds the retries in flight; the probes take their slots and
+        // budget like the regular checks
+        this.retryExecutor = Executors.newFixedThreadPool(maxConcurrentRetries,
+                new ThreadFactoryBuilder().setNameFormat("retry-%d").setDaemon(true).build());
+        this.wheelThread = new Thread(this::run, "retry-wheel");
+        this.wheelThread.setDaemon(true);
+        this.wheelThread.start();
+        log.info("Retry scheduler: backoff from {} to {} seconds, max {} concurrent retries",
+                baseDelayMillis / 1000, maxDelayMillis / 1000, maxConcurrentRetries);
+    }
+
+    /**
+     * Schedule a retry of a node's check, unless one is pending already.
+     *
+     * @param attempt 1 for the first retry after a failure, the delay doubles with every attempt
+     * @return false if a retry for the node was pending already
+     */
+    public boolean schedule(NodeKey node, int attempt, Runnable check) {
+        Timeout timeout = new Timeout(node, check, System.currentTimeMillis() + backoffMillis(attempt));
+        if (pending.putIfAbsent(node, timeout) != null) {
+            return false;
+        }
+        added.add(timeout);
+        return true;
+    }
+
+    /**
+     * Drop the pending retry of the node, e.g. because a regular check found it fixed.
+     */
+    public void cancel(NodeKey node) {
+        pending.remove(node);
+    }
+
+    /**
+     * Run the check unless another check of the same node is in flight.
+     *
+     * @return false if the check was skipped
+     */
+    public boolean runExclusively(NodeKey node, Runnable check) {
+        if (!inFlight.add(node)) {
+            log.debug("Skipping check of {}, another check is still running", node);
+            return false;
+        }
+        try {
+            check.run();
+            return true;
+        } finally {
+            inFlight.remove(node);
+        }
+    }
+
+    /**
+     * Start the check unless another check of the same node is in flight, the node counts as in flight until the
+     * check completes.
+     *
+     * @return completes when the check did, at once if it was skipped; cancelling it cancels the check
+     */
+    public CompletableFuture<?> runExclusivelyAsync(NodeKey node, Supplier<CompletableFuture<?>> check) {
+        if (!inFlight.add(node)) {
+            log.debug("Skipping check of {}, another check is still running", node);
+            return CompletableFuture.completedFuture(null);
+        }
+        CompletableFuture<?> result;
+        try {
+            result = check.get();
+        } catch (RuntimeException e) {
+            inFlight.remove(node);
+            throw e;
+        }
+        CompletableFuture<Void> exclusive = new CompletableFuture<>();
+        result.whenComplete((ignored, e) -> {
+            inFlight.remove(node);
+            if (e != null) {
+                exclusive.completeExceptionally(e);
+            } else {
+                exclusive.complete(null);
+            }
+        });
+        // a dependent future would not pass the cancel on
+        exclusive.whenComplete((ignored, e) -> {
+            if (exclusive.isCancelled()) {
+                result.cancel(true);
+            }
+        });
+        return exclusive;
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    public void shutdown() {
+        running = false;
+        wheelThread.interrupt();
+        retryExecutor.shutdownNow();
+    }
+
+    long backoffMillis(int attempt) {
+        long delay = nominalBackoffMillis(baseDelayMillis, maxDelayMillis, attempt);
+        // equal jitter: at least half the delay, spread over the other half
+        long half = delay / 2;
+        return half + (half > 0 ? ThreadLocalRandom.current().nextLong(half + 1) : 0);
+    }
+
+    private void run() {
+        long tick = 0;
+        while (running) {
+            long sleepMillis = startMillis + (tick + 1) * tickMillis - System.currentTimeMillis();
+            if (sleepMillis > 0) {
+                try {
+                    Thread.sleep(sleepMillis);
+                } catch (InterruptedException e) {
+                    break;
+                }
+            }
+            try {
+                transferAdded(tick);
+                expire(wheel.get((int) (tick % WHEEL_SIZE)));
+            } catch (Throwable e) {
+                log.error("Unexpected error in retry scheduler", e);
+            }
+            tick++;
+        }
+    }
+
+    private void transferAdded(long currentTick) {
+        Timeout timeout;
+        while ((timeout = added.poll()) != null) {
+            long dueTick = Math.max(currentTick, (timeout.deadline - startMillis) / tickMillis);
+            timeout.remainingRounds = (dueTick - currentTick) / WHEEL_SIZE;
+            wheel.get((int) (dueTick % WHEEL_SIZE)).add(timeout);
+        }
+    }
+
+    private void expire(List<Timeout> bucket) {
+        Iterator<Timeout> iterator = bucket.iterator();
+        while (iterator.hasNext()) {
+            Timeout timeout = iterator.next();
+            if (timeout.remainingRounds > 0) {
+                timeout.remainingRounds--;
+                continue;
+            }
+            iterator.remove();
+            // false if cancelled, or replaced after a cancel
+            if (pending.remove(timeout.node, timeout)) {
+                try {
+                    retryExecutor.execute(() -> runExclusively(timeout.node, timeout.check));
+                } catch (RejectedExecutionException e) {
+                    log.debug("Retry of {} rejected, scheduler is shut down", timeout.node);
+                }
+            }
+        }
+    }
+
+    /**
+     * The delay of a retry before the jitter, the actual delay is between half of it and all of it.
+     */
+    static long nominalBackoffMillis(long baseDelayMillis, long maxDelayMillis, int attempt) {
+        return Math.min(maxDelayMillis, baseDelayMillis << Math.min(Math.max(attempt - 1, 0), 20));
+    }
+
+    static int secsOrDefault(int value, int defaultValue) {
+        return value > 0 ? value : defaultValue;
+    }
+
+    private static class Timeout {
+        final NodeKey node;
+        final Runnable check;
+        final long deadline;
+        long remainingRounds;
+
+        Timeout(NodeKey node, Runnable check, long deadline) {
+            this.node = node;
+            this.check = check;
+            this.deadline = deadline;
+        }
+    }
+}
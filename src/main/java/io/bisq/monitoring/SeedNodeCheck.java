@@ -0,0 +1,46 @@
+package io.bisq.monitoring;
+
+import java.util.concurrent.CompletableFuture;
+
+/*
+ * A seednode is up if it accepts connections, over Tor that is the SOCKS connect to its onion service.
+ */
+public class SeedNodeCheck implements NodeCheck {
+    public static final String TYPE = "seednode";
+
+    @Override
+    public String getType() {
+        return TYPE;
+    }
+
+    @Override
+    public NodeType getNodeType() {
+        return NodeType.SEED_NODE;
+    }
+
+    @Override
+    public int getDefaultPort() {
+        return 8000;
+    }
+
+    @Override
+    public CompletableFuture<CheckResult> check(NodeDetail node, Context context) {
+        TorPool.Route route = context.route(node);
+        CompletableFuture<ReachabilityProber.Result> probe = route != null
+                ? context.getReachabilityProber().probe(node.getAddress(), node.getPort(), route.getSocksProxy(), route.getUsername(), route.getPassword())
+                : context.getReachabilityProber().probe(node.getAddress(), node.getPort(), null);
+        if (route != null) {
+            // on the source, a cancelled dependent future never runs its function
+            probe.whenComplete((result, e) -> route.close());
+        }
+        return probe.thenApply(result -> {
+            if (!result.isReachable()) {
+                return CheckResult.failed(ProbeStage.SEED_CONNECT, result.getConnectMillis(), "Seed node not reachable: " + result.getError());
+            }
+            CheckResult checkResult = CheckResult.ok(ProbeStage.SEED_CONNECT, result.getConnectMillis());
+            checkResult.recordLatency(ProbeStage.SEED_CONNECT, result.getConnectMillis());
+            checkResult.setExtraString("connect: " + result.getConnectMillis() + " ms");
+            return checkResult;
+        });
+    }
+}
@@ -0,0 +1,250 @@
+package io.bisq.monitoring;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/*
+ * Sends Slack alerts in the background, so a slow or unreachable webhook never holds up a check. Alerts for the same
+ * webhook that arrive within the coalesce window go out as one digest message, so an outage of many nodes is one
+ * message instead of one per node. Every webhook gets at most one message per minimum interval, a failed post is
+ * retried with exponential backoff. The queue is bounded, alerts beyond it are dropped and counted.
+ */
+@Slf4j
+public class SlackDispatcher {
+    public static final int DEFAULT_MAX_QUEUED = 1000;
+    public static final long DEFAULT_COALESCE_MILLIS = 10 * 1000;
+    // Slack allows about one message per second per webhook
+    public static final long DEFAULT_MIN_INTERVAL_MILLIS = 1000;
+    static final int MAX_ATTEMPTS = 5;
+    static final long RETRY_BASE_DELAY_MILLIS = 2000;
+    static final long RETRY_MAX_DELAY_MILLIS = 60 * 1000;
+    // alerts listed in one digest, the rest are only counted
+    static final int MAX_ALERTS_PER_DIGEST = 20;
+
+    private final int maxQueued;
+    private final long coalesceMillis;
+    private final long minIntervalMillis;
+    private final Supplier<String> digestSummary;
+    private final ScheduledExecutorService executor;
+    private final Map<SlackWebhook, Channel> channels = new ConcurrentHashMap<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final LatencyHistogram sendLatency = new LatencyHistogram(LatencyMetrics.BUCKET_BOUNDS_MILLIS);
+
+    /**
+     * @param digestSummary appended to digest messages, e.g. the list of nodes in error; may return ""
+     */
+    public SlackDispatcher(Supplier<String> digestSummary) {
+        this(digestSummary, DEFAULT_MAX_QUEUED, DEFAULT_COALESCE_MILLIS, DEFAULT_MIN_INTERVAL_MILLIS);
+    }
+
+    public SlackDispatcher(Supplier<String> digestSummary, int maxQueued, long coalesceMillis, long minIntervalMillis) {
+        this.digestSummary = digestSummary;
+        this.maxQueued = maxQueued;
+        this.coalesceMillis = coalesceMillis;
+        this.minIntervalMillis = minIntervalMillis;
+        // one thread per webhook we usually have, a slow webhook does not delay the others
+        this.executor = Executors.newScheduledThreadPool(3,
+                new ThreadFactoryBuilder().setNameFormat("slack-%d").setDaemon(true).build());
+    }
+
+    /**
+     * Queue an alert for the webhook.
+     *
+     * @return false if the alert was not queued: Slack is disabled, there is no webhook or the queue is full
+     */
+    public boolean send(SlackWebhook webhook, String title, String body) {
+        if (!Monitoring.isSlackEnabled || webhook == null) {
+            log.info("Not sending to slack: {} - {}", title, body);
+            return false;
+        }
+        if (queued.incrementAndGet() > maxQueued) {
+            queued.decrementAndGet();
+            dropped.incrementAndGet();
+            log.warn("Slack queue is full, dropping alert: {}", title);
+            return false;
+        }
+        Channel channel = channels.computeIfAbsent(webhook, Channel::new);
+        synchronized (channel) {
+            channel.pending.add(new Alert(title, body));
+            if (!channel.scheduled) {
+                channel.scheduled = true;
+                schedule(channel, coalesceMillis);
+            }
+        }
+        return true;
+    }
+
+    public int getQueueDepth() {
+        return queued.get();
+    }
+
+    public long getSentCount() {
+        return sent.get();
+    }
+
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    public LatencyHistogram getSendLatency() {
+        return sendLatency;
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public void writePrometheus(StringBuilder builder) {
+        builder.append("# HELP bisq_slack_queue_depth Slack alerts waiting to be sent.\n");
+        builder.append("# TYPE bisq_slack_queue_depth gauge\n");
+        builder.append("bisq_slack_queue_depth ").append(getQueueDepth()).append('\n');
+        builder.append("# HELP bisq_slack_messages_sent_total Slack messages delivered, a digest counts once.\n");
+        builder.append("# TYPE bisq_slack_messages_sent_total counter\n");
+        builder.append("bisq_slack_messages_sent_total ").append(getSentCount()).append('\n');
+        builder.append("# HELP bisq_slack_alerts_failed_total Slack alerts given up after all retries.\n");
+        builder.append("# TYPE bisq_slack_alerts_failed_total counter\n");
+        builder.append("bisq_slack_alerts_failed_total ").append(getFailedCount()).append('\n');
+        builder.append("# HELP bisq_slack_alerts_dropped_total Slack alerts dropped because the queue was full.\n");
+        builder.append("# TYPE bisq_slack_alerts_dropped_total counter\n");
+        builder.append("bisq_slack_alerts_dropped_total ").append(getDroppedCount()).append('\n');
+        builder.append("# HELP bisq_slack_send_latency_seconds Duration of Slack webhook posts, failed ones included.\n");
+        builder.append("# TYPE bisq_slack_send_latency_seconds histogram\n");
+        for (long bound : LatencyMetrics.BUCKET_BOUNDS_MILLIS) {
+            builder.append("bisq_slack_send_latency_seconds_bucket{le=\"").append(bound / 1000.0).append("\"} ")
+                    .append(sendLatency.getCountAtOrBelow(bound)).append('\n');
+        }
+        long count = sendLatency.getTotalCount();
+        builder.append("bisq_slack_send_latency_seconds_bucket{le=\"+Inf\"} ").append(count).append('\n');
+        builder.append("bisq_slack_send_latency_seconds_sum ").append(sendLatency.getSum() / 1000.0).append('\n');
+        builder.append("bisq_slack_send_latency_seconds_count ").append(count).append('\n');
+    }
+
+    private void schedule(Channel channel, long delayMillis) {
+        try {
+            executor.schedule(() -> flush(channel), Math.max(0, delayMillis), TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            log.debug("Slack dispatcher is shut down");
+        }
+    }
+
+    /**
+     * Runs on the executor, at most once at a time per channel: only one flush is scheduled per channel.
+     */
+    private void flush(Channel channel) {
+        long now = System.currentTimeMillis();
+        if (now < channel.nextSendMillis) {
+            schedule(channel, channel.nextSendMillis - now);
+            return;
+        }
+        List<Alert> alerts;
+        synchronized (channel) {
+            alerts = new ArrayList<>(channel.pending);
+        }
+        if (alerts.isEmpty()) {
+            synchronized (channel) {
+                channel.scheduled = false;
+            }
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        long retryAfterMillis = -1;
+        boolean delivered = false;
+        try {
+            if (alerts.size() == 1) {
+                channel.webhook.post(alerts.get(0).title, alerts.get(0).body);
+            } else {
+                channel.webhook.post(alerts.size() + " alerts", digest(alerts));
+            }
+            delivered = true;
+        } catch (SlackWebhook.RateLimitedException e) {
+            log.warn("Slack webhook {} is rate limited", channel.webhook);
+            retryAfterMillis = e.getRetryAfterMillis();
+        } catch (IOException | RuntimeException e) {
+            log.error("Couldn't send slack message to {} (attempt {}): {}", channel.webhook, channel.attempt + 1, e.getMessage());
+        }
+        long end = System.currentTimeMillis();
+        sendLatency.record(end - start);
+        channel.nextSendMillis = end + minIntervalMillis;
+
+        long delayMillis;
+        synchronized (channel) {
+            if (delivered || ++channel.attempt >= MAX_ATTEMPTS) {
+                if (!delivered) {
+                    log.error("Giving up on {} slack alert(s) for {}", alerts.size(), channel.webhook);
+                    failed.addAndGet(alerts.size());
+                } else {
+                    sent.incrementAndGet();
+                }
+                // alerts queued while posting stay for the next message
+                channel.pending.subList(0, alerts.size()).clear();
+                queued.addAndGet(-alerts.size());
+                channel.attempt = 0;
+                delayMillis = minIntervalMillis;
+            } else {
+                long backoff = Math.min(RETRY_MAX_DELAY_MILLIS, RETRY_BASE_DELAY_MILLIS << (channel.attempt - 1));
+                delayMillis = Math.max(backoff, retryAfterMillis);
+            }
+            if (channel.pending.isEmpty()) {
+                channel.scheduled = false;
+                return;
+            }
+        }
+        schedule(channel, delayMillis);
+    }
+
+    private String digest(List<Alert> alerts) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < alerts.size() && i < MAX_ALERTS_PER_DIGEST; i++) {
+            builder.append('*').append(alerts.get(i).title).append("*: ").append(alerts.get(i).body).append('\n');
+        }
+        if (alerts.size() > MAX_ALERTS_PER_DIGEST) {
+            builder.append("... and ").append(alerts.size() - MAX_ALERTS_PER_DIGEST).append(" more\n");
+        }
+        String summary = digestSummary != null ? digestSummary.get() : "";
+        if (!summary.isEmpty()) {
+            builder.append('\n').append(summary);
+        }
+        return builder.toString();
+    }
+
+    private static class Alert {
+        final String title;
+        final String body;
+
+        Alert(String title, String body) {
+            this.title = title;
+            this.body = body;
+        }
+    }
+
+    private static class Channel {
+        final SlackWebhook webhook;
+        // guarded by 'this'
+        final List<Alert> pending = new ArrayList<>();
+        boolean scheduled;
+        // only touched by the flush of the channel
+        int attempt;
+        long nextSendMillis;
+
+        Channel(SlackWebhook webhook) {
+            this.webhook = webhook;
+        }
+    }
+}
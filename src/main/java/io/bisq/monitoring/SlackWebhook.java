@@ -0,0 +1,95 @@
+package io.bisq.monitoring;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.Getter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+
+/*
+ * A Slack incoming webhook. Posts the same payload as the slack-webhook library did, but with connect and read
+ * timeouts and with the HTTP status checked, so SlackDispatcher can tell a failed post from a delivered one.
+ */
+public class SlackWebhook {
+    public static final int DEFAULT_TIMEOUT_MILLIS = 10 * 1000;
+    private static final ObjectMapper JSON_MAPPER = new ObjectMapper();
+
+    @Getter
+    private final String name;
+    private final URL url;
+    private final int timeoutMillis;
+
+    public SlackWebhook(String name, String url) throws IOException {
+        this(name, url, DEFAULT_TIMEOUT_MILLIS);
+    }
+
+    public SlackWebhook(String name, String url, int timeoutMillis) throws IOException {
+        this.name = name;
+        this.url = new URL(url);
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    public void post(String username, String text) throws IOException {
+        ObjectNode message = JSON_MAPPER.createObjectNode();
+        message.put("username", username);
+        message.put("text", text);
+        byte[] body = ("payload=" + URLEncoder.encode(JSON_MAPPER.writeValueAsString(message), "UTF-8"))
+                .getBytes(StandardCharsets.UTF_8);
+
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        try {
+            connection.setRequestMethod("POST");
+            connection.setConnectTimeout(timeoutMillis);
+            connection.setReadTimeout(timeoutMillis);
+            connection.setUseCaches(false);
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
+            connection.setFixedLengthStreamingMode(body.length);
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body);
+            }
+            int status = connection.getResponseCode();
+            if (status == 429) {
+                throw new RateLimitedException(parseRetryAfterMillis(connection.getHeaderField("Retry-After")));
+            }
+            if (status / 100 != 2) {
+                throw new IOException("Slack webhook " + name + " answered with HTTP status " + status);
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private static long parseRetryAfterMillis(String retryAfter) {
+        try {
+            return retryAfter != null ? Long.parseLong(retryAfter.trim()) * 1000 : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+    /*
+     * Slack asks to slow down, retry after the given delay.
+     */
+    public static class RateLimitedException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        @Getter
+        private final long retryAfterMillis;
+
+        RateLimitedException(long retryAfterMillis) {
+            super("Rate limited by Slack" + (retryAfterMillis >= 0 ? ", retry after " + retryAfterMillis / 1000 + " seconds" : ""));
+            this.retryAfterMillis = retryAfterMillis;
+        }
+    }
+}
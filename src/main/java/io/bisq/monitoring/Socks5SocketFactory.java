@@ -0,0 +1,151 @@
+package io.bisq.monitoring;
+
+import javax.net.SocketFactory;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/*
+ * Creates sockets that connect through a SOCKS5 proxy, optionally authenticating with a username and password. Tor
+ * puts streams with different credentials on different circuits (IsolateSOCKSAuth), which is how checks of different
+ * nodes are kept apart. Unresolved target addresses are passed on as host names, so onion addresses work.
+ */
+public class Socks5SocketFactory extends SocketFactory {
+    private static final byte SOCKS_VERSION = 5;
+    private static final byte SOCKS_NO_AUTH = 0;
+    private static final byte SOCKS_USER_PASSWORD = 2;
+    private static final byte SOCKS_CMD_CONNECT = 1;
+    private static final byte SOCKS_ATYP_IPV4 = 1;
+    private static final byte SOCKS_ATYP_DOMAIN = 3;
+    private static final byte SOCKS_ATYP_IPV6 = 4;
+
+    private final InetSocketAddress proxy;
+    private final String username;
+    private final String password;
+
+    /**
+     * @param username null to connect without authentication
+     */
+    public Socks5SocketFactory(InetSocketAddress proxy, String username, String password) {
+        this.proxy = proxy;
+        this.username = username;
+        this.password = password;
+    }
+
+    @Override
+    public Socket createSocket() {
+        return new Socks5Socket();
+    }
+
+    @Override
+    public Socket createSocket(String host, int port) throws IOException {
+        Socket socket = createSocket();
+        socket.connect(InetSocketAddress.createUnresolved(host, port));
+        return socket;
+    }
+
+    @Override
+    public Socket createSocket(String host, int port, InetAddress localAddress, int localPort) throws IOException {
+        Socket socket = createSocket();
+        socket.bind(new InetSocketAddress(localAddress, localPort));
+        socket.connect(InetSocketAddress.createUnresolved(host, port));
+        return socket;
+    }
+
+    @Override
+    public Socket createSocket(InetAddress address, int port) throws IOException {
+        Socket socket = createSocket();
+        socket.connect(new InetSocketAddress(address, port));
+        return socket;
+    }
+
+    @Override
+    public Socket createSocket(InetAddress address, int port, InetAddress localAddress, int localPort) throws IOException {
+        Socket socket = createSocket();
+        socket.bind(new InetSocketAddress(localAddress, localPort));
+        socket.connect(new InetSocketAddress(address, port));
+        return socket;
+    }
+
+    private class Socks5Socket extends Socket {
+        @Override
+        public void connect(SocketAddress endpoint, int timeout) throws IOException {
+            if (!(endpoint instanceof InetSocketAddress)) {
+                throw new IllegalArgumentException("Unsupported address type " + endpoint);
+            }
+            long start = System.currentTimeMillis();
+            super.connect(proxy, timeout);
+            int soTimeout = getSoTimeout();
+            if (timeout > 0) {
+                // the handshake counts towards the connect timeout
+                setSoTimeout((int) Math.max(1, timeout - (System.currentTimeMillis() - start)));
+            }
+            try {
+                handshake((InetSocketAddress) endpoint);
+            } catch (SocketTimeoutException e) {
+                throw new SocketTimeoutException("Timeout waiting for the SOCKS5 proxy to connect to " + endpoint);
+            } finally {
+                setSoTimeout(soTimeout);
+            }
+        }
+
+        private void handshake(InetSocketAddress target) throws IOException {
+            OutputStream out = getOutputStream();
+            DataInputStream in = new DataInputStream(getInputStream());
+
+            byte method = username != null ? SOCKS_USER_PASSWORD : SOCKS_NO_AUTH;
+            out.write(new byte[]{SOCKS_VERSION, 1, method});
+            out.flush();
+            if (in.readByte() != SOCKS_VERSION) {
+                throw new IOException("Not a SOCKS5 proxy");
+            }
+            if (in.readByte() != method) {
+                throw new IOException("SOCKS5 proxy does not accept " + (username != null ? "username/password" : "no") + " authentication");
+            }
+            if (username != null) {
+                byte[] user = username.getBytes(StandardCharsets.UTF_8);
+                byte[] pass = password.getBytes(StandardCharsets.UTF_8);
+                ByteBuffer auth = ByteBuffer.allocate(3 + user.length + pass.length);
+                auth.put((byte) 1).put((byte) user.length).put(user).put((byte) pass.length).put(pass);
+                out.write(auth.array());
+                out.flush();
+                in.readByte();
+                if (in.readByte() != 0) {
+                    throw new IOException("SOCKS5 authentication failed");
+                }
+            }
+
+            byte[] host = target.getHostString().getBytes(StandardCharsets.US_ASCII);
+            if (host.length > 255) {
+                throw new IOException("Host name too long for SOCKS5: " + target.getHostString());
+            }
+            ByteBuffer request = ByteBuffer.allocate(7 + host.length);
+            request.put(SOCKS_VERSION).put(SOCKS_CMD_CONNECT).put((byte) 0).put(SOCKS_ATYP_DOMAIN)
+                    .put((byte) host.length).put(host)
+                    .put((byte) (target.getPort() >> 8)).put((byte) target.getPort());
+            out.write(request.array());
+            out.flush();
+
+            if (in.readByte() != SOCKS_VERSION) {
+                throw new IOException("Not a SOCKS5 proxy");
+            }
+            byte status = in.readByte();
+            if (status != 0) {
+                throw new ConnectException(ReachabilityProber.socksReplyToString(status));
+            }
+            in.readByte();
+            // skip the bound address
+            byte addressType = in.readByte();
+            int addressLength = addressType == SOCKS_ATYP_IPV4 ? 4
+                    : addressType == SOCKS_ATYP_IPV6 ? 16
+                    : addressType == SOCKS_ATYP_DOMAIN ? in.readUnsignedByte() : -1;
+            if (addressLength < 0) {
+                throw new IOException("Unknown SOCKS5 address type " + addressType);
+            }
+            in.readFully(new byte[addressLength + 2]);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package io.bisq.monitoring;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPOutputStream;
+
+/*
+ * The rendered html status report, kept as bytes (plain and gzipped) and only rebuilt after a node changed. Rows are
+ * cached per node, a rebuild renders just the rows of the changed nodes and joins them with the cached ones. The uptime
+ * and MTTR cells change with time alone, so the page and all rows are rendered anew once they are a minute old.
+ */
+public class StatusPage {
+    static final long MAX_AGE_MILLIS = 60 * 1000L;
+
+    private final NodeRegistry nodes;
+    private final LocalDateTime startTime;
+    private final Set<NodeKey> changed = ConcurrentHashMap.newKeySet();
+    private final AtomicLong generation = new AtomicLong();
+    // guarded by 'this'
+    private final Map<NodeKey, String> rows = new HashMap<>();
+    private long rowsMillis;
+    private List<NodeDetail> sortedNodes;
+    private Rendered lastRendered;
+    private volatile Rendered rendered;
+    private volatile long renderedMillis;
+
+    public StatusPage(NodeRegistry nodes, LocalDateTime startTime) {
+        this.nodes = nodes;
+        this.startTime = startTime;
+    }
+
+    public void nodeChanged(NodeDetail node) {
+        changed.add(node.getKey());
+        generation.incrementAndGet();
+        rendered = null;
+    }
+
+    /**
+     * Call when nodes were added or removed, or the owner of one changed.
+     */
+    public synchronized void nodesChanged() {
+        sortedNodes = null;
+        rows.clear();
+        rendered = null;
+    }
+
+    public Rendered get() {
+        return get(System.currentTimeMillis());
+    }
+
+    Rendered get(long nowMillis) {
+        Rendered current = rendered;
+        return current != null && nowMillis - renderedMillis < MAX_AGE_MILLIS ? current : rebuild(nowMillis);
+    }
+
+    private synchronized Rendered rebuild(long nowMillis) {
+        Rendered current = rendered;
+        if (current != null && nowMillis - renderedMillis < MAX_AGE_MILLIS) {
+            return current;
+        }
+        if (sortedNodes == null || sortedNodes.size() != nodes.size()) {
+            sortedNodes = nodes.getNodes().stream()
+                    .sorted(Comparator.comparing(node -> (node.getNodeType() + node.getOwner())))
+                    .collect(Collectors.toList());
+            rows.clear();
+        }
+        if (nowMillis - rowsMillis >= MAX_AGE_MILLIS) {
+            rows.clear();
+            rowsMillis = nowMillis;
+        }
+        // taken before rendering, a change while rendering invalidates the new page again
+        long startGeneration = generation.get();
+        Set<NodeKey> toRender = new HashSet<>(changed);
+        changed.removeAll(toRender);
+        toRender.forEach(rows::remove);
+
+        long errorCount = nodes.getErrorCount();
+        StringBuilder builder = new StringBuilder(rows.size() * 256 + 1024);
+        builder.append("<html><body><h1>");
+        builder.append("Nodes in error: <b>" + errorCount + "</b><br/>Monitoring node started at: " + startTime.toString() +
+                "<br/><table style=\"width:100%\"><tr><th align=\"left\">Node Type</th><th align=\"left\">Address</th><th align=\"left\">Owner</th><th align=\"left\">Error?</th><th align=\"left\">Total errors</th><th align=\"left\">Error streak</th><th align=\"left\">Total error minutes</th><th align=\"left\">Uptime % 1h / 24h / 7d / 30d</th><th align=\"left\">MTTR 30d</th><th align=\"left\">Extra info</th><th align=\"left\">Reasons</th></tr>");
+        for (NodeDetail node : sortedNodes) {
+            builder.append(rows.computeIfAbsent(node.getKey(), key -> renderRow(node)));
+        }
+        builder.append("</table></body></html>");
+
+        byte[] html = builder.toString().getBytes(StandardCharsets.UTF_8);
+        CRC32 crc = new CRC32();
+        crc.update(html);
+        String etag = "\"" + Long.toHexString(crc.getValue()) + "-" + Integer.toHexString(html.length) + "\"";
+        // a change that did not alter the page keeps the ETag, so clients keep getting 304s
+        if (lastRendered == null || !lastRendered.etag.equals(etag)) {
+            lastRendered = new Rendered(html, gzip(html), etag);
+        }
+        Rendered next = lastRendered;
+        renderedMillis = nowMillis;
+        rendered = next;
+        if (generation.get() != startGeneration) {
+            rendered = null;
+        }
+        return next;
+    }
+
+    private static String renderRow(NodeDetail nodeDetail) {
+        return "<tr>"
+                + " <td>" + nodeDetail.getNodeType().getPrettyName() + "</td>"
+                + "<td>" + nodeDetail.getAddress() + "</td>"
+                + "<td>" + nodeDetail.getOwner() + "</td>"
+                + "<td>" + (nodeDetail.hasError() ? "<b>Yes</b>" : "") + "</td>"
+                + "<td>" + String.valueOf(nodeDetail.getNrErrorsSinceStart()) + "</td>"
+                + "<td>" + String.valueOf(nodeDetail.getNrErrorsUnreported()) + "</td>"
+                + "<td>" + String.valueOf(nodeDetail.getErrorMinutesSinceStart()) + "</td>"
+                + "<td>" + renderUptime(nodeDetail.getUptimePercent()) + "</td>"
+                + "<td>" + renderDuration(nodeDetail.getMttrMillis().get(AvailabilityTracker.Window.MONTH.getLabel())) + "</td>"
+                + "<td>" + ((nodeDetail.getExtraString() == null) ? "" : String.valueOf(nodeDetail.getExtraString())) + "</td>"
+                + "<td>" + ((nodeDetail.getErrorReason().size() > 0) ? " reasons: " + nodeDetail.getReasonListAsString() : "") + "</td>"
+                + "</tr>";
+    }
+
+    private static String renderUptime(Map<String, Double> uptimePercent) {
+        StringBuilder builder = new StringBuilder();
+        for (AvailabilityTracker.Window window : AvailabilityTracker.Window.values()) {
+            Double percent = uptimePercent.get(window.getLabel());
+            if (builder.length() > 0) {
+                builder.append(" / ");
+            }
+            builder.append(percent != null ? String.format(Locale.ROOT, "%.2f", percent) : "-");
+        }
+        return builder.toString();
+    }
+
+    private static String renderDuration(Long millis) {
+        if (millis == null) {
+            return "-";
+        }
+        long minutes = millis / 60000;
+        return minutes >= 60 ? (minutes / 60) + " h " + (minutes % 60) + " min" : minutes + " min";
+    }
+
+    private static byte[] gzip(byte[] data) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(data.length / 4 + 64);
+        try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(data);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Rendered {
+        private final byte[] html;
+        private final byte[] gzipped;
+        private final String etag;
+
+        public String getHtmlAsString() {
+            return new String(html, StandardCharsets.UTF_8);
+        }
+    }
+}
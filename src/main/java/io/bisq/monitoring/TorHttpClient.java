@@ -0,0 +1,434 @@
+package io.bisq.monitoring;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.net.SocketFactory;
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+/*
+ * Minimal HTTP/1.1 GET client that talks to pricenodes directly or through the Tor SOCKS proxy. Direct connections are
+ * kept alive and pooled per host:port. Connections through the proxy are never pooled, they belong to the Tor route
+ * (circuit isolation and stream accounting) they were opened on; requests of one probe share one by pipelining.
+ */
+@Slf4j
+public class TorHttpClient {
+    public static final long DEFAULT_KEEP_ALIVE_MILLIS = 30 * 1000;
+    private static final int MAX_HEADER_LINE_LENGTH = 8 * 1024;
+
+    private final int timeoutMillis;
+    private final long keepAliveMillis;
+    // guarded by 'idleConnections'
+    private final Map<String, Deque<Connection>> idleConnections = new HashMap<>();
+
+    public TorHttpClient(int timeoutMillis) {
+        this(timeoutMillis, DEFAULT_KEEP_ALIVE_MILLIS);
+    }
+
+    public TorHttpClient(int timeoutMillis, long keepAliveMillis) {
+        this.timeoutMillis = timeoutMillis;
+        this.keepAliveMillis = keepAliveMillis;
+    }
+
+    /**
+     * @param socketFactory creates sockets connecting through the Tor SOCKS proxy, or null for a direct connection
+     */
+    public Response get(String host, int port, String path, SocketFactory socketFactory) throws IOException {
+        Connection connection = socketFactory == null ? takeIdleConnection(host, port) : null;
+        if (connection != null) {
+            try {
+                return execute(connection, host, path);
+            } catch (SocketTimeoutException e) {
+                throw e;
+            } catch (IOException e) {
+                // the server may have closed the idle connection in the meantime, retry once on a fresh one
+                log.debug("Reused connection to {}:{} failed, reconnecting: {}", host, port, e.getMessage());
+                connection.close();
+            }
+        }
+        return execute(openConnection(host, port, socketFactory, null), host, path);
+    }
+
+    /**
+     * Send all requests at once on one connection (HTTP pipelining) and hand the responses to the handler in
+     * request order. Bodies are streamed, the handler reads as much of a body as it needs. The rest of every body is
+     * still read and discarded, the next response only starts behind it; a handler that needs no more of the pipeline
+     * returns false, then the remaining responses are not read and the connection is dropped. If the
+     * server closes the connection early, the unanswered requests are re-sent on a new one.
+     *
+     * @return milliseconds spent opening new connections (through the proxy), 0 if a pooled one was reused
+     */
+    public long pipeline(String host, int port, List<String> paths, SocketFactory socketFactory,
+                         ResponseHandler handler) throws IOException {
+        return pipeline(host, port, paths, socketFactory, null, handler);
+    }
+
+    /**
+     * @param cancelSignal when it gets cancelled, the connection is closed, so a blocked connect or read ends at once
+     *                     with an IOException; or null
+     */
+    public long pipeline(String host, int port, List<String> paths, SocketFactory socketFactory,
+                         CompletableFuture<?> cancelSignal, ResponseHandler handler) throws IOException {
+        int next = 0;
+        long connectMillis = 0;
+        while (next < paths.size()) {
+            if (cancelSignal != null && cancelSignal.isCancelled()) {
+                throw new InterruptedIOException("Cancelled");
+            }
+            Connection connection = socketFactory == null ? takeIdleConnection(host, port) : null;
+            boolean reused = connection != null;
+            if (reused) {
+                closeOnCancel(connection.socket, cancelSignal);
+            } else {
+                long connectStart = System.currentTimeMillis();
+                connection = openConnection(host, port, socketFactory, cancelSignal);
+                connectMillis += System.currentTimeMillis() - connectStart;
+            }
+            boolean reusable = false;
+            int answered = 0;
+            try {
+                long sentAt = System.currentTimeMillis();
+                List<String> remaining = paths.subList(next, paths.size());
+                for (String path : remaining) {
+                    writeRequest(connection, host, path);
+                }
+                connection.out.flush();
+                for (String path : remaining) {
+                    ResponseHead head = readResponse(connection);
+                    if (!handler.onResponse(path, head.statusCode, head.body, System.currentTimeMillis() - sentAt)) {
+                        return connectMillis;
+                    }
+                    // skip whatever the handler did not need, without keeping it
+                    head.body.drain();
+                    answered++;
+                    next++;
+                    if (!head.keepAlive) {
+                        break;
+                    }
+                    reusable = next == paths.size();
+                }
+            } catch (SocketTimeoutException e) {
+                throw e;
+            } catch (IOException e) {
+                // a stale pooled connection or a server that hangs up after a response: retry the rest, every retry
+                // either consumes a pooled connection or has made progress, so this terminates
+                if (!reused && answered == 0) {
+                    throw e;
+                }
+                log.debug("Pipeline to {}:{} broke after {} response(s), reconnecting: {}", host, port, answered, e.getMessage());
+            } finally {
+                if (reusable) {
+                    returnIdleConnection(connection);
+                } else {
+                    connection.close();
+                }
+            }
+        }
+        return connectMillis;
+    }
+
+    public void closeIdleConnections() {
+        synchronized (idleConnections) {
+            idleConnections.values().forEach(connections -> connections.forEach(Connection::close));
+            idleConnections.clear();
+        }
+    }
+
+    private Response execute(Connection connection, String host, String path) throws IOException {
+        boolean reusable = false;
+        try {
+            writeRequest(connection, host, path);
+            connection.out.flush();
+            ResponseHead head = readResponse(connection);
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = head.body.read(buffer)) >= 0) {
+                body.write(buffer, 0, read);
+            }
+            reusable = head.keepAlive;
+            return new Response(head.statusCode, new String(body.toByteArray(), StandardCharsets.UTF_8));
+        } finally {
+            if (reusable) {
+                returnIdleConnection(connection);
+            } else {
+                connection.close();
+            }
+        }
+    }
+
+    private void writeRequest(Connection connection, String host, String path) throws IOException {
+        connection.out.write(("GET " + path + " HTTP/1.1\r\n"
+                + "Host: " + host + "\r\n"
+                + "User-Agent: bisq-monitoring\r\n"
+                + "Accept: */*\r\n"
+                + "Connection: keep-alive\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private ResponseHead readResponse(Connection connection) throws IOException {
+        try {
+            String statusLine = readLine(connection.in);
+            if (statusLine == null) {
+                throw new EOFException("Connection closed before response");
+            }
+            String[] statusParts = statusLine.split(" ", 3);
+            if (statusParts.length < 2 || !statusParts[0].startsWith("HTTP/")) {
+                throw new IOException("Malformed status line: " + statusLine);
+            }
+            int statusCode = Integer.parseInt(statusParts[1]);
+
+            long contentLength = -1;
+            boolean chunked = false;
+            boolean keepAlive = statusParts[0].equals("HTTP/1.1");
+            String line;
+            while ((line = readLine(connection.in)) != null && !line.isEmpty()) {
+                int colon = line.indexOf(':');
+                if (colon <= 0) {
+                    continue;
+                }
+                String name = line.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+                String value = line.substring(colon + 1).trim();
+                if (name.equals("content-length")) {
+                    contentLength = Long.parseLong(value);
+                } else if (name.equals("transfer-encoding")) {
+                    chunked = value.toLowerCase(Locale.ROOT).contains("chunked");
+                } else if (name.equals("connection")) {
+                    keepAlive = !value.equalsIgnoreCase("close");
+                }
+            }
+
+            BodyInputStream body;
+            if (chunked) {
+                body = new BodyInputStream(connection.in, true, 0);
+            } else if (contentLength >= 0) {
+                body = new BodyInputStream(connection.in, false, contentLength);
+            } else {
+                // no framing, the body ends when the server closes the connection
+                body = new BodyInputStream(connection.in, false, BodyInputStream.UNTIL_CLOSE);
+                keepAlive = false;
+            }
+            return new ResponseHead(statusCode, keepAlive, body);
+        } catch (NumberFormatException e) {
+            throw new IOException("Malformed response: " + e.getMessage(), e);
+        }
+    }
+
+    private Connection openConnection(String host, int port, SocketFactory socketFactory,
+                                      CompletableFuture<?> cancelSignal) throws IOException {
+        Socket socket = socketFactory != null ? socketFactory.createSocket() : new Socket();
+        closeOnCancel(socket, cancelSignal);
+        try {
+            socket.setSoTimeout(timeoutMillis);
+            // unresolved, so the proxy resolves the (onion) host name instead of our local DNS
+            socket.connect(socketFactory != null ? InetSocketAddress.createUnresolved(host, port) : new InetSocketAddress(host, port), timeoutMillis);
+            return new Connection(host + ":" + port, socket, socketFactory == null);
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    private static void closeOnCancel(Socket socket, CompletableFuture<?> cancelSignal) {
+        if (cancelSignal == null) {
+            return;
+        }
+        cancelSignal.whenComplete((ignored, e) -> {
+            if (cancelSignal.isCancelled()) {
+                try {
+                    socket.close();
+                } catch (IOException closeError) {
+                    log.debug("Error closing a cancelled connection", closeError);
+                }
+            }
+        });
+    }
+
+    private Connection takeIdleConnection(String host, int port) {
+        long now = System.currentTimeMillis();
+        synchronized (idleConnections) {
+            // evict connections the server has most likely closed already
+            Iterator<Deque<Connection>> hosts = idleConnections.values().iterator();
+            while (hosts.hasNext()) {
+                Deque<Connection> connections = hosts.next();
+                connections.removeIf(connection -> {
+                    boolean expired = now - connection.idleSince > keepAliveMillis;
+                    if (expired) {
+                        connection.close();
+                    }
+                    return expired;
+                });
+                if (connections.isEmpty()) {
+                    hosts.remove();
+                }
+            }
+            Deque<Connection> connections = idleConnections.get(host + ":" + port);
+            return connections != null ? connections.pollFirst() : null;
+        }
+    }
+
+    private void returnIdleConnection(Connection connection) {
+        if (!connection.pooled) {
+            connection.close();
+            return;
+        }
+        connection.idleSince = System.currentTimeMillis();
+        synchronized (idleConnections) {
+            idleConnections.computeIfAbsent(connection.key, key -> new ArrayDeque<>()).addFirst(connection);
+        }
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder builder = new StringBuilder();
+        int c;
+        while ((c = in.read()) >= 0) {
+            if (c == '\n') {
+                int length = builder.length();
+                return (length > 0 && builder.charAt(length - 1) == '\r') ? builder.substring(0, length - 1) : builder.toString();
+            }
+            if (builder.length() >= MAX_HEADER_LINE_LENGTH) {
+                throw new IOException("Header line too long");
+            }
+            builder.append((char) c);
+        }
+        return builder.length() > 0 ? builder.toString() : null;
+    }
+
+    public interface ResponseHandler {
+        /**
+         * @return false to stop reading the remaining responses of the pipeline
+         */
+        boolean onResponse(String path, int statusCode, InputStream body, long latencyMillis) throws IOException;
+    }
+
+    @Data
+    @AllArgsConstructor
+    public static class Response {
+        int statusCode;
+        String body;
+    }
+
+    @AllArgsConstructor
+    private static class ResponseHead {
+        final int statusCode;
+        final boolean keepAlive;
+        final BodyInputStream body;
+    }
+
+    /**
+     * The body of one response, ends at the end of the body instead of the end of the connection.
+     */
+    private static class BodyInputStream extends InputStream {
+        static final long UNTIL_CLOSE = -1;
+
+        private final InputStream in;
+        private final boolean chunked;
+        private final boolean untilClose;
+        // bytes left in the body, or in the current chunk
+        private long remaining;
+        private boolean firstChunk = true;
+        private boolean eof;
+
+        BodyInputStream(InputStream in, boolean chunked, long length) {
+            this.in = in;
+            this.chunked = chunked;
+            this.untilClose = length == UNTIL_CLOSE;
+            this.remaining = untilClose ? Long.MAX_VALUE : length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (eof) {
+                return -1;
+            }
+            if (remaining == 0) {
+                if (!chunked || !nextChunk()) {
+                    eof = true;
+                    return -1;
+                }
+            }
+            int read = in.read(b, off, (int) Math.min(len, remaining));
+            if (read < 0) {
+                eof = true;
+                if (untilClose) {
+                    return -1;
+                }
+                throw new EOFException("Connection closed with " + remaining + " bytes of body left");
+            }
+            if (!untilClose) {
+                remaining -= read;
+            }
+            return read;
+        }
+
+        void drain() throws IOException {
+            byte[] buffer = new byte[8192];
+            while (read(buffer, 0, buffer.length) >= 0) {
+            }
+        }
+
+        private boolean nextChunk() throws IOException {
+            if (!firstChunk) {
+                // CRLF after the previous chunk
+                readLine(in);
+            }
+            firstChunk = false;
+            String sizeLine = readLine(in);
+            if (sizeLine == null) {
+                throw new EOFException("Connection closed inside chunked body");
+            }
+            int extension = sizeLine.indexOf(';');
+            try {
+                remaining = Long.parseLong((extension >= 0 ? sizeLine.substring(0, extension) : sizeLine).trim(), 16);
+            } catch (NumberFormatException e) {
+                throw new IOException("Malformed chunk size: " + sizeLine);
+            }
+            if (remaining == 0) {
+                // skip trailers
+                String trailer;
+                while ((trailer = readLine(in)) != null && !trailer.isEmpty()) {
+                }
+                return false;
+            }
+            return true;
+        }
+    }
+
+    private static class Connection {
+        final String key;
+        final Socket socket;
+        final InputStream in;
+        final OutputStream out;
+        // false for connections through the proxy
+        final boolean pooled;
+        long idleSince;
+
+        Connection(String key, Socket socket, boolean pooled) throws IOException {
+            this.key = key;
+            this.socket = socket;
+            this.pooled = pooled;
+            this.in = new BufferedInputStream(socket.getInputStream());
+            this.out = new BufferedOutputStream(socket.getOutputStream());
+        }
+
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                log.debug("Error closing connection to {}", key, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package io.bisq.monitoring;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.berndpruenster.netlayer.tor.NativeTor;
+import org.berndpruenster.netlayer.tor.Tor;
+import org.berndpruenster.netlayer.tor.TorCtlException;
+
+import javax.net.SocketFactory;
+import java.io.Closeable;
+import java.io.File;
+import java.net.InetSocketAddress;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * A pool of Tor SOCKS proxies, either Tor instances started here or externally run Tor daemons. Every node gets its
+ * own SOCKS username, Tor isolates streams with different credentials on different circuits, so a slow or broken
+ * circuit only hurts one node and a circuit built ahead of a check (see Monitoring.prewarmCircuit) is the one the
+ * check uses. A node sticks to its instance while that one is not much busier than the least loaded instance.
+ */
+@Slf4j
+public class TorPool {
+    public static final String DEFAULT_TOR_DIRECTORY = "tor";
+    // move a node to the least loaded instance when its own instance has this many more streams open
+    static final int REBALANCE_THRESHOLD = 8;
+
+    private final List<Instance> instances;
+    private final List<Tor> startedTors;
+    private final Map<NodeKey, Instance> assignments = new ConcurrentHashMap<>();
+
+    TorPool(List<InetSocketAddress> socksProxies, List<Tor> startedTors) {
+        List<Instance> instances = new ArrayList<>(socksProxies.size());
+        for (int i = 0; i < socksProxies.size(); i++) {
+            instances.add(new Instance(i, socksProxies.get(i)));
+        }
+        this.instances = Collections.unmodifiableList(instances);
+        this.startedTors = startedTors;
+    }
+
+    /**
+     * Use the configured external SOCKS ports, or start the configured number of Tor instances.
+     *
+     * @throws TorCtlException if not a single Tor instance could be started
+     */
+    public static TorPool start(NodeConfig nodeConfig) throws TorCtlException {
+        if (nodeConfig.getTorSocksPorts() != null && !nodeConfig.getTorSocksPorts().isEmpty()) {
+            List<InetSocketAddress> proxies = new ArrayList<>();
+            for (String socksPort : nodeConfig.getTorSocksPorts()) {
+                proxies.add(parseSocksPort(socksPort));
+            }
+            log.info("Using {} external Tor SOCKS port(s): {}", proxies.size(), nodeConfig.getTorSocksPorts());
+            return new TorPool(proxies, Collections.emptyList());
+        }
+
+        File torDirectory = new File(nodeConfig.getTorDirectory() != null ? nodeConfig.getTorDirectory() : DEFAULT_TOR_DIRECTORY);
+        int count = Math.max(1, nodeConfig.getTorInstances());
+        List<InetSocketAddress> proxies = new ArrayList<>();
+        List<Tor> tors = new ArrayList<>();
+        TorCtlException lastError = null;
+        for (int i = 0; i < count; i++) {
+            try {
+                // every instance needs its own data directory
+                Tor tor = new NativeTor(new File(torDirectory, "instance-" + i), null);
+                tors.add(tor);
+                proxies.add(new InetSocketAddress("localhost", tor.getProxy().getPort()));
+            } catch (TorCtlException e) {
+                log.error("Error starting Tor instance {}", i, e);
+                lastError = e;
+            }
+        }
+        if (tors.isEmpty()) {
+            throw lastError;
+        }
+        // TorSocket and other netlayer users go through the default instance
+        Tor.setDefault(tors.get(0));
+        log.info("Started {} of {} Tor instance(s)", tors.size(), count);
+        return new TorPool(proxies, tors);
+    }
+
+    /**
+     * @throws IllegalArgumentException if a torSocksPorts entry is no [host:]port
+     */
+    public static void validate(NodeConfig nodeConfig) {
+        if (nodeConfig.getTorSocksPorts() != null) {
+            nodeConfig.getTorSocksPorts().forEach(TorPool::parseSocksPort);
+        }
+    }
+
+    static InetSocketAddress parseSocksPort(String socksPort) {
+        int colon = socksPort.lastIndexOf(':');
+        String host = colon < 0 ? "localhost" : socksPort.substring(0, colon).trim();
+        try {
+            // also thrown for a port out of range
+            return new InetSocketAddress(host, Integer.parseInt(socksPort.substring(colon + 1).trim()));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid torSocksPorts entry '" + socksPort + "', expected [host:]port");
+        }
+    }
+
+    /**
+     * Pick the instance for a connection to the node. Close the route when the connection is done.
+     */
+    public Route route(NodeKey node) {
+        Instance leastLoaded = instances.get(0);
+        for (Instance instance : instances) {
+            if (instance.activeStreams.get() < leastLoaded.activeStreams.get()) {
+                leastLoaded = instance;
+            }
+        }
+        Instance chosen = leastLoaded;
+        Instance instance = assignments.compute(node, (key, current) ->
+                current == null || current.activeStreams.get() - chosen.activeStreams.get() > REBALANCE_THRESHOLD ? chosen : current);
+        instance.activeStreams.incrementAndGet();
+        instance.totalStreams.incrementAndGet();
+        return new Route(instance, node.toString());
+    }
+
+    /**
+     * Forget the instance of a node that is no longer checked.
+     */
+    public void remove(NodeKey node) {
+        assignments.remove(node);
+    }
+
+    public List<Instance> getInstances() {
+        return instances;
+    }
+
+    public void writePrometheus(StringBuilder builder) {
+        builder.append("# HELP bisq_tor_active_streams Connections currently open through the Tor instance.\n");
+        builder.append("# TYPE bisq_tor_active_streams gauge\n");
+        for (Instance instance : instances) {
+            builder.append("bisq_tor_active_streams{instance=\"").append(instance.getIndex()).append("\"} ")
+                    .append(instance.getActiveStreams()).append('\n');
+        }
+        builder.append("# HELP bisq_tor_streams_total Connections opened through the Tor instance.\n");
+        builder.append("# TYPE bisq_tor_streams_total counter\n");
+        for (Instance instance : instances) {
+            builder.append("bisq_tor_streams_total{instance=\"").append(instance.getIndex()).append("\"} ")
+                    .append(instance.getTotalStreams()).append('\n');
+        }
+    }
+
+    public void shutdown() {
+        for (Tor tor : startedTors) {
+            try {
+                tor.shutdown();
+            } catch (Exception e) {
+                log.error("Error shutting down Tor", e);
+            }
+        }
+    }
+
+    public static class Instance {
+        @Getter
+        private final int index;
+        @Getter
+        private final InetSocketAddress socksProxy;
+        private final AtomicInteger activeStreams = new AtomicInteger();
+        private final AtomicLong totalStreams = new AtomicLong();
+
+        Instance(int index, InetSocketAddress socksProxy) {
+            this.index = index;
+            this.socksProxy = socksProxy;
+        }
+
+        public int getActiveStreams() {
+            return activeStreams.get();
+        }
+
+        public long getTotalStreams() {
+            return totalStreams.get();
+        }
+    }
+
+    /*
+     * A Tor instance and the SOCKS credentials that select the node's circuit.
+     */
+    public static class Route implements Closeable {
+        @Getter
+        private final Instance instance;
+        @Getter
+        private final String username;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        Route(Instance instance, String username) {
+            this.instance = instance;
+            this.username = username;
+        }
+
+        public InetSocketAddress getSocksProxy() {
+            return instance.getSocksProxy();
+        }
+
+        public String getPassword() {
+            // only the username is used for isolation, Tor does not check credentials
+            return "";
+        }
+
+        public SocketFactory getSocketFactory() {
+            return new Socks5SocketFactory(getSocksProxy(), username, getPassword());
+        }
+
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                instance.activeStreams.decrementAndGet();
+            }
+        }
+    }
+}
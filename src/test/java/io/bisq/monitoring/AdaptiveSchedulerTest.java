@@ -0,0 +1,124 @@
+package io.bisq.monitoring;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/*
+
+ */
+public class AdaptiveSchedulerTest {
+    private static final long MIN = 60 * 1000;
+    private static final long BASE = 600 * 1000;
+    private static final long MAX = 3600 * 1000;
+
+    private final ProbeEngine probeEngine = new ProbeEngine(new NodeConfig(), 600_000);
+    private AdaptiveScheduler scheduler;
+
+    @After
+    public void tearDown() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+        probeEngine.shutdown();
+    }
+
+    @Test
+    public void healthyNodesAreCheckedLessOften() {
+        scheduler = new AdaptiveScheduler(probeEngine, ArrayList::new, MIN, BASE, MAX, 60);
+        AdaptiveScheduler.NodeSchedule schedule = schedule();
+        long now = 0;
+        assertEquals((long) (BASE * AdaptiveScheduler.GROWTH), scheduler.nextInterval(schedule, true, now));
+        for (int i = 0; i < 20; i++) {
+            schedule.intervalMillis = scheduler.nextInterval(schedule, true, now += schedule.intervalMillis);
+        }
+        assertEquals(MAX, schedule.intervalMillis);
+    }
+
+    @Test
+    public void failingAndRecoveredNodesAreCheckedOften() {
+        scheduler = new AdaptiveScheduler(probeEngine, ArrayList::new, MIN, BASE, MAX, 60);
+        AdaptiveScheduler.NodeSchedule schedule = schedule();
+        schedule.intervalMillis = MAX;
+        long now = 10 * MAX;
+        assertEquals(MIN, scheduler.nextInterval(schedule, false, now));
+        schedule.intervalMillis = MIN;
+        // recovered, but just now
+        assertEquals(MIN, scheduler.nextInterval(schedule, true, now += MIN));
+        // no failure within the base interval: back to normal
+        assertEquals(BASE, scheduler.nextInterval(schedule, true, now + BASE));
+    }
+
+    @Test
+    public void flappingNodesAreCheckedOften() {
+        scheduler = new AdaptiveScheduler(probeEngine, ArrayList::new, MIN, BASE, MAX, 60);
+        AdaptiveScheduler.NodeSchedule schedule = schedule();
+        long now = 0;
+        boolean ok = true;
+        for (int i = 0; i <= AdaptiveScheduler.FLAP_CHANGES; i++) {
+            scheduler.nextInterval(schedule, ok, now += BASE / 4);
+            ok = !ok;
+        }
+        // the last failure is longer ago than the recovery window, but it changed too often within the flap window
+        schedule.intervalMillis = MIN;
+        assertEquals(MIN, scheduler.nextInterval(schedule, true, now + BASE + 1));
+        // the changes age out of the window
+        assertEquals(BASE, scheduler.nextInterval(schedule, true, now + AdaptiveScheduler.FLAP_WINDOW_MILLIS + BASE));
+    }
+
+    @Test
+    public void probesArePacedByTheBudget() throws Exception {
+        AtomicInteger checks = new AtomicInteger();
+        List<ProbeEngine.Probe> probes = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            probes.add(new ProbeEngine.Probe(new NodeDetail("node" + i + ".onion", 8000, "@o", NodeType.SEED_NODE, true),
+                    checks::incrementAndGet));
+        }
+        // all nodes are due at once, the budget allows 20 probes per second
+        long start = System.currentTimeMillis();
+        scheduler = new AdaptiveScheduler(probeEngine, () -> probes, 0, BASE, MAX, 1200);
+        scheduler.start();
+        while (checks.get() < probes.size()) {
+            assertTrue(System.currentTimeMillis() - start < 10000);
+            Thread.sleep(20);
+        }
+        // the first probe goes out at once, each of the others waits 50 ms for its token; a slow machine only takes
+        // longer
+        assertTrue(System.currentTimeMillis() - start >= (probes.size() - 1) * 50);
+        assertEquals(probes.size(), scheduler.getProbesSent());
+        // healthy, so the next check is further away
+        NodeKey last = probes.get(probes.size() - 1).getNode().getKey();
+        while (scheduler.getIntervalMillis(last) != (long) (BASE * AdaptiveScheduler.GROWTH)) {
+            assertTrue(System.currentTimeMillis() - start < 10000);
+            Thread.sleep(20);
+        }
+    }
+
+    @Test
+    public void retriesTakeFromTheBudget() throws Exception {
+        AtomicInteger checks = new AtomicInteger();
+        scheduler = new AdaptiveScheduler(probeEngine, ArrayList::new, 0, BASE, MAX, 600);
+        scheduler.start();
+        NodeDetail node = new NodeDetail("a.onion", 8000, "@a", NodeType.SEED_NODE, true);
+        CompletableFuture<Void> first = scheduler.submitRetry(new ProbeEngine.Probe(node, checks::incrementAndGet));
+        CompletableFuture<Void> second = scheduler.submitRetry(new ProbeEngine.Probe(node, checks::incrementAndGet));
+        first.get(5, TimeUnit.SECONDS);
+        second.get(5, TimeUnit.SECONDS);
+        assertEquals(2, checks.get());
+        assertEquals(2, scheduler.getRetriesSent());
+        assertEquals(2, scheduler.getProbesSent());
+    }
+
+    private static AdaptiveScheduler.NodeSchedule schedule() {
+        NodeDetail node = new NodeDetail("a.onion", 8000, "@a", NodeType.SEED_NODE, true);
+        return new AdaptiveScheduler.NodeSchedule(node.getKey(), new ProbeEngine.Probe(node, () -> {
+        }), BASE);
+    }
+}
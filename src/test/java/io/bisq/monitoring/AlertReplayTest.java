@@ -0,0 +1,123 @@
+package io.bisq.monitoring;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/*
+
+ */
+public class AlertReplayTest {
+    private static final long SECOND = 1000L;
+    private static final long START = 1_600_000_000_000L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final AlertReplay replay = new AlertReplay(Arrays.asList(
+            new AlertPolicy(1, 30 * SECOND, 300 * SECOND),
+            new AlertPolicy(3, 30 * SECOND, 300 * SECOND),
+            new AlertPolicy(3, 120 * SECOND, 300 * SECOND)), 10 * 60 * SECOND);
+
+    @Test
+    public void policiesDifferInAlertsFalseAlarmsAndDelays() {
+        // node 0: a short hiccup, two failures 20s apart
+        probe(0, 0, false);
+        probe(0, 20, false);
+        probe(0, 40, true);
+        // node 1: a real outage, retries after 20s and 40s, then regular checks every 10 minutes
+        probe(1, 0, false);
+        probe(1, 20, false);
+        probe(1, 60, false);
+        probe(1, 600, false);
+        probe(1, 1200, true);
+        replay.finish();
+
+        AlertReplay.PolicyResult[] results = replay.getResults();
+        assertEquals(2, results[0].getAlerts());
+        assertEquals(1, results[0].getFalseAlarms());
+        assertEquals(0, results[0].getDetectionDelayMillis(50));
+
+        // the live policy: the third failure, after the minimal 45s of retries
+        assertEquals(1, results[1].getAlerts());
+        assertEquals(0, results[1].getFalseAlarms());
+        assertEquals(1, results[1].getRealOutages());
+        assertEquals(60 * SECOND, results[1].getDetectionDelayMillis(95));
+
+        // with longer retries the alert waits for a failure 180s into the outage
+        assertEquals(600 * SECOND, results[2].getDetectionDelayMillis(100));
+        assertEquals(0, results[2].getMissedOutages());
+        assertEquals(8, replay.getRecords());
+    }
+
+    @Test
+    public void outageWithoutEnoughFailuresIsMissed() {
+        probe(0, 0, false);
+        probe(0, 700, false);
+        probe(0, 1400, true);
+        // still failing when the journal ends, long enough to be real
+        probe(1, 0, false);
+        probe(1, 1400, false);
+        replay.finish();
+
+        AlertReplay.PolicyResult live = replay.getResults()[1];
+        assertEquals(2, live.getRealOutages());
+        assertEquals(2, live.getMissedOutages());
+        assertEquals(0, live.getAlerts());
+        assertEquals(-1, live.getDetectionDelayMillis(50));
+        assertEquals(2, replay.getResults()[0].getAlerts());
+    }
+
+    @Test
+    public void minimalAlertDelayFollowsTheBackoff() {
+        assertEquals(0, new AlertPolicy(1, 30 * SECOND, 300 * SECOND).getMinAlertDelayMillis());
+        assertEquals(45 * SECOND, new AlertPolicy(3, 30 * SECOND, 300 * SECOND).getMinAlertDelayMillis());
+        assertEquals((15 + 30 + 60 + 120 + 150) * SECOND, new AlertPolicy(6, 30 * SECOND, 300 * SECOND).getMinAlertDelayMillis());
+        assertTrue(new AlertPolicy(3, 0, 0).isAlert(3));
+        assertTrue(new AlertPolicy(3, 0, 0).needsFollowup(2));
+        assertTrue(new AlertPolicy(3, 0, 0).isReported(4));
+    }
+
+    @Test
+    public void failedCustomCheckIsJournaledAsOneFailure() throws Exception {
+        assumeTrue(new File("/bin/sh").canExecute());
+        Path journal = folder.newFolder("journal").toPath();
+        try (ServerSocket server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            NodeConfig config = new NodeConfig();
+            config.setNodeTimeoutSecs(5);
+            config.setCustomChecks(new ArrayList<>(Collections.singletonList(
+                    new CustomCheck("never", "SEED_NODE", "exit 1", 0))));
+            Monitoring monitoring = new Monitoring(config);
+            try {
+                monitoring.openProbeJournal(journal);
+                NodeDetail node = new NodeDetail("127.0.0.1", server.getLocalPort(), "@owner", NodeType.SEED_NODE, false);
+                monitoring.getNodeRegistry().add(node);
+                monitoring.checkNode(node).join();
+                monitoring.checkNode(node).join();
+            } finally {
+                monitoring.shutdown();
+            }
+        }
+        ProbeJournal.replay(journal, replay);
+        replay.finish();
+        // the passed regular check is no probe of its own, it would end the outage between the failures
+        assertEquals(2, replay.getRecords());
+        assertEquals(1, replay.getResults()[0].getAlerts());
+        assertEquals(0, replay.getResults()[0].getFalseAlarms());
+    }
+
+    private void probe(int nodeId, long secs, boolean ok) {
+        replay.record(START + secs * SECOND, nodeId, ok, ProbeStage.CHECK.ordinal(), 0);
+    }
+}
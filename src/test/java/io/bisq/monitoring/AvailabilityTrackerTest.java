@@ -0,0 +1,86 @@
+package io.bisq.monitoring;
+
+import org.junit.Test;
+
+import static io.bisq.monitoring.AvailabilityTracker.Window.*;
+import static org.junit.Assert.*;
+
+/*
+
+ */
+public class AvailabilityTrackerTest {
+    private static final long MINUTE = 60 * 1000L;
+    // on a day boundary, so every window starts with a fresh bucket
+    private static final long START = 1_600_000_000_000L / (24 * 60 * MINUTE) * (24 * 60 * MINUTE);
+
+    @Test
+    public void noChecksNoFigures() {
+        AvailabilityTracker tracker = new AvailabilityTracker();
+        assertFalse(tracker.hasData());
+        assertEquals(-1, tracker.getUptimePercent(HOUR, START), 0);
+        assertEquals(-1, tracker.getMttrMillis(MONTH, START));
+        assertTrue(tracker.getUptimePercent(START).isEmpty());
+        assertTrue(tracker.getMttrMillis(START).isEmpty());
+    }
+
+    @Test
+    public void outageCountsAsDowntimeAndRepair() {
+        AvailabilityTracker tracker = new AvailabilityTracker();
+        tracker.record(true, START);
+        tracker.record(false, START + 30 * MINUTE);
+        tracker.record(false, START + 40 * MINUTE);
+        tracker.record(true, START + 45 * MINUTE);
+        // the 14 minutes since the last check count as up
+        assertEquals(100.0 * 44 / 59, tracker.getUptimePercent(HOUR, START + 59 * MINUTE), 0.001);
+        assertEquals(100.0 * 44 / 59, tracker.getUptimePercent(MONTH, START + 59 * MINUTE), 0.001);
+        assertEquals(15 * MINUTE, tracker.getMttrMillis(DAY, START + 59 * MINUTE));
+        assertEquals(4, tracker.getUptimePercent(START + 59 * MINUTE).size());
+    }
+
+    @Test
+    public void windowsRollAlong() {
+        AvailabilityTracker tracker = new AvailabilityTracker();
+        tracker.record(false, START);
+        tracker.record(true, START + 60 * MINUTE);
+        for (long minute = 70; minute <= 240; minute += 10) {
+            tracker.record(true, START + minute * MINUTE);
+        }
+        long now = START + 240 * MINUTE;
+        assertEquals(100.0, tracker.getUptimePercent(HOUR, now), 0.001);
+        assertEquals(-1, tracker.getMttrMillis(HOUR, now));
+        assertEquals(75.0, tracker.getUptimePercent(DAY, now), 0.001);
+        assertEquals(60 * MINUTE, tracker.getMttrMillis(DAY, now));
+    }
+
+    @Test
+    public void gapLongerThanTheWindows() {
+        AvailabilityTracker tracker = new AvailabilityTracker();
+        tracker.record(false, START);
+        long later = START + 40L * 24 * 60 * MINUTE;
+        tracker.record(true, later);
+        assertEquals(0.0, tracker.getUptimePercent(MONTH, later), 0.001);
+        assertEquals(40L * 24 * 60 * MINUTE, tracker.getMttrMillis(MONTH, later));
+        assertEquals(100.0, tracker.getUptimePercent(HOUR, later + 60 * MINUTE), 0.001);
+    }
+
+    @Test
+    public void clockGoingBackIsIgnored() {
+        AvailabilityTracker tracker = new AvailabilityTracker();
+        tracker.record(true, START + 10 * MINUTE);
+        tracker.record(false, START);
+        tracker.record(true, START + 20 * MINUTE);
+        // the failure counts from the latest time seen
+        assertEquals(0.0, tracker.getUptimePercent(HOUR, START + 20 * MINUTE), 0.001);
+        assertEquals(10 * MINUTE, tracker.getMttrMillis(HOUR, START + 20 * MINUTE));
+    }
+
+    @Test
+    public void errorTimeOfNodeNeverGoesNegative() {
+        NodeDetail node = new NodeDetail("address", 8000, "@me", NodeType.SEED_NODE, false);
+        node.addError("first");
+        node.addError("second");
+        node.clearError();
+        assertTrue(node.getErrorMillisSinceStart() >= 0);
+        assertEquals(0, node.getErrorMinutesSinceStart());
+    }
+}
@@ -0,0 +1,156 @@
+package io.bisq.monitoring;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.DataInputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.*;
+
+/*
+
+ */
+public class BitcoinHandshakeEngineTest {
+    private ServerSocket fakeNode;
+    private BitcoinHandshakeEngine engine;
+    // the commands the fake node received
+    private final List<String> received = new CopyOnWriteArrayList<>();
+    private volatile int magic = BitcoinHandshakeEngine.MAINNET_MAGIC;
+
+    @Before
+    public void setUp() throws Exception {
+        engine = new BitcoinHandshakeEngine(5000);
+        // answers a version with its own version, an unrelated message and a verack; acts as SOCKS5 proxy first
+        // when the client greets it like one
+        fakeNode = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        Thread thread = new Thread(() -> {
+            while (!fakeNode.isClosed()) {
+                try (Socket socket = fakeNode.accept()) {
+                    DataInputStream in = new DataInputStream(socket.getInputStream());
+                    OutputStream out = socket.getOutputStream();
+                    byte first = in.readByte();
+                    if (first == 5) {
+                        in.readFully(new byte[2]);
+                        out.write(new byte[]{5, 0});
+                        byte[] header = new byte[5];
+                        in.readFully(header);
+                        in.readFully(new byte[header[4] + 2]);
+                        out.write(new byte[]{5, 0, 0, 1, 127, 0, 0, 1, 0, 80});
+                        first = in.readByte();
+                    }
+                    byte[] header = new byte[24];
+                    header[0] = first;
+                    in.readFully(header, 1, 23);
+                    byte[] payload = new byte[ByteBuffer.wrap(header, 16, 4).order(ByteOrder.LITTLE_ENDIAN).getInt()];
+                    in.readFully(payload);
+                    // a node drops messages with a wrong checksum
+                    boolean checksumOk = Arrays.equals(Arrays.copyOfRange(message("version", payload), 20, 24),
+                            Arrays.copyOfRange(header, 20, 24));
+                    received.add(checksumOk ? command(header) : "bad checksum");
+
+                    out.write(message("version", versionPayload("/Satoshi:0.15.1/", 13, 500000)));
+                    out.write(message("wtxidrelay", new byte[0]));
+                    out.write(message("sendheaders", new byte[3000]));
+                    out.write(message("verack", new byte[0]));
+                    out.flush();
+                    in.readFully(header);
+                    received.add(command(header));
+                } catch (Exception e) {
+                    // closed
+                }
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        engine.shutdown();
+        fakeNode.close();
+    }
+
+    @Test
+    public void handshakeDirect() throws Exception {
+        BitcoinNodeResult result = engine.handshake("127.0.0.1", fakeNode.getLocalPort(), null, null, null).get();
+        assertNull(result.getError(), result.getError());
+        assertEquals("/Satoshi:0.15.1/", result.getVersion());
+        assertEquals(70015, result.getProtocolVersion());
+        assertEquals(13, result.getServices());
+        assertEquals(500000, result.getHeight());
+        assertEquals("127.0.0.1", result.getAddress());
+        waitForReceived(2);
+        assertEquals(Arrays.asList("version", "verack"), received);
+    }
+
+    @Test
+    public void handshakeThroughSocksProxy() throws Exception {
+        InetSocketAddress proxy = (InetSocketAddress) fakeNode.getLocalSocketAddress();
+        BitcoinNodeResult result = engine.handshake("node.onion", 8333, proxy, null, null).get();
+        assertNull(result.getError(), result.getError());
+        assertEquals(500000, result.getHeight());
+        assertTrue(result.getConnectMillis() >= 0);
+    }
+
+    @Test
+    public void manyHandshakesAtOnce() throws Exception {
+        List<CompletableFuture<BitcoinNodeResult>> results = IntStream.range(0, 20)
+                .mapToObj(i -> engine.handshake("127.0.0.1", fakeNode.getLocalPort(), null, null, null))
+                .collect(Collectors.toList());
+        for (CompletableFuture<BitcoinNodeResult> result : results) {
+            assertFalse(result.get().getError(), result.get().hasError());
+        }
+    }
+
+    @Test
+    public void wrongNetworkFails() throws Exception {
+        magic = 0x0709110B;
+        BitcoinNodeResult result = engine.handshake("127.0.0.1", fakeNode.getLocalPort(), null, null, null).get();
+        assertTrue(result.hasError());
+        assertTrue(result.getError(), result.getError().startsWith("Wrong network magic"));
+    }
+
+    private void waitForReceived(int count) throws InterruptedException {
+        for (int i = 0; i < 100 && received.size() < count; i++) {
+            Thread.sleep(20);
+        }
+    }
+
+    private static String command(byte[] header) {
+        return new String(header, 4, 12, StandardCharsets.US_ASCII).trim();
+    }
+
+    private byte[] message(String command, byte[] payload) throws Exception {
+        MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+        byte[] hash = sha256.digest(sha256.digest(payload));
+        ByteBuffer buffer = ByteBuffer.allocate(24 + payload.length).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(magic).put(Arrays.copyOf(command.getBytes(StandardCharsets.US_ASCII), 12)).putInt(payload.length)
+                .put(hash, 0, 4).put(payload);
+        return buffer.array();
+    }
+
+    private static byte[] versionPayload(String userAgent, long services, int height) {
+        byte[] agent = userAgent.getBytes(StandardCharsets.US_ASCII);
+        ByteBuffer buffer = ByteBuffer.allocate(86 + agent.length).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(70015).putLong(services).putLong(System.currentTimeMillis() / 1000)
+                .put(new byte[26]).put(new byte[26]).putLong(42)
+                .put((byte) agent.length).put(agent).putInt(height).put((byte) 1);
+        return buffer.array();
+    }
+}
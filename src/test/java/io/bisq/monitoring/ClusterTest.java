@@ -0,0 +1,152 @@
+package io.bisq.monitoring;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/*
+
+ */
+public class ClusterTest {
+    private static final int NODES = 20;
+    private static final int PRICENODES = 4;
+
+    private Monitoring a;
+    private Monitoring b;
+    private HttpServer serverB;
+    private String urlA = "http://127.0.0.1:1";
+    private String urlB;
+
+    @Before
+    public void setUp() throws Exception {
+        a = new Monitoring(config());
+        b = new Monitoring(config());
+        a.addNodesFromConfig();
+        b.addNodesFromConfig();
+        // instance b's web server, as far as the cluster is concerned
+        serverB = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        serverB.createContext(Cluster.SHARD_PATH, exchange -> {
+            byte[] response = b.printShardJson().getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, response.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(response);
+            }
+        });
+        serverB.start();
+        urlB = "http://127.0.0.1:" + serverB.getAddress().getPort();
+    }
+
+    @After
+    public void tearDown() {
+        serverB.stop(0);
+        a.shutdown();
+        b.shutdown();
+    }
+
+    @Test
+    public void instancesSplitTheNodes() {
+        List<String> members = Arrays.asList(urlA, urlB);
+        a.joinCluster(new Cluster(urlA, members, 1000), 3600);
+        b.joinCluster(new Cluster(urlB, members, 1000), 3600);
+        int shardA = a.getProbes().size();
+        int shardB = b.getProbes().size();
+        assertTrue(shardA > 0 && shardB > 0);
+        assertEquals(NODES + PRICENODES, shardA + shardB);
+        for (NodeDetail node : a.getShardNodes()) {
+            assertFalse(b.getShardNodes().contains(node));
+        }
+    }
+
+    @Test
+    public void peerStatusShowsOnEveryInstance() throws Exception {
+        List<String> members = Arrays.asList(urlA, urlB);
+        b.joinCluster(new Cluster(urlB, members, 1000), 3600);
+        NodeDetail checkedByB = b.getShardNodes().get(0);
+        b.getNodeRegistry().addError(checkedByB, "HTTP status 503 for /getFees");
+
+        Cluster cluster = new Cluster(urlA, members, 1000);
+        a.joinCluster(cluster, 3600);
+        NodeDetail copy = a.getNodeRegistry().get(checkedByB.getKey());
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!copy.hasError() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertTrue(copy.hasError());
+        assertEquals(Arrays.asList("HTTP status 503 for /getFees"), copy.getErrorReason());
+        assertEquals(1, a.getNodeRegistry().getErrorCount());
+        assertTrue(a.printAllNodesJson().contains("HTTP status 503 for /getFees"));
+    }
+
+    @Test
+    public void nodesOfAGonePeerAreReassigned() {
+        Cluster cluster = new Cluster(urlA, Arrays.asList(urlA, urlB), 1000);
+        assertFalse(cluster.sync(status -> {
+        }));
+        int before = countOwn(cluster);
+        assertTrue(before < NODES + PRICENODES);
+
+        serverB.stop(0);
+        for (int i = 1; i < Cluster.MAX_FAILED_SYNCS; i++) {
+            assertFalse(cluster.sync(status -> {
+            }));
+        }
+        assertTrue(cluster.sync(status -> {
+        }));
+        assertEquals(Arrays.asList(urlA), new ArrayList<>(cluster.getLiveMembers()));
+        assertEquals(NODES + PRICENODES, countOwn(cluster));
+    }
+
+    @Test
+    public void pricenodesShareOneShard() {
+        List<String> members = Arrays.asList(urlA, urlB);
+        a.joinCluster(new Cluster(urlA, members, 1000), 3600);
+        b.joinCluster(new Cluster(urlB, members, 1000), 3600);
+        long pricenodesA = a.getShardNodes().stream().filter(node -> node.getNodeType() == NodeType.PRICE_NODE).count();
+        long pricenodesB = b.getShardNodes().stream().filter(node -> node.getNodeType() == NodeType.PRICE_NODE).count();
+        assertEquals(PRICENODES, pricenodesA + pricenodesB);
+        assertTrue(pricenodesA == 0 || pricenodesB == 0);
+    }
+
+    private int countOwn(Cluster cluster) {
+        int own = 0;
+        for (NodeDetail node : a.getNodeRegistry().getNodes()) {
+            if (cluster.isOwnShard(Monitoring.shardKey(node))) {
+                own++;
+            }
+        }
+        return own;
+    }
+
+    private static NodeConfig config() {
+        NodeConfig config = new NodeConfig();
+        config.setNodeTimeoutSecs(5);
+        ArrayList<Node> seednodes = new ArrayList<>();
+        for (int i = 0; i < NODES; i++) {
+            Node node = new Node();
+            node.setAddress("seed" + i + ".onion");
+            node.setPort(8000);
+            node.setOwner("@owner" + i);
+            seednodes.add(node);
+        }
+        config.setSeednodes(seednodes);
+        ArrayList<Node> pricenodes = new ArrayList<>();
+        for (int i = 0; i < PRICENODES; i++) {
+            Node node = new Node();
+            node.setAddress("price" + i + ".onion");
+            node.setOwner("@owner" + i);
+            pricenodes.add(node);
+        }
+        config.setPricenodes(pricenodes);
+        return config;
+    }
+}
@@ -0,0 +1,96 @@
+package io.bisq.monitoring;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+/*
+
+ */
+public class ConfigWatcherTest {
+    private Path directory;
+    private Path file;
+    private ConfigWatcher watcher;
+    private final BlockingQueue<NodeConfig> reloaded = new LinkedBlockingQueue<>();
+    private final AtomicBoolean rejectNext = new AtomicBoolean();
+
+    @Before
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("config-watcher");
+        file = directory.resolve("nodes.yaml");
+        write(file, yaml("a.onion"));
+        watcher = new ConfigWatcher(file, config -> {
+            if (rejectNext.getAndSet(false)) {
+                throw new IllegalArgumentException("rejected");
+            }
+            reloaded.add(config);
+        }, 100);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        watcher.close();
+        Files.walk(directory).sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+    }
+
+    @Test
+    public void changedFileIsReloaded() throws Exception {
+        write(file, yaml("b.onion"));
+        NodeConfig config = reloaded.poll(10, TimeUnit.SECONDS);
+        assertNotNull(config);
+        assertEquals("b.onion", config.getPricenodes().get(0).getAddress());
+    }
+
+    @Test
+    public void fileReplacedByRenameIsReloaded() throws Exception {
+        Path temporary = directory.resolve("nodes.yaml.tmp");
+        write(temporary, yaml("c.onion"));
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        NodeConfig config = reloaded.poll(10, TimeUnit.SECONDS);
+        assertNotNull(config);
+        assertEquals("c.onion", config.getPricenodes().get(0).getAddress());
+    }
+
+    @Test
+    public void brokenOrUnchangedFileIsIgnored() throws Exception {
+        write(file, "pricenodes: [ {address: ");
+        write(directory.resolve("other.yaml"), yaml("d.onion"));
+        write(file, yaml("a.onion"));
+        assertNull(reloaded.poll(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void rejectedFileIsAppliedWhenWrittenAgain() throws Exception {
+        rejectNext.set(true);
+        write(file, yaml("e.onion"));
+        long start = System.currentTimeMillis();
+        while (rejectNext.get()) {
+            assertTrue(System.currentTimeMillis() - start < 10000);
+            Thread.sleep(20);
+        }
+        assertNull(reloaded.poll(300, TimeUnit.MILLISECONDS));
+        write(file, yaml("e.onion"));
+        NodeConfig config = reloaded.poll(10, TimeUnit.SECONDS);
+        assertNotNull(config);
+        assertEquals("e.onion", config.getPricenodes().get(0).getAddress());
+    }
+
+    private static String yaml(String address) {
+        return "nodeTimeoutSecs: 5\npricenodes:\n- address: \"" + address + "\"\n  owner: \"@owner\"\n";
+    }
+
+    private static void write(Path path, String content) throws Exception {
+        Files.write(path, content.getBytes(StandardCharsets.UTF_8));
+    }
+}
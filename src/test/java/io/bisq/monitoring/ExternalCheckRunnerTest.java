@@ -0,0 +1,140 @@
+package io.bisq.monitoring;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/*
+
+ */
+public class ExternalCheckRunnerTest {
+    private ExternalCheckRunner runner;
+
+    @Before
+    public void setUp() {
+        assumeTrue(new File("/bin/sh").canExecute());
+        runner = new ExternalCheckRunner(2, 1024);
+    }
+
+    @After
+    public void tearDown() {
+        if (runner != null) {
+            runner.shutdown();
+        }
+    }
+
+    @Test
+    public void largeOutputIsDrainedAndCapped() {
+        ExternalCheckRunner.Result result = sh("head -c 5000000 /dev/zero | tr '\\0' x; echo done >&2", 10000);
+        assertTrue(result.describe(), result.isSuccess());
+        assertEquals(1024, result.getStdout().length());
+        assertTrue(result.isStdoutTruncated());
+        assertEquals("done\n", result.getStderr());
+        assertFalse(result.isStderrTruncated());
+    }
+
+    @Test
+    public void failureReportsExitCodeAndOutput() {
+        ExternalCheckRunner.Result result = sh("echo partial; echo 'no fees' >&2; exit 3", 10000);
+        assertFalse(result.isSuccess());
+        assertEquals(3, result.getExitCode());
+        assertEquals("exit code 3: no fees", result.describe());
+    }
+
+    @Test
+    public void timeoutKillsTheWholeTree() throws Exception {
+        assumeTrue(new File("/proc/self").exists());
+        ExternalCheckRunner.Result result = sh("sleep 30 & echo $!; wait", 500);
+        assertTrue(result.isTimedOut());
+        assertFalse(result.isSuccess());
+        assertTrue(result.getDurationMillis() < 5000);
+        String child = result.getStdout().trim();
+        assertFalse(child.isEmpty());
+        long deadline = System.currentTimeMillis() + 2000;
+        while (new File("/proc/" + child).exists() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertFalse(new File("/proc/" + child).exists());
+    }
+
+    @Test
+    public void cancelKillsTheWholeTree() throws Exception {
+        assumeTrue(new File("/proc/self").exists());
+        File pidFile = File.createTempFile("child", ".pid");
+        pidFile.deleteOnExit();
+        CompletableFuture<ExternalCheckRunner.Result> result = runner.run(Arrays.asList("/bin/sh", "-c",
+                "sleep 30 & echo $! > " + pidFile.getAbsolutePath() + "; wait"), Collections.emptyMap(), 30000);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (pidFile.length() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        String child = new String(Files.readAllBytes(pidFile.toPath()), StandardCharsets.US_ASCII).trim();
+        assertFalse(child.isEmpty());
+        assertTrue(result.cancel(true));
+        deadline = System.currentTimeMillis() + 2000;
+        while (new File("/proc/" + child).exists() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertFalse(new File("/proc/" + child).exists());
+    }
+
+    @Test
+    public void commandsRunOnABoundedPool() {
+        long start = System.currentTimeMillis();
+        List<CompletableFuture<ExternalCheckRunner.Result>> results = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            results.add(runner.run(Arrays.asList("/bin/sh", "-c", "sleep 0.3"), Collections.emptyMap(), 10000));
+        }
+        results.forEach(result -> assertTrue(result.join().isSuccess()));
+        long elapsed = System.currentTimeMillis() - start;
+        // two at a time
+        assertTrue(elapsed >= 600);
+        assertTrue(elapsed < 5000);
+    }
+
+    @Test
+    public void missingCommandIsAnError() {
+        ExternalCheckRunner.Result result = runner.run(Collections.singletonList("/nonexistent/check"), Collections.emptyMap(), 1000).join();
+        assertFalse(result.isSuccess());
+        assertNotNull(result.getError());
+    }
+
+    @Test
+    public void failingCustomCheckFailsTheNode() throws Exception {
+        try (ServerSocket server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            NodeConfig config = new NodeConfig();
+            config.setNodeTimeoutSecs(5);
+            config.setCustomChecks(new ArrayList<>(Arrays.asList(
+                    new CustomCheck("port-known", "SEED_NODE", "test \"$NODE_PORT\" = " + server.getLocalPort(), 0),
+                    new CustomCheck("never", "SEED_NODE", "echo 'not today'; exit 1", 0))));
+            Monitoring monitoring = new Monitoring(config);
+            try {
+                NodeDetail node = new NodeDetail("127.0.0.1", server.getLocalPort(), "@owner", NodeType.SEED_NODE, false);
+                monitoring.getNodeRegistry().add(node);
+                monitoring.checkNode(node).join();
+                assertTrue(node.hasError());
+                assertTrue(node.getReasonListAsString(), node.getReasonListAsString().contains("Custom check never failed: exit code 1: not today"));
+            } finally {
+                monitoring.shutdown();
+            }
+        }
+    }
+
+    private ExternalCheckRunner.Result sh(String command, long timeoutMillis) {
+        return runner.run(Arrays.asList("/bin/sh", "-c", command), Collections.emptyMap(), timeoutMillis).join();
+    }
+}
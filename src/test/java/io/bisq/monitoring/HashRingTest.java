@@ -0,0 +1,47 @@
+package io.bisq.monitoring;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/*
+
+ */
+public class HashRingTest {
+
+    @Test
+    public void keysAreSpreadOverAllMembers() {
+        HashRing ring = new HashRing(Arrays.asList("a", "b", "c"));
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < 3000; i++) {
+            counts.merge(ring.owner("node" + i + ".onion"), 1, Integer::sum);
+        }
+        assertEquals(3, counts.size());
+        for (int count : counts.values()) {
+            assertTrue(counts.toString(), count > 700 && count < 1300);
+        }
+    }
+
+    @Test
+    public void onlyTheKeysOfALeavingMemberMove() {
+        HashRing three = new HashRing(Arrays.asList("a", "b", "c"));
+        HashRing two = new HashRing(Arrays.asList("c", "a"));
+        for (int i = 0; i < 1000; i++) {
+            String key = "node" + i + ".onion";
+            if (!three.owner(key).equals("b")) {
+                assertEquals(key, three.owner(key), two.owner(key));
+            }
+        }
+    }
+
+    @Test
+    public void emptyRingHasNoOwner() {
+        assertNull(new HashRing(Collections.emptyList()).owner("a.onion"));
+        assertEquals("a", new HashRing(Collections.singletonList("a")).owner("b.onion"));
+    }
+}
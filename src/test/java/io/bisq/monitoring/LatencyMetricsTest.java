@@ -0,0 +1,73 @@
+package io.bisq.monitoring;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/*
+
+ */
+public class LatencyMetricsTest {
+    @Test
+    public void bucketsCoverEveryValue() {
+        for (long value = 0; value < 100000; value++) {
+            int index = LatencyHistogram.indexOf(value);
+            assertTrue(value <= LatencyHistogram.highestEquivalentValue(index));
+            assertTrue(index == 0 || value > LatencyHistogram.highestEquivalentValue(index - 1));
+            assertTrue(value >= LatencyHistogram.lowestEquivalentValue(index));
+            // within ~6%
+            assertTrue(LatencyHistogram.highestEquivalentValue(index) - value <= value / 16 + 1);
+        }
+    }
+
+    @Test
+    public void percentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i * 10);
+        }
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE);
+        assertEquals(102, histogram.getTotalCount());
+        assertEquals(500, histogram.getValueAtPercentile(50), 500 / 16);
+        assertEquals(LatencyHistogram.MAX_VALUE, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void boundsAreCountedExactly() {
+        LatencyHistogram histogram = new LatencyHistogram(new long[]{100, 1000, 120000});
+        histogram.record(-5);
+        histogram.record(100);
+        histogram.record(101);
+        // 992 to 1023 share a fine grained bucket
+        histogram.record(1000);
+        histogram.record(1001);
+        histogram.record(122879);
+        assertEquals(2, histogram.getCountAtOrBelow(100));
+        assertEquals(4, histogram.getCountAtOrBelow(1000));
+        assertEquals(5, histogram.getCountAtOrBelow(120000));
+        assertEquals(6, histogram.getTotalCount());
+        try {
+            histogram.getCountAtOrBelow(500);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // only the bounds are counted
+        }
+    }
+
+    @Test
+    public void prometheusFormat() {
+        LatencyMetrics metrics = new LatencyMetrics();
+        NodeKey node = new NodeKey(NodeType.PRICE_NODE, "example.onion", 8080);
+        metrics.record(node, ProbeStage.HTTP_GET_FEES, 40);
+        metrics.record(node, ProbeStage.HTTP_GET_FEES, 3000);
+
+        StringBuilder out = new StringBuilder();
+        metrics.writePrometheus(out);
+        String labels = "node_type=\"PRICE_NODE\",address=\"example.onion\",port=\"8080\",stage=\"http_getFees\"";
+        assertTrue(out.toString(), out.toString().contains("bisq_probe_latency_seconds_bucket{" + labels + ",le=\"0.05\"} 1\n"));
+        assertTrue(out.toString().contains("bisq_probe_latency_seconds_bucket{" + labels + ",le=\"+Inf\"} 2\n"));
+        assertTrue(out.toString().contains("bisq_probe_latency_seconds_sum{" + labels + "} 3.04\n"));
+        assertFalse(out.toString().contains("tor_connect"));
+    }
+}
@@ -0,0 +1,169 @@
+package io.bisq.monitoring;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/*
+
+ */
+public class NodeCheckTest {
+    private Monitoring monitoring;
+
+    @After
+    public void tearDown() {
+        if (monitoring != null) {
+            monitoring.shutdown();
+        }
+    }
+
+    @Test
+    public void checksAreFoundOnTheClasspath() {
+        Map<String, NodeCheck> checks = Monitoring.loadNodeChecks();
+        assertTrue(checks.get(PriceNodeCheck.TYPE) instanceof PriceNodeCheck);
+        assertTrue(checks.get(SeedNodeCheck.TYPE) instanceof SeedNodeCheck);
+        assertTrue(checks.get(BtcNodeCheck.TYPE) instanceof BtcNodeCheck);
+        assertTrue(checks.get(DelayedCheck.TYPE) instanceof DelayedCheck);
+    }
+
+    @Test
+    public void yamlTypeSelectsTheCheck() {
+        NodeConfig config = new NodeConfig();
+        config.setSeednodes(nodes(node(null, "seed.onion", 0), node(DelayedCheck.TYPE, "other.onion", 0)));
+        config.setNodes(nodes(node(DelayedCheck.TYPE, "host", 0), node("unknown", "ignored", 1), node(null, "untyped", 1)));
+        List<NodeDetail> nodes = Monitoring.nodesFromConfig(config, Monitoring.loadNodeChecks());
+        assertEquals(3, nodes.size());
+        assertEquals(NodeType.SEED_NODE, nodes.get(0).getNodeType());
+        assertEquals(8000, nodes.get(0).getPort());
+        assertEquals(SeedNodeCheck.TYPE, nodes.get(0).getCheckType());
+        assertEquals(NodeType.OTHER_NODE, nodes.get(1).getNodeType());
+        assertEquals(DelayedCheck.TYPE, nodes.get(2).getCheckType());
+        assertEquals(DelayedCheck.DEFAULT_PORT, nodes.get(2).getPort());
+    }
+
+    @Test
+    public void checksSharingOtherNodeHaveDistinctKeys() {
+        NodeConfig config = new NodeConfig();
+        config.setNodes(nodes(node(DelayedCheck.TYPE, "host", 1), node(OtherDelayedCheck.TYPE, "host", 1)));
+        List<NodeDetail> nodes = Monitoring.nodesFromConfig(config, Monitoring.loadNodeChecks());
+        NodeKey key = nodes.get(0).getKey();
+        NodeKey other = nodes.get(1).getKey();
+        assertEquals(NodeType.OTHER_NODE, other.getNodeType());
+        assertNotEquals(key, other);
+        assertEquals("OTHER_NODE(other-delayed-test)/host:1", other.toString());
+        assertEquals(other, NodeKey.parseIndexFields(("7\t" + other.toIndexFields()).split("\t"), 1));
+        // the built in types keep their keys
+        assertNull(new NodeDetail("seed.onion", 8000, "@owner", NodeType.SEED_NODE, true).getKey().getCheckType());
+    }
+
+    @Test
+    public void resultsOfAsyncChecksAreHandled() throws Exception {
+        NodeConfig config = new NodeConfig();
+        config.setNodeTimeoutSecs(5);
+        config.setNodes(nodes(node(DelayedCheck.TYPE, "good", 0), node(DelayedCheck.TYPE, "bad", 0)));
+        monitoring = new Monitoring(config);
+        ProbeEngine.CycleStats stats = monitoring.getProbeEngine().runCycle(monitoring.addNodesFromConfig());
+        assertEquals(2, stats.getProbes());
+        assertEquals(0, stats.getCancelledAtDeadline());
+        for (NodeDetail node : monitoring.getNodeRegistry().getNodes()) {
+            assertEquals(node.getAddress().equals("bad"), node.hasError());
+        }
+        NodeDetail good = monitoring.getNodeRegistry().findByAddress("good").get(0);
+        assertEquals("checked", good.getExtraString());
+        assertNotNull(monitoring.getLatencyMetrics().get(good.getKey(), ProbeStage.CHECK));
+    }
+
+    @Test
+    public void reloadTellsTheCheckOfRemovedNodes() throws Exception {
+        NodeConfig config = new NodeConfig();
+        config.setNodes(nodes(node(DelayedCheck.TYPE, "kept", 0), node(DelayedCheck.TYPE, "dropped", 0)));
+        monitoring = new Monitoring(config);
+        monitoring.addNodesFromConfig();
+        NodeConfig reloaded = new NodeConfig();
+        reloaded.setNodes(nodes(node(DelayedCheck.TYPE, "kept", 0)));
+        monitoring.reloadConfig(reloaded);
+        assertTrue(DelayedCheck.REMOVED.contains("dropped"));
+        assertFalse(DelayedCheck.REMOVED.contains("kept"));
+    }
+
+    private static ArrayList<Node> nodes(Node... nodes) {
+        return new ArrayList<>(Arrays.asList(nodes));
+    }
+
+    private static Node node(String type, String address, int port) {
+        Node node = new Node();
+        node.setType(type);
+        node.setAddress(address);
+        node.setPort(port);
+        node.setOwner("@owner");
+        return node;
+    }
+
+    /**
+     * Registered in the test resources, completes its checks later on a thread of its own.
+     */
+    public static class DelayedCheck implements NodeCheck {
+        static final String TYPE = "delayed-test";
+        static final int DEFAULT_PORT = 1234;
+        static final Set<String> REMOVED = ConcurrentHashMap.newKeySet();
+        private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "delayed-check");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        @Override
+        public String getType() {
+            return TYPE;
+        }
+
+        @Override
+        public NodeType getNodeType() {
+            return NodeType.OTHER_NODE;
+        }
+
+        @Override
+        public int getDefaultPort() {
+            return DEFAULT_PORT;
+        }
+
+        @Override
+        public CompletableFuture<CheckResult> check(NodeDetail node, Context context) {
+            CompletableFuture<CheckResult> result = new CompletableFuture<>();
+            TIMER.schedule(() -> {
+                CheckResult checkResult = node.getAddress().equals("bad")
+                        ? CheckResult.failed(ProbeStage.CHECK, 50, "bad node")
+                        : CheckResult.ok(ProbeStage.CHECK, 50);
+                checkResult.recordLatency(ProbeStage.CHECK, 50);
+                checkResult.setExtraString("checked");
+                result.complete(checkResult);
+            }, 50, TimeUnit.MILLISECONDS);
+            return result;
+        }
+
+        @Override
+        public void nodeRemoved(NodeDetail node) {
+            REMOVED.add(node.getAddress());
+        }
+    }
+
+    /**
+     * A second check of OTHER_NODE nodes, registered in the test resources.
+     */
+    public static class OtherDelayedCheck extends DelayedCheck {
+        static final String TYPE = "other-delayed-test";
+
+        @Override
+        public String getType() {
+            return TYPE;
+        }
+    }
+}
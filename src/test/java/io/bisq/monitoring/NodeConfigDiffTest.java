@@ -0,0 +1,102 @@
+package io.bisq.monitoring;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/*
+
+ */
+public class NodeConfigDiffTest {
+
+    @Test
+    public void addedRemovedAndChangedNodes() {
+        NodeDetail kept = new NodeDetail("a.onion", 8080, "@a", NodeType.PRICE_NODE, true);
+        NodeDetail gone = new NodeDetail("b.onion", 8000, "@b", NodeType.SEED_NODE, true);
+        NodeDetail renamed = new NodeDetail("c.net", 8333, "@c", NodeType.BTC_NODE, false);
+        NodeDetail monitor = new NodeDetail("monitor", 80, "@m", NodeType.MONITORING_NODE, false);
+
+        NodeDetail newOwner = new NodeDetail("c.net", 8333, "@new", NodeType.BTC_NODE, false);
+        NodeDetail added = new NodeDetail("d.onion", 8000, "@d", NodeType.SEED_NODE, true);
+        NodeDetail movedPort = new NodeDetail("a.onion", 8081, "@a", NodeType.PRICE_NODE, true);
+        NodeDetail sameAgain = new NodeDetail("a.onion", 8080, "@a", NodeType.PRICE_NODE, true);
+
+        NodeConfigDiff diff = NodeConfigDiff.between(Arrays.asList(kept, gone, renamed, monitor),
+                Arrays.asList(sameAgain, newOwner, added, movedPort, added));
+        assertEquals(Arrays.asList(added, movedPort), diff.getAdded());
+        assertEquals(Collections.singletonList(gone), diff.getRemoved());
+        assertEquals(Collections.singletonList(newOwner), diff.getChanged());
+        assertEquals("2 added, 1 removed, 1 changed", diff.toString());
+    }
+
+    @Test
+    public void sameNodesAreNoChange() {
+        List<NodeDetail> nodes = Arrays.asList(new NodeDetail("a.onion", 8080, "@a", NodeType.PRICE_NODE, true),
+                new NodeDetail("b.onion", 8000, "@b", NodeType.SEED_NODE, true));
+        assertTrue(NodeConfigDiff.between(nodes, nodes).isEmpty());
+    }
+
+    @Test
+    public void reloadKeepsTheStateOfUnchangedNodes() throws Exception {
+        Monitoring monitoring = new Monitoring(config(node("a.onion", 0, "@a"), node("b.onion", 0, "@b")));
+        try {
+            monitoring.addNodesFromConfig();
+            NodeDetail a = monitoring.getNodeRegistry().get(new NodeKey(NodeType.PRICE_NODE, "a.onion", 8080));
+            monitoring.getNodeRegistry().addError(a, "down");
+
+            NodeConfigDiff diff = monitoring.reloadConfig(config(node("a.onion", 0, "@new"), node("c.onion", 0, "@c")));
+            assertEquals("1 added, 1 removed, 1 changed", diff.toString());
+            assertSame(a, monitoring.getNodeRegistry().get(a.getKey()));
+            assertTrue(a.hasError());
+            assertEquals("@new", a.getOwner());
+            assertEquals(1, monitoring.getNodeRegistry().getErrorCountByOwner("@new"));
+            assertEquals(0, monitoring.getNodeRegistry().getErrorCountByOwner("@a"));
+            assertNull(monitoring.getNodeRegistry().get(new NodeKey(NodeType.PRICE_NODE, "b.onion", 8080)));
+            assertEquals(2, monitoring.getProbes().size());
+        } finally {
+            monitoring.shutdown();
+        }
+    }
+
+    @Test
+    public void invalidReloadChangesNothing() throws Exception {
+        Monitoring monitoring = new Monitoring(config(node("a.onion", 0, "@a"), node("b.onion", 0, "@b")));
+        try {
+            monitoring.addNodesFromConfig();
+            NodeConfig invalid = config(node("a.onion", 0, "@new"));
+            invalid.setPricenodeAssertions(new ArrayList<>(Collections.singletonList(
+                    new ResponseAssertion("/getFees", "dataMap.btcTxFee", "bogus", null, null, null))));
+            try {
+                monitoring.reloadConfig(invalid);
+                fail("the assertion is invalid");
+            } catch (IllegalArgumentException expected) {
+                // nothing reloaded
+            }
+            assertEquals(2, monitoring.getNodeRegistry().getNodes().size());
+            assertEquals("@a", monitoring.getNodeRegistry().get(new NodeKey(NodeType.PRICE_NODE, "a.onion", 8080)).getOwner());
+            assertEquals(2, monitoring.getProbes().size());
+        } finally {
+            monitoring.shutdown();
+        }
+    }
+
+    private static NodeConfig config(Node... pricenodes) {
+        NodeConfig config = new NodeConfig();
+        config.setNodeTimeoutSecs(5);
+        config.setPricenodes(new ArrayList<>(Arrays.asList(pricenodes)));
+        return config;
+    }
+
+    private static Node node(String address, int port, String owner) {
+        Node node = new Node();
+        node.setAddress(address);
+        node.setPort(port);
+        node.setOwner(owner);
+        return node;
+    }
+}
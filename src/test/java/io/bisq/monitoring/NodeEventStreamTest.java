@@ -0,0 +1,78 @@
+package io.bisq.monitoring;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import static org.junit.Assert.*;
+
+/*
+
+ */
+public class NodeEventStreamTest {
+    @Test
+    public void publishesOnlyChanges() {
+        NodeEventStream stream = new NodeEventStream();
+        BlockingQueue<NodeEvent> queue = new ArrayBlockingQueue<>(100);
+        stream.subscribe(queue, -1);
+        NodeDetail node = new NodeDetail("seed.onion", 8000, "alice", NodeType.SEED_NODE, true);
+
+        node.setLastLatencyMillis(1000);
+        stream.nodeUpdated(node);
+        assertEquals(NodeEvent.Type.LATENCY_CHANGED, queue.poll().getType());
+
+        // small latency changes and unchanged state are not published
+        node.setLastLatencyMillis(1100);
+        stream.nodeUpdated(node);
+        assertTrue(queue.isEmpty());
+
+        node.addError("connection refused");
+        node.setLastLatencyMillis(2000);
+        stream.nodeUpdated(node);
+        NodeEvent error = queue.poll();
+        assertEquals(NodeEvent.Type.ERROR, error.getType());
+        assertEquals("connection refused", error.getReason());
+        assertEquals(Long.valueOf(2000), queue.poll().getLatencyMillis());
+
+        node.clearError();
+        node.setExtraString("connect: 20 ms");
+        stream.nodeUpdated(node);
+        assertEquals(NodeEvent.Type.RECOVERED, queue.poll().getType());
+        assertEquals("connect: 20 ms", queue.poll().getExtraString());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void replaysAfterLastEventId() throws Exception {
+        NodeEventStream stream = new NodeEventStream();
+        NodeDetail node = new NodeDetail("price.onion", 8080, "bob", NodeType.PRICE_NODE, true);
+        for (int i = 0; i < 3; i++) {
+            node.setExtraString("fee " + i);
+            stream.nodeUpdated(node);
+        }
+        BlockingQueue<NodeEvent> queue = new ArrayBlockingQueue<>(100);
+        stream.subscribe(queue, 1);
+        List<NodeEvent> events = new ArrayList<>(queue);
+        assertEquals(2, events.size());
+        assertEquals(2, events.get(0).getId());
+
+        String formatted = new String(NodeEventStream.format(events.get(1)), StandardCharsets.UTF_8);
+        assertTrue(formatted, formatted.startsWith("id: 3\nevent: extra_changed\ndata: {"));
+        assertTrue(formatted.contains("\"extraString\":\"fee 2\""));
+        assertFalse(formatted.contains("latencyMillis"));
+        assertTrue(formatted.endsWith("}\n\n"));
+    }
+
+    @Test
+    public void subscribeRefusesClientsBeyondTheLimit() {
+        NodeEventStream stream = new NodeEventStream(2);
+        assertTrue(stream.subscribe(new ArrayBlockingQueue<>(10), -1));
+        assertTrue(stream.subscribe(new ArrayBlockingQueue<>(10), -1));
+        assertFalse(stream.subscribe(new ArrayBlockingQueue<>(10), -1));
+        assertEquals(2, stream.getClientCount());
+    }
+}
@@ -0,0 +1,98 @@
+package io.bisq.monitoring;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/*
+
+ */
+public class NodeFarmTest {
+    private NodeFarm farm;
+    private Monitoring monitoring;
+
+    @After
+    public void tearDown() {
+        if (monitoring != null) {
+            monitoring.shutdown();
+        }
+        if (farm != null) {
+            farm.close();
+        }
+    }
+
+    @Test
+    public void healthyNodesPassAllChecks() throws Exception {
+        startFarm(new NodeFarm.Behaviour(20, 0, 16 * 1024, 0));
+        List<ProbeEngine.Probe> probes = monitoring.addNodesFromConfig();
+        assertEquals(9, probes.size());
+        monitoring.getProbeEngine().runCycle(probes);
+        assertEquals(0, monitoring.getNodeRegistry().getErrorCount());
+        for (NodeDetail node : monitoring.getNodeRegistry().getNodes()) {
+            assertFalse(node.toString(), node.hasError());
+        }
+    }
+
+    @Test
+    public void failingNodesFailTheirChecks() throws Exception {
+        startFarm(new NodeFarm.Behaviour(0, 1, 1024, 0));
+        monitoring.getProbeEngine().runCycle(monitoring.addNodesFromConfig());
+        // a seednode only has to accept the connection
+        for (NodeDetail node : monitoring.getNodeRegistry().getNodes()) {
+            assertEquals(node.toString(), node.getNodeType() != NodeType.SEED_NODE, node.hasError());
+        }
+    }
+
+    @Test
+    public void flappingNodeRefusesConnectionsWhileDown() throws Exception {
+        farm = new NodeFarm();
+        farm.addNodes(NodeType.SEED_NODE, 1, new NodeFarm.Behaviour(0, 0, 0, 100));
+        farm.start();
+        int port = farm.createConfig().getSeednodes().get(0).getPort();
+        boolean sawUp = false;
+        boolean sawDown = false;
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!(sawUp && sawDown) && System.currentTimeMillis() < deadline) {
+            try (Socket socket = new Socket()) {
+                socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 1000);
+                sawUp = true;
+            } catch (IOException e) {
+                sawDown = true;
+            }
+            Thread.sleep(20);
+        }
+        assertTrue(sawUp);
+        assertTrue(sawDown);
+    }
+
+    @Test
+    public void configSurvivesYaml() throws Exception {
+        farm = new NodeFarm();
+        farm.addNodes(NodeType.PRICE_NODE, 2, new NodeFarm.Behaviour());
+        farm.addNodes(NodeType.BTC_NODE, 1, new NodeFarm.Behaviour());
+        NodeConfig config = farm.createConfig();
+        String yaml = new ObjectMapper(new YAMLFactory()).writeValueAsString(config);
+        NodeConfig read = new NodeYamlReader(yaml).getNodeConfig();
+        assertEquals(config, read);
+        assertEquals(NodeFarm.PRICENODE_VERSION, read.getPricenodeVersion());
+        assertTrue(read.getPricenodes().get(1).getPort() > 0);
+    }
+
+    private void startFarm(NodeFarm.Behaviour behaviour) throws IOException {
+        farm = new NodeFarm();
+        farm.addNodes(NodeType.PRICE_NODE, 3, behaviour);
+        farm.addNodes(NodeType.SEED_NODE, 3, behaviour);
+        farm.addNodes(NodeType.BTC_NODE, 3, behaviour);
+        farm.start();
+        monitoring = new Monitoring(farm.createConfig());
+    }
+}
@@ -0,0 +1,84 @@
+package io.bisq.monitoring;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+/*
+
+ */
+public class NodeRegistryTest {
+    @Test
+    public void countsErrorsPerTypeAndOwner() {
+        NodeRegistry registry = new NodeRegistry();
+        NodeDetail seed = new NodeDetail("host.onion", 8000, "alice", NodeType.SEED_NODE, true);
+        NodeDetail btc = new NodeDetail("host.onion", 8333, "alice", NodeType.BTC_NODE, true);
+        NodeDetail price = new NodeDetail("price.onion", 8080, "bob", NodeType.PRICE_NODE, true);
+        assertTrue(registry.add(seed));
+        assertTrue(registry.add(btc));
+        assertTrue(registry.add(price));
+        assertFalse(registry.add(new NodeDetail("host.onion", 8000, "mallory", NodeType.SEED_NODE, true)));
+        assertEquals(3, registry.size());
+        assertEquals(2, registry.findByAddress("host.onion").size());
+        assertSame(seed, registry.get(new NodeKey(NodeType.SEED_NODE, "host.onion", 8000)));
+
+        registry.addError(seed, "timeout");
+        registry.addError(seed, "timeout again");
+        registry.addError(btc, "wrong version");
+        assertEquals(2, registry.getErrorCount());
+        assertEquals(1, registry.getErrorCount(NodeType.SEED_NODE));
+        assertEquals(0, registry.getErrorCount(NodeType.PRICE_NODE));
+        assertEquals(2, registry.getErrorCountByOwner("alice"));
+
+        registry.clearError(seed);
+        registry.clearError(price);
+        assertEquals(1, registry.getErrorCount());
+        assertEquals(0, registry.getErrorCount(NodeType.SEED_NODE));
+
+        // removing a node in error takes it out of the counts
+        assertTrue(registry.remove(btc.getKey()));
+        assertEquals(0, registry.getErrorCount());
+        assertTrue(registry.getErrorCountsByOwner().isEmpty());
+        assertEquals(1, registry.findByAddress("host.onion").size());
+    }
+
+    @Test
+    public void countsStayConsistentUnderConcurrentUpdates() throws Exception {
+        NodeRegistry registry = new NodeRegistry();
+        List<NodeDetail> nodes = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            NodeDetail node = new NodeDetail("node" + i + ".onion", 8000, "owner" + (i % 10), NodeType.SEED_NODE, true);
+            registry.add(node);
+            nodes.add(node);
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int thread = 0; thread < 8; thread++) {
+            futures.add(executor.submit(() -> {
+                for (int round = 0; round < 3; round++) {
+                    for (int i = 0; i < nodes.size(); i++) {
+                        if (i % 2 == 0) {
+                            registry.addError(nodes.get(i), "error");
+                        } else {
+                            registry.clearError(nodes.get(i));
+                        }
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        assertEquals(5000, registry.getErrorCount());
+        assertEquals(5000, registry.getErrorCount(NodeType.SEED_NODE));
+        assertEquals(1000, registry.getErrorCountByOwner("owner0"));
+        assertEquals(0, registry.getErrorCountByOwner("owner1"));
+    }
+}
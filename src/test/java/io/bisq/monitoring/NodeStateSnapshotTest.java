@@ -0,0 +1,132 @@
+package io.bisq.monitoring;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/*
+
+ */
+public class NodeStateSnapshotTest {
+    private Path directory;
+    private Path file;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("snapshot");
+        file = directory.resolve(Monitoring.SNAPSHOT_FILE);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        Files.walk(directory).sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+    }
+
+    @Test
+    public void writeAndRead() throws Exception {
+        NodeDetail failing = new NodeDetail("a.onion", 8080, "@a", NodeType.PRICE_NODE, true);
+        failing.addError("HTTP status 503 for /getFees");
+        failing.addError("Timeout");
+        NodeDetail fine = new NodeDetail("btc.net", 8333, "@b", NodeType.BTC_NODE, false);
+        fine.setExtraString("v=/Satoshi:0.15.1/,height:500000");
+        fine.setLastLatencyMillis(42);
+
+        NodeStateSnapshot.write(file, Arrays.asList(failing, fine));
+        List<NodeStatus> statuses = NodeStateSnapshot.read(file);
+        assertEquals(2, statuses.size());
+        NodeStatus first = statuses.get(0);
+        assertEquals(NodeType.PRICE_NODE, first.getNodeType());
+        assertEquals("a.onion", first.getAddress());
+        assertTrue(first.isInError());
+        assertEquals(Arrays.asList("HTTP status 503 for /getFees", "Timeout"), first.getErrorReasons());
+        assertEquals(2, first.getNrErrorsSinceStart());
+        assertEquals(NodeStatus.of(failing).getLastErrorTime(), first.getLastErrorTime());
+        NodeStatus second = statuses.get(1);
+        assertFalse(second.isInError());
+        assertNull(second.getLastErrorTime());
+        assertEquals("v=/Satoshi:0.15.1/,height:500000", second.getExtraString());
+        assertEquals(42, second.getLastLatencyMillis());
+    }
+
+    @Test(expected = IOException.class)
+    public void damagedSnapshotIsRejected() throws Exception {
+        NodeStateSnapshot.write(file, Collections.singletonList(new NodeDetail("a.onion", 8080, "@a", NodeType.PRICE_NODE, true)));
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length - 10] ^= 1;
+        Files.write(file, bytes);
+        NodeStateSnapshot.read(file);
+    }
+
+    @Test
+    public void restartKeepsTheNodeState() throws Exception {
+        Monitoring before = new Monitoring(config());
+        before.addNodesFromConfig();
+        NodeDetail node = before.getNodeRegistry().getNodes().iterator().next();
+        before.getNodeRegistry().addError(node, "Timeout");
+        long now = System.currentTimeMillis();
+        node.getAvailability().record(true, now - 60 * 60 * 1000);
+        node.getAvailability().record(false, now - 15 * 60 * 1000);
+        node.getAvailability().record(true, now - 5 * 60 * 1000);
+        before.saveSnapshot(file);
+        before.shutdown();
+
+        Monitoring after = new Monitoring(config());
+        try {
+            after.addNodesFromConfig();
+            assertEquals(1, after.restoreSnapshot(file));
+            NodeDetail restored = after.getNodeRegistry().get(node.getKey());
+            assertTrue(restored.hasError());
+            assertEquals(Collections.singletonList("Timeout"), restored.getErrorReason());
+            assertEquals(1, after.getNodeRegistry().getErrorCount());
+            // the uptime carries on where it was, a restart does not reset it
+            assertEquals(node.getAvailability().getUptimePercent(now), restored.getAvailability().getUptimePercent(now));
+            assertEquals(node.getAvailability().getMttrMillis(now), restored.getAvailability().getMttrMillis(now));
+            assertEquals(10 * 60 * 1000L, (long) restored.getAvailability().getMttrMillis(now).get("1h"));
+            assertEquals(0, after.restoreSnapshot(directory.resolve("missing")));
+        } finally {
+            after.shutdown();
+        }
+    }
+
+    @Test
+    public void timeToFirstCheckIsAMetric() throws Exception {
+        Monitoring monitoring = new Monitoring(config());
+        try {
+            assertEquals(-1, monitoring.getTimeToFirstCheckMillis());
+            assertFalse(monitoring.printMetrics().contains("bisq_startup_time_to_first_check_seconds"));
+            monitoring.checkNode(new NodeDetail("127.0.0.1", closedPort(), "@a", NodeType.SEED_NODE, false)).join();
+            assertTrue(monitoring.getTimeToFirstCheckMillis() > 0);
+            assertTrue(monitoring.printMetrics().contains("bisq_startup_time_to_first_check_seconds "));
+        } finally {
+            monitoring.shutdown();
+        }
+    }
+
+    private static int closedPort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static NodeConfig config() {
+        NodeConfig config = new NodeConfig();
+        config.setNodeTimeoutSecs(5);
+        Node node = new Node();
+        node.setAddress("seed.onion");
+        node.setPort(8000);
+        node.setOwner("@seed");
+        config.setSeednodes(new ArrayList<>(Collections.singletonList(node)));
+        return config;
+    }
+}
@@ -0,0 +1,145 @@
+package io.bisq.monitoring;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/*
+
+ */
+public class PriceConsistencyAnalyzerTest {
+    private static final long MINUTE = 60 * 1000L;
+    private static final long NOW = 1_600_000_000_000L;
+
+    private final PriceConsistencyAnalyzer analyzer = new PriceConsistencyAnalyzer();
+    // of the prices the helpers add, 0 adds them without one
+    private long timestampSec = NOW / 1000;
+
+    @Test
+    public void pricesAreExtractedWhileValidating() throws Exception {
+        ResponseValidator validator = new ResponseValidator(Arrays.asList(
+                new ResponseAssertion("/getAllMarketPrices", "data[].currencyCode", "contains", "XMR", null, null)));
+        MarketPrices prices = new MarketPrices(analyzer);
+        String body = "{\"data\":[{\"currencyCode\":\"XMR\",\"price\":0.0235,\"timestampSec\":1526380000},"
+                + "{\"currencyCode\":\"EUR\",\"nested\":{\"price\":1},\"price\":6543.21,\"timestampSec\":1526380100},"
+                + "{\"currencyCode\":\"BAD\",\"price\":\"n/a\"}],\"price\":99}";
+        ResponseValidator.Result result = validator.validate("/getAllMarketPrices",
+                new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), prices);
+        assertTrue(result.isValid());
+        assertEquals(0.0235, prices.getPrice("XMR"), 0);
+        assertEquals(6543.21, prices.getPrice("EUR"), 0);
+        assertTrue(Double.isNaN(prices.getPrice("BAD")));
+        assertTrue(Double.isNaN(prices.getPrice("USD")));
+        assertEquals(1526380100, prices.timestampsSec[analyzer.currencyIndex("EUR")]);
+    }
+
+    @Test
+    public void outlierNeedsEnoughNodesAndDeviatingPrices() {
+        assertNull(update("a", NOW, 10, 100, 1000));
+        // two nodes are no majority
+        assertNull(update("c", NOW, 20, 200, 2000));
+        assertNull(update("b", NOW, 10.1, 101, 1010));
+        assertEquals(10.1, analyzer.getMedianPrice("AAA"), 0.0001);
+        String error = update("c", NOW + 1, 20, 200, 2000);
+        assertNotNull(error);
+        assertTrue(error, error.startsWith("3 of 3 prices deviate more than 5%"));
+        assertTrue(error, error.contains("by 98.0%"));
+    }
+
+    @Test
+    public void singleDeviatingCurrencyIsTolerated() {
+        update("a", NOW, 10, 100, 1000);
+        update("b", NOW, 10, 100, 1000);
+        update("c", NOW, 10, 100, 1000);
+        // 1 of 13 currencies is within the tolerated share
+        MarketPrices prices = prices(10, 100, 1000);
+        for (int i = 0; i < 10; i++) {
+            add(prices, "X" + i, 1);
+        }
+        add(prices, "X0", 50);
+        assertNull(analyzer.update(key("c"), prices, NOW + 1, 0, 0));
+    }
+
+    @Test
+    public void deviatingFeeFailsTheNode() {
+        analyzer.update(key("a"), prices("10", 10, 100, 1000), NOW, 0, 0);
+        analyzer.update(key("b"), prices("11", 10, 100, 1000), NOW, 0, 0);
+        String error = analyzer.update(key("c"), prices("500", 10, 100, 1000), NOW, 0, 0);
+        assertNotNull(error);
+        assertTrue(error, error.startsWith("btcTxFee 500.0 deviates"));
+        assertNull(analyzer.update(key("c"), prices("10", 10, 100, 1000), NOW + 1, 0, 0));
+    }
+
+    @Test
+    public void oldPricesAreStale() {
+        assertNull(update("a", NOW, 10, 100, 1000));
+        assertNull(update("a", NOW + 10 * MINUTE, 10, 100, 1000));
+        // changed numbers do not help while the timestamps are old
+        String error = update("a", NOW + 16 * MINUTE, 10, 100, 1001);
+        assertEquals("Stale prices, the newest is 16 min old", error);
+        timestampSec = (NOW + 16 * MINUTE) / 1000;
+        assertNull(update("a", NOW + 17 * MINUTE, 10, 100, 1001));
+        assertNotNull(analyzer.update(key("a"), prices(10, 100, 1001), NOW + 19 * MINUTE, 0, 60));
+    }
+
+    @Test
+    public void unchangedPricesWithoutTimestampsBecomeStale() {
+        timestampSec = 0;
+        assertNull(update("a", NOW, 10, 100, 1000));
+        assertNull(update("a", NOW + 10 * MINUTE, 10, 100, 1000));
+        String error = update("a", NOW + 16 * MINUTE, 10, 100, 1000);
+        assertEquals("Stale prices, unchanged for 16 min", error);
+        assertNull(update("a", NOW + 17 * MINUTE, 10, 100, 1001));
+    }
+
+    @Test
+    public void forgottenNodesLeaveTheMedian() {
+        update("a", NOW, 10, 100, 1000);
+        update("b", NOW, 10, 100, 1000);
+        timestampSec = (NOW + PriceConsistencyAnalyzer.SNAPSHOT_TTL_MILLIS) / 1000;
+        update("c", NOW + PriceConsistencyAnalyzer.SNAPSHOT_TTL_MILLIS, 20, 200, 2000);
+        // a and b have expired
+        assertNull(update("d", NOW + PriceConsistencyAnalyzer.SNAPSHOT_TTL_MILLIS + 1, 30, 300, 3000));
+        analyzer.remove(key("c"));
+        assertTrue(Double.isNaN(analyzer.getMedianPrice("AAA")));
+    }
+
+    private String update(String node, long nowMillis, double... values) {
+        return analyzer.update(key(node), prices(values), nowMillis, 0, 0);
+    }
+
+    private MarketPrices prices(double... values) {
+        MarketPrices prices = new MarketPrices(analyzer);
+        String[] codes = {"AAA", "BBB", "CCC"};
+        for (int i = 0; i < values.length; i++) {
+            add(prices, codes[i], values[i]);
+        }
+        return prices;
+    }
+
+    private MarketPrices prices(String fee, double... values) {
+        MarketPrices prices = prices(values);
+        prices.setBtcTxFee(fee);
+        return prices;
+    }
+
+    private void add(MarketPrices prices, String currencyCode, double price) {
+        String body = "{\"data\":[{\"currencyCode\":\"" + currencyCode + "\",\"price\":" + price
+                + (timestampSec > 0 ? ",\"timestampSec\":" + timestampSec : "") + "}]}";
+        try {
+            new ResponseValidator(Collections.emptyList()).validate("/getAllMarketPrices",
+                    new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), prices);
+        } catch (Exception e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static NodeKey key(String address) {
+        return NodeKey.of(new NodeDetail(address, 8080, "@owner", NodeType.PRICE_NODE, true));
+    }
+}
@@ -0,0 +1,106 @@
+package io.bisq.monitoring;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/*
+
+ */
+public class ProbeEngineTest {
+
+    @Test
+    public void runCycleRespectsTypeLimit() {
+        NodeConfig config = new NodeConfig();
+        config.setMaxConcurrentProbes(10);
+        config.setMaxConcurrentProbesPerType(Collections.singletonMap("SEED_NODE", 2));
+        ProbeEngine engine = new ProbeEngine(config, 10_000);
+
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        List<ProbeEngine.Probe> probes = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            NodeDetail node = new NodeDetail("seed" + i, 8000, "@me", NodeType.SEED_NODE, false);
+            probes.add(new ProbeEngine.Probe(node, () -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                sleep(50);
+                running.decrementAndGet();
+            }));
+        }
+
+        ProbeEngine.CycleStats stats = engine.runCycle(probes);
+        assertEquals(6, stats.getProbes());
+        assertEquals(0, stats.getCancelledAtDeadline());
+        assertEquals(2, maxRunning.get());
+        assertTrue(stats.getMaxQueueDepth() > 0);
+        engine.shutdown();
+    }
+
+    @Test
+    public void probeIsCancelledAtItsDeadline() throws Exception {
+        NodeConfig config = new NodeConfig();
+        config.setMaxConcurrentProbes(2);
+        ProbeEngine engine = new ProbeEngine(config, 500);
+
+        CompletableFuture<Void> neverDone = new CompletableFuture<>();
+        List<ProbeEngine.Probe> probes = new ArrayList<>();
+        probes.add(new ProbeEngine.Probe(new NodeDetail("fast", 80, "@me", NodeType.PRICE_NODE, false), () -> sleep(10)));
+        probes.add(new ProbeEngine.Probe(new NodeDetail("slow", 80, "@me", NodeType.PRICE_NODE, false), () -> sleep(10000)));
+        probes.add(new ProbeEngine.Probe(new NodeDetail("async", 80, "@me", NodeType.PRICE_NODE, false), () -> neverDone));
+
+        ProbeEngine.CycleStats stats = engine.runCycle(probes);
+        assertEquals(2, stats.getCancelledAtDeadline());
+        assertEquals(2, engine.getCancelledAtDeadline());
+        assertTrue(stats.getDurationMillis() < 5000);
+        // the check itself is cancelled and gives its slot back
+        long start = System.currentTimeMillis();
+        while (engine.getRunningCount() > 0) {
+            assertTrue(System.currentTimeMillis() - start < 5000);
+            sleep(10);
+        }
+        assertTrue(neverDone.isCancelled());
+        engine.shutdown();
+    }
+
+    @Test
+    public void asyncProbeHoldsItsSlotUntilDone() throws Exception {
+        NodeConfig config = new NodeConfig();
+        config.setMaxConcurrentProbes(1);
+        ProbeEngine engine = new ProbeEngine(config, 10_000);
+
+        CompletableFuture<Void> first = new CompletableFuture<>();
+        AtomicInteger started = new AtomicInteger();
+        CompletableFuture<Void> firstDone = engine.submit(new ProbeEngine.Probe(new NodeDetail("first", 80, "@me", NodeType.PRICE_NODE, false), () -> {
+            started.incrementAndGet();
+            return first;
+        }));
+        CompletableFuture<Void> secondDone = engine.submit(new ProbeEngine.Probe(new NodeDetail("second", 80, "@me", NodeType.PRICE_NODE, false), () -> {
+            started.incrementAndGet();
+            return CompletableFuture.completedFuture(null);
+        }));
+        sleep(100);
+        assertEquals(1, started.get());
+        assertEquals(1, engine.getRunningCount());
+        first.complete(null);
+        secondDone.get(5, TimeUnit.SECONDS);
+        assertTrue(firstDone.isDone());
+        assertEquals(2, started.get());
+        engine.shutdown();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
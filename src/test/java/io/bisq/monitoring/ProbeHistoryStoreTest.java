@@ -0,0 +1,105 @@
+package io.bisq.monitoring;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/*
+
+ */
+public class ProbeHistoryStoreTest {
+    private static final NodeKey NODE = new NodeKey(NodeType.PRICE_NODE, "example.onion", 8080);
+    private static final NodeKey OTHER = new NodeKey(NodeType.SEED_NODE, "other.onion", 8000);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void rawAndRollupsSurviveRestart() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        long start = System.currentTimeMillis();
+        try (ProbeHistoryStore store = new ProbeHistoryStore(directory, 100, 100, 100, 100)) {
+            store.record(NODE, true, ProbeStage.CHECK, 100);
+            store.record(OTHER, true, ProbeStage.SEED_CONNECT, 5);
+            store.record(NODE, false, ProbeStage.HTTP_GET_VERSION, 300);
+
+            List<ProbeHistoryStore.HistoryPoint> raw = store.query(Collections.singleton(NODE), start, Long.MAX_VALUE, ProbeHistoryStore.Resolution.RAW);
+            assertEquals(2, raw.size());
+            assertEquals("http_getVersion", raw.get(1).getStage());
+            assertEquals(1, raw.get(1).getErrors());
+            assertEquals(300, raw.get(1).getMaxLatencyMillis());
+        }
+
+        try (ProbeHistoryStore store = new ProbeHistoryStore(directory, 100, 100, 100, 100)) {
+            assertEquals(2, store.query(Collections.singleton(NODE), start, Long.MAX_VALUE, ProbeHistoryStore.Resolution.RAW).size());
+            // close wrote the partial buckets
+            List<ProbeHistoryStore.HistoryPoint> minutes = store.query(Collections.singleton(NODE), start - 60 * 1000, Long.MAX_VALUE, ProbeHistoryStore.Resolution.MINUTE);
+            assertFalse(minutes.isEmpty());
+            assertEquals(2, minutes.stream().mapToInt(ProbeHistoryStore.HistoryPoint::getProbes).sum());
+            assertEquals(1, minutes.stream().mapToInt(ProbeHistoryStore.HistoryPoint::getErrors).sum());
+            assertEquals(300, minutes.stream().mapToInt(ProbeHistoryStore.HistoryPoint::getMaxLatencyMillis).max().getAsInt());
+
+            // the rest of a bucket cut by the restart joins its first part
+            store.record(NODE, true, ProbeStage.CHECK, 200);
+            store.flushCompleted(Long.MAX_VALUE);
+            List<ProbeHistoryStore.HistoryPoint> days = store.query(Collections.singleton(NODE), start - 24 * 60 * 60 * 1000, Long.MAX_VALUE, ProbeHistoryStore.Resolution.DAY);
+            assertEquals(1, days.size());
+            assertEquals(3, days.get(0).getProbes());
+            assertEquals(200, days.get(0).getAvgLatencyMillis());
+        }
+    }
+
+    @Test
+    public void overwrittenRingFallsBackToACoarserResolution() throws Exception {
+        try (ProbeHistoryStore store = new ProbeHistoryStore(folder.getRoot().toPath(), 10, 10, 10, 10)) {
+            long now = System.currentTimeMillis();
+            assertEquals(ProbeHistoryStore.Resolution.RAW, store.resolutionFor(now - 60 * 60 * 1000, now));
+            for (int i = 0; i < 25; i++) {
+                store.record(NODE, true, ProbeStage.CHECK, i);
+            }
+            // the raw ring only reaches back to the first of the last 10 probes
+            assertEquals(ProbeHistoryStore.Resolution.MINUTE, store.resolutionFor(now - 60 * 60 * 1000, now));
+        }
+    }
+
+    @Test
+    public void malformedHistoryQueryIsRejected() throws Exception {
+        Monitoring monitoring = new Monitoring(new NodeConfig());
+        try {
+            monitoring.openProbeHistory(folder.getRoot().toPath());
+            assertEquals("[]", monitoring.queryHistory("example.onion", "0", "1000", "1h"));
+            for (String[] query : new String[][]{{"yesterday", null, null}, {null, "now", null}, {"2000", "1000", null},
+                    {null, null, "2m"}}) {
+                try {
+                    monitoring.queryHistory("example.onion", query[0], query[1], query[2]);
+                    fail("accepted " + Arrays.toString(query));
+                } catch (IllegalArgumentException expected) {
+                    // answered with 400
+                }
+            }
+        } finally {
+            monitoring.shutdown();
+        }
+    }
+
+    @Test
+    public void ringKeepsTheNewestRecords() throws Exception {
+        try (ProbeHistoryStore store = new ProbeHistoryStore(folder.getRoot().toPath(), 10, 10, 10, 10)) {
+            for (int i = 0; i < 25; i++) {
+                store.record(NODE, true, ProbeStage.CHECK, i);
+            }
+            List<ProbeHistoryStore.HistoryPoint> raw = store.query(Collections.singleton(NODE), 0, Long.MAX_VALUE, ProbeHistoryStore.Resolution.RAW);
+            assertEquals(10, raw.size());
+            assertEquals(15, raw.get(0).getMaxLatencyMillis());
+            assertEquals(24, raw.get(9).getMaxLatencyMillis());
+            assertTrue(store.query(Collections.singleton(new NodeKey(NodeType.BTC_NODE, "unknown", 8333)), 0, Long.MAX_VALUE, null).isEmpty());
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package io.bisq.monitoring;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/*
+
+ */
+public class ProbeJournalTest {
+    private static final NodeKey NODE = new NodeKey(NodeType.PRICE_NODE, "example.onion", 8080);
+    private static final NodeKey OTHER = new NodeKey(NodeType.SEED_NODE, "other.onion", 8000);
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+    private static final long MIDNIGHT = 1_600_000_000_000L / DAY * DAY;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void recordsAreReplayedInOrderAcrossDaysAndRestarts() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        try (ProbeJournal journal = new ProbeJournal(directory)) {
+            journal.record(NODE, true, ProbeStage.CHECK, 100, MIDNIGHT - 1000);
+            journal.record(OTHER, false, ProbeStage.SEED_CONNECT, -5, MIDNIGHT + 1000);
+        }
+        // a record torn by a crash is dropped
+        Path secondDay = directory.resolve("probes-" + LocalDate.ofEpochDay(MIDNIGHT / DAY) + ".journal");
+        Files.write(secondDay, new byte[7], StandardOpenOption.APPEND);
+        try (ProbeJournal journal = new ProbeJournal(directory)) {
+            journal.record(NODE, false, ProbeStage.HTTP_GET_VERSION, 300, MIDNIGHT + 2000);
+        }
+
+        List<String> records = new ArrayList<>();
+        long count = ProbeJournal.replay(directory, (timestamp, nodeId, ok, stage, latency) ->
+                records.add((timestamp - MIDNIGHT) + " " + nodeId + " " + ok + " " + ProbeStage.values()[stage] + " " + latency));
+        assertEquals(3, count);
+        assertEquals("-1000 0 true CHECK 100", records.get(0));
+        assertEquals("1000 1 false SEED_CONNECT 0", records.get(1));
+        assertEquals("2000 0 false HTTP_GET_VERSION 300", records.get(2));
+
+        Map<Integer, NodeKey> nodes = ProbeJournal.readNodeIndex(directory);
+        assertEquals(2, nodes.size());
+        assertEquals(OTHER, nodes.get(1));
+    }
+
+    @Test
+    public void everyRecordIsWrittenOrCountedAsDropped() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        long dropped;
+        try (ProbeJournal journal = new ProbeJournal(directory, 2)) {
+            for (int i = 0; i < 1000; i++) {
+                journal.record(NODE, i % 2 == 0, ProbeStage.CHECK, i, MIDNIGHT + i);
+            }
+            dropped = journal.getDroppedCount();
+        }
+        assertEquals(1000 - dropped, ProbeJournal.replay(directory, (timestamp, nodeId, ok, stage, latency) -> { }));
+    }
+}
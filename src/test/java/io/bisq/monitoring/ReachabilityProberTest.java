@@ -0,0 +1,83 @@
+package io.bisq.monitoring;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+/*
+
+ */
+public class ReachabilityProberTest {
+    private ServerSocket fakeSocksProxy;
+    private ReachabilityProber prober;
+
+    @Before
+    public void setUp() throws Exception {
+        prober = new ReachabilityProber(5000);
+        // answers CONNECT requests for "good.onion" with success, everything else with host unreachable
+        fakeSocksProxy = new ServerSocket(0, 50, java.net.InetAddress.getLoopbackAddress());
+        Thread thread = new Thread(() -> {
+            while (!fakeSocksProxy.isClosed()) {
+                try (Socket socket = fakeSocksProxy.accept()) {
+                    DataInputStream in = new DataInputStream(socket.getInputStream());
+                    OutputStream out = socket.getOutputStream();
+                    in.readFully(new byte[3]);
+                    out.write(new byte[]{5, 0});
+                    byte[] header = new byte[5];
+                    in.readFully(header);
+                    byte[] host = new byte[header[4]];
+                    in.readFully(host);
+                    in.readFully(new byte[2]);
+                    boolean good = new String(host, StandardCharsets.US_ASCII).equals("good.onion");
+                    out.write(new byte[]{5, (byte) (good ? 0 : 4), 0, 1, 0, 0, 0, 0, 0, 0});
+                    out.flush();
+                } catch (IOException e) {
+                    // closed
+                }
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        prober.shutdown();
+        fakeSocksProxy.close();
+    }
+
+    @Test
+    public void probeThroughSocksProxy() throws Exception {
+        InetSocketAddress proxy = (InetSocketAddress) fakeSocksProxy.getLocalSocketAddress();
+
+        ReachabilityProber.Result good = prober.probe("good.onion", 8000, proxy).get();
+        assertTrue(good.getError(), good.isReachable());
+        assertTrue(good.getConnectMillis() >= good.getProxyConnectMillis());
+
+        ReachabilityProber.Result bad = prober.probe("bad.onion", 8000, proxy).get();
+        assertFalse(bad.isReachable());
+        assertEquals("SOCKS5 host unreachable", bad.getError());
+    }
+
+    @Test
+    public void probeDirect() throws Exception {
+        int port = fakeSocksProxy.getLocalPort();
+        assertTrue(prober.probe("127.0.0.1", port, null).get().isReachable());
+
+        int closedPort;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            closedPort = socket.getLocalPort();
+        }
+        assertFalse(prober.probe("127.0.0.1", closedPort, null).get().isReachable());
+    }
+}
@@ -0,0 +1,87 @@
+package io.bisq.monitoring;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/*
+
+ */
+public class ResponseValidatorTest {
+    private final ResponseValidator validator = new ResponseValidator(Arrays.asList(
+            new ResponseAssertion("/getFees", "dataMap.btcTxFee", "range", null, 1.0, 1000.0),
+            new ResponseAssertion("/getAllMarketPrices", "data[].currencyCode", "contains", "XMR", null, null),
+            new ResponseAssertion("/getVersion", null, "equals", "0.7.2", null, null)));
+
+    @Test
+    public void feesInRange() throws Exception {
+        // both the old and the new json format
+        ResponseValidator.Result result = validate("/getFees", "{ \"dataMap\": { \"dogeTxFee\": 5000000, \"btcTxFee\": 380, \"ltcTxFee\": 500 }, \"bitcoinFeesTs\": 1513173628 }");
+        assertTrue(result.getError(), result.isValid());
+        assertEquals("380", result.getValues().get("dataMap.btcTxFee"));
+        assertTrue(validate("/getFees", "{ \"bitcoinFeesTs\" : 1519047027, \"dataMap\" : { \"dashTxFee\" : 50, \"btcTxFee\" : 10 } }").isValid());
+
+        assertFalse(validate("/getFees", "{ \"dataMap\": { \"btcTxFee\": 5000 } }").isValid());
+        assertFalse(validate("/getFees", "{ \"dataMap\": { \"ltcTxFee\": 500 }, \"btcTxFee\": 10 }").isValid());
+        assertFalse(validate("/getFees", "<html>Not found</html>").isValid());
+    }
+
+    @Test
+    public void stopsReadingOnceDecided() throws Exception {
+        // everything after the XMR entry is garbage, it must never be parsed
+        String body = "{\"data\":[{\"currencyCode\":\"EUR\",\"price\":1.0},{\"currencyCode\":\"XMR\",\"price\":0.02}, !!! not json";
+        assertTrue(validate("/getAllMarketPrices", body).isValid());
+        assertFalse(validate("/getAllMarketPrices", "{\"data\":[{\"currencyCode\":\"EUR\"}]}").isValid());
+        // a currencyCode outside of the data array does not count
+        assertFalse(validate("/getAllMarketPrices", "{\"other\":[{\"currencyCode\":\"XMR\"}]}").isValid());
+    }
+
+    @Test
+    public void plainTextEquals() throws Exception {
+        assertTrue(validate("/getVersion", "0.7.2").isValid());
+        ResponseValidator.Result result = validate("/getVersion", "0.7.1");
+        assertFalse(result.isValid());
+        assertEquals("/getVersion: Expected 0.7.2, actually: 0.7.1", result.getError());
+        // endpoints without assertions are always valid
+        assertTrue(validate("/getParams", "anything").isValid());
+    }
+
+    @Test
+    public void versionAssertionNeedsAVersion() throws Exception {
+        NodeConfig nodeConfig = new NodeConfig();
+        nodeConfig.setPricenodeAssertions(new ArrayList<>(Arrays.asList(
+                new ResponseAssertion("/getVersion", null, "equals", null, null, null))));
+        // without a pricenodeVersion the assertion is left out instead of failing at startup
+        ResponseValidator pricenodes = ResponseValidator.forPricenodes(nodeConfig);
+        assertTrue(pricenodes.validate("/getVersion", body("0.7.1")).isValid());
+
+        nodeConfig.setPricenodeVersion("0.7.2");
+        pricenodes = ResponseValidator.forPricenodes(nodeConfig);
+        assertTrue(pricenodes.validate("/getVersion", body("0.7.2")).isValid());
+        assertFalse(pricenodes.validate("/getVersion", body("0.7.1")).isValid());
+
+        // the defaults only check the version when there is one
+        nodeConfig.setPricenodeAssertions(null);
+        nodeConfig.setPricenodeVersion(null);
+        assertTrue(ResponseValidator.forPricenodes(nodeConfig).validate("/getVersion", body("0.7.1")).isValid());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownCheckFailsAtCompileTime() {
+        new ResponseValidator(Arrays.asList(new ResponseAssertion("/getFees", "x", "bigger", null, null, null)));
+    }
+
+    private ResponseValidator.Result validate(String endpoint, String body) throws Exception {
+        return validator.validate(endpoint, body(body));
+    }
+
+    private static InputStream body(String body) {
+        return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+    }
+}
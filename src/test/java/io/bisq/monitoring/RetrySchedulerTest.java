@@ -0,0 +1,75 @@
+package io.bisq.monitoring;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/*
+
+ */
+public class RetrySchedulerTest {
+    private static final NodeKey NODE = new NodeKey(NodeType.SEED_NODE, "seed.onion", 8000);
+
+    @Test
+    public void backoffDoublesWithJitter() {
+        RetryScheduler scheduler = new RetryScheduler(1000, 8000, 1, 10);
+        for (int i = 0; i < 100; i++) {
+            long first = scheduler.backoffMillis(1);
+            assertTrue(first >= 500 && first <= 1000);
+            long third = scheduler.backoffMillis(3);
+            assertTrue(third >= 2000 && third <= 4000);
+            long capped = scheduler.backoffMillis(30);
+            assertTrue(capped >= 4000 && capped <= 8000);
+        }
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void runsOnceAndDeduplicates() throws Exception {
+        RetryScheduler scheduler = new RetryScheduler(100, 100, 2, 10);
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(1);
+        assertTrue(scheduler.schedule(NODE, 1, () -> {
+            runs.incrementAndGet();
+            done.countDown();
+        }));
+        assertFalse(scheduler.schedule(NODE, 1, runs::incrementAndGet));
+        assertEquals(1, scheduler.getPendingCount());
+        assertTrue(done.await(2, TimeUnit.SECONDS));
+        Thread.sleep(200);
+        assertEquals(1, runs.get());
+        assertEquals(0, scheduler.getPendingCount());
+
+        // cancelled retries never run
+        AtomicInteger cancelledRuns = new AtomicInteger();
+        scheduler.schedule(NODE, 1, cancelledRuns::incrementAndGet);
+        scheduler.cancel(NODE);
+        Thread.sleep(300);
+        assertEquals(0, cancelledRuns.get());
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void retryIsSkippedWhileTheNodeIsChecked() throws Exception {
+        RetryScheduler scheduler = new RetryScheduler(20, 20, 2, 5);
+        AtomicInteger retries = new AtomicInteger();
+        CountDownLatch retryDue = new CountDownLatch(1);
+        scheduler.runExclusively(NODE, () -> {
+            scheduler.schedule(NODE, 1, retries::incrementAndGet);
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            assertFalse(scheduler.runExclusively(NODE, retries::incrementAndGet));
+            retryDue.countDown();
+        });
+        assertTrue(retryDue.await(1, TimeUnit.SECONDS));
+        assertEquals(0, retries.get());
+        scheduler.shutdown();
+    }
+}
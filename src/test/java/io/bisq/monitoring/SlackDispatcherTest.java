@@ -0,0 +1,161 @@
+package io.bisq.monitoring;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/*
+
+ */
+public class SlackDispatcherTest {
+    private static final ObjectMapper JSON_MAPPER = new ObjectMapper();
+
+    private HttpServer server;
+    private SlackWebhook webhook;
+    private final List<JsonNode> messages = new CopyOnWriteArrayList<>();
+    // the webhook answers this many posts with a server error first
+    private final AtomicInteger failures = new AtomicInteger();
+    private volatile long delayMillis;
+
+    @Before
+    public void startServer() throws Exception {
+        Monitoring.isSlackEnabled = true;
+        // a stand-in for the Slack webhook, it records the posted messages
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/services/hook", exchange -> {
+            String body = readAll(exchange.getRequestBody());
+            try {
+                Thread.sleep(delayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            int status = 200;
+            if (failures.getAndDecrement() > 0) {
+                status = 500;
+            } else {
+                messages.add(JSON_MAPPER.readTree(URLDecoder.decode(body.substring("payload=".length()), "UTF-8")));
+            }
+            byte[] response = "ok".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(status, response.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(response);
+            }
+        });
+        server.start();
+        webhook = new SlackWebhook("test", "http://127.0.0.1:" + server.getAddress().getPort() + "/services/hook", 5000);
+    }
+
+    @After
+    public void stopServer() {
+        Monitoring.isSlackEnabled = false;
+        server.stop(0);
+    }
+
+    @Test
+    public void singleAlertIsSentAsIs() throws Exception {
+        SlackDispatcher dispatcher = new SlackDispatcher(() -> "summary", 100, 50, 10);
+        assertTrue(dispatcher.send(webhook, "Error: Pricenode a.onion", "<owner> down"));
+        waitFor(() -> messages.size() == 1);
+        assertEquals("Error: Pricenode a.onion", messages.get(0).get("username").asText());
+        assertEquals("<owner> down", messages.get(0).get("text").asText());
+        waitFor(() -> dispatcher.getQueueDepth() == 0);
+        assertEquals(1, dispatcher.getSentCount());
+        assertEquals(1, dispatcher.getSendLatency().getTotalCount());
+        dispatcher.shutdown();
+    }
+
+    @Test
+    public void alertsArrivingTogetherAreOneDigest() throws Exception {
+        SlackDispatcher dispatcher = new SlackDispatcher(() -> "Nodes in error: 3", 100, 300, 10);
+        for (int i = 0; i < 3; i++) {
+            dispatcher.send(webhook, "Error: node " + i, "down");
+        }
+        waitFor(() -> messages.size() == 1);
+        Thread.sleep(100);
+        assertEquals(1, messages.size());
+        assertEquals("3 alerts", messages.get(0).get("username").asText());
+        String text = messages.get(0).get("text").asText();
+        assertTrue(text, text.contains("*Error: node 0*: down\n*Error: node 1*: down\n*Error: node 2*: down"));
+        assertTrue(text, text.endsWith("Nodes in error: 3"));
+        dispatcher.shutdown();
+    }
+
+    @Test
+    public void failedPostIsRetried() throws Exception {
+        failures.set(1);
+        SlackDispatcher dispatcher = new SlackDispatcher(() -> "", 100, 10, 10);
+        dispatcher.send(webhook, "Fixed: Seednode b.onion", "No longer in error");
+        waitFor(() -> messages.size() == 1);
+        assertEquals("Fixed: Seednode b.onion", messages.get(0).get("username").asText());
+        waitFor(() -> dispatcher.getQueueDepth() == 0);
+        assertEquals(0, dispatcher.getFailedCount());
+        assertEquals(2, dispatcher.getSendLatency().getTotalCount());
+        dispatcher.shutdown();
+    }
+
+    @Test
+    public void slowWebhookDoesNotBlockAndQueueIsBounded() throws Exception {
+        delayMillis = 500;
+        SlackDispatcher dispatcher = new SlackDispatcher(() -> "", 2, 0, 10);
+        long start = System.currentTimeMillis();
+        assertTrue(dispatcher.send(webhook, "one", "1"));
+        assertTrue(dispatcher.send(webhook, "two", "2"));
+        assertFalse(dispatcher.send(webhook, "three", "3"));
+        assertTrue(System.currentTimeMillis() - start < 500);
+        assertEquals(2, dispatcher.getQueueDepth());
+        assertEquals(1, dispatcher.getDroppedCount());
+
+        StringBuilder metrics = new StringBuilder();
+        dispatcher.writePrometheus(metrics);
+        assertTrue(metrics.toString(), metrics.toString().contains("bisq_slack_alerts_dropped_total 1\n"));
+        waitFor(() -> dispatcher.getQueueDepth() == 0);
+        dispatcher.shutdown();
+    }
+
+    @Test
+    public void nothingIsQueuedWhenSlackIsDisabled() {
+        Monitoring.isSlackEnabled = false;
+        SlackDispatcher dispatcher = new SlackDispatcher(() -> "");
+        assertFalse(dispatcher.send(webhook, "Error", "down"));
+        assertEquals(0, dispatcher.getQueueDepth());
+        dispatcher.shutdown();
+    }
+
+    private static void waitFor(Condition condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!condition.isMet()) {
+            assertTrue("Timed out", System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private interface Condition {
+        boolean isMet();
+    }
+
+    private static String readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int read;
+        while ((read = in.read(buffer)) >= 0) {
+            bytes.write(buffer, 0, read);
+        }
+        return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,93 @@
+package io.bisq.monitoring;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.time.LocalDateTime;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.*;
+
+/*
+
+ */
+public class StatusPageTest {
+    @Test
+    public void rebuildsOnlyAfterChanges() throws Exception {
+        NodeRegistry nodes = new NodeRegistry();
+        NodeDetail seed = new NodeDetail("seed.onion", 8000, "alice", NodeType.SEED_NODE, true);
+        NodeDetail price = new NodeDetail("price.onion", 8080, "bob", NodeType.PRICE_NODE, true);
+        nodes.add(seed);
+        nodes.add(price);
+        StatusPage page = new StatusPage(nodes, LocalDateTime.now());
+
+        StatusPage.Rendered first = page.get();
+        assertSame(first, page.get());
+        assertTrue(first.getHtmlAsString().indexOf("price.onion") < first.getHtmlAsString().indexOf("seed.onion"));
+        assertArrayEquals(first.getHtml(), gunzip(first.getGzipped()));
+
+        // unchanged content keeps the ETag
+        page.nodeChanged(seed);
+        assertSame(first, page.get());
+
+        nodes.addError(seed, "connection refused");
+        page.nodeChanged(seed);
+        StatusPage.Rendered second = page.get();
+        assertNotEquals(first.getEtag(), second.getEtag());
+        assertTrue(second.getHtmlAsString().contains("Nodes in error: <b>1</b>"));
+        assertTrue(second.getHtmlAsString().contains("connection refused"));
+
+        // rows of unchanged nodes come from the cache
+        price.setExtraString("not rendered yet");
+        nodes.clearError(seed);
+        page.nodeChanged(seed);
+        assertFalse(page.get().getHtmlAsString().contains("not rendered yet"));
+        page.nodeChanged(price);
+        assertTrue(page.get().getHtmlAsString().contains("not rendered yet"));
+    }
+
+    @Test
+    public void pageAndRowsAreRenderedAgainOnceOld() {
+        NodeRegistry nodes = new NodeRegistry();
+        NodeDetail seed = new NodeDetail("seed.onion", 8000, "alice", NodeType.SEED_NODE, true);
+        nodes.add(seed);
+        StatusPage page = new StatusPage(nodes, LocalDateTime.now());
+        long now = 1_600_000_000_000L;
+        StatusPage.Rendered first = page.get(now);
+
+        // nothing signals the change, like the uptime moving with the clock
+        seed.setExtraString("changed meanwhile");
+        assertSame(first, page.get(now + StatusPage.MAX_AGE_MILLIS - 1));
+        assertTrue(page.get(now + StatusPage.MAX_AGE_MILLIS).getHtmlAsString().contains("changed meanwhile"));
+    }
+
+    @Test
+    public void ownerChangeResortsThePage() {
+        NodeRegistry nodes = new NodeRegistry();
+        NodeDetail first = new NodeDetail("first.onion", 8000, "alice", NodeType.SEED_NODE, true);
+        NodeDetail second = new NodeDetail("second.onion", 8000, "bob", NodeType.SEED_NODE, true);
+        nodes.add(first);
+        nodes.add(second);
+        StatusPage page = new StatusPage(nodes, LocalDateTime.now());
+        String html = page.get().getHtmlAsString();
+        assertTrue(html.indexOf("first.onion") < html.indexOf("second.onion"));
+
+        nodes.setOwner(first, "carol");
+        page.nodesChanged();
+        html = page.get().getHtmlAsString();
+        assertTrue(html.indexOf("second.onion") < html.indexOf("first.onion"));
+    }
+
+    private static byte[] gunzip(byte[] data) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(data))) {
+            byte[] buffer = new byte[1024];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                out.write(buffer, 0, read);
+            }
+        }
+        return out.toByteArray();
+    }
+}
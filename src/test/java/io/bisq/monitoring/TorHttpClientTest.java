@@ -0,0 +1,157 @@
+package io.bisq.monitoring;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.net.SocketFactory;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+/*
+
+ */
+public class TorHttpClientTest {
+    private HttpServer server;
+    private final Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+
+    @Before
+    public void startServer() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            clientPorts.add(exchange.getRemoteAddress().getPort());
+            byte[] body = exchange.getRequestURI().getPath().getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(exchange.getRequestURI().getPath().equals("/missing") ? 404 : 200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    public void requestsToOneHostShareAConnection() throws Exception {
+        TorHttpClient client = new TorHttpClient(5000);
+        int port = server.getAddress().getPort();
+        for (String path : new String[]{"/getFees", "/getAllMarketPrices", "/getParams", "/getVersion"}) {
+            TorHttpClient.Response response = client.get("127.0.0.1", port, path, null);
+            assertEquals(200, response.getStatusCode());
+            assertEquals(path, response.getBody());
+        }
+        assertEquals(404, client.get("127.0.0.1", port, "/missing", null).getStatusCode());
+        assertEquals(1, clientPorts.size());
+        client.closeIdleConnections();
+    }
+
+    @Test
+    public void pipelineStopsAtFirstRejectedResponse() throws Exception {
+        TorHttpClient client = new TorHttpClient(5000);
+        List<String> seen = new ArrayList<>();
+        client.pipeline("127.0.0.1", server.getAddress().getPort(), Arrays.asList("/getFees", "/missing", "/getVersion"), null,
+                (path, statusCode, body, latencyMillis) -> {
+                    seen.add(path);
+                    return statusCode == 200;
+                });
+        assertEquals(Arrays.asList("/getFees", "/missing"), seen);
+
+        seen.clear();
+        client.pipeline("127.0.0.1", server.getAddress().getPort(), PriceNodeCheck.ENDPOINTS, null,
+                (path, statusCode, body, latencyMillis) -> seen.add(new BufferedReader(new InputStreamReader(body)).readLine()));
+        assertEquals(PriceNodeCheck.ENDPOINTS, seen);
+        client.closeIdleConnections();
+    }
+
+    @Test
+    public void proxiedConnectionsAreNotPooled() throws Exception {
+        TorHttpClient client = new TorHttpClient(5000);
+        int port = server.getAddress().getPort();
+        client.pipeline("127.0.0.1", port, Arrays.asList("/getFees", "/getVersion"), new DirectSocketFactory(),
+                (path, statusCode, body, latencyMillis) -> true);
+        assertEquals(1, clientPorts.size());
+        assertEquals("/getParams", client.get("127.0.0.1", port, "/getParams", new DirectSocketFactory()).getBody());
+        assertEquals(2, clientPorts.size());
+        client.closeIdleConnections();
+    }
+
+    @Test
+    public void cancelClosesTheConnection() throws Exception {
+        TorHttpClient client = new TorHttpClient(30000);
+        CompletableFuture<Void> cancelSignal = new CompletableFuture<>();
+        // accepts, but never answers
+        try (ServerSocket silent = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            CompletableFuture<Long> pipeline = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return client.pipeline("127.0.0.1", silent.getLocalPort(), Arrays.asList("/getFees"), null,
+                            cancelSignal, (path, statusCode, body, latencyMillis) -> true);
+                } catch (IOException e) {
+                    throw new CompletionException(e);
+                }
+            });
+            silent.accept();
+            long start = System.currentTimeMillis();
+            cancelSignal.cancel(true);
+            try {
+                pipeline.get(5, TimeUnit.SECONDS);
+                fail("a cancelled request can't succeed");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof IOException);
+            }
+            assertTrue(System.currentTimeMillis() - start < 5000);
+        }
+    }
+
+    // stands in for the proxy: connects to the unresolved address it is given
+    private static class DirectSocketFactory extends SocketFactory {
+        @Override
+        public Socket createSocket() {
+            return new Socket() {
+                @Override
+                public void connect(SocketAddress endpoint, int timeout) throws IOException {
+                    InetSocketAddress address = (InetSocketAddress) endpoint;
+                    super.connect(new InetSocketAddress(address.getHostString(), address.getPort()), timeout);
+                }
+            };
+        }
+
+        @Override
+        public Socket createSocket(String host, int port) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Socket createSocket(String host, int port, InetAddress localHost, int localPort) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Socket createSocket(InetAddress host, int port) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Socket createSocket(InetAddress address, int port, InetAddress localAddress, int localPort) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package io.bisq.monitoring;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+/*
+
+ */
+public class TorPoolTest {
+    private ServerSocket fakeSocksProxy;
+    // the usernames the fake proxy was connected with, one per stream
+    private final List<String> usernames = new CopyOnWriteArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        // requires username/password authentication, then answers every CONNECT with success
+        fakeSocksProxy = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        Thread thread = new Thread(() -> {
+            while (!fakeSocksProxy.isClosed()) {
+                try (Socket socket = fakeSocksProxy.accept()) {
+                    DataInputStream in = new DataInputStream(socket.getInputStream());
+                    OutputStream out = socket.getOutputStream();
+                    in.readFully(new byte[2]);
+                    boolean userPassword = in.readByte() == 2;
+                    out.write(new byte[]{5, (byte) (userPassword ? 2 : 0xff)});
+                    if (!userPassword) {
+                        continue;
+                    }
+                    in.readByte();
+                    byte[] user = new byte[in.readUnsignedByte()];
+                    in.readFully(user);
+                    in.readFully(new byte[in.readUnsignedByte()]);
+                    usernames.add(new String(user, StandardCharsets.UTF_8));
+                    out.write(new byte[]{1, 0});
+                    byte[] header = new byte[5];
+                    in.readFully(header);
+                    in.readFully(new byte[header[4] + 2]);
+                    out.write(new byte[]{5, 0, 0, 1, 0, 0, 0, 0, 0, 0});
+                    out.flush();
+                    // keep the stream open until the client is done
+                    in.read();
+                } catch (IOException e) {
+                    // closed
+                }
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        fakeSocksProxy.close();
+    }
+
+    @Test
+    public void routeToLeastLoadedInstance() {
+        TorPool pool = newPool(3);
+        NodeKey a = new NodeKey(NodeType.SEED_NODE, "a.onion", 8000);
+        NodeKey b = new NodeKey(NodeType.SEED_NODE, "b.onion", 8000);
+        NodeKey c = new NodeKey(NodeType.SEED_NODE, "c.onion", 8000);
+
+        TorPool.Route routeA = pool.route(a);
+        TorPool.Route routeB = pool.route(b);
+        TorPool.Route routeC = pool.route(c);
+        Set<Integer> used = new HashSet<>(Arrays.asList(routeA.getInstance().getIndex(), routeB.getInstance().getIndex(),
+                routeC.getInstance().getIndex()));
+        assertEquals(3, used.size());
+        assertEquals("SEED_NODE/a.onion:8000", routeA.getUsername());
+
+        routeA.close();
+        routeA.close();
+        assertEquals(0, routeA.getInstance().getActiveStreams());
+        assertEquals(1, routeA.getInstance().getTotalStreams());
+    }
+
+    @Test
+    public void keepNodeOnItsInstanceUntilItIsMuchBusier() {
+        TorPool pool = newPool(2);
+        NodeKey node = new NodeKey(NodeType.PRICE_NODE, "p.onion", 8080);
+        TorPool.Instance assigned = pool.route(node).getInstance();
+
+        // busier than the other instance, but within the threshold: the node stays for its prewarmed circuit
+        for (int i = 0; i < TorPool.REBALANCE_THRESHOLD; i++) {
+            assertSame(assigned, pool.route(node).getInstance());
+        }
+
+        // more than the threshold busier: the node moves to the other instance
+        TorPool.Route moved = pool.route(node);
+        assertNotSame(assigned, moved.getInstance());
+        assertSame(moved.getInstance(), pool.route(node).getInstance());
+    }
+
+    @Test
+    public void isolateStreamsWithSocksUsername() throws Exception {
+        TorPool pool = newPool(1);
+        NodeKey node = new NodeKey(NodeType.BTC_NODE, "n.onion", 8333);
+
+        try (TorPool.Route route = pool.route(node);
+             Socket socket = route.getSocketFactory().createSocket()) {
+            socket.connect(InetSocketAddress.createUnresolved("n.onion", 8333), 5000);
+            assertTrue(socket.isConnected());
+        }
+
+        ReachabilityProber prober = new ReachabilityProber(5000);
+        try (TorPool.Route route = pool.route(node)) {
+            ReachabilityProber.Result result = prober.probe("n.onion", 8333, route.getSocksProxy(), route.getUsername(),
+                    route.getPassword()).get();
+            assertTrue(result.getError(), result.isReachable());
+        } finally {
+            prober.shutdown();
+        }
+        assertEquals(Arrays.asList("BTC_NODE/n.onion:8333", "BTC_NODE/n.onion:8333"), usernames);
+    }
+
+    @Test
+    public void cancelledCheckClosesItsRoute() throws Exception {
+        TorPool pool = newPool(1);
+        ReachabilityProber prober = new ReachabilityProber(5000);
+        NodeCheck.Context context = new NodeCheck.Context() {
+            @Override
+            public NodeConfig getNodeConfig() {
+                return new NodeConfig();
+            }
+
+            @Override
+            public int getTimeoutMillis() {
+                return 5000;
+            }
+
+            @Override
+            public TorPool.Route route(NodeDetail node) {
+                return pool.route(node.getKey());
+            }
+
+            @Override
+            public TorHttpClient getHttpClient() {
+                return null;
+            }
+
+            @Override
+            public ResponseValidator getResponseValidator() {
+                return null;
+            }
+
+            @Override
+            public ReachabilityProber getReachabilityProber() {
+                return prober;
+            }
+
+            @Override
+            public BitcoinHandshakeEngine getHandshakeEngine() {
+                return null;
+            }
+
+            @Override
+            public Executor getBlockingExecutor() {
+                return Runnable::run;
+            }
+        };
+        try {
+            // like a probe cancelled at its deadline
+            new SeedNodeCheck().check(new NodeDetail("s.onion", 8000, "@owner", NodeType.SEED_NODE, true), context)
+                    .cancel(true);
+            TorPool.Instance instance = pool.getInstances().get(0);
+            long deadline = System.currentTimeMillis() + 5000;
+            while (instance.getActiveStreams() > 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            assertEquals(0, instance.getActiveStreams());
+            assertEquals(1, instance.getTotalStreams());
+        } finally {
+            prober.shutdown();
+        }
+    }
+
+    @Test
+    public void removedNodeIsAssignedAfresh() {
+        TorPool pool = newPool(2);
+        NodeKey node = new NodeKey(NodeType.PRICE_NODE, "p.onion", 8080);
+        TorPool.Instance assigned = pool.route(node).getInstance();
+        assertSame(assigned, pool.route(node).getInstance());
+
+        pool.remove(node);
+        assertNotSame(assigned, pool.route(node).getInstance());
+    }
+
+    @Test
+    public void parseSocksPort() {
+        assertEquals(new InetSocketAddress("localhost", 9050), TorPool.parseSocksPort("9050"));
+        assertEquals(new InetSocketAddress("127.0.0.1", 9150), TorPool.parseSocksPort("127.0.0.1:9150"));
+        try {
+            TorPool.parseSocksPort("localhost:x");
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("'localhost:x'"));
+        }
+    }
+
+    private TorPool newPool(int instances) {
+        InetSocketAddress proxy = (InetSocketAddress) fakeSocksProxy.getLocalSocketAddress();
+        return new TorPool(Collections.nCopies(instances, proxy), Collections.emptyList());
+    }
+}